@@ -0,0 +1,160 @@
+package net.sf.jagg.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sf.jagg.Aggregator;
+
+/**
+ * Benchmarks the <code>iterate</code>, <code>merge</code>, and
+ * <code>terminate</code> methods of each <code>Aggregator</code>, over a
+ * batch of values.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregatorBenchmark
+{
+   /**
+    * The <code>Aggregator</code> specification, as accepted by
+    * <code>Aggregator.getAggregator(String)</code>.
+    */
+   @Param({"ApproxCountDistinct(name)", "ApproxPercentile(0.99,value2)", "Avg(value2)", "Avg(value2,double)", "Collect(value1)",
+      "Concat(name)", "Correlation(value1,value2)", "Count(*)", "CountDistinct(name)",
+      "Covariance(value1,value2)", "CovariancePop(value1,value2)", "GeometricMean(value2)",
+      "HarmonicMean(value2)", "LinearRegression(value1,value2)", "Max(value1)", "Min(value1)",
+      "Mode(category)", "Percentile(0.5,value2)", "Product(value2)", "StdDev(value2)",
+      "StdDevPop(value2)", "Sum(value1)", "Sum(value2)", "Sum(value2,double)", "Sum(value2,compensated)",
+      "TopK(name,10)", "Variance(value2)", "Variance(value2,double)", "Variance(value2,compensated)",
+      "VariancePop(value2)"})
+   public String aggregator;
+
+   /**
+    * The number of values in a batch.
+    */
+   @Param({"10000"})
+   public int rows;
+
+   private List<BenchRecord> myRecords;
+   private Aggregator myArchetype;
+   private Aggregator myIterated;
+
+   /**
+    * Generates the values and creates an <code>Aggregator</code> that has
+    * iterated over all of them, to be terminated.
+    */
+   @Setup
+   public void setup()
+   {
+      myRecords = BenchmarkData.getRecords(rows, 100);
+      myArchetype = Aggregator.getAggregator(aggregator);
+      myIterated = getIterated(0, rows);
+   }
+
+   /**
+    * Initializes an <code>Aggregator</code>, iterates over all values, and
+    * terminates it.
+    * @return The aggregate value.
+    */
+   @Benchmark
+   public Object iterate()
+   {
+      return getIterated(0, rows).terminate();
+   }
+
+   /**
+    * Initializes an <code>Aggregator</code>, iterates over all values with
+    * one call to <code>iterateRange</code>, and terminates it.
+    * @return The aggregate value.
+    */
+   @Benchmark
+   public Object iterateRange()
+   {
+      Aggregator agg = myArchetype.replicate();
+      agg.init();
+      agg.iterateRange(myRecords, 0, rows);
+      return agg.terminate();
+   }
+
+   /**
+    * Merges one <code>Aggregator</code> into another, each having iterated
+    * over half of the values.
+    * @param halves The <code>Aggregators</code> to merge.
+    * @return The merged <code>Aggregator</code>.
+    */
+   @Benchmark
+   public Aggregator merge(Halves halves)
+   {
+      halves.myLeft.merge(halves.myRight);
+      return halves.myLeft;
+   }
+
+   /**
+    * Terminates an <code>Aggregator</code> that has iterated over all values.
+    * @return The aggregate value.
+    */
+   @Benchmark
+   public Object terminate()
+   {
+      return myIterated.terminate();
+   }
+
+   /**
+    * Creates and initializes a new <code>Aggregator</code>, and iterates over
+    * the given range of values.
+    * @param start The start of the range.
+    * @param end The end of the range, exclusive.
+    * @return The <code>Aggregator</code>.
+    */
+   private Aggregator getIterated(int start, int end)
+   {
+      Aggregator agg = myArchetype.replicate();
+      agg.init();
+      for (int i = start; i < end; i++)
+         agg.iterate(myRecords.get(i));
+      return agg;
+   }
+
+   /**
+    * <code>Halves</code> holds two <code>Aggregators</code> that have each
+    * iterated over half of the values, to be merged.  Merging changes the
+    * first one, so they are created again for every invocation.
+    */
+   @State(Scope.Thread)
+   public static class Halves
+   {
+      private Aggregator myLeft;
+      private Aggregator myRight;
+
+      /**
+       * Creates the two <code>Aggregators</code>.
+       * @param benchmark The <code>AggregatorBenchmark</code>.
+       */
+      @Setup(Level.Invocation)
+      public void setup(AggregatorBenchmark benchmark)
+      {
+         int rows = benchmark.rows;
+         myLeft = benchmark.getIterated(0, rows / 2);
+         myRight = benchmark.getIterated(rows / 2, rows);
+      }
+   }
+}
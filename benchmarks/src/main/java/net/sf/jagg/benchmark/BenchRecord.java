@@ -0,0 +1,69 @@
+package net.sf.jagg.benchmark;
+
+import java.io.Serializable;
+
+/**
+ * A <code>BenchRecord</code> is a simple row of data that the benchmarks
+ * group and aggregate.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class BenchRecord implements Serializable
+{
+   private int myCategory;
+   private String myName;
+   private int myValue1;
+   private double myValue2;
+
+   /**
+    * Constructs a <code>BenchRecord</code>.
+    * @param category An integer "group by" category.
+    * @param name A <code>String</code> "group by" category.
+    * @param value1 An integer value.
+    * @param value2 A floating-point value.
+    */
+   public BenchRecord(int category, String name, int value1, double value2)
+   {
+      myCategory = category;
+      myName = name;
+      myValue1 = value1;
+      myValue2 = value2;
+   }
+
+   /**
+    * Returns the integer category.
+    * @return The integer category.
+    */
+   public int getCategory()
+   {
+      return myCategory;
+   }
+
+   /**
+    * Returns the <code>String</code> category.
+    * @return The <code>String</code> category.
+    */
+   public String getName()
+   {
+      return myName;
+   }
+
+   /**
+    * Returns the integer value.
+    * @return The integer value.
+    */
+   public int getValue1()
+   {
+      return myValue1;
+   }
+
+   /**
+    * Returns the floating-point value.
+    * @return The floating-point value.
+    */
+   public double getValue2()
+   {
+      return myValue2;
+   }
+}
@@ -0,0 +1,121 @@
+package net.sf.jagg.benchmark;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <code>BenchmarkData</code> generates the data for the benchmarks.  The
+ * data is generated from a fixed seed, so that every run, and every release,
+ * is measured against the same data.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class BenchmarkData
+{
+   /**
+    * The seed of the random number generator.
+    */
+   public static final long SEED = 20101231L;
+
+   /**
+    * A small enumeration, for discriminating <code>Enums</code>.
+    */
+   public static enum Level { LOW, MEDIUM, HIGH, CRITICAL }
+
+   /**
+    * Private constructor; all methods are static.
+    */
+   private BenchmarkData() {}
+
+   /**
+    * Generates <code>BenchRecords</code> in random order, whose "group by"
+    * properties, <code>category</code> and <code>name</code>, together have
+    * at most the given number of distinct values.
+    * @param rows The number of records.
+    * @param cardinality The number of distinct groups.
+    * @return A <code>List</code> of <code>BenchRecords</code>.
+    */
+   public static List<BenchRecord> getRecords(int rows, int cardinality)
+   {
+      Random random = new Random(SEED);
+      String[] names = getNames(cardinality);
+      List<BenchRecord> records = new ArrayList<BenchRecord>(rows);
+      for (int i = 0; i < rows; i++)
+      {
+         int group = random.nextInt(cardinality);
+         records.add(new BenchRecord(group / 10, names[group], random.nextInt(1000),
+            random.nextDouble() * 100 + 1));
+      }
+      return records;
+   }
+
+   /**
+    * Generates values of the given type in random order, with at most the
+    * given number of distinct values.
+    * @param type The simple name of the type: <code>Integer</code>,
+    *    <code>Long</code>, <code>Double</code>, <code>String</code>,
+    *    <code>Date</code>, <code>Enum</code>, <code>Boolean</code>, or
+    *    <code>List</code>.
+    * @param rows The number of values.
+    * @param cardinality The number of distinct values.
+    * @return A <code>List</code> of values.
+    * @throws IllegalArgumentException If the type is not known.
+    */
+   public static List<?> getValues(String type, int rows, int cardinality)
+   {
+      Random random = new Random(SEED);
+      String[] names = getNames(cardinality);
+      Calendar cal = new GregorianCalendar(2010, Calendar.JANUARY, 1);
+      long base = cal.getTimeInMillis();
+      Level[] levels = Level.values();
+      List<Object> values = new ArrayList<Object>(rows);
+      for (int i = 0; i < rows; i++)
+      {
+         int n = random.nextInt(cardinality);
+         if ("Integer".equals(type))
+            values.add(n * 7919);
+         else if ("Long".equals(type))
+            values.add((long) n * 1000000007L);
+         else if ("Double".equals(type))
+            values.add(n / 3.0);
+         else if ("String".equals(type))
+            values.add(names[n]);
+         else if ("Date".equals(type))
+            values.add(new Date(base + n * TimeUnit.DAYS.toMillis(1)));
+         else if ("Enum".equals(type))
+            values.add(levels[n % levels.length]);
+         else if ("Boolean".equals(type))
+            values.add(n % 2 == 0);
+         else if ("List".equals(type))
+         {
+            List<Integer> list = new ArrayList<Integer>(2);
+            list.add(n / 100);
+            list.add(n % 100);
+            values.add(list);
+         }
+         else
+            throw new IllegalArgumentException("Unknown type: " + type);
+      }
+      return values;
+   }
+
+   /**
+    * Generates the given number of distinct names that share long prefixes,
+    * as real-world keys often do.
+    * @param cardinality The number of names.
+    * @return An array of names.
+    */
+   private static String[] getNames(int cardinality)
+   {
+      String[] names = new String[cardinality];
+      for (int i = 0; i < cardinality; i++)
+         names[i] = "customer-" + (i % 7) + "-" + i;
+      return names;
+   }
+}
@@ -0,0 +1,42 @@
+package net.sf.jagg.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the jAgg benchmarks.  It accepts all of the usual JMH command line
+ * options, e.g. a regular expression selecting benchmarks, or
+ * <code>-p rows=10000</code> to restrict a parameter.  Unless a result format
+ * or file is given, the results are written as JSON to
+ * <code>jagg-benchmarks.json</code>, so that runs may be compared by tools.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class BenchmarkMain
+{
+   /**
+    * The default file to which results are written.
+    */
+   public static final String DEFAULT_RESULT_FILE = "jagg-benchmarks.json";
+
+   /**
+    * Runs the benchmarks.
+    * @param args JMH command line options.
+    * @throws CommandLineOptionException If the options couldn't be parsed.
+    * @throws RunnerException If the benchmarks couldn't be run.
+    */
+   public static void main(String[] args) throws CommandLineOptionException, RunnerException
+   {
+      CommandLineOptions cmd = new CommandLineOptions(args);
+      ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmd);
+      if (!cmd.getResultFormat().hasValue() && !cmd.getResult().hasValue())
+         builder.resultFormat(ResultFormatType.JSON).result(DEFAULT_RESULT_FILE);
+      new Runner(builder.build()).run();
+   }
+}
@@ -0,0 +1,112 @@
+package net.sf.jagg.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sf.jagg.msd.AbstractDiscriminator;
+import net.sf.jagg.msd.Discriminators;
+import net.sf.jagg.msd.IndexPartition;
+import net.sf.jagg.msd.MsdWorkspace;
+import net.sf.jagg.msd.PropertiesDiscriminator;
+
+/**
+ * Benchmarks each kind of <code>Discriminator</code>, with both the
+ * <code>List</code>-based and the index-based discrimination, and the
+ * <code>PropertiesDiscriminator</code> used by "group by" operations.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiscriminatorBenchmark
+{
+   /**
+    * The type of values to discriminate.
+    */
+   @Param({"Integer", "Long", "Double", "String", "Date", "Enum", "Boolean", "List"})
+   public String type;
+
+   /**
+    * The number of values.
+    */
+   @Param({"100000"})
+   public int rows;
+
+   /**
+    * The number of distinct values.
+    */
+   @Param({"10", "10000"})
+   public int cardinality;
+
+   private List<Object> myValues;
+   private AbstractDiscriminator<Object> myDiscriminator;
+   private List<BenchRecord> myRecords;
+   private PropertiesDiscriminator<BenchRecord> myPropertiesDiscriminator;
+   private MsdWorkspace myWorkspace;
+
+   /**
+    * Generates the values and gets the <code>Discriminator</code> for their
+    * type.
+    */
+   @Setup
+   @SuppressWarnings("unchecked")
+   public void setup()
+   {
+      myValues = (List<Object>) BenchmarkData.getValues(type, rows, cardinality);
+      Class<Object> c = (Class<Object>) myValues.get(0).getClass();
+      myDiscriminator = (AbstractDiscriminator<Object>) Discriminators.getDiscriminator(c);
+      myRecords = BenchmarkData.getRecords(rows, cardinality);
+      myPropertiesDiscriminator = new PropertiesDiscriminator<BenchRecord>(Arrays.asList("category", "name"));
+      myWorkspace = new MsdWorkspace();
+   }
+
+   /**
+    * Discriminates the values into a <code>List</code> of
+    * <code>Lists</code>.
+    * @return The equivalence classes.
+    */
+   @Benchmark
+   public List<List<Object>> discriminateLists()
+   {
+      return myDiscriminator.discriminate(myValues, myWorkspace);
+   }
+
+   /**
+    * Discriminates the values into an <code>IndexPartition</code>.
+    * @return The equivalence classes.
+    */
+   @Benchmark
+   public IndexPartition discriminateIndexes()
+   {
+      return myDiscriminator.discriminateIndexes(myValues, myWorkspace);
+   }
+
+   /**
+    * Discriminates records by their "group by" properties into an
+    * <code>IndexPartition</code>.  This doesn't depend on the type.
+    * @return The equivalence classes.
+    */
+   @Benchmark
+   public IndexPartition discriminateProperties()
+   {
+      return myPropertiesDiscriminator.discriminateIndexes(myRecords, myWorkspace);
+   }
+}
@@ -0,0 +1,138 @@
+package net.sf.jagg.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregation;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.AvgAggregator;
+import net.sf.jagg.ColumnarTable;
+import net.sf.jagg.CountAggregator;
+import net.sf.jagg.SumAggregator;
+
+/**
+ * Benchmarks "group by" operations end to end: serial and parallel, with
+ * each way of bringing together the values of each group (sorting, multiset
+ * discrimination, and hashing), or over the same values in a
+ * <code>ColumnarTable</code>, over varying numbers of rows and groups.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupByBenchmark
+{
+   /**
+    * The number of rows.
+    */
+   @Param({"10000", "1000000"})
+   public int rows;
+
+   /**
+    * The number of distinct groups.
+    */
+   @Param({"10", "10000"})
+   public int cardinality;
+
+   /**
+    * How the values of each group are brought together: <code>SORT</code>,
+    * <code>MSD</code>, <code>HASH</code>, <code>RADIX</code>, or
+    * <code>COLUMNAR</code>, which
+    * sorts the row indexes of a <code>ColumnarTable</code>.
+    */
+   @Param({"SORT", "MSD", "HASH", "RADIX", "COLUMNAR"})
+   public String method;
+
+   /**
+    * The degree of parallelism.
+    */
+   @Param({"1", "4"})
+   public int parallelism;
+
+   private List<BenchRecord> myRecords;
+   private ColumnarTable myTable;
+   private List<String> myProperties;
+   private List<Aggregator> myAggregators;
+   private Aggregation myAggregation;
+
+   /**
+    * Generates the records and builds the <code>Aggregation</code>.
+    */
+   @Setup
+   public void setup()
+   {
+      myRecords = BenchmarkData.getRecords(rows, cardinality);
+      myProperties = Arrays.asList("category", "name");
+      myAggregators = Arrays.<Aggregator>asList(new SumAggregator("value1"), new AvgAggregator("value2"),
+         new CountAggregator("*"));
+      Aggregation.Builder builder = new Aggregation.Builder().setProperties(myProperties)
+         .setAggregators(myAggregators).setParallelism(parallelism);
+      if ("MSD".equals(method))
+         builder.setUseMsd(true);
+      else if ("HASH".equals(method))
+         builder.setStrategy(Aggregation.Strategy.HASH);
+      else if ("RADIX".equals(method))
+         builder.setStrategy(Aggregation.Strategy.RADIX);
+      myAggregation = builder.build();
+      if ("COLUMNAR".equals(method))
+         myTable = getTable(myRecords);
+   }
+
+   /**
+    * Groups and aggregates the records, or their <code>ColumnarTable</code>,
+    * with the configured <code>Aggregation</code>, as
+    * <code>Aggregations.groupBy</code> does.
+    * @return The aggregate values.
+    */
+   @Benchmark
+   public List<? extends AggregateValue<?>> groupBy()
+   {
+      if (myTable != null)
+         return myAggregation.groupBy(myTable);
+      return myAggregation.groupBy(myRecords);
+   }
+
+   /**
+    * Returns a <code>ColumnarTable</code> with the same values as the given
+    * records, with their property names as column names.
+    * @param records The records.
+    * @return A <code>ColumnarTable</code>.
+    */
+   private static ColumnarTable getTable(List<BenchRecord> records)
+   {
+      int size = records.size();
+      int[] category = new int[size];
+      String[] name = new String[size];
+      int[] value1 = new int[size];
+      double[] value2 = new double[size];
+      for (int i = 0; i < size; i++)
+      {
+         BenchRecord record = records.get(i);
+         category[i] = record.getCategory();
+         name[i] = record.getName();
+         value1[i] = record.getValue1();
+         value2[i] = record.getValue2();
+      }
+      return new ColumnarTable(size).addColumn("category", category).addColumn("name", name)
+         .addColumn("value1", value1).addColumn("value2", value2);
+   }
+}
@@ -0,0 +1,101 @@
+package net.sf.jagg.benchmark;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sf.jagg.MethodCache;
+import net.sf.jagg.MethodCall;
+import net.sf.jagg.PropertyAccessor;
+
+/**
+ * Benchmarks retrieving a property value, through a <code>MethodCache</code>
+ * lookup, through a <code>PropertyAccessor</code>, and by calling the getter
+ * directly, as a baseline.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PropertyAccessBenchmark
+{
+   private static final String PROPERTY = "value1";
+
+   private BenchRecord myRecord;
+   private MethodCache myMethodCache;
+   private PropertyAccessor myAccessor;
+
+   /**
+    * Creates the record and warms the <code>MethodCache</code>.
+    */
+   @Setup
+   public void setup()
+   {
+      myRecord = BenchmarkData.getRecords(1, 1).get(0);
+      myMethodCache = MethodCache.getMethodCache();
+      myAccessor = new PropertyAccessor(PROPERTY);
+      myAccessor.get(myRecord);
+   }
+
+   /**
+    * Looks up the <code>MethodCall</code> for the property in the
+    * <code>MethodCache</code>.
+    * @return The <code>MethodCall</code>.
+    * @throws NoSuchMethodException If the property doesn't exist.
+    */
+   @Benchmark
+   public MethodCall methodCacheLookup() throws NoSuchMethodException
+   {
+      return myMethodCache.getMethodCallFromProperty(myRecord, PROPERTY);
+   }
+
+   /**
+    * Looks up and invokes the property through the <code>MethodCache</code>.
+    * @return The property value.
+    * @throws NoSuchMethodException If the property doesn't exist.
+    * @throws IllegalAccessException If the getter is inaccessible.
+    * @throws InvocationTargetException If the getter throws an
+    *    <code>Exception</code>.
+    */
+   @Benchmark
+   public Object methodCacheValue()
+      throws NoSuchMethodException, IllegalAccessException, InvocationTargetException
+   {
+      return myMethodCache.getValueFromProperty(myRecord, PROPERTY);
+   }
+
+   /**
+    * Retrieves the property through a <code>PropertyAccessor</code>.
+    * @return The property value.
+    */
+   @Benchmark
+   public Object propertyAccessor()
+   {
+      return myAccessor.get(myRecord);
+   }
+
+   /**
+    * Calls the getter directly.
+    * @return The property value.
+    */
+   @Benchmark
+   public int directGetter()
+   {
+      return myRecord.getValue1();
+   }
+}
@@ -1,5 +1,7 @@
 package net.sf.jagg;
 
+import java.util.List;
+
 /**
  * This abstract class represents covariance-like aggregator calculations over
  * numeric values.
@@ -28,6 +30,12 @@ public abstract class AbstractCovarianceAggregator extends TwoPropAggregator
     */
    protected DoubleDouble myVarNumerator = new DoubleDouble();
 
+   // Reused for intermediate results, so that iterating and merging don't
+   // allocate.
+   private DoubleDouble myTemp = new DoubleDouble();
+   private DoubleDouble myTemp2 = new DoubleDouble();
+   private DoubleDouble myTemp3 = new DoubleDouble();
+
    /**
     * Constructs a <code>CovarianceAggregator</code> on the specified
     * properties, in the format: <code>property, property2</code>.
@@ -75,8 +83,8 @@ public abstract class AbstractCovarianceAggregator extends TwoPropAggregator
          String property2 = getProperty2();
          try
          {
-            Number obj1 = (Number) getValueFromProperty(value, property1);
-            Number obj2 = (Number) getValueFromProperty(value, property2);
+            Number obj1 = (Number) getValueFromProperty(value);
+            Number obj2 = (Number) getValueFromProperty2(value);
             // Don't count nulls.
             if (obj1 != null && obj2 != null)
             {
@@ -98,11 +106,13 @@ public abstract class AbstractCovarianceAggregator extends TwoPropAggregator
                else
                {
                   // temp = myCount * dVal1 - mySum1;
-                  DoubleDouble temp = new DoubleDouble(dVal1);
+                  DoubleDouble temp = myTemp;
+                  temp.set(dVal1);
                   temp.multiplySelfBy(myCount);
                   temp.subtractFromSelf(mySum1);
                   // temp2 = myCount * dVal2 - mySum2;
-                  DoubleDouble temp2 = new DoubleDouble(dVal2);
+                  DoubleDouble temp2 = myTemp2;
+                  temp2.set(dVal2);
                   temp2.multiplySelfBy(myCount);
                   temp2.subtractFromSelf(mySum2);
                   // temp *= temp2;
@@ -123,6 +133,21 @@ public abstract class AbstractCovarianceAggregator extends TwoPropAggregator
       }
    }
 
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
    /**
     * Merge the given <code>Aggregator</code> into this one.  Add the sums
     * together.  Add in the count.  Update the variance numerator.
@@ -151,21 +176,26 @@ public abstract class AbstractCovarianceAggregator extends TwoPropAggregator
             // Pairwise Algorithm for Computing Sample Variances" by Chan,
             // Gloub, and LeVeque, November 1979, Stanford University.
             // nOverM = (double) otherAgg.myCount / myCount;
-            DoubleDouble nOverM = new DoubleDouble(otherAgg.myCount);
+            DoubleDouble nOverM = myTemp3;
+            nOverM.set(otherAgg.myCount);
             nOverM.divideSelfBy(myCount);
             // double temp = nOverM * mySum1 - otherAgg.mySum1;
-            DoubleDouble temp = new DoubleDouble(nOverM);
+            DoubleDouble temp = myTemp;
+            temp.set(nOverM);
             temp.multiplySelfBy(mySum1);
             temp.subtractFromSelf(otherAgg.mySum1);
             // double temp2 = nOverM * mySum2 - otherAgg.mySum2;
-            DoubleDouble temp2 = new DoubleDouble(nOverM);
+            DoubleDouble temp2 = myTemp2;
+            temp2.set(nOverM);
             temp2.multiplySelfBy(mySum2);
             temp2.subtractFromSelf(otherAgg.mySum2);
             // temp *= temp2;
             temp.multiplySelfBy(temp2);
             // myVarNumerator += otherAgg.myVarNumerator +
             //    (double) myCount / (otherAgg.myCount * (myCount + otherAgg.myCount)) * temp;
-            DoubleDouble temp3 = new DoubleDouble(myCount);
+            // nOverM is no longer needed.
+            DoubleDouble temp3 = myTemp3;
+            temp3.set(myCount);
             temp3.divideSelfBy(otherAgg.myCount * (myCount + otherAgg.myCount));
             temp3.multiplySelfBy(temp);
             myVarNumerator.addToSelf(otherAgg.myVarNumerator);
@@ -1,9 +1,19 @@
 package net.sf.jagg;
 
+import java.util.List;
+
 /**
  * This abstract class represents variance-like aggregator calculations over
  * numeric values.
  *
+ * The optional second property is the <code>NumericPrecision</code>, e.g.
+ * <code>Variance(value, double)</code>, which defaults to
+ * <code>DOUBLE_DOUBLE</code>.  In <code>DOUBLE</code> and
+ * <code>COMPENSATED</code> precision, the mean and the variance numerator are
+ * updated in <code>doubles</code> with Welford's algorithm, without
+ * allocating objects per value; in <code>COMPENSATED</code> precision, the
+ * variance numerator is also compensated with Neumaier's algorithm.
+ *
  * @author Randy Gettman
  * @since 0.3.0
  */
@@ -23,9 +33,20 @@ public abstract class AbstractVarianceAggregator extends Aggregator
     */
    protected DoubleDouble myVarNumerator = new DoubleDouble();
 
+   // Reused for intermediate results, so that iterating and merging don't
+   // allocate.
+   private DoubleDouble myTemp = new DoubleDouble();
+   private DoubleDouble myTemp2 = new DoubleDouble();
+   private NumericPrecision myPrecision;
+   // The running mean and variance numerator in DOUBLE and COMPENSATED
+   // precision, and the accumulated rounding error of the latter.
+   private double myMean;
+   private double myM2;
+   private double myM2Compensation;
+
    /**
     * Constructs an <code>VarianceAggregator</code> that operates on the specified
-    * property.
+    * property, in the format: <code>property[, precision]</code>.
     * @param property Calculate the variance of this property's values.
     */
    public AbstractVarianceAggregator(String property)
@@ -33,6 +54,51 @@ public abstract class AbstractVarianceAggregator extends Aggregator
       setProperty(property);
    }
 
+   /**
+    * Constructs an <code>VarianceAggregator</code> that operates on the
+    * specified property in the specified precision.
+    * @param property Calculate the variance of this property's values.
+    * @param precision The <code>NumericPrecision</code>.
+    * @since 0.7.3
+    */
+   public AbstractVarianceAggregator(String property, NumericPrecision precision)
+   {
+      this(property + "," + precision.name());
+   }
+
+   /**
+    * Extracts a possible <code>NumericPrecision</code> from the property in
+    * the format: <code>property[, precision]</code>.
+    *
+    * @param property A property name and possible precision.
+    * @since 0.7.3
+    */
+   @Override
+   protected void setProperty(String property)
+   {
+      int comma = NumericPrecision.indexOfPrecision(property);
+      if (comma < 0)
+      {
+         super.setProperty(property);
+         myPrecision = NumericPrecision.DOUBLE_DOUBLE;
+      }
+      else
+      {
+         super.setProperty(property.substring(0, comma).trim());
+         myPrecision = NumericPrecision.fromName(property.substring(comma + 1));
+      }
+   }
+
+   /**
+    * Returns the <code>NumericPrecision</code>.
+    * @return The <code>NumericPrecision</code>.
+    * @since 0.7.3
+    */
+   public NumericPrecision getPrecision()
+   {
+      return myPrecision;
+   }
+
    /**
     * Initialize the sum and count to zero.
     */
@@ -41,6 +107,9 @@ public abstract class AbstractVarianceAggregator extends Aggregator
       myCount = 0;
       mySum.reset();
       myVarNumerator.reset();
+      myMean = 0;
+      myM2 = 0;
+      myM2Compensation = 0;
    }
 
    /**
@@ -56,37 +125,11 @@ public abstract class AbstractVarianceAggregator extends Aggregator
          String property = getProperty();
          try
          {
-            Number obj = (Number) getValueFromProperty(value, property);
+            Number obj = (Number) getValueFromProperty(value);
             // Don't count nulls.
             if (obj != null)
             {
-               long oldCount = myCount;
-               myCount++;
-               double dVal = obj.doubleValue();
-
-               // Running algorithm adapted from "Updating Formulae and a
-               // Pairwise Algorithm for Computing Sample Variances" by Chan,
-               // Gloub, and LeVeque, November 1979, Stanford University.
-
-               // Running sum.
-               mySum.addToSelf(dVal);
-               // Running variance numerator.
-               if (myCount == 1)
-                  myVarNumerator.reset();
-               else
-               {
-                  // temp = myCount * dVal - mySum;
-                  DoubleDouble temp = new DoubleDouble(dVal);
-                  temp.multiplySelfBy(myCount);
-                  temp.subtractFromSelf(mySum);
-                  // temp *= temp;
-                  temp.squareSelf();
-                  // temp /= (myCount * oldCount);
-                  temp.divideSelfBy(myCount);
-                  temp.divideSelfBy(oldCount);
-                  // myVarNumerator += temp;
-                  myVarNumerator.addToSelf(temp);
-               }
+               add(obj.doubleValue());
             }
          }
          catch (ClassCastException e)
@@ -97,6 +140,80 @@ public abstract class AbstractVarianceAggregator extends Aggregator
       }
    }
 
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
+   /**
+    * Adds the values, without boxing them.
+    *
+    * @param values An array of property values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateDoubles(double[] values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         add(values[i]);
+   }
+
+   /**
+    * Count the value and add it to the sum.  Update the variance numerator.
+    * @param dVal The value.
+    */
+   private void add(double dVal)
+   {
+      if (myPrecision != NumericPrecision.DOUBLE_DOUBLE)
+      {
+         // Welford's algorithm.
+         myCount++;
+         double delta = dVal - myMean;
+         myMean += delta / myCount;
+         addToM2(delta * (dVal - myMean));
+         return;
+      }
+      long oldCount = myCount;
+      myCount++;
+
+      // Running algorithm adapted from "Updating Formulae and a
+      // Pairwise Algorithm for Computing Sample Variances" by Chan,
+      // Gloub, and LeVeque, November 1979, Stanford University.
+
+      // Running sum.
+      mySum.addToSelf(dVal);
+      // Running variance numerator.
+      if (myCount == 1)
+         myVarNumerator.reset();
+      else
+      {
+         // temp = myCount * dVal - mySum;
+         DoubleDouble temp = myTemp;
+         temp.set(dVal);
+         temp.multiplySelfBy(myCount);
+         temp.subtractFromSelf(mySum);
+         // temp *= temp;
+         temp.squareSelf();
+         // temp /= (myCount * oldCount);
+         temp.divideSelfBy(myCount);
+         temp.divideSelfBy(oldCount);
+         // myVarNumerator += temp;
+         myVarNumerator.addToSelf(temp);
+      }
+   }
+
    /**
     * Merge the given <code>Aggregator</code> into this one.  Add the
     * respective sums and counts together.  Update the variance numerator.
@@ -108,7 +225,28 @@ public abstract class AbstractVarianceAggregator extends Aggregator
       if (agg != null && agg instanceof AbstractVarianceAggregator)
       {
          AbstractVarianceAggregator otherAgg = (AbstractVarianceAggregator) agg;
-         if (myCount == 0)
+         if (myPrecision != NumericPrecision.DOUBLE_DOUBLE)
+         {
+            if (myCount == 0)
+            {
+               myCount = otherAgg.myCount;
+               myMean = otherAgg.myMean;
+               myM2 = otherAgg.myM2;
+               myM2Compensation = otherAgg.myM2Compensation;
+            }
+            else if (otherAgg.myCount > 0)
+            {
+               // Chan's pairwise update, in terms of the means.
+               long count = myCount + otherAgg.myCount;
+               double delta = otherAgg.myMean - myMean;
+               myMean += delta * otherAgg.myCount / count;
+               addToM2(otherAgg.myM2);
+               addToM2(otherAgg.myM2Compensation);
+               addToM2(delta * delta * ((double) myCount * otherAgg.myCount / count));
+               myCount = count;
+            }
+         }
+         else if (myCount == 0)
          {
             // Nothing on this side yet.  Just copy the other one over.
             myCount = otherAgg.myCount;
@@ -124,7 +262,8 @@ public abstract class AbstractVarianceAggregator extends Aggregator
             // Pairwise Algorithm for Computing Sample Variances" by Chan,
             // Gloub, and LeVeque, November 1979, Stanford University.
             // temp = ((double) otherAgg.myCount / myCount) * mySum - otherAgg.mySum;
-            DoubleDouble temp = new DoubleDouble(otherAgg.myCount);
+            DoubleDouble temp = myTemp;
+            temp.set(otherAgg.myCount);
             temp.divideSelfBy(myCount);
             temp.multiplySelfBy(mySum);
             temp.subtractFromSelf(otherAgg.mySum);
@@ -132,7 +271,8 @@ public abstract class AbstractVarianceAggregator extends Aggregator
             temp.squareSelf();
             // myVarNumerator += otherAgg.myVarNumerator +
             //    (double) myCount / (otherAgg.myCount * (myCount + otherAgg.myCount)) * temp;
-            DoubleDouble temp3 = new DoubleDouble(myCount);
+            DoubleDouble temp3 = myTemp2;
+            temp3.set(myCount);
             temp3.divideSelfBy(otherAgg.myCount * (myCount + otherAgg.myCount));
             temp3.multiplySelfBy(temp);
             myVarNumerator.addToSelf(otherAgg.myVarNumerator);
@@ -144,6 +284,58 @@ public abstract class AbstractVarianceAggregator extends Aggregator
       }
    }
 
+   /**
+    * Returns the variance numerator, the sum of squared deviations from the
+    * mean, in any precision.  Subclasses divide it by the appropriate
+    * denominator.
+    * @return The variance numerator.
+    * @since 0.7.3
+    */
+   protected DoubleDouble getVarNumerator()
+   {
+      if (myPrecision == NumericPrecision.DOUBLE_DOUBLE)
+         return myVarNumerator;
+      DoubleDouble varNumerator = new DoubleDouble(myM2);
+      if (!Double.isInfinite(myM2))
+         varNumerator.addToSelf(myM2Compensation);
+      return varNumerator;
+   }
+
+   /**
+    * Adds a term to the variance numerator in <code>DOUBLE</code> or
+    * <code>COMPENSATED</code> precision.
+    * @param term The term.
+    */
+   private void addToM2(double term)
+   {
+      if (myPrecision == NumericPrecision.COMPENSATED)
+      {
+         // Neumaier's variant of Kahan summation.
+         double sum = myM2 + term;
+         if (Math.abs(myM2) >= Math.abs(term))
+            myM2Compensation += (myM2 - sum) + term;
+         else
+            myM2Compensation += (term - sum) + myM2;
+         myM2 = sum;
+      }
+      else
+         myM2 += term;
+   }
+
+   /**
+    * A <code>String</code> representation of this
+    * <code>AbstractVarianceAggregator</code>.  It includes the precision
+    * unless it's the default, so that <code>Aggregators</code> with
+    * different precisions are distinguished.
+    */
+   @Override
+   public String toString()
+   {
+      if (myPrecision == NumericPrecision.DOUBLE_DOUBLE)
+         return super.toString();
+      return getClass().getName() + "(" + getProperty() + "," + myPrecision + ")";
+   }
+
    /**
     * Return the result as a <code>DoubleDouble</code>.  This is used mainly
     * when other <code>Aggregators</code> that use this result must maintain a
@@ -20,6 +20,9 @@ import java.util.concurrent.Callable;
 class AggregateRunner<T> implements Callable<PositionedAggregatorList<T>>
 {
    private List<Aggregator> myAggregators;
+   private AggregatorIndex myAggregatorIndex;
+   private List<Object[]> myKeys;
+   private Comparator<Object[]> myKeyComparator;
    private List<T> myValuesList;
    private Comparator<? super T> myComparator;
    private int myStart;
@@ -44,12 +47,22 @@ class AggregateRunner<T> implements Callable<PositionedAggregatorList<T>>
     *    store all <code>Aggregators</code> in each finished
     *    <code>AggregateValue</code> for user later in super-aggregation.
     * @param properties The <code>List</code> of properties.
+    * @param aggregatorIndex The <code>AggregatorIndex</code> of the
+    *    <code>Aggregators</code>.
+    * @param keys The "group by" property values of the values, in the same
+    *    order, or <code>null</code> if not extracted.
+    * @param keyComparator A <code>Comparator</code> over the keys, or
+    *    <code>null</code> if not extracted.
     */
    public AggregateRunner(List<Aggregator> aggregators, List<T> valuesList, int pos,
       Comparator<? super T> comparator, int start, int end, boolean useSuperAggregation,
-      List<String> properties)
+      List<String> properties, AggregatorIndex aggregatorIndex, List<Object[]> keys,
+      Comparator<Object[]> keyComparator)
    {
       myAggregators = aggregators;
+      myAggregatorIndex = aggregatorIndex;
+      myKeys = keys;
+      myKeyComparator = keyComparator;
       myValuesList = valuesList;
       myComparator = comparator;
       myStart = start;
@@ -79,21 +92,16 @@ class AggregateRunner<T> implements Callable<PositionedAggregatorList<T>>
       PositionedAggregatorList<T> pal = new PositionedAggregatorList<T>(myPosition);
       int startIndex = myStart;
       // Don't let endIndex be greater than myEnd.
-      int endIndex = Aggregations.indexOfLastMatching(myValuesList, myComparator, startIndex, myEnd);
+      int endIndex = indexOfLastMatching(startIndex);
 
       // Initial run.
       T currObject = myValuesList.get(startIndex);
       int aggSize = myAggregators.size();
       List<Aggregator> initAggList = getAggregatorsList();
-      for (int i = startIndex; i <= endIndex; i++)
+      for (int a = 0; a < aggSize; a++)
       {
-         T value = myValuesList.get(i);
-
-         for (int a = 0; a < aggSize; a++)
-         {
-            Aggregator agg = initAggList.get(a);
-            agg.iterate(value);
-         }
+         Aggregator agg = initAggList.get(a);
+         agg.iterateRange(myValuesList, startIndex, endIndex + 1);
       }
       // First run is to be left unfinished (it may be merged into the
       // ending run of a previous PAL later).
@@ -111,11 +119,14 @@ class AggregateRunner<T> implements Callable<PositionedAggregatorList<T>>
       {
          currObject = myValuesList.get(startIndex);
          // Don't let endIndex be greater than myEnd.
-         endIndex = Aggregations.indexOfLastMatching(myValuesList, myComparator, startIndex, myEnd);
+         endIndex = indexOfLastMatching(startIndex);
 
          // If no super-aggregation, then use the same Aggregators throughout
-         // the entire process; they can be reused each loop.
-         // If super-aggregation, then use different Aggregators in each loop.
+         // the entire process; they can be reused each loop, and they aren't
+         // released until the end.
+         // If super-aggregation, then use different Aggregators in each loop;
+         // they are stored in each AggregateValue and released after
+         // super-aggregation.
          if (amIUsingSuperAggregation && startIndex > 0)
             currAggList = getAggregatorsList();
          else
@@ -126,14 +137,10 @@ class AggregateRunner<T> implements Callable<PositionedAggregatorList<T>>
                agg.init();
             }
          }
-         for (int i = startIndex; i <= endIndex; i++)
+         for (int a = 0; a < aggSize; a++)
          {
-            T value = myValuesList.get(i);
-            for (int a = 0; a < aggSize; a++)
-            {
-               Aggregator agg = currAggList.get(a);
-               agg.iterate(value);
-            }
+            Aggregator agg = currAggList.get(a);
+            agg.iterateRange(myValuesList, startIndex, endIndex + 1);
          }
          if (endIndex == myEnd)
          {
@@ -147,16 +154,19 @@ class AggregateRunner<T> implements Callable<PositionedAggregatorList<T>>
             // Note that we can be sure HERE that no other Thread is
             // working on this particular T object (currObject).  We can
             // generate the full AggregateValue<T> here.
-            AggregateValue<T> aggValue = new AggregateValue<T>(currObject);
+            AggregateValue<T> aggValue = new AggregateValue<T>(currObject, myAggregatorIndex);
             for (int a = 0; a < aggSize; a++)
             {
                Aggregator agg = currAggList.get(a);
                Object result = agg.terminate();
-               agg.setInUse(false);
-               aggValue.setAggregateValue(agg, result);
+               aggValue.setAggregateValue(a, result);
             }
             if (myProperties != null)
+            {
+               if (myKeys != null)
+                  aggValue.assignPropertyValues(myKeys.get(startIndex));
                aggValue.assignPropsAndGroupingSet(myProperties, defaultGroupingSet);
+            }
             // Store for super-aggregation later.
             if (amIUsingSuperAggregation)
                aggValue.assignAggregators(currAggList);
@@ -181,6 +191,21 @@ class AggregateRunner<T> implements Callable<PositionedAggregatorList<T>>
       return pal;
    }
 
+   /**
+    * Returns the index of the last value, no greater than the end index,
+    * that is equivalent to the value at the given start index, comparing
+    * keys if they were extracted.
+    * @param startIndex The start index.
+    * @return The index of the last equivalent value.
+    * @since 0.7.3
+    */
+   private int indexOfLastMatching(int startIndex)
+   {
+      if (myKeys != null)
+         return Aggregations.indexOfLastMatching(myKeys, myKeyComparator, startIndex, myEnd);
+      return Aggregations.indexOfLastMatching(myValuesList, myComparator, startIndex, myEnd);
+   }
+
    /**
     * Helper function to create a new <code>List</code> of
     * <code>Aggregators</code>, given a list of archetypes.  Each newly
@@ -1,9 +1,7 @@
 package net.sf.jagg;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
 /**
  * This class represents the result of a "group by" operation, where certain
@@ -15,12 +13,23 @@ import java.util.Map;
  */
 public class AggregateValue<T>
 {
+   private static final Object[] NO_VALUES = new Object[0];
+
    private T myObject;
-   private Map<Aggregator, Object> myValuesMap;
-   private List<Object> myValuesList;
+   // Maps Aggregators to positions in myValues.  It's shared among all
+   // AggregateValues of an Aggregation, unless this one owns it.
+   private AggregatorIndex myIndex;
+   private boolean amIOwningIndex;
+   private Object[] myValues;
+   private int mySize;
    private List<Aggregator> myAggregators;
    private List<String> myProperties;
    private List<Integer> myGroupingSet;
+   // Bit i is set if property i is in the grouping set, for i < 64.
+   private long myGroupingMask;
+   // The "group by" property values, captured once, or null to access them
+   // from the object.
+   private Object[] myPropertyValues;
 
    /**
     * Create an <code>AggregateValue</code> that wraps the given object.  It
@@ -32,8 +41,26 @@ public class AggregateValue<T>
    public AggregateValue(T object)
    {
       myObject = object;
-      myValuesMap = new HashMap<Aggregator, Object>();
-      myValuesList = new ArrayList<Object>();
+      myIndex = null;
+      myValues = NO_VALUES;
+      myAggregators = null;
+   }
+
+   /**
+    * Create an <code>AggregateValue</code> that wraps the given object, whose
+    * aggregation values will be set by position, according to the given
+    * <code>AggregatorIndex</code>.
+    * @param object The object for which this <code>AggregateValue</code> will
+    *    wrap.
+    * @param index The <code>AggregatorIndex</code> shared by all
+    *    <code>AggregateValues</code> of an <code>Aggregation</code>.
+    * @since 0.7.3
+    */
+   AggregateValue(T object, AggregatorIndex index)
+   {
+      myObject = object;
+      myIndex = index;
+      myValues = new Object[index.size()];
       myAggregators = null;
    }
 
@@ -47,6 +74,11 @@ public class AggregateValue<T>
    public AggregateValue(AggregateValue<T> other)
    {
       this(other.myObject);
+      if (other.myIndex != null)
+      {
+         myIndex = other.myIndex;
+         myValues = new Object[other.myValues.length];
+      }
    }
 
    /**
@@ -91,8 +123,10 @@ public class AggregateValue<T>
       {
          int index = myProperties.indexOf(property);
          // Return null for "super-aggregate" columns.
-         if (!myGroupingSet.contains(index))
+         if (!isInGroupingSet(index))
             return null;
+         if (myPropertyValues != null)
+            return myPropertyValues[index];
       }
       return Aggregator.getValueFromProperty(myObject, property);
    }
@@ -112,7 +146,10 @@ public class AggregateValue<T>
    {
       if (myProperties != null && myObject != null)
       {
-         return getPropertyValue(myProperties.get(propIndex));
+         String property = myProperties.get(propIndex);
+         if (myPropertyValues != null)
+            return isInGroupingSet(propIndex) ? myPropertyValues[propIndex] : null;
+         return getPropertyValue(property);
       }
       return null;
    }
@@ -129,10 +166,39 @@ public class AggregateValue<T>
     */
    public void setAggregateValue(Aggregator agg, Object value)
    {
-      if (myValuesMap.containsKey(agg))
-         myValuesMap.remove(agg);
-      myValuesMap.put(agg, value);
-      myValuesList.add(value);
+      int position = mySize;
+      if (myIndex == null || !myIndex.matches(position, agg))
+      {
+         // Not in the shared order, so use an own index from now on.
+         if (!amIOwningIndex)
+         {
+            myIndex = (myIndex == null) ? new AggregatorIndex() : new AggregatorIndex(myIndex, position);
+            amIOwningIndex = true;
+         }
+         myIndex.add(agg);
+      }
+      setAggregateValue(position, value);
+   }
+
+   /**
+    * This method is used internally to store the given <code>value</code> at
+    * the given position, which is the position of its
+    * <code>Aggregator</code> in the <code>AggregatorIndex</code>.
+    * @param position The 0-based position.
+    * @param value The aggregated value.
+    * @since 0.7.3
+    */
+   void setAggregateValue(int position, Object value)
+   {
+      if (position >= myValues.length)
+      {
+         Object[] values = new Object[Math.max(position + 1, 2 * myValues.length)];
+         System.arraycopy(myValues, 0, values, 0, mySize);
+         myValues = values;
+      }
+      myValues[position] = value;
+      if (position >= mySize)
+         mySize = position + 1;
    }
 
    /**
@@ -144,7 +210,10 @@ public class AggregateValue<T>
     */
    public Object getAggregateValue(Aggregator agg)
    {
-      return myValuesMap.get(agg);
+      if (myIndex == null)
+         return null;
+      int position = myIndex.indexOf(agg);
+      return (position >= 0 && position < mySize) ? myValues[position] : null;
    }
 
    /**
@@ -156,7 +225,9 @@ public class AggregateValue<T>
     */
    public Object getAggregateValue(int index)
    {
-      return myValuesList.get(index);
+      if (index < 0 || index >= mySize)
+         throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mySize);
+      return myValues[index];
    }
 
    /**
@@ -183,7 +254,7 @@ public class AggregateValue<T>
    {
       if (field < 0 || field >= myProperties.size())
          throw new IllegalArgumentException("isGrouping: integer field reference out of range: " + field);
-      return !myGroupingSet.contains(field);
+      return !isInGroupingSet(field);
    }
 
    /**
@@ -357,6 +428,61 @@ public class AggregateValue<T>
    {
       myProperties = properties;
       myGroupingSet = groupingSet;
+      long mask = 0;
+      for (int index : groupingSet)
+      {
+         if (index < 64)
+            mask |= 1L << index;
+      }
+      myGroupingMask = mask;
+      // Capture the property values once, unless already known.
+      if (myPropertyValues == null && myObject != null)
+      {
+         Object[] values = new Object[properties.size()];
+         for (int index : groupingSet)
+            values[index] = Aggregator.getValueFromProperty(myObject, properties.get(index));
+         myPropertyValues = values;
+      }
+   }
+
+   /**
+    * Assign the "group by" property values, in the order of the properties,
+    * e.g. as already extracted while grouping, so that they aren't accessed
+    * from the object.  Values of properties not in the grouping set are
+    * ignored.  This must be called before
+    * <code>assignPropsAndGroupingSet</code>.
+    * @param values The property values.
+    * @since 0.7.3
+    */
+   void assignPropertyValues(Object[] values)
+   {
+      myPropertyValues = values;
+   }
+
+   /**
+    * Retrieves the "group by" property values, if captured.
+    * @return The property values, or <code>null</code> if not captured.
+    * @since 0.7.3
+    */
+   Object[] retrievePropertyValues()
+   {
+      return myPropertyValues;
+   }
+
+   /**
+    * Determines whether the property at the given index is in the grouping
+    * set.
+    * @param index A 0-based property index, or <code>-1</code>.
+    * @return <code>true</code> if it's in the grouping set,
+    *    <code>false</code> otherwise.
+    */
+   private boolean isInGroupingSet(int index)
+   {
+      if (index < 0)
+         return false;
+      if (index < 64)
+         return (myGroupingMask & (1L << index)) != 0;
+      return myGroupingSet.contains(index);
    }
 
    /**
@@ -371,7 +497,7 @@ public class AggregateValue<T>
       buf.append("AggregateValue:(object => ");
       buf.append(myObject.toString());
       buf.append(", valuesList =>");
-      buf.append(myValuesList.toString());
+      buf.append(Arrays.asList(myValues).subList(0, mySize).toString());
       buf.append(", aggregators =>");
       buf.append(myAggregators.toString());
       buf.append(", properties =>");
@@ -1,14 +1,18 @@
 package net.sf.jagg;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
@@ -16,7 +20,7 @@ import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
-import net.sf.jagg.msd.Discriminators;
+import net.sf.jagg.msd.IndexPartition;
 import net.sf.jagg.msd.MsdWorkspace;
 import net.sf.jagg.msd.PropertiesDiscriminator;
 
@@ -34,14 +38,61 @@ public class Aggregation
    private static final boolean DEBUG = false;
 
    private static ThreadPoolExecutor theThreadPool = null;
+   // The number of processors that limits parallelism, or 0 to use the
+   // number available to the JVM.
+   private static int theNumProcessors = 0;
+   // Lists at least this large are sorted (or discriminated) in parallel, if
+   // parallelism is requested.
+   private static final int PARALLEL_SORT_THRESHOLD = 10000;
+
+   /**
+    * The strategy used to bring together objects that share the same values
+    * for all "group by" properties.
+    * @since 0.7.3
+    */
+   public static enum Strategy
+   {
+      /**
+       * Sort a copy of the values (or use multiset discrimination, if
+       * requested), then aggregate runs of equivalent values.
+       */
+      SORT,
+      /**
+       * Aggregate the values in a single pass, keeping one set of
+       * <code>Aggregators</code> per distinct group in a hash table keyed on
+       * the "group by" property values.  The property values are compared
+       * with <code>equals</code> and <code>hashCode</code>.  This is
+       * advantageous when there are many values but relatively few groups.
+       */
+      HASH,
+      /**
+       * Encode each value's "group by" property values once into a single
+       * normalized key, an array of bytes that compares as the
+       * <code>PropertiesComparator</code> compares the values, then sort the
+       * keys with a radix sort, and aggregate runs of equivalent values.  If
+       * any property value has no normalized key, e.g. it's neither a
+       * primitive wrapper, a <code>String</code>, a <code>Date</code>, nor an
+       * <code>Enum</code>, then the values are sorted as with
+       * <code>SORT</code> instead.  Multiset discrimination is not used.
+       */
+      RADIX
+   }
 
    private List<Aggregator> myAggregators;
+   private AggregatorIndex myAggregatorIndex;
    private List<String> myProperties;
    private int myParallelism;
    private boolean amIUsingMsd;
    private MsdWorkspace myWorkspace;
    private List<List<Integer>> myGroupingSets;
    private boolean amIUsingSuperAggregation;
+   private boolean amIStreamingRollup;
+   private GroupingSetPlan myGroupingSetPlan;
+   private Strategy myStrategy;
+   private boolean amISortingResults;
+   private boolean amIPresorted;
+   private int mySpillThreshold;
+   private File mySpillDirectory;
 
    /**
     * Private constructor to ensure that the "Builder" pattern is used.
@@ -50,11 +101,48 @@ public class Aggregation
    private Aggregation(Builder builder)
    {
       myAggregators = builder.myAggregators;
+      myAggregatorIndex = new AggregatorIndex(myAggregators);
       myProperties = builder.myProperties;
       myParallelism = builder.myParallelism;
       amIUsingMsd = builder.amIUsingMsd;
       myGroupingSets = builder.myGroupingSets;
       amIUsingSuperAggregation = builder.amIUsingSuperAggregation;
+      amIStreamingRollup = amIUsingSuperAggregation && isPrefixRollup(myGroupingSets);
+      if (amIUsingSuperAggregation)
+         myGroupingSetPlan = new GroupingSetPlan(myProperties, myGroupingSets);
+      myStrategy = builder.myStrategy;
+      amISortingResults = builder.amISortingResults;
+      amIPresorted = builder.amIPresorted;
+      mySpillThreshold = builder.mySpillThreshold;
+      mySpillDirectory = builder.mySpillDirectory;
+   }
+
+   /**
+    * <p>Describes how the super-aggregate values of each grouping set are
+    * computed: from the values of which superset, and whether a copy of those
+    * values is sorted first, one line per grouping set, followed by the
+    * number of sorts.  Values are produced in the order of their grouping
+    * set's properties, so a grouping set whose properties are the leading
+    * properties of a superset is computed from it in a single pass, without
+    * sorting.  E.g. a cube of properties <code>a</code> and <code>b</code>
+    * is described as:</p>
+    * <pre>
+    * [a, b]: the aggregate values
+    * [a]: from [a, b], in order
+    * [b]: from [a, b], sorted
+    * []: from [a], in order
+    * Sorts: 1
+    * </pre>
+    * <p>If the aggregate values of all properties aren't already sorted,
+    * e.g. when multiset discrimination is used, then a copy of them is also
+    * sorted before they are relied upon to be in order.</p>
+    * @return A description of the plan, or <code>null</code> if there is no
+    *    super-aggregation.
+    * @since 0.7.3
+    */
+   public String getGroupingSetPlan()
+   {
+      return (myGroupingSetPlan != null) ? myGroupingSetPlan.toString() : null;
    }
 
    /**
@@ -74,11 +162,11 @@ public class Aggregation
       List<T> listCopy = new ArrayList<T>(values);
       ComparableComparator<T> comparator = new ComparableComparator<T>();
       //long start = System.nanoTime();
-      Collections.sort(listCopy, comparator);
+      sort(listCopy, comparator);
       //long finish = System.nanoTime();
       //System.out.println("Sort time: " + (finish - start));
 
-      return doAggregation(listCopy, comparator);
+      return doAggregation(listCopy, comparator, null, null, null);
    }
 
    /**
@@ -86,10 +174,25 @@ public class Aggregation
     * <code>T</code> does not need to be <code>Comparable</code>.  This
     * operates on a copy of the list of values, either sorted based on the
     * "group by" properties (if any), or grouped into equivalence classes using
-    * multiset discrimination.
+    * multiset discrimination.  If the <code>HASH</code> strategy was chosen,
+    * then no copy is made; the values are aggregated in a single pass.  If the
+    * values were declared to be presorted, then no copy is made and the
+    * values are not sorted, but their order is checked.
+    * <p>With super-aggregation, the resultant <code>List</code> holds the
+    * aggregate values of all "group by" properties first, if that grouping
+    * set was requested, in the order in which they were aggregated, e.g.
+    * sorted by all properties with the <code>SORT</code> strategy.  The
+    * super-aggregate values of each other grouping set follow, in the order
+    * of the grouping sets, each sorted by its own properties.  Before
+    * 0.7.3, computing a grouping set could re-sort the aggregate values of
+    * all properties in place, so they could come back sorted by the
+    * properties of another grouping set.</p>
     * @param <T> The object type to aggregate.
     * @param values The <code>List&lt;T&gt;</code> of objects to aggregate.
     * @return A <code>List&lt;AggregateValue&lt;T&gt;&gt;</code>.
+    * @throws IllegalArgumentException If the values were declared to be
+    *    presorted, but a value was found that sorts before the value
+    *    preceding it.
     */
    public <T> List<AggregateValue<T>> groupBy(List<T> values)
    {
@@ -99,31 +202,78 @@ public class Aggregation
       {
          return getEmptyAggregateValues();
       }
+      if (myStrategy == Strategy.HASH && myProperties.size() > 0)
+      {
+         int size = values.size();
+         int minParallelism = (myParallelism > size) ? size : myParallelism;
+         List<AggregateValue<T>> aggregatedList;
+         if (minParallelism > 1)
+            aggregatedList = getHashAggregateValues(values, minParallelism);
+         else
+            aggregatedList = getHashAggregateValues(values.iterator());
+         if (amIUsingSuperAggregation)
+            getSuperAggregateValues(aggregatedList);
+         return aggregatedList;
+      }
       PropertiesDiscriminator<T> disc = new PropertiesDiscriminator<T>(myProperties);
       PropertiesComparator<T> comparator = new PropertiesComparator<T>(myProperties);
       List<T> listCopy = null;
-      if (myProperties.size() > 0)
+      // The "group by" property values of the sorted values, if extracted.
+      List<Object[]> sortedKeys = null;
+      if (myProperties.size() > 0 && amIPresorted)
+      {
+         // The caller has declared that the values are already sorted.
+         listCopy = values;
+         sortedKeys = getPresortedKeys(values, comparator);
+      }
+      else if (myProperties.size() > 0)
       {
          // There are "group by" properties.
-         if (amIUsingMsd)
+         if (amIUsingMsd && myStrategy == Strategy.SORT)
          {
             //long start = System.nanoTime();
             if (myWorkspace == null)
                myWorkspace = new MsdWorkspace();
-            List<List<T>> listOfLists = disc.discriminate(values, myWorkspace);
+            // Discriminate positions, so that only one reordered copy of the
+            // values is created.
+            List<T> randomAccessValues = (values instanceof RandomAccess) ? values : new ArrayList<T>(values);
+            IndexPartition partition;
+            if (myParallelism > 1 && values.size() >= PARALLEL_SORT_THRESHOLD)
+            {
+               partition = disc.discriminateIndexes(randomAccessValues, myWorkspace, myParallelism,
+                  getThreadPool());
+            }
+            else
+               partition = disc.discriminateIndexes(randomAccessValues, myWorkspace);
             // If msd succeeded.
-            if (listOfLists != null)
-               listCopy = Discriminators.getFlattenedList(listOfLists);
+            if (partition != null)
+               listCopy = partition.getReorderedList(randomAccessValues);
             //long finish = System.nanoTime();
             //System.out.println("Discr time: " + (finish - start));
          }
+         if (listCopy == null && myStrategy == Strategy.SORT && isSpilling(values.size()))
+         {
+            // Too many values to copy and sort in memory.
+            StreamingRollup<T> rollup = getStreamingRollup();
+            List<AggregateValue<T>> aggregatedList =
+               getSpilledAggregateValues(values.iterator(), comparator, rollup);
+            if (amIUsingSuperAggregation && rollup == null)
+               getSuperAggregateValues(aggregatedList);
+            return aggregatedList;
+         }
          if (listCopy == null)
          {
             // Either we tried multiset discrimination, and bummer, not
             // Discriminable, or the user chose not to use it. Fall back to
-            // sorting with the PropertiesComparator.
-            listCopy = new ArrayList<T>(values);
-            Collections.sort(listCopy, comparator);
+            // sorting by the PropertiesComparator's keys.
+            List<Object[]> keys = new ArrayList<Object[]>(values.size());
+            for (T value : values)
+               keys.add(comparator.getKey(value));
+            sortedKeys = new ArrayList<Object[]>(values.size());
+            if (myStrategy == Strategy.RADIX)
+               listCopy = radixSortByKeys(values, keys, sortedKeys);
+            if (listCopy == null)
+               listCopy = sortByKeys(values, keys, comparator.getKeyComparator(), sortedKeys);
          }
       }
       else
@@ -134,7 +284,270 @@ public class Aggregation
          listCopy = values;
       }
 
-      return doAggregation(listCopy, comparator);
+      Comparator<Object[]> keyComparator = (sortedKeys != null) ? comparator.getKeyComparator() : null;
+      // Values sorted by the "group by" properties can be rolled up as they
+      // are aggregated.
+      StreamingRollup<T> rollup = null;
+      if (sortedKeys != null || (amIPresorted && myProperties.size() > 0))
+         rollup = getStreamingRollup();
+      return doAggregation(listCopy, comparator, sortedKeys, keyComparator, rollup);
+   }
+
+   /**
+    * <p>Perform one or more aggregate operations on the values supplied by an
+    * <code>Iterator&lt;T&gt;</code>, consuming them one at a time, without
+    * ever holding all of them in memory.  <code>T</code> does not need to be
+    * <code>Comparable</code>.</p>
+    * <p>If the values were declared to be presorted, i.e. already ordered by
+    * the "group by" properties, then each group is aggregated and completed
+    * as soon as a value of the next group is encountered.  Otherwise, if a
+    * spill threshold was set and the <code>SORT</code> strategy was chosen,
+    * then the values are sorted externally, with sorted runs spilled to disk.
+    * Otherwise, the values are aggregated with the <code>HASH</code>
+    * strategy, so only the groups are held in memory.</p>
+    * <p>Parallelism and multiset discrimination are not used.  With
+    * super-aggregation, the results are ordered as by
+    * <code>groupBy(List)</code>.</p>
+    * @param <T> The object type to aggregate.
+    * @param values An <code>Iterator&lt;T&gt;</code> over the objects to
+    *    aggregate.
+    * @return A <code>List&lt;AggregateValue&lt;T&gt;&gt;</code>.
+    * @throws IllegalArgumentException If the values were declared to be
+    *    presorted, but a value was found that sorts before the value
+    *    preceding it.
+    * @since 0.7.3
+    */
+   public <T> List<AggregateValue<T>> groupBy(Iterator<T> values)
+   {
+      int numProperties = (myProperties != null) ? myProperties.size() : 0;
+      // If no values and no properties, must return one AggregateValue with
+      // all Aggregators' initial values.
+      if (!values.hasNext() && numProperties == 0)
+      {
+         return getEmptyAggregateValues();
+      }
+      List<AggregateValue<T>> aggregatedList;
+      StreamingRollup<T> rollup = null;
+      if (numProperties > 0 && !amIPresorted && myStrategy == Strategy.SORT && mySpillThreshold > 0)
+      {
+         rollup = getStreamingRollup();
+         aggregatedList = getSpilledAggregateValues(values, new PropertiesComparator<T>(myProperties), rollup);
+      }
+      else if (numProperties > 0 && !amIPresorted)
+      {
+         aggregatedList = getHashAggregateValues(values);
+      }
+      else
+      {
+         // With no "group by" properties, all values are in one group, so
+         // they're already "sorted".
+         List<String> properties = (numProperties > 0) ? myProperties : new ArrayList<String>(0);
+         rollup = getStreamingRollup();
+         aggregatedList = getAggregateValues(values, new PropertiesComparator<T>(properties), rollup);
+      }
+      if (amIUsingSuperAggregation && rollup == null)
+         getSuperAggregateValues(aggregatedList);
+      return aggregatedList;
+   }
+
+   /**
+    * Perform one or more aggregate operations on the values supplied by an
+    * <code>Iterable&lt;T&gt;</code>.  If it's a <code>List</code>, then this
+    * behaves exactly as <code>groupBy(List)</code>, else it behaves exactly as
+    * <code>groupBy(Iterator)</code>.
+    * @param <T> The object type to aggregate.
+    * @param values An <code>Iterable&lt;T&gt;</code> of objects to aggregate.
+    * @return A <code>List&lt;AggregateValue&lt;T&gt;&gt;</code>.
+    * @since 0.7.3
+    * @see #groupBy(List)
+    * @see #groupBy(Iterator)
+    */
+   public <T> List<AggregateValue<T>> groupBy(Iterable<T> values)
+   {
+      if (values instanceof List)
+         return groupBy((List<T>) values);
+      return groupBy(values.iterator());
+   }
+
+   /**
+    * <p>Perform one or more aggregate operations on the rows of a
+    * <code>ColumnarTable</code>.  The "group by" properties must be column
+    * names, and the <code>Aggregators'</code> properties are usually column
+    * names.  The rows are grouped by sorting an array of row indexes by the
+    * "group by" columns, comparing primitive values and dictionary ranks, so
+    * no object is created per row.  For each <code>Aggregator</code> of a
+    * single <code>double</code> column, the column is gathered once into a
+    * contiguous array in group order, and each group's range is passed to
+    * <code>iterateDoubles</code>.  <code>Aggregators</code> of other columns
+    * receive the column's boxed values without any property access.  This
+    * applies only to <code>Aggregators</code> that accept property values, as
+    * determined by <code>Aggregator.isAcceptingPropertyValues</code>, e.g.
+    * the built-in <code>Aggregators</code> of one property, and the
+    * percentile <code>Aggregators</code>, which receive the column of their
+    * second property.  All other <code>Aggregators</code>, e.g. custom ones,
+    * or others of two properties, iterate over
+    * <code>ColumnarTable.Rows</code>.</p>
+    * <p>If the rows were declared to be presorted, then they are not sorted.
+    * The strategy, parallelism, multiset discrimination, and spill threshold
+    * don't apply.  Super-aggregation is performed as usual.</p>
+    * @param table The <code>ColumnarTable</code> to aggregate.
+    * @return A <code>List</code> of <code>AggregateValues</code>, each
+    *    referring to the first <code>Row</code> of its group.
+    * @throws IllegalArgumentException If a "group by" property is not a
+    *    column of the table.
+    * @since 0.7.3
+    */
+   public List<AggregateValue<ColumnarTable.Row>> groupBy(ColumnarTable table)
+   {
+      int numProperties = (myProperties != null) ? myProperties.size() : 0;
+      int numRows = table.getNumRows();
+      // If no values and no properties, must return one AggregateValue with
+      // all Aggregators' initial values.
+      if (numRows == 0 && numProperties == 0)
+      {
+         return getEmptyAggregateValues();
+      }
+      ColumnarTable.Column[] keys = new ColumnarTable.Column[numProperties];
+      for (int i = 0; i < numProperties; i++)
+      {
+         String property = myProperties.get(i);
+         keys[i] = table.getColumn(property);
+         if (keys[i] == null)
+            throw new IllegalArgumentException("Property \"" + property + "\" is not a column.");
+      }
+      int[] order;
+      if (amIPresorted)
+         order = table.sortRows(new ColumnarTable.Column[0]);
+      else
+         order = table.sortRows(keys);
+      StreamingRollup<ColumnarTable.Row> rollup = getStreamingRollup();
+      List<AggregateValue<ColumnarTable.Row>> aggregatedList = getAggregateValues(table, keys, order, rollup);
+      if (amIUsingSuperAggregation && rollup == null)
+         getSuperAggregateValues(aggregatedList);
+      return aggregatedList;
+   }
+
+   /**
+    * Sorts the given list copy.  If parallelism was requested and the list is
+    * large enough, then the list is sorted in parallel with a
+    * <code>ParallelSorter</code>, else it is sorted with
+    * <code>Collections.sort</code>.  Either way, the sort is stable.
+    * @param listCopy The list copy to sort.
+    * @param comparator A <code>Comparator</code> over T objects.
+    */
+   private <T> void sort(List<T> listCopy, Comparator<? super T> comparator)
+   {
+      if (myParallelism > 1 && listCopy.size() >= PARALLEL_SORT_THRESHOLD)
+         ParallelSorter.sort(listCopy, comparator, myParallelism, getThreadPool());
+      else
+         Collections.sort(listCopy, comparator);
+   }
+
+   /**
+    * Extracts the keys of values that were declared to be presorted, checking
+    * that each key doesn't sort before the key preceding it, as
+    * <code>groupBy(Iterator)</code> does.  Otherwise, runs of equivalent
+    * values that aren't adjacent would silently be aggregated as separate
+    * groups.
+    * @param values The presorted values.
+    * @param comparator The <code>PropertiesComparator</code>.
+    * @return The keys of the values, in the same order.
+    * @throws IllegalArgumentException If a value was found that sorts before
+    *    the value preceding it.
+    */
+   private <T> List<Object[]> getPresortedKeys(List<T> values, PropertiesComparator<T> comparator)
+   {
+      Comparator<Object[]> keyComparator = comparator.getKeyComparator();
+      List<Object[]> keys = new ArrayList<Object[]>(values.size());
+      T prevValue = null;
+      Object[] prevKey = null;
+      for (T value : values)
+      {
+         Object[] key = comparator.getKey(value);
+         if (prevKey != null && keyComparator.compare(prevKey, key) > 0)
+            throw new IllegalArgumentException("Values are not sorted by the \"group by\" properties: " +
+               value + " follows " + prevValue + ".");
+         keys.add(key);
+         prevValue = value;
+         prevKey = key;
+      }
+      return keys;
+   }
+
+   /**
+    * Sorts a copy of the given values by the "group by" properties, whose
+    * values have already been extracted once per value.  Each value is
+    * decorated with its key, an array of its property values; the decorated
+    * values are sorted, comparing only keys, then undecorated.  This accesses
+    * properties <em>n</em> times per property instead of about 2<em>n</em>
+    * log <em>n</em> times.
+    * @param values The values to sort.
+    * @param keys The keys of the values, in the same order.
+    * @param keyComparator The <code>Comparator</code> of keys.
+    * @param sortedKeys A <code>List</code> to which the keys are added, in
+    *    sorted order.
+    * @return A sorted copy of the values.
+    */
+   private <T> List<T> sortByKeys(List<T> values, List<Object[]> keys,
+      final Comparator<Object[]> keyComparator, List<Object[]> sortedKeys)
+   {
+      int size = values.size();
+      List<KeyedValue<T>> keyedValues = new ArrayList<KeyedValue<T>>(size);
+      Iterator<Object[]> keyItr = keys.iterator();
+      for (T value : values)
+         keyedValues.add(new KeyedValue<T>(keyItr.next(), value));
+      sort(keyedValues, new Comparator<KeyedValue<T>>() {
+         public int compare(KeyedValue<T> keyedValue1, KeyedValue<T> keyedValue2)
+         {
+            return keyComparator.compare(keyedValue1.myKey, keyedValue2.myKey);
+         }
+      });
+      List<T> listCopy = new ArrayList<T>(size);
+      for (KeyedValue<T> keyedValue : keyedValues)
+      {
+         listCopy.add(keyedValue.myValue);
+         sortedKeys.add(keyedValue.myKey);
+      }
+      return listCopy;
+   }
+
+   /**
+    * Sorts a copy of the given values by the "group by" properties, encoding
+    * each value's key into a normalized key with a
+    * <code>NormalizedKeyEncoder</code>, then sorting the normalized keys with
+    * a <code>RadixSorter</code>, in parallel if parallelism was requested and
+    * there are enough values.
+    * @param values The values to sort.
+    * @param keys The keys of the values, in the same order.
+    * @param sortedKeys A <code>List</code> to which the keys are added, in
+    *    sorted order.
+    * @return A sorted copy of the values, or <code>null</code> if any key
+    *    has no normalized key.
+    */
+   private <T> List<T> radixSortByKeys(List<T> values, List<Object[]> keys, List<Object[]> sortedKeys)
+   {
+      int size = keys.size();
+      NormalizedKeyEncoder encoder = new NormalizedKeyEncoder(myProperties.size());
+      byte[][] normalizedKeys = new byte[size][];
+      for (int i = 0; i < size; i++)
+      {
+         normalizedKeys[i] = encoder.encode(keys.get(i));
+         if (normalizedKeys[i] == null)
+            return null;
+      }
+      int[] order;
+      if (myParallelism > 1 && size >= PARALLEL_SORT_THRESHOLD)
+         order = RadixSorter.sort(normalizedKeys, myParallelism, getThreadPool());
+      else
+         order = RadixSorter.sort(normalizedKeys);
+      List<T> randomAccessValues = (values instanceof RandomAccess) ? values : new ArrayList<T>(values);
+      List<T> listCopy = new ArrayList<T>(size);
+      for (int index : order)
+      {
+         listCopy.add(randomAccessValues.get(index));
+         sortedKeys.add(keys.get(index));
+      }
+      return listCopy;
    }
 
    /**
@@ -142,39 +555,111 @@ public class Aggregation
     * the size of the list of values to aggregate, e.g. don't want to have a
     * parallelism of 8 when the list size is 6.  Then it delegates to either
     * the single-threaded or multi-threaded version of
-    * <code>getAggregateValues</code>.
+    * <code>getAggregateValues</code>.  The multi-threaded version merges the
+    * results in sorted order, so they are rolled up afterwards, if at all.
     * @param listCopy The sorted copy of the list of values to aggregate.
     * @param comparator A <code>Comparator</code> over T objects.
+    * @param keys The keys of the values, in the same order, or
+    *    <code>null</code> if not extracted.
+    * @param keyComparator A <code>Comparator</code> over the keys, or
+    *    <code>null</code> if not extracted.
+    * @param rollup The <code>StreamingRollup</code> that computes the
+    *    super-aggregate values, or <code>null</code> if they are computed
+    *    afterwards, if at all.
     * @return A <code>List</code> of <code>AggregateValues</code>.
     */
    private <T> List<AggregateValue<T>> doAggregation(List<T> listCopy,
-      Comparator<? super T> comparator)
+      Comparator<? super T> comparator, List<Object[]> keys, Comparator<Object[]> keyComparator,
+      StreamingRollup<T> rollup)
    {
       List<AggregateValue<T>> aggregatedList;
       int size = listCopy.size();
       int minParallelism = (myParallelism > size) ? size : myParallelism;
       if (minParallelism > 1)
-         aggregatedList = getAggregateValues(listCopy, comparator, myParallelism);
+      {
+         aggregatedList = getAggregateValues(listCopy, comparator, keys, keyComparator, myParallelism);
+         if (rollup != null)
+            rollUp(aggregatedList, rollup);
+      }
       else
-         aggregatedList = getAggregateValues(listCopy, comparator);
-      if (amIUsingSuperAggregation)
+         aggregatedList = getAggregateValues(listCopy, comparator, keys, keyComparator, rollup);
+      if (amIUsingSuperAggregation && rollup == null)
          getSuperAggregateValues(aggregatedList);
       return aggregatedList;
    }
 
+   /**
+    * Rolls up the given aggregate values, which are in sorted order, and
+    * releases the <code>Aggregators</code> assigned to each of them.
+    * @param aggValues The <code>List</code> of <code>AggregateValues</code>,
+    *    to which any super-aggregate values are added.
+    * @param rollup The <code>StreamingRollup</code> that computes the
+    *    super-aggregate values.
+    */
+   private <T> void rollUp(List<AggregateValue<T>> aggValues, StreamingRollup<T> rollup)
+   {
+      for (AggregateValue<T> aggValue : aggValues)
+      {
+         rollup.add(aggValue, aggValue.retrieveAggregators());
+         aggValue.releaseAggregators();
+      }
+      rollup.finish(aggValues);
+   }
+
    /**
     * Create an <code>ExecutorCompletionService</code>.
     * @return An <code>ExecutorCompletionService</code>.
     */
    private static <T> ExecutorCompletionService<PositionedAggregatorList<T>> initializeService()
+   {
+      return new ExecutorCompletionService<PositionedAggregatorList<T>>(getThreadPool());
+   }
+
+   /**
+    * Lazy-initialize the thread pool shared by all <code>Aggregations</code>.
+    * @return The <code>ThreadPoolExecutor</code>.
+    */
+   private static synchronized ThreadPoolExecutor getThreadPool()
    {
       if (theThreadPool == null)
       {
-         int numProcessors = Runtime.getRuntime().availableProcessors();
+         int numProcessors = getNumProcessors();
+         // If all Threads are busy, run the task in the calling Thread
+         // instead of rejecting it.
          theThreadPool = new ThreadPoolExecutor(0, numProcessors,
-            0, TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>());
+            0, TimeUnit.MILLISECONDS, new SynchronousQueue<Runnable>(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
       }
-      return new ExecutorCompletionService<PositionedAggregatorList<T>>(theThreadPool);
+      return theThreadPool;
+   }
+
+   /**
+    * Returns the number of processors that limits the degree of parallelism
+    * and the size of the thread pool.
+    * @return The number of processors set by <code>setNumProcessors</code>,
+    *    or else the number available to the JVM.
+    * @see Runtime#availableProcessors
+    * @since 0.7.3
+    */
+   static synchronized int getNumProcessors()
+   {
+      return (theNumProcessors > 0) ? theNumProcessors : Runtime.getRuntime().availableProcessors();
+   }
+
+   /**
+    * Overrides the number of processors that limits the degree of
+    * parallelism of <code>Aggregations</code> built afterwards, e.g. so that
+    * tests compute in parallel on a machine with a single processor.  The
+    * thread pool grows if necessary.
+    * @param numProcessors The number of processors, or <code>0</code> to use
+    *    the number available to the JVM.
+    * @since 0.7.3
+    */
+   static synchronized void setNumProcessors(int numProcessors)
+   {
+      theNumProcessors = (numProcessors < 0) ? 0 : numProcessors;
+      if (theThreadPool != null && getNumProcessors() > theThreadPool.getMaximumPoolSize())
+         theThreadPool.setMaximumPoolSize(getNumProcessors());
    }
 
    /**
@@ -182,11 +667,16 @@ public class Aggregation
     * version.
     * @param list The sorted list copy of values to aggregate.
     * @param comparator A <code>Comparator</code> over T objects.
+    * @param keys The keys of the values, in the same order, or
+    *    <code>null</code> if not extracted.
+    * @param keyComparator A <code>Comparator</code> over the keys, or
+    *    <code>null</code> if not extracted.
     * @param parallelism The degree of parallelism.
     * @return A <code>List</code> of <code>AggregateValues</code>.
     */
    private <T> List<AggregateValue<T>> getAggregateValues(List<T> list,
-      Comparator<? super T> comparator, int parallelism)
+      Comparator<? super T> comparator, List<Object[]> keys, Comparator<Object[]> keyComparator,
+      int parallelism)
    {
       List<PositionedAggregatorList<T>> listOfPals = new ArrayList<PositionedAggregatorList<T>>(parallelism);
       // Initialize it with null elements, so that when "set" is called later,
@@ -202,7 +692,8 @@ public class Aggregation
       {
          int startIndex = (size * p) / parallelism;
          int endIndex = (size * (p + 1)) / parallelism - 1;
-         service.submit(new AggregateRunner<T>(myAggregators, list, p, comparator, startIndex, endIndex, amIUsingSuperAggregation, myProperties));
+         service.submit(new AggregateRunner<T>(myAggregators, list, p, comparator, startIndex, endIndex, amIUsingSuperAggregation, myProperties,
+            myAggregatorIndex, keys, keyComparator));
       }
 
       // Wait until all Threads have created their PositionedAggregatorList.
@@ -232,7 +723,8 @@ public class Aggregation
          }
       }
 
-      return Aggregations.mergeLists(listOfPals, comparator, amIUsingSuperAggregation, myProperties);
+      return Aggregations.mergeLists(listOfPals, comparator, amIUsingSuperAggregation, myProperties,
+         myAggregatorIndex);
    }
 
    /**
@@ -240,10 +732,17 @@ public class Aggregation
     * threaded version.
     * @param list The sorted list copy of values to aggregate.
     * @param comparator A <code>Comparator</code> over T objects.
+    * @param keys The keys of the values, in the same order, or
+    *    <code>null</code> if not extracted.
+    * @param keyComparator A <code>Comparator</code> over the keys, or
+    *    <code>null</code> if not extracted.
+    * @param rollup The <code>StreamingRollup</code> that computes the
+    *    super-aggregate values, or <code>null</code>.
     * @return A <code>List</code> of <code>AggregateValues</code>.
     */
    private <T> List<AggregateValue<T>> getAggregateValues(List<T> list,
-      Comparator<? super T> comparator)
+      Comparator<? super T> comparator, List<Object[]> keys, Comparator<Object[]> keyComparator,
+      StreamingRollup<T> rollup)
    {
       List<AggregateValue<T>> aggValues = new ArrayList<AggregateValue<T>>();
       List<Aggregator> aggList = getAggregatorsList();
@@ -257,13 +756,17 @@ public class Aggregation
          defaultGroupingSet.add(i);
       while (startIndex < listsize)
       {
-         AggregateValue<T> aggValue = new AggregateValue<T>(list.get(startIndex));
-         endIndex = Aggregations.indexOfLastMatching(list, comparator, startIndex);
+         AggregateValue<T> aggValue = new AggregateValue<T>(list.get(startIndex), myAggregatorIndex);
+         if (keys != null)
+            endIndex = Aggregations.indexOfLastMatching(keys, keyComparator, startIndex);
+         else
+            endIndex = Aggregations.indexOfLastMatching(list, comparator, startIndex);
 
-         // If no super-aggregation, then use the same Aggregators throughout
-         // the entire process; they can be reused each loop.
-         // If super-aggregation, then use different Aggregators in each loop.
-         if (amIUsingSuperAggregation && startIndex > 0)
+         // If no super-aggregation, or if rolling up as we go, then use the
+         // same Aggregators throughout the entire process; they can be reused
+         // each loop.  If super-aggregation later, then use different
+         // Aggregators in each loop.
+         if (amIUsingSuperAggregation && rollup == null && startIndex > 0)
             aggList = getAggregatorsList();
 
          for (int a = 0; a < aggSize; a++)
@@ -271,25 +774,27 @@ public class Aggregation
             Aggregator agg = aggList.get(a);
             agg.init();
          }
-         for (int i = startIndex; i <= endIndex; i++)
+         for (int a = 0; a < aggSize; a++)
          {
-            T value = list.get(i);
-            for (int a = 0; a < aggSize; a++)
-            {
-               Aggregator agg = aggList.get(a);
-               agg.iterate(value);
-            }
+            Aggregator agg = aggList.get(a);
+            agg.iterateRange(list, startIndex, endIndex + 1);
          }
          for (int a = 0; a < aggSize; a++)
          {
             Aggregator agg = aggList.get(a);
-            aggValue.setAggregateValue(agg, agg.terminate());
+            aggValue.setAggregateValue(a, agg.terminate());
          }
 
          if (myProperties != null)
+         {
+            if (keys != null)
+               aggValue.assignPropertyValues(keys.get(startIndex));
             aggValue.assignPropsAndGroupingSet(myProperties, defaultGroupingSet);
-         // Store for super-aggregation later.
-         if (amIUsingSuperAggregation)
+         }
+         // Roll up now, or store for super-aggregation later.
+         if (rollup != null)
+            rollup.add(aggValue, aggList);
+         else if (amIUsingSuperAggregation)
             aggValue.assignAggregators(aggList);
 
          aggValues.add(aggValue);
@@ -299,7 +804,7 @@ public class Aggregation
       }
       // No longer using the Aggregators unless we need them later for
       // super-aggregation.
-      if (!amIUsingSuperAggregation)
+      if (!amIUsingSuperAggregation || rollup != null)
       {
          for (int a = 0; a < aggSize; a++)
          {
@@ -307,109 +812,530 @@ public class Aggregation
             agg.setInUse(false);
          }
       }
+      if (rollup != null)
+         rollup.finish(aggValues);
       return aggValues;
    }
 
    /**
-    * Helper function to create a new <code>List</code> of
-    * <code>Aggregators</code>, given a list of archetypes.
-    * @return A <code>List</code> of <code>Aggregators</code>.
+    * Get all aggregate values for all aggregators over the rows of a
+    * <code>ColumnarTable</code>, in the given order.
+    * @param table The <code>ColumnarTable</code>.
+    * @param keys The "group by" columns.
+    * @param order The row indexes, sorted by the "group by" columns.
+    * @param rollup The <code>StreamingRollup</code> that computes the
+    *    super-aggregate values, or <code>null</code>.
+    * @return A <code>List</code> of <code>AggregateValues</code>.
     */
-   private List<Aggregator> getAggregatorsList()
+   private List<AggregateValue<ColumnarTable.Row>> getAggregateValues(ColumnarTable table,
+      ColumnarTable.Column[] keys, int[] order, StreamingRollup<ColumnarTable.Row> rollup)
    {
+      List<AggregateValue<ColumnarTable.Row>> aggValues = new ArrayList<AggregateValue<ColumnarTable.Row>>();
+      List<Aggregator> aggList = getAggregatorsList();
       int aggSize = myAggregators.size();
-      List<Aggregator> aggList = new ArrayList<Aggregator>(aggSize);
+      int numRows = order.length;
+      int numProperties = keys.length;
+      List<Integer> defaultGroupingSet = new ArrayList<Integer>(numProperties);
+      for (int i = 0; i < numProperties; i++)
+         defaultGroupingSet.add(i);
+
+      // Determine each Aggregator's input once: a gathered double column, a
+      // column's values, or else the Rows themselves.  Only Aggregators that
+      // access their property through the instance accessor can be given
+      // column values in place of Rows.  A TwoPropAggregator that accepts
+      // them is given those of its second property.
+      double[][] doubleInputs = new double[aggSize][];
+      List<?>[] valueInputs = new List<?>[aggSize];
+      Map<ColumnarTable.Column, double[]> gathered = new HashMap<ColumnarTable.Column, double[]>();
+      List<ColumnarTable.Row> rows = table.getRows(order);
       for (int a = 0; a < aggSize; a++)
       {
          Aggregator archetype = myAggregators.get(a);
-         aggList.add(Aggregator.getAggregator(archetype));
+         ColumnarTable.Column column = null;
+         String property = (archetype instanceof TwoPropAggregator) ?
+            ((TwoPropAggregator) archetype).getProperty2() : archetype.getProperty();
+         if (property != null && archetype.isAcceptingPropertyValues())
+            column = table.getColumn(property);
+         if (column instanceof ColumnarTable.DoubleColumn)
+         {
+            double[] doubles = gathered.get(column);
+            if (doubles == null)
+            {
+               doubles = ((ColumnarTable.DoubleColumn) column).gather(order);
+               gathered.put(column, doubles);
+            }
+            doubleInputs[a] = doubles;
+         }
+         else if (column != null)
+            valueInputs[a] = column.getValues(order);
+         else
+            valueInputs[a] = rows;
       }
-      return aggList;
+
+      int startIndex = 0;
+      while (startIndex < numRows)
+      {
+         AggregateValue<ColumnarTable.Row> aggValue =
+            new AggregateValue<ColumnarTable.Row>(rows.get(startIndex), myAggregatorIndex);
+         int endIndex = startIndex + 1;
+         while (endIndex < numRows && ColumnarTable.compareRows(keys, order[startIndex], order[endIndex]) == 0)
+            endIndex++;
+
+         // If no super-aggregation, or if rolling up as we go, then use the
+         // same Aggregators throughout the entire process; they can be reused
+         // each loop.  If super-aggregation later, then use different
+         // Aggregators in each loop.
+         if (amIUsingSuperAggregation && rollup == null && startIndex > 0)
+            aggList = getAggregatorsList();
+
+         for (int a = 0; a < aggSize; a++)
+         {
+            Aggregator agg = aggList.get(a);
+            agg.init();
+         }
+         for (int a = 0; a < aggSize; a++)
+         {
+            Aggregator agg = aggList.get(a);
+            if (doubleInputs[a] != null)
+               agg.iterateDoubles(doubleInputs[a], startIndex, endIndex);
+            else if (valueInputs[a] != rows)
+               agg.iteratePropertyValues(valueInputs[a], startIndex, endIndex);
+            else
+               agg.iterateRange(rows, startIndex, endIndex);
+         }
+         for (int a = 0; a < aggSize; a++)
+         {
+            Aggregator agg = aggList.get(a);
+            aggValue.setAggregateValue(a, agg.terminate());
+         }
+
+         if (myProperties != null)
+         {
+            Object[] keyValues = new Object[numProperties];
+            for (int i = 0; i < numProperties; i++)
+               keyValues[i] = keys[i].getValue(order[startIndex]);
+            aggValue.assignPropertyValues(keyValues);
+            aggValue.assignPropsAndGroupingSet(myProperties, defaultGroupingSet);
+         }
+         // Roll up now, or store for super-aggregation later.
+         if (rollup != null)
+            rollup.add(aggValue, aggList);
+         else if (amIUsingSuperAggregation)
+            aggValue.assignAggregators(aggList);
+
+         aggValues.add(aggValue);
+
+         // Setup for next loop (if any).
+         startIndex = endIndex;
+      }
+      // No longer using the Aggregators unless we need them later for
+      // super-aggregation.
+      if (!amIUsingSuperAggregation || rollup != null)
+      {
+         for (int a = 0; a < aggSize; a++)
+         {
+            Aggregator agg = aggList.get(a);
+            agg.setInUse(false);
+         }
+      }
+      if (rollup != null)
+         rollup.finish(aggValues);
+      return aggValues;
    }
 
    /**
-    * Return a <code>List</code> of one <code>AggregateValue</code> that
-    * contains initial values for all Aggregators.  This is called when there
-    * are no values to aggregate AND there are no properties to group by.
-    * @return A <code>List</code> of one <code>AggregateValue</code>.  The
-    *    <code>Object</code> associated with this <code>AggregateValue</code>
-    *    is <code>null</code>.
+    * Determines whether the given number of values exceeds the spill
+    * threshold, if any.
+    * @param numValues The number of values.
+    * @return <code>true</code> if sorted runs of values are to be spilled to
+    *    disk, <code>false</code> otherwise.
     */
-   private <T> List<AggregateValue<T>> getEmptyAggregateValues()
+   private boolean isSpilling(int numValues)
    {
-      List<AggregateValue<T>> aggValues = new ArrayList<AggregateValue<T>>(1);
-      List<Aggregator> aggList = new ArrayList<Aggregator>(myAggregators.size());
-      int aggSize = myAggregators.size();
-      for (int a = 0; a < aggSize; a++)
+      return mySpillThreshold > 0 && numValues > mySpillThreshold;
+   }
+
+   /**
+    * Get all aggregate values for all aggregators, sorting the values
+    * externally.  Sorted runs of at most the spill threshold in size are
+    * spilled to temporary files, then merged back together and aggregated as
+    * they are merged.
+    * @param values An <code>Iterator</code> over the values to aggregate.
+    * @param comparator A <code>Comparator</code> over T objects.
+    * @param rollup The <code>StreamingRollup</code> that computes the
+    *    super-aggregate values, or <code>null</code>.
+    * @return A <code>List</code> of <code>AggregateValues</code>.
+    * @throws UnsupportedOperationException If values couldn't be spilled to
+    *    disk, e.g. because they are not <code>Serializable</code>.
+    */
+   private <T> List<AggregateValue<T>> getSpilledAggregateValues(Iterator<? extends T> values,
+      Comparator<? super T> comparator, StreamingRollup<T> rollup)
+   {
+      ExternalSorter<T> sorter = new ExternalSorter<T>(comparator, mySpillThreshold, mySpillDirectory);
+      try
       {
-         Aggregator archetype = myAggregators.get(a);
-         aggList.add(Aggregator.getAggregator(archetype));
+         return getAggregateValues(sorter.sort(values), comparator, rollup);
       }
-      AggregateValue<T> aggValue = new AggregateValue<T>((T) null);
-      for (int a = 0; a < aggSize; a++)
+      finally
       {
-         Aggregator agg = aggList.get(a);
-         agg.init();
-         aggValue.setAggregateValue(agg, agg.terminate());
-         agg.setInUse(false);
+         sorter.close();
       }
-      aggValues.add(aggValue);
-      return aggValues;
    }
 
    /**
-    * Perform super-aggregation on <code>AggregateValues</code>.  These represent
-    * normal aggregate results, and they are otherwise already done.  Any
-    * super-aggregate values are added to the given <code>List</code> of
-    * <code>AggregateValues</code>.  It is expected that each
-    * <code>AggregateValue</code> has been assigned a reference to the
-    * <code>List</code> of <code>Aggregators</code> that will be used to
-    * calculate super-aggregate results.  They are released after the
-    * calculations are complete.
-    * @param aggValues A <code>List</code> of <code>AggregateValues</code>.
-    * @param <T> The type of object to super-aggregate.
+    * Get all aggregate values for all aggregators, consuming values that are
+    * already sorted from an <code>Iterator</code>.  This is the streaming
+    * version.  Only the first value of the current group is retained.
+    * @param values An <code>Iterator</code> over the sorted values to
+    *    aggregate.
+    * @param comparator A <code>Comparator</code> over T objects.
+    * @param rollup The <code>StreamingRollup</code> that computes the
+    *    super-aggregate values, or <code>null</code>.
+    * @return A <code>List</code> of <code>AggregateValues</code>.
+    * @throws IllegalArgumentException If a value was found that sorts before
+    *    the value preceding it.
     */
-   private <T> void getSuperAggregateValues(List<AggregateValue<T>> aggValues)
+   private <T> List<AggregateValue<T>> getAggregateValues(Iterator<T> values,
+      Comparator<? super T> comparator, StreamingRollup<T> rollup)
    {
-      if (DEBUG)
+      List<AggregateValue<T>> aggValues = new ArrayList<AggregateValue<T>>();
+      if (!values.hasNext())
+         return aggValues;
+      List<Aggregator> aggList = getAggregatorsList();
+      int aggSize = myAggregators.size();
+      int numProperties = (myProperties != null) ? myProperties.size() : 0;
+      List<Integer> defaultGroupingSet = new ArrayList<Integer>(numProperties);
+      for (int i = 0; i < numProperties; i++)
+         defaultGroupingSet.add(i);
+
+      T first = values.next();
+      AggregateValue<T> aggValue = new AggregateValue<T>(first, myAggregatorIndex);
+      for (int a = 0; a < aggSize; a++)
+         aggList.get(a).init();
+      T value = first;
+      while (true)
       {
-         System.err.println("A.gSAV begin");
-         System.err.println("Grouping Sets:");
-         for (List<Integer> groupingSet : myGroupingSets)
+         for (int a = 0; a < aggSize; a++)
          {
-            System.err.println(groupingSet);
+            Aggregator agg = aggList.get(a);
+            agg.iterate(value);
+         }
+
+         boolean hasNext = values.hasNext();
+         if (hasNext)
+         {
+            value = values.next();
+            int comp = comparator.compare(first, value);
+            if (comp == 0)
+               continue;
+            if (comp > 0)
+               throw new IllegalArgumentException("Values are not sorted by the \"group by\" properties: " +
+                  value + " follows " + first + ".");
          }
+
+         // The current group is complete.
+         for (int a = 0; a < aggSize; a++)
+         {
+            Aggregator agg = aggList.get(a);
+            aggValue.setAggregateValue(a, agg.terminate());
+         }
+         if (myProperties != null)
+            aggValue.assignPropsAndGroupingSet(myProperties, defaultGroupingSet);
+         // Roll up now, or store for super-aggregation later.
+         if (rollup != null)
+            rollup.add(aggValue, aggList);
+         else if (amIUsingSuperAggregation)
+            aggValue.assignAggregators(aggList);
+         aggValues.add(aggValue);
+
+         if (!hasNext)
+            break;
+
+         // Setup for next group.
+         first = value;
+         aggValue = new AggregateValue<T>(first, myAggregatorIndex);
+         if (amIUsingSuperAggregation && rollup == null)
+            aggList = getAggregatorsList();
+         for (int a = 0; a < aggSize; a++)
+            aggList.get(a).init();
       }
-      boolean includeOrigAggValues = false;
-      // Define the chain of grouping sets, which traces its origin back to the
-      // original aggValues passed in (-1).
-      Map<Integer, Integer> chainedGroupingSets = new HashMap<Integer, Integer>();
-      int numGroupingSets = myGroupingSets.size();
-      int numProperties = myProperties.size();
-      
-      for (int i = 0; i < numGroupingSets; i++)
+      // No longer using the Aggregators unless we need them later for
+      // super-aggregation.
+      if (!amIUsingSuperAggregation || rollup != null)
+      {
+         for (int a = 0; a < aggSize; a++)
+         {
+            Aggregator agg = aggList.get(a);
+            agg.setInUse(false);
+         }
+      }
+      if (rollup != null)
+         rollup.finish(aggValues);
+      return aggValues;
+   }
+
+   /**
+    * Get all aggregate values for all aggregators, using a hash table keyed
+    * on the "group by" property values instead of sorting.  Each value is
+    * visited exactly once, and it is iterated directly into its group's
+    * <code>Aggregators</code>.  If requested, the resultant (and usually much
+    * smaller) <code>List</code> of <code>AggregateValues</code> is sorted by
+    * the "group by" property values, otherwise it is in the order in which
+    * each group was first encountered.
+    * @param values An <code>Iterator</code> over the values to aggregate.
+    * @return A <code>List</code> of <code>AggregateValues</code>.
+    */
+   private <T> List<AggregateValue<T>> getHashAggregateValues(Iterator<? extends T> values)
+   {
+      GroupTable<T> table = new GroupTable<T>(myProperties);
+      int aggSize = myAggregators.size();
+      while (values.hasNext())
       {
-         List<Integer> groupingSet = myGroupingSets.get(i);
-         int j;
-         for (j = i - 1; j >= 0; j--)
+         T value = values.next();
+         GroupTable.Group<T> group = table.find(value);
+         if (group == null)
+         {
+            List<Aggregator> aggList = getAggregatorsList();
+            for (int a = 0; a < aggSize; a++)
+               aggList.get(a).init();
+            group = table.add(value, aggList);
+         }
+         List<Aggregator> aggList = group.getAggregators();
+         for (int a = 0; a < aggSize; a++)
          {
-            List<Integer> candidateSet = myGroupingSets.get(j);
-            if (candidateSet.containsAll(groupingSet))
+            Aggregator agg = aggList.get(a);
+            agg.iterate(value);
+         }
+      }
+      return terminateGroups(table.getGroups());
+   }
+
+   /**
+    * Get all aggregate values for all aggregators, using hash tables keyed on
+    * the "group by" property values instead of sorting.  This is the
+    * multi-threaded version.  Each <code>HashAggregateRunner</code>
+    * aggregates its own slice of the values into a partial
+    * <code>GroupTable</code>.  The partial <code>GroupTables</code> are then
+    * merged in the order of their slices, so that each group's
+    * <code>Aggregators</code> are merged with the existing
+    * <code>Aggregator.merge</code> contract, and only the merged groups are
+    * sorted, if requested.
+    * @param values The <code>List</code> of values to aggregate.
+    * @param parallelism The degree of parallelism.
+    * @return A <code>List</code> of <code>AggregateValues</code>.
+    */
+   private <T> List<AggregateValue<T>> getHashAggregateValues(List<T> values, int parallelism)
+   {
+      ThreadPoolExecutor threadPool = getThreadPool();
+      List<Future<GroupTable<T>>> futures = new ArrayList<Future<GroupTable<T>>>(parallelism);
+      int size = values.size();
+      for (int p = 0; p < parallelism; p++)
+      {
+         int startIndex = (size * p) / parallelism;
+         int endIndex = (size * (p + 1)) / parallelism - 1;
+         futures.add(threadPool.submit(new HashAggregateRunner<T>(myAggregators, values, startIndex, endIndex, myProperties)));
+      }
+
+      // Wait for each partial GroupTable in order, and merge it into the
+      // first one.  If an Exception is thrown, it will be caught in the form
+      // of an ExecutionException, and wrapped in an
+      // UnsupportedOperationException.
+      GroupTable<T> table = null;
+      for (int p = 0; p < parallelism; p++)
+      {
+         GroupTable<T> partial = null;
+         while (partial == null)
+         {
+            try
             {
-               chainedGroupingSets.put(i, j);
-               if (DEBUG)
-                  System.err.println("  put(" + i + ", " + j + ")");
-               break;
+               partial = futures.get(p).get();
+            }
+            catch(InterruptedException ignored) {}
+            catch(ExecutionException e)
+            {
+               throw new UnsupportedOperationException(e.getClass().getName() +
+                  " caught while aggregating.", e);
             }
          }
-         // Must rely on original agg values.
-         if (j == -1)
+         if (table == null)
+            table = partial;
+         else
+            table.merge(partial);
+      }
+      return terminateGroups(table.getGroups());
+   }
+
+   /**
+    * Terminates the <code>Aggregators</code> of each of the given
+    * <code>Groups</code> and creates an <code>AggregateValue</code> for each.
+    * The <code>Groups</code> are sorted by key first, if requested.
+    * @param groups The <code>List</code> of <code>Groups</code>.
+    * @return A <code>List</code> of <code>AggregateValues</code>.
+    */
+   private <T> List<AggregateValue<T>> terminateGroups(List<GroupTable.Group<T>> groups)
+   {
+      if (amISortingResults)
+      {
+         final GroupKeyComparator keyComparator = new GroupKeyComparator(myProperties);
+         Collections.sort(groups, new Comparator<GroupTable.Group<T>>() {
+            /**
+             * Compare groups by their keys.
+             * @param group1 A <code>Group</code>.
+             * @param group2 Another <code>Group</code>.
+             * @return A negative integer, 0, or a positive integer if
+             *    <code>group1</code>'s key is less than, equal to, or greater
+             *    than <code>group2</code>'s key.
+             */
+            public int compare(GroupTable.Group<T> group1, GroupTable.Group<T> group2)
+            {
+               return keyComparator.compare(group1.getKey(), group2.getKey());
+            }
+         });
+      }
+      int aggSize = myAggregators.size();
+      int numGroups = groups.size();
+      int numProperties = myProperties.size();
+      List<Integer> defaultGroupingSet = new ArrayList<Integer>(numProperties);
+      for (int i = 0; i < numProperties; i++)
+         defaultGroupingSet.add(i);
+      List<AggregateValue<T>> aggValues = new ArrayList<AggregateValue<T>>(numGroups);
+      for (int g = 0; g < numGroups; g++)
+      {
+         GroupTable.Group<T> group = groups.get(g);
+         AggregateValue<T> aggValue = new AggregateValue<T>(group.getObject(), myAggregatorIndex);
+         List<Aggregator> aggList = group.getAggregators();
+         for (int a = 0; a < aggSize; a++)
          {
-            if (DEBUG)
-               System.err.println("  put(" + i + ", -1)");
-            chainedGroupingSets.put(i, -1);
+            Aggregator agg = aggList.get(a);
+            aggValue.setAggregateValue(a, agg.terminate());
+            // No longer using the Aggregators unless we need them later for
+            // super-aggregation.
+            if (!amIUsingSuperAggregation)
+               agg.setInUse(false);
+         }
+         // The key holds the property values already.
+         aggValue.assignPropertyValues(group.getKey());
+         aggValue.assignPropsAndGroupingSet(myProperties, defaultGroupingSet);
+         if (amIUsingSuperAggregation)
+            aggValue.assignAggregators(aggList);
+         aggValues.add(aggValue);
+      }
+      return aggValues;
+   }
+
+   /**
+    * Helper function to create a new <code>List</code> of
+    * <code>Aggregators</code>, given a list of archetypes.
+    * @return A <code>List</code> of <code>Aggregators</code>.
+    */
+   private List<Aggregator> getAggregatorsList()
+   {
+      int aggSize = myAggregators.size();
+      List<Aggregator> aggList = new ArrayList<Aggregator>(aggSize);
+      for (int a = 0; a < aggSize; a++)
+      {
+         Aggregator archetype = myAggregators.get(a);
+         aggList.add(Aggregator.getAggregator(archetype));
+      }
+      return aggList;
+   }
+
+   /**
+    * Returns a new <code>StreamingRollup</code> if super-aggregation is
+    * requested and every grouping set is a prefix of the "group by"
+    * properties, so that values sorted by the properties can be rolled up as
+    * they are aggregated.
+    * @return A new <code>StreamingRollup</code>, or <code>null</code> if the
+    *    super-aggregate values must be computed afterwards, if at all.
+    */
+   private <T> StreamingRollup<T> getStreamingRollup()
+   {
+      return amIStreamingRollup ? new StreamingRollup<T>() : null;
+   }
+
+   /**
+    * Determines whether every given grouping set consists of the first
+    * <em>k</em> "group by" properties, for some <em>k</em>, e.g.
+    * <code>{{0, 1, 2}, {0, 1}, {0}, {}}</code>, as <code>setRollup</code>
+    * creates when the rollup properties are the last properties.
+    * @param groupingSets The validated grouping sets, each sorted in
+    *    ascending order.
+    * @return <code>true</code> if every grouping set is a prefix of the
+    *    properties, <code>false</code> otherwise.
+    */
+   private static boolean isPrefixRollup(List<List<Integer>> groupingSets)
+   {
+      for (List<Integer> groupingSet : groupingSets)
+      {
+         int size = groupingSet.size();
+         for (int i = 0; i < size; i++)
+         {
+            if (groupingSet.get(i) != i)
+               return false;
          }
       }
+      return true;
+   }
+
+   /**
+    * Return a <code>List</code> of one <code>AggregateValue</code> that
+    * contains initial values for all Aggregators.  This is called when there
+    * are no values to aggregate AND there are no properties to group by.
+    * @return A <code>List</code> of one <code>AggregateValue</code>.  The
+    *    <code>Object</code> associated with this <code>AggregateValue</code>
+    *    is <code>null</code>.
+    */
+   private <T> List<AggregateValue<T>> getEmptyAggregateValues()
+   {
+      List<AggregateValue<T>> aggValues = new ArrayList<AggregateValue<T>>(1);
+      List<Aggregator> aggList = new ArrayList<Aggregator>(myAggregators.size());
+      int aggSize = myAggregators.size();
+      for (int a = 0; a < aggSize; a++)
+      {
+         Aggregator archetype = myAggregators.get(a);
+         aggList.add(Aggregator.getAggregator(archetype));
+      }
+      AggregateValue<T> aggValue = new AggregateValue<T>((T) null, myAggregatorIndex);
+      for (int a = 0; a < aggSize; a++)
+      {
+         Aggregator agg = aggList.get(a);
+         agg.init();
+         aggValue.setAggregateValue(a, agg.terminate());
+         agg.setInUse(false);
+      }
+      aggValues.add(aggValue);
+      return aggValues;
+   }
+
+   /**
+    * Perform super-aggregation on <code>AggregateValues</code>.  These represent
+    * normal aggregate results, and they are otherwise already done.  Any
+    * super-aggregate values are added to the given <code>List</code> of
+    * <code>AggregateValues</code>.  It is expected that each
+    * <code>AggregateValue</code> has been assigned a reference to the
+    * <code>List</code> of <code>Aggregators</code> that will be used to
+    * calculate super-aggregate results.  They are released after the
+    * calculations are complete.
+    * @param aggValues A <code>List</code> of <code>AggregateValues</code>.
+    * @param <T> The type of object to super-aggregate.
+    */
+   private <T> void getSuperAggregateValues(List<AggregateValue<T>> aggValues)
+   {
+      if (DEBUG)
+      {
+         System.err.println("A.gSAV begin");
+         System.err.println("Grouping Sets:");
+         for (List<Integer> groupingSet : myGroupingSets)
+         {
+            System.err.println(groupingSet);
+         }
+      }
+      boolean includeOrigAggValues = false;
+      int numGroupingSets = myGroupingSets.size();
+      int numProperties = myProperties.size();
+      if (DEBUG)
+         System.err.println("Plan:\n" + myGroupingSetPlan);
+
       int start = 0;
       if (myGroupingSets.get(0).size() == numProperties)
       {
@@ -420,98 +1346,44 @@ public class Aggregation
       }
       if (DEBUG)
          System.err.println("includeOrigAggValues is " + includeOrigAggValues);
+      // The original agg values are not reordered.  If any grouping set
+      // relies on them being sorted by all properties, and they aren't, e.g.
+      // with multiset discrimination, then sort a copy of them.
+      List<AggregateValue<T>> baseValues = aggValues;
+      if (myGroupingSetPlan.isRelyingOnOrder())
+      {
+         Comparator<AggregateValue<T>> comparator = new AggregateValuePropertiesComparator<T>(myProperties);
+         int size = aggValues.size();
+         for (int i = 1; i < size; i++)
+         {
+            if (comparator.compare(aggValues.get(i - 1), aggValues.get(i)) > 0)
+            {
+               baseValues = new ArrayList<AggregateValue<T>>(aggValues);
+               Collections.sort(baseValues, comparator);
+               break;
+            }
+         }
+      }
       // Walk through the grouping sets, using a prior grouping set's
       // super-aggregate values to create the current grouping set's
-      // super-aggregate values.
+      // super-aggregate values, as planned.
       Map<Integer, List<AggregateValue<T>>> aggValuesByGroupingSet = new TreeMap<Integer, List<AggregateValue<T>>>();
       if (includeOrigAggValues)
       {
          aggValuesByGroupingSet.put(0, aggValues);
       }
-      for (int g = start; g < numGroupingSets; g++)
+      if (myParallelism > 1 && numGroupingSets - start > 1)
+         getSuperAggregateValues(baseValues, start, aggValuesByGroupingSet);
+      else
       {
-         int prevIndex = chainedGroupingSets.get(g);
-         if (DEBUG)
-            System.err.println("  get(" + g + ") = " + prevIndex);
-         List<AggregateValue<T>> useValues;
-         if (prevIndex == -1)
-            useValues = aggValues;
-         else
-            useValues = aggValuesByGroupingSet.get(prevIndex);
-
-         // Get list of properties to super-aggregate by and sort the aggregate values.
-         List<Integer> groupingSet = myGroupingSets.get(g);
-         List<String> properties = new ArrayList<String>();
-         for (int propIndex : groupingSet)
+         for (int g = start; g < numGroupingSets; g++)
          {
-            properties.add(myProperties.get(propIndex));
-         }
-         Comparator<AggregateValue<T>> comparator = new AggregateValuePropertiesComparator<T>(properties);
-         if (DEBUG)
-            System.err.println("  Sorting on " + properties.toString());
-         Collections.sort(useValues, comparator);
-
-         if (DEBUG)
-         {
-            System.err.println("  useValues: ");
-            for (AggregateValue<T> useValue : useValues)
-            {
-               System.err.println(useValue);
-            }
-         }
-
-         List<AggregateValue<T>> superAggValues = new ArrayList<AggregateValue<T>>();
-         int aggSize = myAggregators.size();
-         int startIndex = 0;
-         int endIndex;
-         int listsize = useValues.size();
-         while (startIndex < listsize)
-         {
-            if (DEBUG)
-               System.err.println("    startIndex is " + startIndex);
-            AggregateValue<T> superAggValue = new AggregateValue<T>(useValues.get(startIndex));
-            endIndex = Aggregations.indexOfLastMatching(useValues, comparator, startIndex);
+            int prevIndex = myGroupingSetPlan.getParent(g);
             if (DEBUG)
-               System.err.println("    endIndex is " + endIndex);
-
-            List<Aggregator> superAggList = getAggregatorsList();
-
-            for (int a = 0; a < aggSize; a++)
-            {
-               Aggregator agg = superAggList.get(a);
-               agg.init();
-            }
-            for (int i = startIndex; i <= endIndex; i++)
-            {
-               AggregateValue<T> baseValue = useValues.get(i);
-               List<Aggregator> baseAggs = baseValue.retrieveAggregators();
-               for (int a = 0; a < aggSize; a++)
-               {
-                  Aggregator agg = superAggList.get(a);
-                  agg.merge(baseAggs.get(a));
-               }
-            }
-            for (int a = 0; a < aggSize; a++)
-            {
-               Aggregator agg = superAggList.get(a);
-               superAggValue.setAggregateValue(agg, agg.terminate());
-            }
-            superAggValue.assignAggregators(superAggList);
-            superAggValue.assignPropsAndGroupingSet(myProperties, groupingSet);
-            superAggValues.add(superAggValue);
-
-            // Setup for next loop (if any).
-            startIndex = endIndex + 1;
-         }
-         if (DEBUG)
-         {
-            System.err.println("  superAggValues created for grouping set # " + g);
-            for (AggregateValue<T> superAggValue : superAggValues)
-            {
-               System.err.println(superAggValue);
-            }
+               System.err.println("  get(" + g + ") = " + prevIndex);
+            List<AggregateValue<T>> useValues = (prevIndex == -1) ? baseValues : aggValuesByGroupingSet.get(prevIndex);
+            aggValuesByGroupingSet.put(g, getSuperAggregateValues(useValues, g));
          }
-         aggValuesByGroupingSet.put(g, superAggValues);
       }
       // Super-aggregation is done.
 
@@ -558,6 +1430,367 @@ public class Aggregation
       }
    }
 
+   /**
+    * Computes the super-aggregate values of one grouping set from the values
+    * of its planned source.  A copy of the source values is sorted if the
+    * plan says so; the source values themselves are not modified, so that
+    * this may run concurrently with other grouping sets of the same source.
+    * @param useValues The <code>AggregateValues</code> of the source.
+    * @param g The index of the grouping set.
+    * @param <T> The type of object to super-aggregate.
+    * @return A <code>List</code> of super-aggregate values.
+    */
+   private <T> List<AggregateValue<T>> getSuperAggregateValues(List<AggregateValue<T>> useValues, int g)
+   {
+      // Get list of properties to super-aggregate by.  Sort a copy of the
+      // values by them only if they aren't already in that order; other
+      // grouping sets may rely on the order of these values.
+      List<Integer> groupingSet = myGroupingSets.get(g);
+      List<String> properties = new ArrayList<String>();
+      for (int propIndex : groupingSet)
+      {
+         properties.add(myProperties.get(propIndex));
+      }
+      Comparator<AggregateValue<T>> comparator = new AggregateValuePropertiesComparator<T>(properties);
+      if (myGroupingSetPlan.isSorting(g))
+      {
+         if (DEBUG)
+            System.err.println("  Sorting on " + properties.toString());
+         useValues = new ArrayList<AggregateValue<T>>(useValues);
+         Collections.sort(useValues, comparator);
+      }
+
+      if (DEBUG)
+      {
+         System.err.println("  useValues: ");
+         for (AggregateValue<T> useValue : useValues)
+         {
+            System.err.println(useValue);
+         }
+      }
+
+      List<AggregateValue<T>> superAggValues = new ArrayList<AggregateValue<T>>();
+      int aggSize = myAggregators.size();
+      int startIndex = 0;
+      int endIndex;
+      int listsize = useValues.size();
+      while (startIndex < listsize)
+      {
+         if (DEBUG)
+            System.err.println("    startIndex is " + startIndex);
+         AggregateValue<T> superAggValue =
+            new AggregateValue<T>(useValues.get(startIndex).getObject(), myAggregatorIndex);
+         endIndex = Aggregations.indexOfLastMatching(useValues, comparator, startIndex);
+         if (DEBUG)
+            System.err.println("    endIndex is " + endIndex);
+
+         List<Aggregator> superAggList = getAggregatorsList();
+
+         for (int a = 0; a < aggSize; a++)
+         {
+            Aggregator agg = superAggList.get(a);
+            agg.init();
+         }
+         for (int i = startIndex; i <= endIndex; i++)
+         {
+            AggregateValue<T> baseValue = useValues.get(i);
+            List<Aggregator> baseAggs = baseValue.retrieveAggregators();
+            for (int a = 0; a < aggSize; a++)
+            {
+               Aggregator agg = superAggList.get(a);
+               agg.merge(baseAggs.get(a));
+            }
+         }
+         for (int a = 0; a < aggSize; a++)
+         {
+            Aggregator agg = superAggList.get(a);
+            superAggValue.setAggregateValue(a, agg.terminate());
+         }
+         superAggValue.assignAggregators(superAggList);
+         // Share the property values; those outside the grouping set are
+         // ignored.
+         superAggValue.assignPropertyValues(useValues.get(startIndex).retrievePropertyValues());
+         superAggValue.assignPropsAndGroupingSet(myProperties, groupingSet);
+         superAggValues.add(superAggValue);
+
+         // Setup for next loop (if any).
+         startIndex = endIndex + 1;
+      }
+      if (DEBUG)
+      {
+         System.err.println("  superAggValues created for grouping set # " + g);
+         for (AggregateValue<T> superAggValue : superAggValues)
+         {
+            System.err.println(superAggValue);
+         }
+      }
+      return superAggValues;
+   }
+
+   /**
+    * Computes the super-aggregate values of the grouping sets starting at the
+    * given index concurrently on the thread pool.  Each grouping set is
+    * submitted as soon as the super-aggregate values of its planned source
+    * are available, so independent grouping sets, e.g. those of a cube that
+    * share a source, are computed at the same time.  At most
+    * <code>parallelism</code> grouping sets are computed at once.
+    * @param baseValues The <code>AggregateValues</code> of all properties,
+    *    in the order that the plan relies on.
+    * @param start The index of the first grouping set to compute.
+    * @param aggValuesByGroupingSet The <code>Map</code> to which the
+    *    super-aggregate values of each grouping set are added, keyed by the
+    *    index of the grouping set.
+    * @param <T> The type of object to super-aggregate.
+    */
+   private <T> void getSuperAggregateValues(List<AggregateValue<T>> baseValues, int start,
+      Map<Integer, List<AggregateValue<T>>> aggValuesByGroupingSet)
+   {
+      int numGroupingSets = myGroupingSets.size();
+      ExecutorCompletionService<List<AggregateValue<T>>> service =
+         new ExecutorCompletionService<List<AggregateValue<T>>>(getThreadPool());
+      Map<Future<List<AggregateValue<T>>>, Integer> running = new HashMap<Future<List<AggregateValue<T>>>, Integer>();
+      boolean[] submitted = new boolean[numGroupingSets];
+      int numDone = start;
+      while (numDone < numGroupingSets)
+      {
+         // Submit every grouping set whose source values are available.
+         for (int g = start; g < numGroupingSets && running.size() < myParallelism; g++)
+         {
+            int prevIndex = myGroupingSetPlan.getParent(g);
+            if (!submitted[g] && (prevIndex == -1 || aggValuesByGroupingSet.containsKey(prevIndex)))
+            {
+               if (DEBUG)
+                  System.err.println("  submit(" + g + ") from " + prevIndex);
+               List<AggregateValue<T>> useValues = (prevIndex == -1) ? baseValues : aggValuesByGroupingSet.get(prevIndex);
+               running.put(service.submit(new GroupingSetRunner<T>(useValues, g)), g);
+               submitted[g] = true;
+            }
+         }
+
+         // Wait until one of them is done.  If an Exception is thrown, it
+         // will be caught in the form of an ExecutionException, and wrapped
+         // in an UnsupportedOperationException.
+         try
+         {
+            Future<List<AggregateValue<T>>> future = service.take();
+            List<AggregateValue<T>> superAggValues = future.get();
+            aggValuesByGroupingSet.put(running.remove(future), superAggValues);
+            numDone++;
+         }
+         catch(InterruptedException ignored) {}
+         catch(ExecutionException e)
+         {
+            throw new UnsupportedOperationException(e.getClass().getName() +
+               " caught while super-aggregating.", e);
+         }
+      }
+   }
+
+   /**
+    * A <code>GroupingSetRunner</code> computes the super-aggregate values of
+    * one grouping set in a separate <code>Thread</code>.
+    */
+   private class GroupingSetRunner<T> implements Callable<List<AggregateValue<T>>>
+   {
+      private List<AggregateValue<T>> myValues;
+      private int myGroupingSetIndex;
+
+      /**
+       * Constructs a <code>GroupingSetRunner</code>.
+       * @param values The <code>AggregateValues</code> of the planned
+       *    source, which are not modified.
+       * @param g The index of the grouping set.
+       */
+      private GroupingSetRunner(List<AggregateValue<T>> values, int g)
+      {
+         myValues = values;
+         myGroupingSetIndex = g;
+      }
+
+      /**
+       * Computes the super-aggregate values.
+       * @return A <code>List</code> of super-aggregate values.
+       */
+      public List<AggregateValue<T>> call()
+      {
+         return getSuperAggregateValues(myValues, myGroupingSetIndex);
+      }
+   }
+
+   /**
+    * <p>A <code>StreamingRollup</code> computes the super-aggregate values
+    * of grouping sets that are all prefixes of the "group by" properties,
+    * as the aggregate values are produced in sorted order.  It keeps one
+    * open set of <code>Aggregators</code> per super-aggregate level, finest
+    * first.  Each aggregate value's <code>Aggregators</code> are merged into
+    * the finest level; when the leading property values change, each level
+    * whose properties no longer all match is completed, finest first, and
+    * merged into the next coarser level.</p>
+    * <p>This takes the same single pass as the aggregation, and holds only
+    * one set of <code>Aggregators</code> per level, instead of holding every
+    * group's <code>Aggregators</code> and sorting the aggregate values once
+    * per grouping set.  The results are the same, in the same order, as
+    * those of <code>getSuperAggregateValues</code>.</p>
+    */
+   private class StreamingRollup<T>
+   {
+      private PropertiesComparator<T> myComparator;
+      private boolean amIIncludingBase;
+      // The grouping sets of the levels, finest first.
+      private List<List<Integer>> myLevelSets;
+      private List<List<Aggregator>> myLevelAggs;
+      // The open super-aggregate value of each level, if any.
+      private List<AggregateValue<T>> myOpenValues;
+      private List<List<AggregateValue<T>>> myLevelValues;
+      private Object[] myPrevKey;
+
+      /**
+       * Constructs a <code>StreamingRollup</code> for the grouping sets.
+       */
+      private StreamingRollup()
+      {
+         myComparator = new PropertiesComparator<T>(myProperties);
+         int numProperties = myProperties.size();
+         myLevelSets = new ArrayList<List<Integer>>();
+         for (List<Integer> groupingSet : myGroupingSets)
+         {
+            if (groupingSet.size() == numProperties)
+               amIIncludingBase = true;
+            else
+               myLevelSets.add(groupingSet);
+         }
+         int numLevels = myLevelSets.size();
+         myLevelAggs = new ArrayList<List<Aggregator>>(numLevels);
+         myOpenValues = new ArrayList<AggregateValue<T>>(numLevels);
+         myLevelValues = new ArrayList<List<AggregateValue<T>>>(numLevels);
+         for (int level = 0; level < numLevels; level++)
+         {
+            List<Aggregator> aggList = getAggregatorsList();
+            for (Aggregator agg : aggList)
+               agg.init();
+            myLevelAggs.add(aggList);
+            myOpenValues.add(null);
+            myLevelValues.add(new ArrayList<AggregateValue<T>>());
+         }
+      }
+
+      /**
+       * Rolls up the next aggregate value, which must not sort before the
+       * previous one.  Its <code>Aggregators</code> are merged, not
+       * retained, so they may be reused afterwards.
+       * @param aggValue The completed <code>AggregateValue</code>, with its
+       *    property values assigned.
+       * @param aggList The <code>Aggregators</code> that produced it.
+       */
+      private void add(AggregateValue<T> aggValue, List<Aggregator> aggList)
+      {
+         Object[] key = aggValue.retrievePropertyValues();
+         int numLevels = myLevelSets.size();
+         if (myPrevKey != null)
+         {
+            int prefixLength = myComparator.getCommonPrefixLength(myPrevKey, key);
+            for (int level = 0; level < numLevels && myLevelSets.get(level).size() > prefixLength; level++)
+               close(level);
+         }
+         for (int level = 0; level < numLevels; level++)
+         {
+            if (myOpenValues.get(level) == null)
+            {
+               AggregateValue<T> superAggValue = new AggregateValue<T>(aggValue.getObject(), myAggregatorIndex);
+               // Share the property values; those outside the grouping set
+               // are ignored.
+               superAggValue.assignPropertyValues(key);
+               myOpenValues.set(level, superAggValue);
+            }
+         }
+         if (numLevels > 0)
+            merge(aggList, myLevelAggs.get(0));
+         myPrevKey = key;
+      }
+
+      /**
+       * Completes all levels, releases the <code>Aggregators</code>, and
+       * replaces the contents of the given aggregate values with the
+       * results: the aggregate values themselves, if their grouping set was
+       * requested, followed by each level's super-aggregate values.
+       * @param aggValues The aggregate values.
+       */
+      private void finish(List<AggregateValue<T>> aggValues)
+      {
+         int numLevels = myLevelSets.size();
+         if (myPrevKey != null)
+         {
+            for (int level = 0; level < numLevels; level++)
+               close(level);
+         }
+         for (List<Aggregator> aggList : myLevelAggs)
+         {
+            for (Aggregator agg : aggList)
+               agg.setInUse(false);
+         }
+         if (!amIIncludingBase)
+            aggValues.clear();
+         for (List<AggregateValue<T>> levelValues : myLevelValues)
+            aggValues.addAll(levelValues);
+      }
+
+      /**
+       * Completes the open super-aggregate value of the given level, merges
+       * its <code>Aggregators</code> into the next coarser level, if any,
+       * and readies them for the next value of the level.
+       * @param level The level.
+       */
+      private void close(int level)
+      {
+         AggregateValue<T> superAggValue = myOpenValues.get(level);
+         List<Aggregator> aggList = myLevelAggs.get(level);
+         int aggSize = aggList.size();
+         for (int a = 0; a < aggSize; a++)
+            superAggValue.setAggregateValue(a, aggList.get(a).terminate());
+         superAggValue.assignPropsAndGroupingSet(myProperties, myLevelSets.get(level));
+         myLevelValues.get(level).add(superAggValue);
+         if (level + 1 < myLevelAggs.size())
+            merge(aggList, myLevelAggs.get(level + 1));
+         for (int a = 0; a < aggSize; a++)
+            aggList.get(a).init();
+         myOpenValues.set(level, null);
+      }
+
+      /**
+       * Merges each of the given <code>Aggregators</code> into the
+       * corresponding <code>Aggregator</code> of another list.
+       * @param from The <code>Aggregators</code> to merge.
+       * @param into The <code>Aggregators</code> into which to merge.
+       */
+      private void merge(List<Aggregator> from, List<Aggregator> into)
+      {
+         int aggSize = from.size();
+         for (int a = 0; a < aggSize; a++)
+            into.get(a).merge(from.get(a));
+      }
+   }
+
+   /**
+    * A <code>KeyedValue</code> decorates a value with its key, the values of
+    * its "group by" properties, for sorting.
+    */
+   private static class KeyedValue<T>
+   {
+      private final Object[] myKey;
+      private final T myValue;
+
+      /**
+       * Constructs a <code>KeyedValue</code>.
+       * @param key The key.
+       * @param value The value.
+       */
+      private KeyedValue(Object[] key, T value)
+      {
+         myKey = key;
+         myValue = value;
+      }
+   }
+
    /**
     * This <code>Builder</code> class follows the "Builder" pattern to create
     * an <code>Aggregation</code> object.
@@ -570,10 +1803,16 @@ public class Aggregation
       private boolean amIUsingMsd;
       private List<List<Integer>> myGroupingSets;
       private boolean amIUsingSuperAggregation;
+      private Strategy myStrategy;
+      private boolean amISortingResults;
+      private boolean amIPresorted;
+      private int mySpillThreshold;
+      private File mySpillDirectory;
 
       /**
        * Constructs a <code>Builder</code> with no aggregators, no properties,
-       * parallelism of 1, and not using multiset discrimination.
+       * parallelism of 1, not using multiset discrimination, and using the
+       * <code>SORT</code> strategy.
        */
       public Builder()
       {
@@ -583,6 +1822,11 @@ public class Aggregation
          amIUsingMsd = false;
          myGroupingSets = null;
          amIUsingSuperAggregation = false;
+         myStrategy = Strategy.SORT;
+         amISortingResults = true;
+         amIPresorted = false;
+         mySpillThreshold = 0;
+         mySpillDirectory = null;
       }
 
       /**
@@ -623,7 +1867,10 @@ public class Aggregation
       }
 
       /**
-       * Sets the degree of parallelism.
+       * Sets the degree of parallelism.  With parallelism, a large list of
+       * values is also sorted, or discriminated if multiset discrimination
+       * is used, in parallel, and the super-aggregate values of grouping sets
+       * that don't depend on each other are computed in parallel.
        * @param parallelism The degree of parallelism desired; if less than 1,
        *    then 1 will be used; if more than 1, then minimum of this number and
        *    the number of processors available to the JVM will be used, as
@@ -637,7 +1884,7 @@ public class Aggregation
          parallelism = 1;
          if (parallelism > 1)
          {
-            int numProcessors = Runtime.getRuntime().availableProcessors();
+            int numProcessors = getNumProcessors();
             parallelism = (parallelism > numProcessors) ? numProcessors : parallelism;
          }
          myParallelism = parallelism;
@@ -659,6 +1906,111 @@ public class Aggregation
          return this;
       }
 
+      /**
+       * Sets the strategy used to bring together objects that share the same
+       * values for all "group by" properties.  If not called, then the
+       * Builder defaults to <code>SORT</code>.  The <code>HASH</code> strategy
+       * only applies when "group by" properties have been set; it is ignored
+       * when the objects to be aggregated are being distinguished using the
+       * fact that they are <code>Comparable</code>.  When the
+       * <code>HASH</code> strategy is used, multiset discrimination is not
+       * used.  With parallelism, each <code>Thread</code> hash-aggregates its
+       * own portion of the values, then the partial results are merged.
+       * The <code>RADIX</code> strategy likewise doesn't use multiset
+       * discrimination; with parallelism, a large list of values is radix
+       * sorted in parallel.
+       * @param strategy The <code>Strategy</code>.
+       * @return This <code>Builder</code>.
+       * @since 0.7.3
+       */
+      public Builder setStrategy(Strategy strategy)
+      {
+         myStrategy = (strategy == null) ? Strategy.SORT : strategy;
+         return this;
+      }
+
+      /**
+       * Sets whether the results of the <code>HASH</code> strategy are to be
+       * sorted by the "group by" property values, so that they come out in the
+       * same order as they would with the <code>SORT</code> strategy.  Only the
+       * aggregated results are sorted, not the values.  If not called, then
+       * the Builder defaults to <code>true</code>.  If <code>false</code>,
+       * then the results are in the order in which each group was first
+       * encountered.  This is ignored for the <code>SORT</code> strategy.
+       * @param sortResults Whether to sort the results of the
+       *    <code>HASH</code> strategy.
+       * @return This <code>Builder</code>.
+       * @since 0.7.3
+       */
+      public Builder setSortResults(boolean sortResults)
+      {
+         amISortingResults = sortResults;
+         return this;
+      }
+
+      /**
+       * Declares whether the values to be aggregated are already sorted by
+       * the "group by" properties, in the order defined by a
+       * <code>PropertiesComparator</code>.  If so, then they are aggregated in
+       * a single pass, without being copied or sorted.  Their order is still
+       * checked, as adjacent values are compared; <code>groupBy</code> throws
+       * an <code>IllegalArgumentException</code> if a value sorts before the
+       * value preceding it.  If not called, then the Builder defaults to
+       * <code>false</code>.  This is ignored when the
+       * objects to be aggregated are being distinguished using the fact that
+       * they are <code>Comparable</code>.
+       * @param presorted Whether the values are already sorted.
+       * @return This <code>Builder</code>.
+       * @since 0.7.3
+       * @see PropertiesComparator
+       */
+      public Builder setPresorted(boolean presorted)
+      {
+         amIPresorted = presorted;
+         return this;
+      }
+
+      /**
+       * Sets the maximum number of values to sort in memory at once.  If
+       * more values than this need to be sorted, then they are sorted in runs
+       * of at most this many values, each run is spilled to a temporary file,
+       * and the runs are merged back together as they are aggregated.  This
+       * bounds the memory needed for sorting, at the cost of disk I/O.  Values
+       * must be <code>Serializable</code> to be spilled.  If not called, or if
+       * the threshold is zero or less, then nothing is spilled to disk.  This
+       * applies only to the <code>SORT</code> strategy, without multiset
+       * discrimination, when the values are not presorted.
+       * <p>The threshold is a number of values, not a memory budget; the
+       * memory needed per run depends on the size of the values.  Values that
+       * were spilled are read back as deserialized copies, so the objects of
+       * the resultant <code>AggregateValues</code> may not be the caller's
+       * instances.  Temporary files are deleted when aggregation finishes,
+       * even if it fails.</p>
+       * @param spillThreshold The maximum number of values to sort in memory.
+       * @return This <code>Builder</code>.
+       * @since 0.7.3
+       */
+      public Builder setSpillThreshold(int spillThreshold)
+      {
+         mySpillThreshold = (spillThreshold < 0) ? 0 : spillThreshold;
+         return this;
+      }
+
+      /**
+       * Sets the directory in which temporary files are created when values
+       * are spilled to disk.  If not called, or if <code>null</code>, then the
+       * default temporary directory is used.
+       * @param spillDirectory The directory for temporary files.
+       * @return This <code>Builder</code>.
+       * @since 0.7.3
+       * @see #setSpillThreshold(int)
+       */
+      public Builder setSpillDirectory(File spillDirectory)
+      {
+         mySpillDirectory = spillDirectory;
+         return this;
+      }
+
       /**
        * Sets the grouping sets to use.  Each list contains a list of integer
        * references, ranging from 0 to <em>n</em> - 1, if <em>n</em> is the
@@ -717,6 +2069,12 @@ public class Aggregation
        * <code>{{0, 1, 2, 3, 4}, {0, 1, 2, 4}, {0, 1, 4}, {0, 4}</code>.</p>
        * <p>This method acts as if all rollup grouping set combinations are
        * found, then they are passed to <code>setGroupingSets</code>.</p>
+       * <p>If the rollup properties are the last properties, e.g.
+       * <code>{2, 3, 4}</code> here, then every grouping set is a prefix of
+       * the properties, and when the values are sorted, not hashed, the
+       * super-aggregate values are computed in the same pass that aggregates
+       * the sorted values, holding one set of <code>Aggregators</code> per
+       * grouping set.  That pass is single-threaded.</p>
        * @param rollup A <code>List</code> of integer references.  Grouping
        *    sets are created that each contain all properties not referenced
        *    here, and each individual grouping set contains a different number
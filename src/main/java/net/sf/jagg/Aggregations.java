@@ -3,6 +3,8 @@ package net.sf.jagg;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * <p>This class is a utility class that represents an alternate API for some
@@ -234,6 +236,31 @@ public class Aggregations
     */
    public static <T> List<AggregateValue<T>> mergeLists(List<PositionedAggregatorList<T>> listOfPals,
       Comparator<? super T> comparator, boolean useSuperAggregation, List<String> properties)
+   {
+      return mergeLists(listOfPals, comparator, useSuperAggregation, properties,
+         new AggregatorIndex(listOfPals.get(0).getInitialAggList()));
+   }
+
+   /**
+    * Merges <code>PositionedAggregatorLists</code> as
+    * <code>mergeLists(List, Comparator, boolean, List)</code> does, storing
+    * the aggregate values by position according to the given
+    * <code>AggregatorIndex</code>.
+    * @param listOfPals A <code>List</code> of
+    *    <code>PositionedAggregatorLists</code>.
+    * @param comparator A <code>Comparator</code> of T values.
+    * @param useSuperAggregation If true, store the list of aggregators with
+    *    each <code>AggregateValue</code>, instead of setting them as not used.
+    * @param properties The <code>List</code> of properties.
+    * @param aggregatorIndex The <code>AggregatorIndex</code> of the
+    *    <code>Aggregators</code>.
+    * @return A merged <code>List</code> (of one item) of <code>Lists</code> of
+    *    <code>Aggregators</code>.
+    * @since 0.7.3
+    */
+   static <T> List<AggregateValue<T>> mergeLists(List<PositionedAggregatorList<T>> listOfPals,
+      Comparator<? super T> comparator, boolean useSuperAggregation, List<String> properties,
+      AggregatorIndex aggregatorIndex)
    {
       int numProperties = (properties != null) ? properties.size() : 0;
       List<Integer> defaultGroupingSet = new ArrayList<Integer>(numProperties);
@@ -258,11 +285,11 @@ public class Aggregations
          List<Aggregator> aggs = prev.getInitialAggList();
          int aggSize = aggs.size();
          T initObject = prev.getInitialObject();
-         AggregateValue<T> firstValue = new AggregateValue<T>(initObject);
+         AggregateValue<T> firstValue = new AggregateValue<T>(initObject, aggregatorIndex);
          for (int a = 0; a < aggSize; a++)
          {
             Aggregator agg = aggs.get(a);
-            firstValue.setAggregateValue(agg, agg.terminate());
+            firstValue.setAggregateValue(a, agg.terminate());
             if (!useSuperAggregation)
                agg.setInUse(false);
          }
@@ -312,11 +339,11 @@ public class Aggregations
             else
             {
                // If not a match, then terminate previous only.
-               AggregateValue<T> prevValue = new AggregateValue<T>(prevObject);
+               AggregateValue<T> prevValue = new AggregateValue<T>(prevObject, aggregatorIndex);
                for (int a = 0; a < aggListSize; a++)
                {
                   Aggregator prevAgg = prevAggsList.get(a);
-                  prevValue.setAggregateValue(prevAgg, prevAgg.terminate());
+                  prevValue.setAggregateValue(a, prevAgg.terminate());
                   if (!useSuperAggregation)
                      prevAgg.setInUse(false);
                }
@@ -338,14 +365,14 @@ public class Aggregations
             {
                // If objects match, then merge current initial into previous and
                // terminate.
-               AggregateValue<T> prevValue = new AggregateValue<T>(prevObject);
+               AggregateValue<T> prevValue = new AggregateValue<T>(prevObject, aggregatorIndex);
                for (int a = 0; a < aggListSize; a++)
                {
                   Aggregator prevAgg = prevAggsList.get(a);
                   Aggregator currAgg = currAggsList.get(a);
                   prevAgg.merge(currAgg);
                   currAgg.setInUse(false);
-                  prevValue.setAggregateValue(prevAgg, prevAgg.terminate());
+                  prevValue.setAggregateValue(a, prevAgg.terminate());
                   if (!useSuperAggregation)
                      prevAgg.setInUse(false);
                }
@@ -358,14 +385,14 @@ public class Aggregations
             else
             {
                // If no match, then terminate both previous and current initial.
-               AggregateValue<T> prevValue = new AggregateValue<T>(prevObject);
-               AggregateValue<T> currValue = new AggregateValue<T>(currObject);
+               AggregateValue<T> prevValue = new AggregateValue<T>(prevObject, aggregatorIndex);
+               AggregateValue<T> currValue = new AggregateValue<T>(currObject, aggregatorIndex);
                for (int a = 0; a < aggListSize; a++)
                {
                   Aggregator prevAgg = prevAggsList.get(a);
-                  prevValue.setAggregateValue(prevAgg, prevAgg.terminate());
+                  prevValue.setAggregateValue(a, prevAgg.terminate());
                   Aggregator currAgg = currAggsList.get(a);
-                  currValue.setAggregateValue(currAgg, currAgg.terminate());
+                  currValue.setAggregateValue(a, currAgg.terminate());
                   if (properties != null)
                   {
                      prevValue.assignPropsAndGroupingSet(properties, defaultGroupingSet);
@@ -395,11 +422,11 @@ public class Aggregations
       // 3. Off the end of the List.  Wrap up the last one.
       // In any above case, the last one is "previous".
       // Terminate it.
-      AggregateValue<T> prevValue = new AggregateValue<T>(prevObject);
+      AggregateValue<T> prevValue = new AggregateValue<T>(prevObject, aggregatorIndex);
       for (int a = 0; a < aggListSize; a++)
       {
          Aggregator prevAgg = prevAggsList.get(a);
-         prevValue.setAggregateValue(prevAgg, prevAgg.terminate());
+         prevValue.setAggregateValue(a, prevAgg.terminate());
          if (!useSuperAggregation)
             prevAgg.setInUse(false);
       }
@@ -523,4 +550,54 @@ public class Aggregations
 
       return lowerBoundMatchIdx;
    }
+
+   /**
+    * Waits for all of the given <code>Futures</code> of parallel tasks to
+    * complete, as <code>waitFor(Future, String)</code> does.
+    * @param futures The <code>Futures</code>.
+    * @param activity What the tasks were doing, e.g. "sorting", for the
+    *    message of any <code>UnsupportedOperationException</code>.
+    * @throws UnsupportedOperationException If a task threw a checked
+    *    <code>Exception</code> or an <code>Error</code>.
+    * @since 0.7.3
+    */
+   public static void waitFor(List<Future<?>> futures, String activity)
+   {
+      for (Future<?> future : futures)
+         waitFor(future, activity);
+   }
+
+   /**
+    * Waits for the given <code>Future</code> of a parallel task to complete
+    * and returns its result.  If the task threw a
+    * <code>RuntimeException</code>, e.g. because elements couldn't be
+    * compared, then it is rethrown here.  This is public only so that the
+    * <code>net.sf.jagg.msd</code> package can use it.
+    * @param future The <code>Future</code>.
+    * @param activity What the task was doing, e.g. "sorting", for the
+    *    message of any <code>UnsupportedOperationException</code>.
+    * @param <V> The type of result.
+    * @return The result of the task.
+    * @throws UnsupportedOperationException If the task threw a checked
+    *    <code>Exception</code> or an <code>Error</code>.
+    * @since 0.7.3
+    */
+   public static <V> V waitFor(Future<V> future, String activity)
+   {
+      while (true)
+      {
+         try
+         {
+            return future.get();
+         }
+         catch(InterruptedException ignored) {}
+         catch(ExecutionException e)
+         {
+            if (e.getCause() instanceof RuntimeException)
+               throw (RuntimeException) e.getCause();
+            throw new UnsupportedOperationException(e.getClass().getName() +
+               " caught while " + activity + ".", e);
+         }
+      }
+   }
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package net.sf.jagg;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This abstract class allows for the state necessary to implement aggregate
@@ -14,7 +16,9 @@ import java.lang.reflect.InvocationTargetException;
  *    maintains.
  * <li>Iteration, with the <code>iterate</code> method.  This adds a value to
  *    the aggregation.  This will be called exactly once per object to
- *    aggregate.
+ *    aggregate, possibly through <code>iterateRange</code>, which the engine
+ *    calls for each run of objects in the same group, and which subclasses
+ *    may override with a specialized loop.
  * <li>Merging, with the <code>merge</code> method.  In parallel execution,
  *    this merges results from two <code>Aggregator</code> objects resulting
  *    from parallel execution.  After the <code>merge</code> method completes,
@@ -27,10 +31,10 @@ import java.lang.reflect.InvocationTargetException;
  * </ol>
  *
  * <p>The factory method <code>getAggregator</code> creates
- * <code>Aggregators</code> and marks them as in use.  They are stored in a
- * cache (a <code>HashMap</code>) so they may be reused.  After an
- * <code>Aggregator</code> is used, it will be marked as not in use; it remains
- * in the cache and it may be reused.</p>
+ * <code>Aggregators</code> and marks them as in use.  After an
+ * <code>Aggregator</code> is used, it will be marked as not in use; it is
+ * returned to a pool shared by all <code>Threads</code> and it may be
+ * reused.</p>
  *
  * <p>The abstract method <code>replicate</code> must be defined for every
  * <code>Aggregator</code>.  This method returns an uninitialized copy of the
@@ -48,9 +52,8 @@ import java.lang.reflect.InvocationTargetException;
  * <code>Aggregators</code>, and only one <code>Thread</code> at a time uses
  * any <code>Aggregator</code>.</p>
  *
- * <p>However, internally, the <code>Aggregator</code> class uses synchronized
- * access to internal <code>HashMaps</code> to cache <code>Aggregators</code>
- * (and <code>Methods</code>).</p>
+ * <p>However, internally, the <code>Aggregator</code> class uses thread-safe
+ * caches of <code>Aggregators</code> (and <code>Methods</code>).</p>
  *
  * <p>The {@link #getValueFromProperty(Object, String) getValueProperty} method
  * has been made <code>public</code> as of version 0.7.2.</p>
@@ -73,9 +76,21 @@ public abstract class Aggregator
    // Cache Aggregator objects to save on instantiation/garbage collection
    // costs.  Key is "nameAndProperty".
    private static final AggregatorCache myAggregatorCache = AggregatorCache.getAggregatorCache();
+   // The package of the built-in Aggregators.
+   private static final String PACKAGE_NAME =
+      Aggregator.class.getName().substring(0, Aggregator.class.getName().lastIndexOf('.'));
 
    private String myProperty;
-   private boolean amIInUse = false;
+   private PropertyAccessor myAccessor;
+   private final AtomicBoolean myInUse = new AtomicBoolean(false);
+   private boolean amIPoolable = false;
+   private int myArchetypeId = -1;
+   // Whether values given to iterate are already property values, while
+   // iterating doubles.
+   private boolean amIIteratingPropertyValues = false;
+   // The string representation, on which equals and hashCode are based,
+   // computed once after the property is set.
+   private String myKey;
 
    /**
     * Default constructor is protected so that only subclasses of
@@ -211,6 +226,31 @@ public abstract class Aggregator
       }
    }
 
+   /**
+    * Retrieves the value of this <code>Aggregator</code>'s property, as
+    * returned by <code>getProperty</code>, from the given object.  Unlike the
+    * static <code>getValueFromProperty</code> method, this uses a
+    * <code>PropertyAccessor</code> held by this <code>Aggregator</code>, so
+    * it avoids looking up the <code>Method</code> in a cache on every call.
+    * This is the preferred way to access the property in the
+    * <code>iterate</code> method.
+    *
+    * @param value The object on which to lookup the property value.
+    * @return The object's property value.
+    * @throws UnsupportedOperationException If the desired <code>Method</code>
+    *    does not exist, if the <code>Method</code> cannot be invoked because
+    *    of Java language access control (e.g. private, etc.), or if  the
+    *    invoked <code>Method</code> throws an <code>Exception</code>.
+    * @see PropertyAccessor
+    * @since 0.7.3
+    */
+   protected Object getValueFromProperty(Object value)
+   {
+      if (isIteratingPropertyValues())
+         return value;
+      return myAccessor.get(value);
+   }
+
    /**
     * Sets the property name.  Subclasses may override this method if they
     * want to extract more information from the property string, e.g.
@@ -223,6 +263,8 @@ public abstract class Aggregator
    protected void setProperty(String property)
    {
       myProperty = property;
+      myAccessor = new PropertyAccessor(property);
+      myKey = null;
    }
 
    /**
@@ -231,16 +273,59 @@ public abstract class Aggregator
     */
    public final boolean isInUse()
    {
-      return amIInUse;
+      return myInUse.get();
    }
 
    /**
-    * Sets whether this <code>Aggregator</code> is in use.
+    * Sets whether this <code>Aggregator</code> is in use.  If this
+    * <code>Aggregator</code> was created by the cache and it is no longer in
+    * use, then it is returned to a pool of the cache.
     * @param inUse The boolean indicating whether it's in use.
     */
    public final void setInUse(boolean inUse)
    {
-      amIInUse = inUse;
+      if (inUse)
+         myInUse.set(true);
+      else if (myInUse.getAndSet(false) && amIPoolable)
+         myAggregatorCache.release(this);
+   }
+
+   /**
+    * Atomically marks this <code>Aggregator</code> as in use, if it isn't
+    * already in use.
+    * @return <code>true</code> if it was not in use and it is now marked as in
+    *    use, <code>false</code> if it was already in use.
+    * @since 0.7.3
+    */
+   final boolean claim()
+   {
+      return myInUse.compareAndSet(false, true);
+   }
+
+   /**
+    * Marks this <code>Aggregator</code> as created by the cache, so that it is
+    * returned to a pool when it's no longer in use.
+    * @param archetypeId The archetype id of the <code>Aggregator</code> from
+    *    which this one was replicated.
+    * @since 0.7.3
+    */
+   final void setPoolable(int archetypeId)
+   {
+      myArchetypeId = archetypeId;
+      amIPoolable = true;
+   }
+
+   /**
+    * Returns the archetype id shared by all <code>Aggregators</code> that are
+    * equivalent to this one, determining it on first use.
+    * @return The archetype id.
+    * @since 0.7.3
+    */
+   final int getArchetypeId()
+   {
+      if (myArchetypeId < 0)
+         myArchetypeId = myAggregatorCache.getArchetypeId(this);
+      return myArchetypeId;
    }
 
    /**
@@ -271,10 +356,137 @@ public abstract class Aggregator
     */
    public abstract void iterate(Object value);
 
+   /**
+    * Processes the values in the given range of the given <code>List</code>
+    * into the aggregation, in order, exactly as if <code>iterate</code> were
+    * called on each of them.  The engine calls this once for each run of
+    * values that belong to the same group, instead of calling
+    * <code>iterate</code> once per value per <code>Aggregator</code>.  The
+    * default implementation simply loops over <code>iterate</code>.
+    * Subclasses may override it with the same loop, whose call to
+    * <code>iterate</code> is then always to the same method, so that the JIT
+    * compiler can inline it, or with a loop specialized to the aggregation.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
+   /**
+    * Processes the given range of primitive <code>doubles</code> into the
+    * aggregation, in order.  Each <code>double</code> is already a value of
+    * this <code>Aggregator's</code> property, e.g. from a column of values,
+    * so no property is accessed.  The default implementation boxes each
+    * value and calls <code>iterate</code> with it, as if it had been accessed
+    * from a property.  Numeric <code>Aggregators</code> override it with
+    * loops that don't box.
+    *
+    * @param values An array of property values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   public void iterateDoubles(double[] values, int start, int end)
+   {
+      amIIteratingPropertyValues = true;
+      try
+      {
+         for (int i = start; i < end; i++)
+            iterate(Double.valueOf(values[i]));
+      }
+      finally
+      {
+         amIIteratingPropertyValues = false;
+      }
+   }
+
+   /**
+    * Returns whether this <code>Aggregator</code> may be given values of its
+    * property, e.g. from a column of a <code>ColumnarTable</code>, in place
+    * of the objects themselves, through <code>iterateDoubles</code>.  That is
+    * only correct if it accesses its property solely through the instance
+    * <code>getValueFromProperty(Object)</code> method, and not through the
+    * static <code>getValueFromProperty(Object, String)</code> method.  The
+    * default implementation returns <code>true</code> only for the
+    * <code>Aggregators</code> of this package.  Custom
+    * <code>Aggregators</code> may override it to opt in.
+    *
+    * @return <code>true</code> if this <code>Aggregator</code> may iterate
+    *    over values of its property, <code>false</code> if it must iterate
+    *    over the objects.
+    * @see #getValueFromProperty(Object)
+    * @since 0.7.3
+    */
+   protected boolean isAcceptingPropertyValues()
+   {
+      return isBuiltIn();
+   }
+
+   /**
+    * Returns whether this <code>Aggregator's</code> class is in this
+    * package, i.e. it's a built-in <code>Aggregator</code>.
+    * @return <code>true</code> if this <code>Aggregator</code> is built in,
+    *    <code>false</code> otherwise.
+    * @since 0.7.3
+    */
+   final boolean isBuiltIn()
+   {
+      String className = getClass().getName();
+      return className.lastIndexOf('.') == PACKAGE_NAME.length() && className.startsWith(PACKAGE_NAME);
+   }
+
+   /**
+    * Returns whether the values given to <code>iterate</code> are already
+    * property values, because <code>iterateDoubles</code> or
+    * <code>iteratePropertyValues</code> is iterating over them.
+    * @return <code>true</code> if iterating over property values,
+    *    <code>false</code> if iterating over objects.
+    * @since 0.7.3
+    */
+   final boolean isIteratingPropertyValues()
+   {
+      return amIIteratingPropertyValues;
+   }
+
+   /**
+    * Processes the given range of values into the aggregation, in order.  Each
+    * value is already a value of this <code>Aggregator's</code> property,
+    * e.g. from a column of values, so no property is accessed;
+    * <code>iterate</code> receives each value as if it had been accessed from
+    * a property.
+    *
+    * @param values A <code>List</code> of property values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   void iteratePropertyValues(List<?> values, int start, int end)
+   {
+      amIIteratingPropertyValues = true;
+      try
+      {
+         iterateRange(values, start, end);
+      }
+      finally
+      {
+         amIIteratingPropertyValues = false;
+      }
+   }
+
    /**
     * Merges the state of the given <code>Aggregator</code> into this own
     * <code>Aggregator</code>'s state.  Called when parallel execution
     * yields more than one <code>Aggregator</code> to combine into one.
+    * <p>The given <code>Aggregator</code> must not be modified, not even to
+    * compact its state, because super-aggregation may merge the same
+    * <code>Aggregator</code> into several others at the same time, in
+    * different <code>Threads</code>.</p>
     *
     * @param agg The <code>Aggregator</code> whose state needs to be merged
     *    into this one.
@@ -308,13 +520,17 @@ public abstract class Aggregator
     * Determines whether the given <code>Aggregator</code> is equivalent to
     * this <code>Aggregator</code>.  This is necessary because
     * <code>Aggregator</code> objects will be stored in a <code>HashMap</code>.
+    * As of 0.7.3, the string representation is computed only once after the
+    * property is set, so it must not change afterwards.
     *
     * @param o Another <code>Aggregator</code>.
     * @return <code>true</code> if equivalent, <code>false</code> otherwise.
     */
    public boolean equals(Object o)
    {
-      return (getClass().equals(o.getClass()) && toString().equals(o.toString()));
+      if (this == o)
+         return true;
+      return (getClass().equals(o.getClass()) && getKey().equals(((Aggregator) o).getKey()));
    }
 
    /**
@@ -328,7 +544,25 @@ public abstract class Aggregator
     */
    public int hashCode()
    {
-      return toString().hashCode();
+      // Strings cache their own hash codes.
+      return getKey().hashCode();
+   }
+
+   /**
+    * Returns the string representation on which <code>equals</code> and
+    * <code>hashCode</code> are based, computing it on first use.
+    * @return The string representation.
+    * @since 0.7.3
+    */
+   String getKey()
+   {
+      String key = myKey;
+      if (key == null)
+      {
+         key = toString();
+         myKey = key;
+      }
+      return key;
    }
 
    /**
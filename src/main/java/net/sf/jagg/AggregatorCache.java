@@ -1,35 +1,104 @@
 package net.sf.jagg;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Created as a wrapper around a HashMap that maps aggregator specification
- * strings to <code>Lists</code> of <code>Aggregators</code>.
+ * <p>Created as a wrapper around a HashMap that maps aggregator specification
+ * strings to <code>Lists</code> of <code>Aggregators</code>.</p>
+ * <p>As of 0.7.3, each aggregator specification string is mapped only once to
+ * an integer <em>archetype id</em>, which each <code>Aggregator</code>
+ * remembers.  Available <code>Aggregators</code> are kept in a fixed number
+ * of shared pools, or <em>stripes</em>, each of which has a bounded stack of
+ * <code>Aggregators</code> per archetype id and its own lock.  Each
+ * <code>Thread</code> has a home stripe, chosen by its id.  Marking an
+ * <code>Aggregator</code> as no longer in use pushes it onto the home stripe
+ * of the current <code>Thread</code>.  Acquiring an <code>Aggregator</code>
+ * pops it from the home stripe, or else from any other stripe, so
+ * <code>Threads</code> rarely contend for a lock, and no list is searched.
+ * The in-use flag of each <code>Aggregator</code> is claimed atomically, so
+ * no <code>Aggregator</code> is handed out twice.</p>
+ * <p>An <code>Aggregator</code> is returned to the home stripe of the
+ * <code>Thread</code> that releases it, which isn't necessarily the stripe
+ * from which it was acquired, e.g. when it was acquired by a worker
+ * <code>Thread</code> of a parallel aggregation and released by the calling
+ * <code>Thread</code>.  Because every stripe is searched before replicating
+ * an archetype, the worker <code>Threads</code> of later parallel
+ * aggregations still reuse it.  No stripe holds more than
+ * <code>MAX_POOL_SIZE</code> <code>Aggregators</code> of any one
+ * archetype.</p>
+ * <p>Pool hits and misses are counted per <code>Thread</code>, without any
+ * shared counter, and summed when they are read.</p>
  *
  * @author Randy Gettman
  * @since 0.3.0
  */
 public class AggregatorCache
 {
+   /**
+    * The maximum number of available <code>Aggregators</code> of any one
+    * archetype kept by any one stripe.  <code>Aggregators</code>
+    * released when the pool is full are left to the garbage collector.
+    * @since 0.7.3
+    */
+   public static final int MAX_POOL_SIZE = 1024;
+
    private static AggregatorCache theAggregatorCache = null;
 
-   private final HashMap<String, List<Aggregator>> myAggregators;
+   private final ConcurrentHashMap<String, Integer> myArchetypeIds;
+   private final AtomicInteger myNextArchetypeId;
+   private final Pool[] myPools;
+   private final int myPoolMask;
+   private final ThreadLocal<Counts> myThreadCounts;
+   // The Counts of each live Thread that has used a Pool.
+   private final ConcurrentLinkedQueue<Counts> myCounts;
+   // The counts of Threads that have died, updated only when their Counts
+   // are discarded.
+   private final AtomicLong myRetiredHits;
+   private final AtomicLong myRetiredMisses;
 
    /**
     * Private constructor for the singleton pattern.
     */
    private AggregatorCache()
    {
-      myAggregators = new HashMap<String, List<Aggregator>>();
+      myArchetypeIds = new ConcurrentHashMap<String, Integer>();
+      myNextArchetypeId = new AtomicInteger(0);
+      // A power of two, so that a Thread's id is masked to its home stripe.
+      int numPools = 1;
+      while (numPools < Runtime.getRuntime().availableProcessors())
+         numPools *= 2;
+      myPools = new Pool[numPools];
+      for (int i = 0; i < numPools; i++)
+         myPools[i] = new Pool();
+      myPoolMask = numPools - 1;
+      myThreadCounts = new ThreadLocal<Counts>() {
+         /**
+          * Each <code>Thread</code> starts with no hits and no misses.
+          * @return A new <code>Counts</code>.
+          */
+         @Override
+         protected Counts initialValue()
+         {
+            retireCounts();
+            Counts counts = new Counts();
+            myCounts.add(counts);
+            return counts;
+         }
+      };
+      myCounts = new ConcurrentLinkedQueue<Counts>();
+      myRetiredHits = new AtomicLong(0);
+      myRetiredMisses = new AtomicLong(0);
    }
 
    /**
     * Returns the singleton <code>AggregatorCache</code>.
     * @return The singleton <code>AggregatorCache</code>.
     */
-   public static AggregatorCache getAggregatorCache()
+   public static synchronized AggregatorCache getAggregatorCache()
    {
       if (theAggregatorCache == null)
       {
@@ -57,69 +126,218 @@ public class AggregatorCache
       if (archetype == null)
          return null;
 
-      List<Aggregator> aggsList;
-      Aggregator agg = null;
+      // Use the given Aggregator if it was not already in use.  The claim is
+      // atomic so that the same archetype is not chosen by multiple threads.
+      if (archetype.claim())
+         return archetype;
 
-//      long time1 = System.nanoTime();
-
-      // Synchronize access to the cache so multiple Threads don't "find"
-      // the same Aggregator.
-      synchronized (myAggregators)
+      int id = archetype.getArchetypeId();
+      Counts counts = myThreadCounts.get();
+      int home = getHomePool();
+      for (int i = 0; i < myPools.length; i++)
       {
-         // Use the given Aggregator if it was not already in use.
-         // This must be within a synchronized block so that the same archetype
-         // is not chosen by multiple threads.  It is in THIS synchronized
-         // block to avoid having to get multiple locks.
-         if (!archetype.isInUse())
+         Aggregator agg = myPools[(home + i) & myPoolMask].acquire(id);
+         if (agg != null)
          {
-            archetype.setInUse(true);
-            agg = archetype;
+            counts.myHits++;
+            return agg;
          }
+      }
+
+      // We must create another Aggregator.  Only replicated Aggregators are
+      // pooled; archetypes are not added to the cache.
+      counts.myMisses++;
+      Aggregator agg;
+      agg = archetype.replicate();
+      agg.setPoolable(id);
+      agg.claim();
+      return agg;
+   }
+
+   /**
+    * Returns the given <code>Aggregator</code>, which is no longer in use, to
+    * the current <code>Thread</code>'s home stripe.  This is called by
+    * <code>Aggregator.setInUse(false)</code>.
+    * @param agg The <code>Aggregator</code>.
+    * @since 0.7.3
+    */
+   void release(Aggregator agg)
+   {
+      myPools[getHomePool()].release(agg.getArchetypeId(), agg);
+   }
+
+   /**
+    * Returns the index of the current <code>Thread</code>'s home stripe.
+    * @return The index of the home stripe.
+    */
+   private int getHomePool()
+   {
+      return (int) Thread.currentThread().getId() & myPoolMask;
+   }
+
+   /**
+    * Returns the archetype id for the given <code>Aggregator</code>, assigning
+    * a new one if no equivalent <code>Aggregator</code> has been seen yet.
+    * Equivalent <code>Aggregators</code>, those with the same string
+    * representation, share the same archetype id.
+    * @param agg The <code>Aggregator</code>.
+    * @return The archetype id.
+    * @since 0.7.3
+    */
+   int getArchetypeId(Aggregator agg)
+   {
+      String spec = agg.getKey();
+      Integer id = myArchetypeIds.get(spec);
+      if (id == null)
+      {
+         Integer newId = myNextArchetypeId.getAndIncrement();
+         id = myArchetypeIds.putIfAbsent(spec, newId);
+         if (id == null)
+            id = newId;
+      }
+      return id;
+   }
+
+   /**
+    * Returns the number of times that an available <code>Aggregator</code>
+    * was found in a pool, summed over all <code>Threads</code>.
+    * @return The number of pool hits.
+    * @since 0.7.3
+    */
+   public long getHits()
+   {
+      retireCounts();
+      long hits = myRetiredHits.get();
+      for (Counts counts : myCounts)
+         hits += counts.myHits;
+      return hits;
+   }
+
+   /**
+    * Returns the number of times that no available <code>Aggregator</code>
+    * was found in a pool, so that an archetype had to be replicated, summed
+    * over all <code>Threads</code>.
+    * @return The number of pool misses.
+    * @since 0.7.3
+    */
+   public long getMisses()
+   {
+      retireCounts();
+      long misses = myRetiredMisses.get();
+      for (Counts counts : myCounts)
+         misses += counts.myMisses;
+      return misses;
+   }
 
-         // If we can't use the archetype itself...
-         if (agg == null)
+   /**
+    * Adds the counts of <code>Threads</code> that have died to the retired
+    * counts, and discards their <code>Counts</code>, so that only the
+    * <code>Counts</code> of live <code>Threads</code> are kept.
+    */
+   private void retireCounts()
+   {
+      for (Counts counts : myCounts)
+      {
+         Thread thread = counts.myThread.get();
+         // Only the caller that removes the Counts retires them.
+         if ((thread == null || !thread.isAlive()) && myCounts.remove(counts))
          {
-            aggsList = myAggregators.get(archetype.toString());
-            // If we have a list of aggregators matching the name and property.
-            if (aggsList != null)
-            {
-               // Look for one that's not in use.
-               int size = aggsList.size();
-               for (int a = 0; a < size; a++)
-               {
-                  Aggregator candidate = aggsList.get(a);
-                  if (!candidate.isInUse())
-                  {
-                     agg = candidate;
-                     // Set as "in use" before coming out of synchronization.
-                     agg.setInUse(true);
-                     break;
-                  }
-               }
+            myRetiredHits.addAndGet(counts.myHits);
+            myRetiredMisses.addAndGet(counts.myMisses);
+         }
+      }
+   }
 
-            }
-            if (aggsList == null)
-            {
-               aggsList = new ArrayList<Aggregator>();
-               myAggregators.put(archetype.toString(), aggsList);
-            }
+   /**
+    * The pool hits and misses of one <code>Thread</code>.  Only that
+    * <code>Thread</code> updates them; other <code>Threads</code> only read
+    * them.
+    */
+   private static class Counts
+   {
+      private final WeakReference<Thread> myThread = new WeakReference<Thread>(Thread.currentThread());
+      private volatile long myHits;
+      private volatile long myMisses;
+   }
 
-            // We must create another Aggregator and add it to the cache.
-            // Only replicated Aggregators are added to the cache; archetypes
-            // are not added to the cache.
-            if (agg == null)
-            {
-               agg = archetype.replicate();
+   /**
+    * A <code>Pool</code> is one stripe of available <code>Aggregators</code>,
+    * in one bounded stack per archetype id.  It's locked only while an
+    * <code>Aggregator</code> is pushed or popped.
+    */
+   private static class Pool
+   {
+      private Aggregator[][] myStacks = new Aggregator[16][];
+      private int[] mySizes = new int[16];
 
-               // Set as in use before adding to the cache, so another Thread
-               // won't pick up this one.
-               agg.setInUse(true);
-               aggsList.add(agg);
+      /**
+       * Pops an available <code>Aggregator</code> with the given archetype id
+       * and marks it as in use.
+       * @param id The archetype id.
+       * @return An <code>Aggregator</code>, or <code>null</code> if none is
+       *    available.
+       */
+      private synchronized Aggregator acquire(int id)
+      {
+         if (id >= myStacks.length)
+            return null;
+         Aggregator[] stack = myStacks[id];
+         int size = mySizes[id];
+         while (size > 0)
+         {
+            size--;
+            Aggregator agg = stack[size];
+            stack[size] = null;
+            // Skip any Aggregator that was put back into use without being
+            // acquired from a pool.
+            if (agg.claim())
+            {
+               mySizes[id] = size;
+               return agg;
             }
          }
+         mySizes[id] = 0;
+         return null;
+      }
+
+      /**
+       * Pushes the given <code>Aggregator</code> onto the stack for the given
+       * archetype id, unless that stack is full.
+       * @param id The archetype id.
+       * @param agg The <code>Aggregator</code>.
+       */
+      private synchronized void release(int id, Aggregator agg)
+      {
+         if (id >= myStacks.length)
+         {
+            int capacity = myStacks.length;
+            while (capacity <= id)
+               capacity *= 2;
+            Aggregator[][] stacks = new Aggregator[capacity][];
+            System.arraycopy(myStacks, 0, stacks, 0, myStacks.length);
+            myStacks = stacks;
+            int[] sizes = new int[capacity];
+            System.arraycopy(mySizes, 0, sizes, 0, mySizes.length);
+            mySizes = sizes;
+         }
+         Aggregator[] stack = myStacks[id];
+         int size = mySizes[id];
+         if (stack == null)
+         {
+            stack = new Aggregator[16];
+            myStacks[id] = stack;
+         }
+         else if (size == stack.length)
+         {
+            if (size >= MAX_POOL_SIZE)
+               return;
+            Aggregator[] bigger = new Aggregator[Math.min(size * 2, MAX_POOL_SIZE)];
+            System.arraycopy(stack, 0, bigger, 0, size);
+            stack = bigger;
+            myStacks[id] = stack;
+         }
+         stack[size] = agg;
+         mySizes[id] = size + 1;
       }
-//      long time10 = System.nanoTime();
-//      System.out.println("AC timings: All of gA: " + (time10 - time1));
-      return agg;
    }
 }
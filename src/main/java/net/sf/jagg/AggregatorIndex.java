@@ -0,0 +1,113 @@
+package net.sf.jagg;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An <code>AggregatorIndex</code> maps <code>Aggregators</code> to their
+ * positions in a list of <code>Aggregators</code>.  An
+ * <code>Aggregation</code> creates one for its <code>Aggregators</code>, and
+ * all of its <code>AggregateValues</code> share it, storing their results in
+ * arrays indexed by position.  An <code>Aggregator</code> is found by
+ * identity first, then by equality.  If equal <code>Aggregators</code>
+ * occur more than once, then the last position is found.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+final class AggregatorIndex
+{
+   private final List<Aggregator> myAggregators;
+   private final Map<Aggregator, Integer> myPositions;
+   private boolean amIHavingDuplicates;
+
+   /**
+    * Constructs an empty <code>AggregatorIndex</code>.
+    */
+   AggregatorIndex()
+   {
+      myAggregators = new ArrayList<Aggregator>();
+      myPositions = new HashMap<Aggregator, Integer>();
+   }
+
+   /**
+    * Constructs an <code>AggregatorIndex</code> of the given
+    * <code>Aggregators</code>.
+    * @param aggregators A <code>List</code> of <code>Aggregators</code>.
+    */
+   AggregatorIndex(List<Aggregator> aggregators)
+   {
+      this();
+      for (Aggregator agg : aggregators)
+         add(agg);
+   }
+
+   /**
+    * Constructs an <code>AggregatorIndex</code> of the first
+    * <code>Aggregators</code> of another <code>AggregatorIndex</code>.
+    * @param other Another <code>AggregatorIndex</code>.
+    * @param size The number of <code>Aggregators</code> to copy.
+    */
+   AggregatorIndex(AggregatorIndex other, int size)
+   {
+      this(other.myAggregators.subList(0, size));
+   }
+
+   /**
+    * Adds an <code>Aggregator</code> at the next position.
+    * @param agg An <code>Aggregator</code>.
+    */
+   void add(Aggregator agg)
+   {
+      if (myPositions.put(agg, myAggregators.size()) != null)
+         amIHavingDuplicates = true;
+      myAggregators.add(agg);
+   }
+
+   /**
+    * Returns the number of <code>Aggregators</code>.
+    * @return The number of <code>Aggregators</code>.
+    */
+   int size()
+   {
+      return myAggregators.size();
+   }
+
+   /**
+    * Determines whether the given <code>Aggregator</code> is, or is equal to,
+    * the one at the given position.
+    * @param position The position.
+    * @param agg An <code>Aggregator</code>.
+    * @return <code>true</code> if it matches, <code>false</code> otherwise.
+    */
+   boolean matches(int position, Aggregator agg)
+   {
+      if (position >= myAggregators.size())
+         return false;
+      Aggregator candidate = myAggregators.get(position);
+      return candidate == agg || candidate.equals(agg);
+   }
+
+   /**
+    * Returns the position of the given <code>Aggregator</code>.
+    * @param agg An <code>Aggregator</code>.
+    * @return The position, or <code>-1</code> if not found.
+    */
+   int indexOf(Aggregator agg)
+   {
+      // Callers usually look up the very Aggregators they supplied, which
+      // avoids hashing.  With duplicates, equality decides the position.
+      if (!amIHavingDuplicates)
+      {
+         for (int i = 0; i < myAggregators.size(); i++)
+         {
+            if (myAggregators.get(i) == agg)
+               return i;
+         }
+      }
+      Integer position = myPositions.get(agg);
+      return (position == null) ? -1 : position;
+   }
+}
@@ -0,0 +1,180 @@
+package net.sf.jagg;
+
+import java.util.List;
+
+/**
+ * This class represents the "approximate count distinct" aggregator over any
+ * values.  Unlike the <code>CountDistinctAggregator</code>, it doesn't hold
+ * the distinct values.  It estimates their number with a HyperLogLog sketch,
+ * whose memory is fixed by the precision, and which is merged with a
+ * register-wise maximum in parallel execution and in super aggregation.
+ *
+ * The first property is the property whose distinct values are counted, and
+ * the optional second property is the precision <em>p</em>, from 4 to 18,
+ * which defaults to 14.  The sketch uses 2<sup><em>p</em></sup> bytes, and
+ * its relative standard error is about 1.04 / 2<sup><em>p</em>/2</sup>, e.g.
+ * 0.8% for the default precision.  Up to 2<sup><em>p</em> - 4</sup> distinct
+ * values, the count is exact.
+ *
+ * @see CountDistinctAggregator
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class ApproxCountDistinctAggregator extends Aggregator
+{
+   private HyperLogLog mySketch;
+   private int myPrecision;
+
+   /**
+    * Constructs an <code>ApproxCountDistinctAggregator</code> on the specified
+    * properties, in the format: <code>property[, precision]</code>.
+    * @param properties A specification string in the format:
+    *    <code>property[, precision]</code>.
+    */
+   public ApproxCountDistinctAggregator(String properties)
+   {
+      setProperty(properties);
+   }
+
+   /**
+    * Constructs an <code>ApproxCountDistinctAggregator</code> that operates
+    * on the specified property.
+    * @param property Count this property's distinct values.
+    * @param precision The precision, from 4 to 18.
+    */
+   public ApproxCountDistinctAggregator(String property, int precision)
+   {
+      setProperty(property + "," + precision);
+   }
+
+   /**
+    * Returns an uninitialized copy of this <code>Aggregator</code> object,
+    * with the same property(ies) to analyze.
+    * @return An uninitialized copy of this <code>Aggregator</code> object.
+    */
+   public ApproxCountDistinctAggregator replicate()
+   {
+      return new ApproxCountDistinctAggregator(getProperty(), myPrecision);
+   }
+
+   /**
+    * Extracts a possible precision from the property in the format:
+    * <code>property[, precision]</code>.
+    *
+    * @param property A property name and possible precision.
+    * @throws NumberFormatException If the precision is not an integer.
+    * @throws IllegalArgumentException If the precision is not between 4 and
+    *    18 inclusive.
+    */
+   @Override
+   protected void setProperty(String property)
+   {
+      String[] fields = property.split(",", 2);
+      if (fields.length == 1)
+      {
+         super.setProperty(property);
+         myPrecision = HyperLogLog.DEFAULT_PRECISION;
+      }
+      else
+      {
+         super.setProperty(fields[0].trim());
+         myPrecision = Integer.parseInt(fields[1].trim());
+      }
+      if (myPrecision < HyperLogLog.MIN_PRECISION || myPrecision > HyperLogLog.MAX_PRECISION)
+      {
+         throw new IllegalArgumentException("Second property (precision) must be between " +
+            HyperLogLog.MIN_PRECISION + " and " + HyperLogLog.MAX_PRECISION + " inclusive: " + myPrecision);
+      }
+   }
+
+   /**
+    * Returns the precision.
+    * @return The precision.
+    */
+   public int getPrecision()
+   {
+      return myPrecision;
+   }
+
+   /**
+    * Initialize the sketch to empty.  The sketch itself is reused.
+    */
+   public void init()
+   {
+      if (mySketch == null)
+         mySketch = new HyperLogLog(myPrecision);
+      else
+         mySketch.reset();
+   }
+
+   /**
+    * Add the property's value to the sketch, if it's non-null.
+    *
+    * @param value The value to aggregate.
+    */
+   public void iterate(Object value)
+   {
+      if (value != null)
+      {
+         Object obj = getValueFromProperty(value);
+         // Don't count nulls.
+         if (obj != null)
+         {
+            mySketch.add(obj);
+         }
+      }
+   }
+
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
+   /**
+    * Merge the given <code>Aggregator</code> into this one by merging the
+    * sketches.
+    *
+    * @param agg The <code>Aggregator</code> to merge into this one.
+    */
+   public void merge(Aggregator agg)
+   {
+      if (agg != null && agg instanceof ApproxCountDistinctAggregator)
+      {
+         ApproxCountDistinctAggregator otherAgg = (ApproxCountDistinctAggregator) agg;
+         mySketch.merge(otherAgg.mySketch);
+      }
+   }
+
+   /**
+    * Return the estimated number of distinct values.
+    *
+    * @return The estimated number of distinct values as a <code>Long</code>.
+    */
+   public Long terminate()
+   {
+      return mySketch.cardinality();
+   }
+
+   /**
+    * A <code>String</code> representation of this
+    * <code>ApproxCountDistinctAggregator</code>.  It includes the precision,
+    * so that <code>Aggregators</code> with different precisions are
+    * distinguished.
+    */
+   @Override
+   public String toString()
+   {
+      return getClass().getName() + "(" + getProperty() + "," + myPrecision + ")";
+   }
+}
@@ -0,0 +1,256 @@
+package net.sf.jagg;
+
+import java.util.List;
+
+/**
+ * This class represents the "approximate percentile" aggregator over numeric
+ * values.  Unlike the <code>PercentileAggregator</code>, it doesn't retain
+ * the values.  It summarizes them in a t-digest, which uses memory bounded by
+ * the compression, and which is merged cheaply in parallel execution and in
+ * super aggregation.
+ *
+ * The first property is the desired percentile, between 0 and 1 inclusive,
+ * the second property is the property whose values are aggregated, and the
+ * optional third property is the compression, at least 10, which defaults to
+ * 100.  A higher compression is more accurate and uses more memory.  Up to
+ * five times the compression values, the result is exact, and it matches the
+ * result of a <code>PercentileAggregator</code>.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class ApproxPercentileAggregator extends TwoPropAggregator
+{
+   private TDigest myDigest;
+   private double  myPercentile;
+   private double  myCompression;
+
+   /**
+    * Constructs an <code>ApproxPercentileAggregator</code> on the specified
+    * properties, in the format: <code>percentile, property[, compression]</code>.
+    * @param properties A specification string in the format:
+    *    <code>percentile, property[, compression]</code>.
+    */
+   public ApproxPercentileAggregator(String properties)
+   {
+      setProperty(properties);
+   }
+
+   /**
+    * Constructs an <code>ApproxPercentileAggregator</code> that operates on the
+    * specified properties, with the default compression.
+    * @param percentile The percentile value, between zero and one.
+    * @param property Determine the percentile of this property.
+    */
+   public ApproxPercentileAggregator(double percentile, String property)
+   {
+      this(percentile, property, TDigest.DEFAULT_COMPRESSION);
+   }
+
+   /**
+    * Constructs an <code>ApproxPercentileAggregator</code> that operates on the
+    * specified properties.
+    * @param percentile The percentile value, between zero and one.
+    * @param property Determine the percentile of this property.
+    * @param compression The compression, at least 10.
+    */
+   public ApproxPercentileAggregator(double percentile, String property, double compression)
+   {
+      setProperty("" + percentile + "," + property + "," + compression);
+   }
+
+   /**
+    * Returns an uninitialized copy of this <code>Aggregator</code> object,
+    * with the same property(ies) to analyze.
+    * @return An uninitialized copy of this <code>Aggregator</code> object.
+    */
+   public ApproxPercentileAggregator replicate()
+   {
+      return new ApproxPercentileAggregator(myPercentile, getProperty2(), myCompression);
+   }
+
+   /**
+    * Expects that the first "property" given is the actual desired percentile,
+    * from 0 to 1 inclusive.  The second "property" is the property whose
+    * values are aggregated.  The optional third "property" is the compression.
+    *
+    * @param property The property string, with commas separating the
+    *    percentile, the property, and optionally the compression.
+    * @throws NumberFormatException If the percentile or the compression is
+    *    not a number.
+    * @throws IllegalArgumentException If the percentile is not between 0 and
+    *    1, inclusive, or if the compression is less than 10.
+    * @see Aggregator#getProperty()
+    * @see TwoPropAggregator#getProperty2()
+    */
+   @Override
+   protected void setProperty(String property)
+   {
+      super.setProperty(property);
+      myPercentile = Double.parseDouble(getProperty());
+      if (myPercentile < 0 || myPercentile > 1)
+      {
+         throw new IllegalArgumentException("First property (percentile) must be between 0 and 1 inclusive: " +
+            myPercentile);
+      }
+      if (getProperty2() == null)
+      {
+         throw new IllegalArgumentException("Second property must not be null.");
+      }
+      String[] fields = property.split(",");
+      myCompression = (fields.length >= 3) ? Double.parseDouble(fields[2].trim()) : TDigest.DEFAULT_COMPRESSION;
+      if (!(myCompression >= 10))
+      {
+         throw new IllegalArgumentException("Third property (compression) must be at least 10: " +
+            myCompression);
+      }
+   }
+
+   /**
+    * Returns the compression.
+    * @return The compression.
+    */
+   public double getCompression()
+   {
+      return myCompression;
+   }
+
+   /**
+    * Initialize the digest to empty.  The digest itself is reused.
+    */
+   public void init()
+   {
+      if (myDigest == null)
+         myDigest = new TDigest(myCompression);
+      else
+         myDigest.reset();
+   }
+
+   /**
+    * If the property value is not null, add it to the digest.
+    *
+    * @param value The value to aggregate.
+    */
+   public void iterate(Object value)
+   {
+      if (value != null)
+      {
+         String property = getProperty2();
+
+         try
+         {
+            Number obj = (Number) getValueFromProperty2(value);
+
+            // Don't count nulls.
+            if (obj != null)
+            {
+               myDigest.add(obj.doubleValue());
+            }
+         }
+         catch (ClassCastException e)
+         {
+            throw new UnsupportedOperationException("Property \"" + property +
+               "\" must represent a Number.", e);
+         }
+      }
+   }
+
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
+   /**
+    * Adds the values of the second property to the digest, without boxing
+    * them.
+    *
+    * @param values An array of property values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateDoubles(double[] values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         myDigest.add(values[i]);
+   }
+
+   /**
+    * The first property is the percentile, not a property of the objects, so
+    * this <code>Aggregator</code> may be given values of the second property
+    * in place of the objects, if it's built in.
+    *
+    * @return Whether this <code>Aggregator</code> is built in.
+    * @since 0.7.3
+    */
+   @Override
+   protected boolean isAcceptingPropertyValues()
+   {
+      return isBuiltIn();
+   }
+
+   /**
+    * Merge the given <code>Aggregator</code> into this one by merging the
+    * given <code>Aggregator's</code> digest into this <code>Aggregator's</code>
+    * digest.
+    *
+    * @param agg The <code>Aggregator</code> to merge into this one.
+    */
+   public void merge(Aggregator agg)
+   {
+      if (agg != null && agg instanceof ApproxPercentileAggregator)
+      {
+         ApproxPercentileAggregator otherAgg = (ApproxPercentileAggregator) agg;
+         myDigest.merge(otherAgg.myDigest);
+      }
+   }
+
+   /**
+    * Return the estimated value among the values in the specified property
+    * that matches the given percentile value.
+    *
+    * @return The estimated <code>Double</code> that matches the given
+    *    percentile value, or <code>NaN</code> if no items were processed.
+    */
+   public Double terminate()
+   {
+      return myDigest.quantile(myPercentile);
+   }
+
+   /**
+    * Return the result as a <code>DoubleDouble</code>.  This is used mainly
+    * when other <code>Aggregators</code> that use this result must maintain a
+    * high precision.
+    * @return The estimated <code>DoubleDouble</code> that matches the given
+    *    percentile value, or <code>NaN</code> if no values have been
+    *    accumulated.
+    */
+   public DoubleDouble terminateDoubleDouble()
+   {
+      return new DoubleDouble(myDigest.quantile(myPercentile));
+   }
+
+   /**
+    * A <code>String</code> representation of this
+    * <code>ApproxPercentileAggregator</code>.  It includes the compression,
+    * so that <code>Aggregators</code> with different compressions are
+    * distinguished.
+    */
+   @Override
+   public String toString()
+   {
+      return getClass().getName() + "(" + getProperty() + "," + getProperty2() + "," +
+         myCompression + ")";
+   }
+}
@@ -1,24 +1,44 @@
 package net.sf.jagg;
 
+import java.util.List;
+
 /**
  * This class represents the "avg" aggregator over numeric values.
  *
+ * The optional second property is the <code>NumericPrecision</code> of the
+ * sum, e.g. <code>Avg(value, double)</code>, which defaults to
+ * <code>DOUBLE_DOUBLE</code>.  Values of integral types are summed exactly.
+ *
  * @author Randy Gettman
  * @since 0.1.0
  */
 public class AvgAggregator extends Aggregator
 {
-   private DoubleDouble mySum = new DoubleDouble();
+   private NumericPrecision myPrecision;
+   private NumericSum mySum;
    private long   myCount;
 
    /**
     * Constructs an <code>AvgAggregator</code> that operates on the specified
-    * property.
+    * property, in the format: <code>property[, precision]</code>.
     * @param property Average this property's values.
     */
    public AvgAggregator(String property)
    {
       setProperty(property);
+      mySum = new NumericSum(myPrecision);
+   }
+
+   /**
+    * Constructs an <code>AvgAggregator</code> that operates on the specified
+    * property in the specified precision.
+    * @param property Average this property's values.
+    * @param precision The <code>NumericPrecision</code>.
+    * @since 0.7.3
+    */
+   public AvgAggregator(String property, NumericPrecision precision)
+   {
+      this(property + "," + precision.name());
    }
 
    /**
@@ -28,7 +48,40 @@ public class AvgAggregator extends Aggregator
     */
    public AvgAggregator replicate()
    {
-      return new AvgAggregator(getProperty());
+      return new AvgAggregator(getProperty(), myPrecision);
+   }
+
+   /**
+    * Extracts a possible <code>NumericPrecision</code> from the property in
+    * the format: <code>property[, precision]</code>.
+    *
+    * @param property A property name and possible precision.
+    * @since 0.7.3
+    */
+   @Override
+   protected void setProperty(String property)
+   {
+      int comma = NumericPrecision.indexOfPrecision(property);
+      if (comma < 0)
+      {
+         super.setProperty(property);
+         myPrecision = NumericPrecision.DOUBLE_DOUBLE;
+      }
+      else
+      {
+         super.setProperty(property.substring(0, comma).trim());
+         myPrecision = NumericPrecision.fromName(property.substring(comma + 1));
+      }
+   }
+
+   /**
+    * Returns the <code>NumericPrecision</code>.
+    * @return The <code>NumericPrecision</code>.
+    * @since 0.7.3
+    */
+   public NumericPrecision getPrecision()
+   {
+      return myPrecision;
    }
 
    /**
@@ -52,12 +105,12 @@ public class AvgAggregator extends Aggregator
          String property = getProperty();
          try
          {
-            Number obj = (Number) getValueFromProperty(value, property);
+            Number obj = (Number) getValueFromProperty(value);
             // Don't count nulls.
             if (obj != null)
             {
                myCount++;
-               mySum.addToSelf(obj.doubleValue());
+               mySum.add(obj);
             }
          }
          catch (ClassCastException e)
@@ -68,6 +121,37 @@ public class AvgAggregator extends Aggregator
       }
    }
 
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
+   /**
+    * Adds the values to the sum and counts them, without boxing them.
+    *
+    * @param values An array of property values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateDoubles(double[] values, int start, int end)
+   {
+      mySum.addAll(values, start, end);
+      if (end > start)
+         myCount += end - start;
+   }
+
    /**
     * Merge the given <code>Aggregator</code> into this one by adding counts
     * and sums.
@@ -79,7 +163,7 @@ public class AvgAggregator extends Aggregator
       if (agg != null && agg instanceof AvgAggregator)
       {
          AvgAggregator otherAgg = (AvgAggregator) agg;
-         mySum.addToSelf(otherAgg.mySum);
+         mySum.merge(otherAgg.mySum);
          myCount += otherAgg.myCount;
       }
    }
@@ -107,10 +191,24 @@ public class AvgAggregator extends Aggregator
    {
       if (myCount > 0)
       {
-         DoubleDouble result = new DoubleDouble(mySum);
+         DoubleDouble result = mySum.toDoubleDouble();
          result.divideSelfBy(myCount);
          return result;
       }
       return DoubleDouble.NaN;
    }
+
+   /**
+    * A <code>String</code> representation of this
+    * <code>AvgAggregator</code>.  It includes the precision unless it's the
+    * default, so that <code>Aggregators</code> with different precisions are
+    * distinguished.
+    */
+   @Override
+   public String toString()
+   {
+      if (myPrecision == NumericPrecision.DOUBLE_DOUBLE)
+         return super.toString();
+      return getClass().getName() + "(" + getProperty() + "," + myPrecision + ")";
+   }
 }
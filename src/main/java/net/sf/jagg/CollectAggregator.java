@@ -50,8 +50,7 @@ public class CollectAggregator extends Aggregator
    {
       if (value != null)
       {
-         String property = getProperty();
-         Object obj = getValueFromProperty(value, property);
+         Object obj = getValueFromProperty(value);
          // Don't count nulls.
          if (obj != null)
          {
@@ -60,6 +59,21 @@ public class CollectAggregator extends Aggregator
       }
    }
 
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
    /**
     * Merge the given <code>Aggregator</code> into this one by adding all
     * elements of the other list to this one.
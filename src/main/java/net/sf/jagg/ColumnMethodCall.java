@@ -0,0 +1,49 @@
+package net.sf.jagg;
+
+/**
+ * A <code>ColumnMethodCall</code> is a <code>MethodCall</code> that retrieves
+ * the value of a column from a <code>ColumnarTable.Row</code>, instead of
+ * invoking a <code>Method</code> on that object.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class ColumnMethodCall extends MethodCall
+{
+   private String myColumn;
+
+   /**
+    * Constructs a <code>ColumnMethodCall</code> for a column.
+    * @param column The column name.
+    */
+   public ColumnMethodCall(String column)
+   {
+      super(null, null);
+      myColumn = column;
+   }
+
+   /**
+    * Returns the return type of the <code>MethodCall</code>, which is
+    * <code>Object</code>, because the same column name may hold values of
+    * different types in different <code>ColumnarTables</code>.
+    * @return <code>Object.class</code>.
+    */
+   @Override
+   public Class<?> getReturnType()
+   {
+      return Object.class;
+   }
+
+   /**
+    * Returns the value of the column in the given <code>Row</code>.
+    * @param object The <code>ColumnarTable.Row</code>.
+    * @return The column's value.
+    * @throws IllegalArgumentException If the <code>Row's</code>
+    *    <code>ColumnarTable</code> has no such column.
+    */
+   @Override
+   public Object invoke(Object object)
+   {
+      return ((ColumnarTable.Row) object).getValue(myColumn);
+   }
+}
@@ -0,0 +1,690 @@
+package net.sf.jagg;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * <p>A <code>ColumnarTable</code> holds values in columns of primitive arrays
+ * instead of in one object per row.  Columns may hold <code>ints</code>,
+ * <code>longs</code>, <code>doubles</code>, or <code>Strings</code>, which
+ * are dictionary-encoded as <code>int</code> codes into an array of distinct
+ * <code>Strings</code>.  All columns have the same number of rows.</p>
+ * <p>A <code>ColumnarTable</code> is aggregated with
+ * <code>Aggregation.groupBy(ColumnarTable)</code>, in which the "group by"
+ * properties and the <code>Aggregators'</code> properties are column names.
+ * Rows are grouped by sorting an array of row indexes with primitive
+ * comparisons, and <code>Aggregators</code> of <code>double</code> columns
+ * aggregate contiguous arrays of <code>doubles</code>, so no object is
+ * created per row.  Each resulting <code>AggregateValue</code> refers to the
+ * first <code>Row</code> of its group, whose column values are accessible as
+ * properties, e.g. with <code>AggregateValue.getPropertyValue</code>.</p>
+ * <p>The arrays are not copied, so they must not be modified while the
+ * <code>ColumnarTable</code> is in use.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class ColumnarTable
+{
+   private int myNumRows;
+   private Map<String, Column> myColumns;
+
+   /**
+    * Constructs an empty <code>ColumnarTable</code>, to which columns of the
+    * given number of rows may be added.
+    * @param numRows The number of rows.
+    * @throws IllegalArgumentException If the number of rows is negative.
+    */
+   public ColumnarTable(int numRows)
+   {
+      if (numRows < 0)
+         throw new IllegalArgumentException("Number of rows must not be negative: " + numRows);
+      myNumRows = numRows;
+      myColumns = new LinkedHashMap<String, Column>();
+   }
+
+   /**
+    * Adds a column of <code>ints</code>.
+    * @param name The column name.
+    * @param values The values, one per row.
+    * @return This <code>ColumnarTable</code>.
+    * @throws IllegalArgumentException If the name is already used, or if the
+    *    number of values doesn't match the number of rows.
+    */
+   public ColumnarTable addColumn(String name, int[] values)
+   {
+      checkLength(name, values.length);
+      return addColumn(name, new IntColumn(values));
+   }
+
+   /**
+    * Adds a column of <code>longs</code>.
+    * @param name The column name.
+    * @param values The values, one per row.
+    * @return This <code>ColumnarTable</code>.
+    * @throws IllegalArgumentException If the name is already used, or if the
+    *    number of values doesn't match the number of rows.
+    */
+   public ColumnarTable addColumn(String name, long[] values)
+   {
+      checkLength(name, values.length);
+      return addColumn(name, new LongColumn(values));
+   }
+
+   /**
+    * Adds a column of <code>doubles</code>.
+    * @param name The column name.
+    * @param values The values, one per row.
+    * @return This <code>ColumnarTable</code>.
+    * @throws IllegalArgumentException If the name is already used, or if the
+    *    number of values doesn't match the number of rows.
+    */
+   public ColumnarTable addColumn(String name, double[] values)
+   {
+      checkLength(name, values.length);
+      return addColumn(name, new DoubleColumn(values));
+   }
+
+   /**
+    * Adds a column of <code>Strings</code>, dictionary-encoding them.
+    * @param name The column name.
+    * @param values The values, one per row, which may be <code>null</code>.
+    * @return This <code>ColumnarTable</code>.
+    * @throws IllegalArgumentException If the name is already used, or if the
+    *    number of values doesn't match the number of rows.
+    */
+   public ColumnarTable addColumn(String name, String[] values)
+   {
+      checkLength(name, values.length);
+      Map<String, Integer> codesByValue = new HashMap<String, Integer>();
+      List<String> dictionary = new ArrayList<String>();
+      int[] codes = new int[values.length];
+      for (int i = 0; i < values.length; i++)
+      {
+         String value = values[i];
+         if (value == null)
+         {
+            codes[i] = -1;
+            continue;
+         }
+         Integer code = codesByValue.get(value);
+         if (code == null)
+         {
+            code = dictionary.size();
+            codesByValue.put(value, code);
+            dictionary.add(value);
+         }
+         codes[i] = code;
+      }
+      return addColumn(name, new StringColumn(codes, dictionary.toArray(new String[dictionary.size()])));
+   }
+
+   /**
+    * Adds a column of already dictionary-encoded <code>Strings</code>.
+    * @param name The column name.
+    * @param codes The codes, one per row, each an index into the dictionary,
+    *    or <code>-1</code> for <code>null</code>.
+    * @param dictionary The dictionary of non-<code>null</code>
+    *    <code>Strings</code>.
+    * @return This <code>ColumnarTable</code>.
+    * @throws IllegalArgumentException If the name is already used, if the
+    *    number of codes doesn't match the number of rows, if a code is out of
+    *    range, or if the dictionary contains <code>null</code>.
+    */
+   public ColumnarTable addColumn(String name, int[] codes, String[] dictionary)
+   {
+      checkLength(name, codes.length);
+      for (String value : dictionary)
+      {
+         if (value == null)
+            throw new IllegalArgumentException("Dictionary of column \"" + name + "\" must not contain null.");
+      }
+      for (int code : codes)
+      {
+         if (code < -1 || code >= dictionary.length)
+            throw new IllegalArgumentException("Code " + code + " of column \"" + name + "\" is out of range.");
+      }
+      return addColumn(name, new StringColumn(codes, dictionary));
+   }
+
+   /**
+    * Returns the number of rows.
+    * @return The number of rows.
+    */
+   public int getNumRows()
+   {
+      return myNumRows;
+   }
+
+   /**
+    * Returns the column names, in the order in which they were added.
+    * @return A <code>List</code> of column names.
+    */
+   public List<String> getColumnNames()
+   {
+      return new ArrayList<String>(myColumns.keySet());
+   }
+
+   /**
+    * Returns the value of the given column in the given row, boxed.
+    * @param column The column name.
+    * @param row The row index.
+    * @return The value.
+    * @throws IllegalArgumentException If there is no such column.
+    */
+   public Object getValue(String column, int row)
+   {
+      Column col = myColumns.get(column);
+      if (col == null)
+         throw new IllegalArgumentException("No column named \"" + column + "\".");
+      return col.getValue(row);
+   }
+
+   /**
+    * Returns a <code>Row</code> of this <code>ColumnarTable</code>.
+    * @param row The row index.
+    * @return A <code>Row</code>.
+    * @throws IndexOutOfBoundsException If there is no such row.
+    */
+   public Row getRow(int row)
+   {
+      if (row < 0 || row >= myNumRows)
+         throw new IndexOutOfBoundsException("Row " + row + " of " + myNumRows);
+      return new Row(this, row);
+   }
+
+   /**
+    * Returns the column with the given name.
+    * @param name The column name.
+    * @return The <code>Column</code>, or <code>null</code> if there is no
+    *    such column.
+    */
+   Column getColumn(String name)
+   {
+      return myColumns.get(name);
+   }
+
+   /**
+    * Returns a <code>List</code> view of the <code>Rows</code> in the given
+    * order.  Each <code>Row</code> is created as it's accessed.
+    * @param order The row indexes.
+    * @return A <code>List</code> of <code>Rows</code>.
+    */
+   List<Row> getRows(int[] order)
+   {
+      return new RowList(order);
+   }
+
+   /**
+    * Sorts the row indexes by the given columns, stably, so that rows that
+    * are equal in all the given columns remain in their original order.
+    * @param keys The columns to sort by.
+    * @return The row indexes, in sorted order.
+    */
+   int[] sortRows(Column[] keys)
+   {
+      int[] order = new int[myNumRows];
+      for (int i = 0; i < myNumRows; i++)
+         order[i] = i;
+      if (keys.length > 0)
+         mergeSort(order.clone(), order, 0, myNumRows, keys);
+      return order;
+   }
+
+   /**
+    * Compares two rows by the given columns.
+    * @param keys The columns to compare.
+    * @param row1 The first row index.
+    * @param row2 The second row index.
+    * @return A negative number, zero, or a positive number if the first row
+    *    sorts before, the same as, or after the second row.
+    */
+   static int compareRows(Column[] keys, int row1, int row2)
+   {
+      for (Column key : keys)
+      {
+         int comp = key.compare(row1, row2);
+         if (comp != 0)
+            return comp;
+      }
+      return 0;
+   }
+
+   /**
+    * Sorts <code>dest[low]</code> through <code>dest[high - 1]</code>, using
+    * <code>src</code>, which starts out with the same contents, as scratch
+    * space.  This is a top-down merge sort that alternates between the two
+    * arrays and uses insertion sort on small ranges.
+    * @param src The scratch array.
+    * @param dest The array to sort.
+    * @param low The index of the first element, inclusive.
+    * @param high The index after the last element, exclusive.
+    * @param keys The columns to sort by.
+    */
+   private static void mergeSort(int[] src, int[] dest, int low, int high, Column[] keys)
+   {
+      int length = high - low;
+      if (length < 7)
+      {
+         for (int i = low + 1; i < high; i++)
+         {
+            int row = dest[i];
+            int j = i;
+            while (j > low && compareRows(keys, dest[j - 1], row) > 0)
+            {
+               dest[j] = dest[j - 1];
+               j--;
+            }
+            dest[j] = row;
+         }
+         return;
+      }
+      int mid = (low + high) >>> 1;
+      mergeSort(dest, src, low, mid, keys);
+      mergeSort(dest, src, mid, high, keys);
+      // Already in order; just copy.
+      if (compareRows(keys, src[mid - 1], src[mid]) <= 0)
+      {
+         System.arraycopy(src, low, dest, low, length);
+         return;
+      }
+      for (int i = low, p = low, q = mid; i < high; i++)
+      {
+         if (q >= high || (p < mid && compareRows(keys, src[p], src[q]) <= 0))
+            dest[i] = src[p++];
+         else
+            dest[i] = src[q++];
+      }
+   }
+
+   /**
+    * Adds a column.
+    * @param name The column name.
+    * @param column The <code>Column</code>.
+    * @return This <code>ColumnarTable</code>.
+    * @throws IllegalArgumentException If the name is already used.
+    */
+   private ColumnarTable addColumn(String name, Column column)
+   {
+      if (myColumns.containsKey(name))
+         throw new IllegalArgumentException("Column \"" + name + "\" already exists.");
+      myColumns.put(name, column);
+      return this;
+   }
+
+   /**
+    * Ensures that a column's number of values matches the number of rows.
+    * @param name The column name.
+    * @param length The number of values.
+    * @throws IllegalArgumentException If the number of values doesn't match.
+    */
+   private void checkLength(String name, int length)
+   {
+      if (length != myNumRows)
+      {
+         throw new IllegalArgumentException("Column \"" + name + "\" has " + length +
+            " values, but there are " + myNumRows + " rows.");
+      }
+   }
+
+   /**
+    * A <code>Row</code> is a view of one row of a <code>ColumnarTable</code>.
+    * Its column values are accessible as properties by column name, e.g. by
+    * <code>Aggregators</code>, <code>AggregateValue.getPropertyValue</code>,
+    * and <code>Aggregator.getValueFromProperty</code>.
+    */
+   public static final class Row
+   {
+      private final ColumnarTable myTable;
+      private final int myIndex;
+
+      /**
+       * Constructs a <code>Row</code>.
+       * @param table The <code>ColumnarTable</code>.
+       * @param index The row index.
+       */
+      private Row(ColumnarTable table, int index)
+      {
+         myTable = table;
+         myIndex = index;
+      }
+
+      /**
+       * Returns the <code>ColumnarTable</code>.
+       * @return The <code>ColumnarTable</code>.
+       */
+      public ColumnarTable getTable()
+      {
+         return myTable;
+      }
+
+      /**
+       * Returns the row index.
+       * @return The row index.
+       */
+      public int getIndex()
+      {
+         return myIndex;
+      }
+
+      /**
+       * Returns the value of the given column in this row, boxed.
+       * @param column The column name.
+       * @return The value.
+       * @throws IllegalArgumentException If there is no such column.
+       */
+      public Object getValue(String column)
+      {
+         return myTable.getValue(column, myIndex);
+      }
+
+      /**
+       * <code>Rows</code> are equal if they are the same row of the same
+       * <code>ColumnarTable</code>.
+       * @param obj Another object.
+       * @return <code>true</code> if equal, <code>false</code> otherwise.
+       */
+      @Override
+      public boolean equals(Object obj)
+      {
+         if (!(obj instanceof Row))
+            return false;
+         Row other = (Row) obj;
+         return myTable == other.myTable && myIndex == other.myIndex;
+      }
+
+      /**
+       * Returns a hash code consistent with <code>equals</code>.
+       * @return A hash code.
+       */
+      @Override
+      public int hashCode()
+      {
+         return 31 * System.identityHashCode(myTable) + myIndex;
+      }
+
+      /**
+       * Returns a <code>String</code> representation of the column values.
+       * @return A <code>String</code> representation.
+       */
+      @Override
+      public String toString()
+      {
+         StringBuilder buf = new StringBuilder("Row(");
+         boolean first = true;
+         for (Map.Entry<String, Column> entry : myTable.myColumns.entrySet())
+         {
+            if (!first)
+               buf.append(", ");
+            buf.append(entry.getKey()).append("=").append(entry.getValue().getValue(myIndex));
+            first = false;
+         }
+         return buf.append(")").toString();
+      }
+   }
+
+   /**
+    * A <code>RowList</code> is a read-only view of <code>Rows</code> in a
+    * given order.
+    */
+   private class RowList extends AbstractList<Row> implements RandomAccess
+   {
+      private final int[] myOrder;
+
+      /**
+       * Constructs a <code>RowList</code>.
+       * @param order The row indexes.
+       */
+      private RowList(int[] order)
+      {
+         myOrder = order;
+      }
+
+      @Override
+      public Row get(int index)
+      {
+         return new Row(ColumnarTable.this, myOrder[index]);
+      }
+
+      @Override
+      public int size()
+      {
+         return myOrder.length;
+      }
+   }
+
+   /**
+    * A <code>Column</code> holds the values of one column.
+    */
+   abstract static class Column
+   {
+      /**
+       * Returns the value in the given row, boxed.
+       * @param row The row index.
+       * @return The value.
+       */
+      abstract Object getValue(int row);
+
+      /**
+       * Compares the values in two rows, consistently with the values'
+       * <code>compareTo</code> methods, with <code>nulls</code> last.
+       * @param row1 The first row index.
+       * @param row2 The second row index.
+       * @return A negative number, zero, or a positive number if the first
+       *    value sorts before, the same as, or after the second value.
+       */
+      abstract int compare(int row1, int row2);
+
+      /**
+       * Returns a read-only <code>List</code> view of the values in the
+       * given order, boxing each value as it's accessed.
+       * @param order The row indexes.
+       * @return A <code>List</code> of values.
+       */
+      List<Object> getValues(int[] order)
+      {
+         return new ValueList(order);
+      }
+
+      /**
+       * A <code>ValueList</code> is a read-only view of a
+       * <code>Column's</code> values in a given order.
+       */
+      private class ValueList extends AbstractList<Object> implements RandomAccess
+      {
+         private final int[] myOrder;
+
+         /**
+          * Constructs a <code>ValueList</code>.
+          * @param order The row indexes.
+          */
+         private ValueList(int[] order)
+         {
+            myOrder = order;
+         }
+
+         @Override
+         public Object get(int index)
+         {
+            return getValue(myOrder[index]);
+         }
+
+         @Override
+         public int size()
+         {
+            return myOrder.length;
+         }
+      }
+   }
+
+   /**
+    * A column of <code>ints</code>.
+    */
+   static final class IntColumn extends Column
+   {
+      private final int[] myValues;
+
+      IntColumn(int[] values)
+      {
+         myValues = values;
+      }
+
+      @Override
+      Object getValue(int row)
+      {
+         return myValues[row];
+      }
+
+      @Override
+      int compare(int row1, int row2)
+      {
+         int value1 = myValues[row1];
+         int value2 = myValues[row2];
+         return (value1 < value2) ? -1 : ((value1 == value2) ? 0 : 1);
+      }
+   }
+
+   /**
+    * A column of <code>longs</code>.
+    */
+   static final class LongColumn extends Column
+   {
+      private final long[] myValues;
+
+      LongColumn(long[] values)
+      {
+         myValues = values;
+      }
+
+      @Override
+      Object getValue(int row)
+      {
+         return myValues[row];
+      }
+
+      @Override
+      int compare(int row1, int row2)
+      {
+         long value1 = myValues[row1];
+         long value2 = myValues[row2];
+         return (value1 < value2) ? -1 : ((value1 == value2) ? 0 : 1);
+      }
+   }
+
+   /**
+    * A column of <code>doubles</code>.
+    */
+   static final class DoubleColumn extends Column
+   {
+      private final double[] myValues;
+
+      DoubleColumn(double[] values)
+      {
+         myValues = values;
+      }
+
+      @Override
+      Object getValue(int row)
+      {
+         return myValues[row];
+      }
+
+      @Override
+      int compare(int row1, int row2)
+      {
+         return Double.compare(myValues[row1], myValues[row2]);
+      }
+
+      /**
+       * Gathers the values in the given order into a new contiguous array.
+       * @param order The row indexes.
+       * @return An array of the values.
+       */
+      double[] gather(int[] order)
+      {
+         double[] gathered = new double[order.length];
+         for (int i = 0; i < order.length; i++)
+            gathered[i] = myValues[order[i]];
+         return gathered;
+      }
+   }
+
+   /**
+    * A column of dictionary-encoded <code>Strings</code>.  Rows are compared
+    * by the ranks of their codes in the sorted dictionary, so no
+    * <code>Strings</code> are compared while sorting rows.
+    */
+   static final class StringColumn extends Column
+   {
+      private final int[] myCodes;
+      private final String[] myDictionary;
+      private final int[] myRanks;
+
+      StringColumn(int[] codes, String[] dictionary)
+      {
+         myCodes = codes;
+         myDictionary = dictionary;
+         myRanks = getRanks(dictionary);
+      }
+
+      @Override
+      Object getValue(int row)
+      {
+         int code = myCodes[row];
+         return (code < 0) ? null : myDictionary[code];
+      }
+
+      @Override
+      int compare(int row1, int row2)
+      {
+         int rank1 = getRank(myCodes[row1]);
+         int rank2 = getRank(myCodes[row2]);
+         return (rank1 < rank2) ? -1 : ((rank1 == rank2) ? 0 : 1);
+      }
+
+      /**
+       * Returns the rank of a code, with <code>null</code> ranked last.
+       * @param code The code.
+       * @return The rank.
+       */
+      private int getRank(int code)
+      {
+         return (code < 0) ? Integer.MAX_VALUE : myRanks[code];
+      }
+
+      /**
+       * Ranks the dictionary's codes by their <code>Strings'</code> natural
+       * order, giving equal <code>Strings</code> equal ranks.
+       * @param dictionary The dictionary.
+       * @return The rank of each code.
+       */
+      private static int[] getRanks(final String[] dictionary)
+      {
+         Integer[] sorted = new Integer[dictionary.length];
+         for (int i = 0; i < sorted.length; i++)
+            sorted[i] = i;
+         Arrays.sort(sorted, new Comparator<Integer>() {
+            public int compare(Integer code1, Integer code2)
+            {
+               return dictionary[code1].compareTo(dictionary[code2]);
+            }
+         });
+         int[] ranks = new int[dictionary.length];
+         int rank = 0;
+         for (int i = 0; i < sorted.length; i++)
+         {
+            if (i > 0 && !dictionary[sorted[i]].equals(dictionary[sorted[i - 1]]))
+               rank++;
+            ranks[sorted[i]] = rank;
+         }
+         return ranks;
+      }
+   }
+}
@@ -1,5 +1,7 @@
 package net.sf.jagg;
 
+import java.util.List;
+
 /**
  * This class represents the "concatenation" aggregator over any values for
  * which <code>toString</code> is well-defined, with an optional separator
@@ -97,9 +99,7 @@ public class ConcatAggregator extends Aggregator
       if (value != null)
       {
          // Value.
-         String property = getProperty();
-
-         Object obj = getValueFromProperty(value, property);
+         Object obj = getValueFromProperty(value);
          // Don't count nulls.
          if (obj != null)
          {
@@ -113,6 +113,21 @@ public class ConcatAggregator extends Aggregator
       }
    }
 
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
    /**
     * Merge the given <code>Aggregator</code> into this one.  Any separator
     * <code>String</code> will be maintained by this
@@ -1,5 +1,7 @@
 package net.sf.jagg;
 
+import java.util.List;
+
 /**
  * This class represents the "coefficient of correlation" aggregator over two
  * sets of numeric values.
@@ -78,6 +80,22 @@ public class CorrelationAggregator extends TwoPropAggregator
       mySecondVarAgg.iterate(value);
    }
 
+   /**
+    * Iterate the internal aggregators over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      myCovarianceAgg.iterateRange(values, start, end);
+      myFirstVarAgg.iterateRange(values, start, end);
+      mySecondVarAgg.iterateRange(values, start, end);
+   }
+
    /**
     * Merge the given <code>Aggregator</code> into this one by merging each
     * individual internal <code>Aggregator</code>.
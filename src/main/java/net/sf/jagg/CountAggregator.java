@@ -1,5 +1,7 @@
 package net.sf.jagg;
 
+import java.util.List;
+
 /**
  * This class represents the "count" aggregator over any values.
  *
@@ -64,7 +66,7 @@ public class CountAggregator extends Aggregator
          }
          else
          {
-            Object obj = getValueFromProperty(value, property);
+            Object obj = getValueFromProperty(value);
             // Don't count nulls.
             if (obj != null)
             {
@@ -74,6 +76,36 @@ public class CountAggregator extends Aggregator
       }
    }
 
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
+   /**
+    * Counts the values, which are never null.
+    *
+    * @param values An array of property values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateDoubles(double[] values, int start, int end)
+   {
+      if (end > start)
+         myCount += end - start;
+   }
+
    /**
     * Merge the given <code>Aggregator</code> into this one by adding the
     * counts.
@@ -0,0 +1,173 @@
+package net.sf.jagg;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class represents the "count distinct" aggregator over any values.  It
+ * counts the distinct non-null values exactly, so it holds every distinct
+ * value.  Values of primitive numeric types are compared by value, so that
+ * e.g. an <code>Integer</code> and a <code>Double</code> with the same value
+ * are the same, and they are held as primitive <code>longs</code> in a
+ * <code>LongHashSet</code>, without boxing.  Other values are held in a
+ * <code>HashSet</code>.
+ *
+ * @see ApproxCountDistinctAggregator
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class CountDistinctAggregator extends Aggregator
+{
+   // Integral values.
+   private LongHashSet myLongs;
+   // The bits of non-integral floating-point values.
+   private LongHashSet myDoubleBits;
+   private Set<Object> myObjects;
+
+   /**
+    * Constructs a <code>CountDistinctAggregator</code> that operates on the
+    * specified property.
+    * @param property Count this property's distinct values.
+    */
+   public CountDistinctAggregator(String property)
+   {
+      setProperty(property);
+   }
+
+   /**
+    * Returns an uninitialized copy of this <code>Aggregator</code> object,
+    * with the same property(ies) to analyze.
+    * @return An uninitialized copy of this <code>Aggregator</code> object.
+    */
+   public CountDistinctAggregator replicate()
+   {
+      return new CountDistinctAggregator(getProperty());
+   }
+
+   /**
+    * Initialize the sets of distinct values to empty.
+    */
+   public void init()
+   {
+      myLongs = new LongHashSet();
+      myDoubleBits = new LongHashSet();
+      myObjects = new HashSet<Object>();
+   }
+
+   /**
+    * Add the property's value to the appropriate set of distinct values, if
+    * it's non-null.
+    *
+    * @param value The value to aggregate.
+    */
+   public void iterate(Object value)
+   {
+      if (value != null)
+      {
+         Object obj = getValueFromProperty(value);
+         // Don't count nulls.
+         if (obj != null)
+         {
+            if (obj instanceof Number)
+               add((Number) obj);
+            else
+               myObjects.add(obj);
+         }
+      }
+   }
+
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
+   /**
+    * Merge the given <code>Aggregator</code> into this one by adding all of
+    * its distinct values to this one's sets.
+    *
+    * @param agg The <code>Aggregator</code> to merge into this one.
+    */
+   public void merge(Aggregator agg)
+   {
+      if (agg != null && agg instanceof CountDistinctAggregator)
+      {
+         CountDistinctAggregator otherAgg = (CountDistinctAggregator) agg;
+         myLongs.addAll(otherAgg.myLongs);
+         myDoubleBits.addAll(otherAgg.myDoubleBits);
+         myObjects.addAll(otherAgg.myObjects);
+      }
+   }
+
+   /**
+    * Return the number of distinct values.
+    *
+    * @return The number of distinct values as a <code>Long</code>.
+    */
+   public Long terminate()
+   {
+      return (long) (myLongs.size() + myDoubleBits.size() + myObjects.size());
+   }
+
+   /**
+    * Adds a numeric value to the appropriate set.  Integral values, whether
+    * stored in an integral type or a floating-point type, are held as
+    * <code>longs</code>.  Other <code>Doubles</code> and <code>Floats</code>
+    * are held as the bits of their <code>double</code> value.  Any other
+    * <code>Numbers</code>, e.g. <code>BigDecimals</code>, are held in the
+    * <code>HashSet</code>.
+    * @param number The value.
+    */
+   private void add(Number number)
+   {
+      if (isIntegral(number))
+         myLongs.add(number.longValue());
+      else if (number instanceof Double || number instanceof Float)
+      {
+         double d = number.doubleValue();
+         if (isIntegral(d))
+            myLongs.add((long) d);
+         else
+            myDoubleBits.add(Double.doubleToLongBits(d));
+      }
+      else
+         myObjects.add(number);
+   }
+
+   /**
+    * Determines whether the given value is of a primitive integral type,
+    * whose value is exactly a <code>long</code>.
+    * @param value The value.
+    * @return <code>true</code> if it's a <code>Long</code>,
+    *    <code>Integer</code>, <code>Short</code>, or <code>Byte</code>,
+    *    <code>false</code> otherwise.
+    */
+   static boolean isIntegral(Object value)
+   {
+      return value instanceof Long || value instanceof Integer ||
+         value instanceof Short || value instanceof Byte;
+   }
+
+   /**
+    * Determines whether the given <code>double</code> holds an integral value
+    * within the range of a <code>long</code>.  Both zeroes are integral.
+    * @param d The value.
+    * @return <code>true</code> if it's exactly a <code>long</code> value,
+    *    <code>false</code> otherwise.
+    */
+   static boolean isIntegral(double d)
+   {
+      return d >= -9.223372036854775808E18 && d < 9.223372036854775808E18 && d == Math.floor(d);
+   }
+}
@@ -25,6 +25,9 @@ public strictfp class DoubleDouble implements Comparable<DoubleDouble>
 
    private double myHigh;
    private double myLow;
+   // Holds intermediate results of division and roots, so that they don't
+   // allocate; created when first needed.
+   private DoubleDouble myScratch;
 
    /**
     * Create a <code>DoubleDouble</code>, initialized to zero.
@@ -74,6 +77,32 @@ public strictfp class DoubleDouble implements Comparable<DoubleDouble>
       myLow = 0;
    }
 
+   /**
+    * Sets this <code>DoubleDouble</code> equal to a <code>double</code>, as
+    * if constructed from it.  This allows a <code>DoubleDouble</code> to be
+    * reused for temporary results instead of creating another one.
+    * @param d A <code>double</code>.
+    * @since 0.7.3
+    */
+   public void set(double d)
+   {
+      myHigh = d;
+      myLow = 0;
+   }
+
+   /**
+    * Sets this <code>DoubleDouble</code> equal to another one, as if copied
+    * from it.  This allows a <code>DoubleDouble</code> to be reused for
+    * temporary results instead of creating another one.
+    * @param dd Another <code>DoubleDouble</code>.
+    * @since 0.7.3
+    */
+   public void set(DoubleDouble dd)
+   {
+      myHigh = dd.myHigh;
+      myLow = dd.myLow;
+   }
+
    /**
     * Returns the <code>double</code> that is closest in value to this
     * <code>DoubleDouble</code>.
@@ -108,20 +137,30 @@ public strictfp class DoubleDouble implements Comparable<DoubleDouble>
     * @param dd Another <code>DoubleDouble</code>.
     */
    public void addToSelf(DoubleDouble dd)
+   {
+      addToSelf(dd.myHigh, dd.myLow);
+   }
+
+   /**
+    * Adds a <code>DoubleDouble</code>, given by its parts, to this one.
+    * @param hi The high-order part.
+    * @param lo The low-order part.
+    */
+   private void addToSelf(double hi, double lo)
    {
       if (isNaN())
          return;
       // Algorithm is based on "Algorithms for Quad-Double Precision Floating
       // Point Arithmetic" by Hida, Li, and Bailey, 2000, Berkeley.
       double e, e2, e3, f, s0, s1, v;
-      // Two Sum: "a" is myHigh, "b" is dd.myHigh, "s" is s0, "e" is e.
-      s0 = myHigh + dd.myHigh;
+      // Two Sum: "a" is myHigh, "b" is hi, "s" is s0, "e" is e.
+      s0 = myHigh + hi;
       v = s0 - myHigh;
-      e = (myHigh - (s0 - v)) + (dd.myHigh - v);
-      // Two Sum: "a" is myLow, "b" is dd.myLow, "s" is f, "e" is e2.
-      f = myLow + dd.myLow;
+      e = (myHigh - (s0 - v)) + (hi - v);
+      // Two Sum: "a" is myLow, "b" is lo, "s" is f, "e" is e2.
+      f = myLow + lo;
       v = f - myLow;
-      e2 = (myLow - (f - v)) + (dd.myLow - v);
+      e2 = (myLow - (f - v)) + (lo - v);
       // Two Sum: "a" is f, "b" is e, "s" is s1, "e" is e3.
       s1 = f + e;
       v = s1 - f;
@@ -163,9 +202,7 @@ public strictfp class DoubleDouble implements Comparable<DoubleDouble>
     */
    public void subtractFromSelf(DoubleDouble dd)
    {
-      DoubleDouble negative = new DoubleDouble(dd);
-      negative.negateSelf();
-      addToSelf(negative);
+      addToSelf(-dd.myHigh, -dd.myLow);
    }
 
    /**
@@ -347,7 +384,8 @@ public strictfp class DoubleDouble implements Comparable<DoubleDouble>
       DoubleDouble r;
       x = 1.0 / dd.myHigh;
       y = myHigh * x;
-      r = new DoubleDouble(dd);
+      r = getScratch();
+      r.set(dd);
       r.multiplySelfBy(y);
       r.negateSelf();
       r.addToSelf(this);
@@ -369,7 +407,8 @@ public strictfp class DoubleDouble implements Comparable<DoubleDouble>
       DoubleDouble r;
       x = 1.0 / d;
       y = myHigh * x;
-      r = new DoubleDouble(d);
+      r = getScratch();
+      r.set(d);
       r.multiplySelfBy(y);
       r.negateSelf();
       r.addToSelf(this);
@@ -390,7 +429,8 @@ public strictfp class DoubleDouble implements Comparable<DoubleDouble>
       DoubleDouble r;
       x = 1.0 / Math.sqrt(myHigh);
       y = myHigh * x;
-      r = new DoubleDouble(y);
+      r = getScratch();
+      r.set(y);
       r.squareSelf();
       r.negateSelf();
       r.addToSelf(this);
@@ -470,7 +510,8 @@ public strictfp class DoubleDouble implements Comparable<DoubleDouble>
       DoubleDouble r;
       x = Math.pow(myHigh, (1.0 - n) / n);
       y = myHigh * x;
-      r = new DoubleDouble(y);
+      r = getScratch();
+      r.set(y);
       r.powSelf(n);
       r.negateSelf();
       r.addToSelf(this);
@@ -482,6 +523,17 @@ public strictfp class DoubleDouble implements Comparable<DoubleDouble>
       myLow = r.myLow;
    }
 
+   /**
+    * Returns the scratch <code>DoubleDouble</code>, creating it if necessary.
+    * @return The scratch <code>DoubleDouble</code>.
+    */
+   private DoubleDouble getScratch()
+   {
+      if (myScratch == null)
+         myScratch = new DoubleDouble();
+      return myScratch;
+   }
+
    /**
     * Normalize this <code>Double</code> following an arithmetic computation.
     * @param s0 The high order term.
@@ -586,6 +638,8 @@ public strictfp class DoubleDouble implements Comparable<DoubleDouble>
       public void nthRootSelf(long n) { notSupported(); }
       public void powSelf(long n) { notSupported(); }
       public void reset() { notSupported(); }
+      public void set(double d) { notSupported(); }
+      public void set(DoubleDouble dd) { notSupported(); }
       public void sqrtSelf() { notSupported(); }
       public void squareSelf() { notSupported(); }
       public void subtractFromSelf(DoubleDouble dd) { notSupported(); }
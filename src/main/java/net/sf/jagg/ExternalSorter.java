@@ -0,0 +1,436 @@
+package net.sf.jagg;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * <p>An <code>ExternalSorter</code> sorts values that may not all fit in
+ * memory at once.  Values are read into memory in <em>runs</em> of at most a
+ * given number of values.  Each full run is sorted and spilled to a temporary
+ * file, using Java serialization over a <code>FileChannel</code>.  Finally,
+ * the spilled runs and the last, partial run, which is kept in memory, are
+ * merged with a k-way merge, which supplies the values in sorted order
+ * through an <code>Iterator</code>.</p>
+ * <p>The sort is stable, as is <code>Collections.sort</code>: values that
+ * compare equal are supplied in the order in which they were read.  If all
+ * values fit in one run, then nothing is spilled.  The values must be
+ * <code>Serializable</code> if anything is spilled, and spilled values are
+ * supplied as deserialized copies.  Temporary files are deleted when the
+ * values are exhausted or when <code>close</code> is called, which the
+ * caller must do, e.g. in a <code>finally</code> block; they are not
+ * registered for deletion on exit.</p>
+ *
+ * @param <T> The type of values to sort.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+class ExternalSorter<T>
+{
+   // How often to reset each ObjectOutputStream, so that it doesn't retain
+   // references to every object it has written.
+   private static final int RESET_INTERVAL = 1000;
+
+   private Comparator<? super T> myComparator;
+   private int myRunSize;
+   private File myDirectory;
+   private List<RunReader<T>> myReaders;
+
+   /**
+    * Constructs an <code>ExternalSorter</code>.
+    * @param comparator The <code>Comparator</code> that determines the order.
+    * @param runSize The maximum number of values to hold in memory in one
+    *    run.
+    * @param directory The directory in which to create temporary files, or
+    *    <code>null</code> to use the default temporary directory.
+    */
+   public ExternalSorter(Comparator<? super T> comparator, int runSize, File directory)
+   {
+      myComparator = comparator;
+      myRunSize = runSize;
+      myDirectory = directory;
+      myReaders = new ArrayList<RunReader<T>>();
+   }
+
+   /**
+    * Consumes all of the given values, spilling sorted runs to temporary
+    * files as necessary, and returns an <code>Iterator</code> that supplies
+    * the values in sorted order.
+    * @param values An <code>Iterator</code> over the values to sort.
+    * @return An <code>Iterator</code> over the sorted values.
+    * @throws UnsupportedOperationException If a run couldn't be spilled to
+    *    disk, e.g. because the values are not <code>Serializable</code>.
+    */
+   public Iterator<T> sort(Iterator<? extends T> values)
+   {
+      List<T> run = new ArrayList<T>();
+      while (values.hasNext())
+      {
+         run.add(values.next());
+         if (run.size() >= myRunSize && values.hasNext())
+         {
+            Collections.sort(run, myComparator);
+            myReaders.add(spill(run));
+            run.clear();
+         }
+      }
+      Collections.sort(run, myComparator);
+      if (myReaders.isEmpty())
+         return run.iterator();
+      myReaders.add(new MemoryRunReader<T>(run));
+      return new MergeIterator();
+   }
+
+   /**
+    * Closes and deletes any temporary files that remain.
+    */
+   public void close()
+   {
+      for (RunReader<T> reader : myReaders)
+         reader.close();
+      myReaders.clear();
+   }
+
+   /**
+    * Writes the given sorted run to a new temporary file.
+    * @param run The sorted run.
+    * @return A <code>RunReader</code> that reads the run back from the file.
+    * @throws UnsupportedOperationException If the run couldn't be written.
+    */
+   private RunReader<T> spill(List<T> run)
+   {
+      File file = null;
+      ObjectOutputStream out = null;
+      boolean written = false;
+      try
+      {
+         // Not deleteOnExit, whose list of files would grow for the life of
+         // the JVM; the file is deleted by the FileRunReader, or below.
+         file = File.createTempFile("jagg", ".run", myDirectory);
+         FileOutputStream fos = new FileOutputStream(file);
+         out = new ObjectOutputStream(new BufferedOutputStream(Channels.newOutputStream(fos.getChannel())));
+         int size = run.size();
+         out.writeInt(size);
+         for (int i = 0; i < size; i++)
+         {
+            out.writeObject(run.get(i));
+            if ((i + 1) % RESET_INTERVAL == 0)
+               out.reset();
+         }
+         out.close();
+         out = null;
+         written = true;
+         return new FileRunReader<T>(file, size);
+      }
+      catch (NotSerializableException e)
+      {
+         throw new UnsupportedOperationException("Values must be Serializable to be spilled to disk: " +
+            e.getMessage(), e);
+      }
+      catch (IOException e)
+      {
+         throw new UnsupportedOperationException(e.getClass().getName() +
+            " caught while spilling to disk.", e);
+      }
+      finally
+      {
+         if (out != null)
+         {
+            try
+            {
+               out.close();
+            }
+            catch (IOException ignored) {}
+         }
+         if (!written && file != null)
+            file.delete();
+      }
+   }
+
+   /**
+    * A <code>MergeIterator</code> merges all runs by repeatedly supplying the
+    * smallest head value among all runs.  Ties are broken by run order, which
+    * keeps the sort stable.
+    */
+   private class MergeIterator implements Iterator<T>
+   {
+      private PriorityQueue<RunReader<T>> myQueue;
+
+      /**
+       * Constructs a <code>MergeIterator</code> over all runs.
+       */
+      private MergeIterator()
+      {
+         myQueue = new PriorityQueue<RunReader<T>>(myReaders.size(), new Comparator<RunReader<T>>() {
+            /**
+             * Compares runs by their head values, then by their order.
+             * @param r1 A <code>RunReader</code>.
+             * @param r2 Another <code>RunReader</code>.
+             * @return A negative integer, 0, or a positive integer if
+             *    <code>r1</code> is less than, equal to, or greater than
+             *    <code>r2</code>.
+             */
+            public int compare(RunReader<T> r1, RunReader<T> r2)
+            {
+               int comp = myComparator.compare(r1.peek(), r2.peek());
+               if (comp != 0)
+                  return comp;
+               return r1.myOrder - r2.myOrder;
+            }
+         });
+         int numReaders = myReaders.size();
+         for (int i = 0; i < numReaders; i++)
+         {
+            RunReader<T> reader = myReaders.get(i);
+            reader.myOrder = i;
+            if (reader.advance())
+               myQueue.add(reader);
+         }
+      }
+
+      /**
+       * Returns whether there are more values.  When there are none, all
+       * temporary files are deleted.
+       * @return <code>true</code> if there are more values, <code>false</code>
+       *    otherwise.
+       */
+      public boolean hasNext()
+      {
+         if (myQueue.isEmpty())
+         {
+            close();
+            return false;
+         }
+         return true;
+      }
+
+      /**
+       * Returns the next value in sorted order.
+       * @return The next value.
+       * @throws NoSuchElementException If there are no more values.
+       */
+      public T next()
+      {
+         RunReader<T> reader = myQueue.poll();
+         if (reader == null)
+            throw new NoSuchElementException();
+         T value = reader.peek();
+         if (reader.advance())
+            myQueue.add(reader);
+         else
+            reader.close();
+         return value;
+      }
+
+      /**
+       * Not supported.
+       * @throws UnsupportedOperationException Always.
+       */
+      public void remove()
+      {
+         throw new UnsupportedOperationException("Cannot remove from a merge.");
+      }
+   }
+
+   /**
+    * A <code>RunReader</code> supplies the values of one sorted run, one at a
+    * time.
+    * @param <T> The type of values.
+    */
+   private static abstract class RunReader<T>
+   {
+      private int myOrder;
+      private T myHead;
+
+      /**
+       * Returns the current head value.
+       * @return The current head value.
+       */
+      T peek()
+      {
+         return myHead;
+      }
+
+      /**
+       * Advances to the next value, which becomes the head value.
+       * @return <code>true</code> if there was a next value,
+       *    <code>false</code> if the run is exhausted.
+       */
+      boolean advance()
+      {
+         if (!hasMore())
+         {
+            myHead = null;
+            return false;
+         }
+         myHead = read();
+         return true;
+      }
+
+      /**
+       * Returns whether the run has more values.
+       * @return <code>true</code> if the run has more values,
+       *    <code>false</code> otherwise.
+       */
+      abstract boolean hasMore();
+
+      /**
+       * Reads the next value.
+       * @return The next value.
+       */
+      abstract T read();
+
+      /**
+       * Releases any resources held by this run.
+       */
+      abstract void close();
+   }
+
+   /**
+    * A <code>MemoryRunReader</code> supplies the values of a run that is held
+    * in memory.
+    * @param <T> The type of values.
+    */
+   private static class MemoryRunReader<T> extends RunReader<T>
+   {
+      private List<T> myRun;
+      private int myIndex;
+
+      /**
+       * Constructs a <code>MemoryRunReader</code>.
+       * @param run The sorted run.
+       */
+      private MemoryRunReader(List<T> run)
+      {
+         myRun = run;
+         myIndex = 0;
+      }
+
+      /**
+       * Returns whether the run has more values.
+       * @return <code>true</code> if the run has more values,
+       *    <code>false</code> otherwise.
+       */
+      boolean hasMore()
+      {
+         return myIndex < myRun.size();
+      }
+
+      /**
+       * Reads the next value.
+       * @return The next value.
+       */
+      T read()
+      {
+         return myRun.get(myIndex++);
+      }
+
+      /**
+       * Releases any resources held by this run.
+       */
+      void close()
+      {
+         myIndex = myRun.size();
+      }
+   }
+
+   /**
+    * A <code>FileRunReader</code> supplies the values of a run that was
+    * spilled to a temporary file.  The file is opened on first use, and it is
+    * deleted when closed.
+    * @param <T> The type of values.
+    */
+   private static class FileRunReader<T> extends RunReader<T>
+   {
+      private File myFile;
+      private int myRemaining;
+      private ObjectInputStream myIn;
+
+      /**
+       * Constructs a <code>FileRunReader</code>.
+       * @param file The temporary file.
+       * @param size The number of values in the file.
+       */
+      private FileRunReader(File file, int size)
+      {
+         myFile = file;
+         myRemaining = size;
+         myIn = null;
+      }
+
+      /**
+       * Returns whether the run has more values.
+       * @return <code>true</code> if the run has more values,
+       *    <code>false</code> otherwise.
+       */
+      boolean hasMore()
+      {
+         return myRemaining > 0;
+      }
+
+      /**
+       * Reads the next value, opening the file first if necessary.
+       * @return The next value.
+       * @throws UnsupportedOperationException If the value couldn't be read.
+       */
+      @SuppressWarnings("unchecked")
+      T read()
+      {
+         try
+         {
+            if (myIn == null)
+            {
+               FileInputStream fis = new FileInputStream(myFile);
+               myIn = new ObjectInputStream(new BufferedInputStream(Channels.newInputStream(fis.getChannel())));
+               // Skip the number of values; it's already known.
+               myIn.readInt();
+            }
+            myRemaining--;
+            return (T) myIn.readObject();
+         }
+         catch (IOException e)
+         {
+            throw new UnsupportedOperationException(e.getClass().getName() +
+               " caught while reading spilled values from disk.", e);
+         }
+         catch (ClassNotFoundException e)
+         {
+            throw new UnsupportedOperationException(e.getClass().getName() +
+               " caught while reading spilled values from disk.", e);
+         }
+      }
+
+      /**
+       * Closes and deletes the file.
+       */
+      void close()
+      {
+         myRemaining = 0;
+         if (myIn != null)
+         {
+            try
+            {
+               myIn.close();
+            }
+            catch (IOException ignored) {}
+            myIn = null;
+         }
+         myFile.delete();
+      }
+   }
+}
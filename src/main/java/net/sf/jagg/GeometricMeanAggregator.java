@@ -1,5 +1,7 @@
 package net.sf.jagg;
 
+import java.util.List;
+
 /**
  * This class represents the "geometric mean" aggregator over numeric values.
  *
@@ -52,7 +54,7 @@ public class GeometricMeanAggregator extends Aggregator
          String property = getProperty();
          try
          {
-            Number obj = (Number) getValueFromProperty(value, property);
+            Number obj = (Number) getValueFromProperty(value);
             // Don't count nulls.
             if (obj != null)
             {
@@ -68,6 +70,39 @@ public class GeometricMeanAggregator extends Aggregator
       }
    }
 
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
+   /**
+    * Multiplies the values into the product and counts them, without boxing
+    * them.
+    *
+    * @param values An array of property values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateDoubles(double[] values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         myProduct *= values[i];
+      if (end > start)
+         myCount += end - start;
+   }
+
    /**
     * Merge the given <code>Aggregator</code> into this one by multiplying
     * products and adding sums.
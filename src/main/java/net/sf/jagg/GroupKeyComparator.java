@@ -0,0 +1,88 @@
+package net.sf.jagg;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class represents a <code>Comparator</code> over <em>group keys</em>,
+ * which are arrays of "group by" property values that have already been
+ * extracted from the objects being aggregated.  It orders the keys exactly as
+ * a <code>PropertiesComparator</code> would order the objects from which the
+ * keys were extracted, including its treatment of <code>null</code> values.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ * @see PropertiesComparator
+ */
+class GroupKeyComparator implements Comparator<Object[]>
+{
+   private List<String> myProperties;
+
+   /**
+    * Construct a <code>GroupKeyComparator</code> for keys whose elements
+    * correspond, in order, to the given <code>List</code> of properties.  The
+    * properties are used only for error messages.
+    * @param properties A <code>List&lt;String&gt;</code> of properties.
+    */
+   public GroupKeyComparator(List<String> properties)
+   {
+      myProperties = properties;
+   }
+
+   /**
+    * <p>Compares the given keys to determine order.  Fulfills the
+    * <code>Comparator</code> contract by returning a negative integer, 0, or a
+    * positive integer if <code>key1</code> is less than, equal to, or greater
+    * than <code>key2</code>.</p>
+    * <p>Null values compare equal to each other, and a null value compares
+    * greater than a non-null value.</p>
+    *
+    * @param key1 The left-hand-side key to compare.
+    * @param key2 The right-hand-side key to compare.
+    * @return A negative integer, 0, or a positive integer if <code>key1</code>
+    *    is less than, equal to, or greater than <code>key2</code>.
+    * @throws UnsupportedOperationException If any key value is not
+    *    <code>Comparable</code>.
+    */
+   public int compare(Object[] key1, Object[] key2) throws UnsupportedOperationException
+   {
+      int size = key1.length;
+      for (int i = 0; i < size; i++)
+      {
+         int comp = compareValues(i, key1[i], key2[i]);
+         if (comp != 0) return comp;
+      }
+      return 0;
+   }
+
+   /**
+    * Compares two values of the property at the given index, with nulls
+    * last.  <code>PropertiesComparator</code> compares property values with
+    * this method too, so that objects and their keys are ordered alike.
+    * @param i The 0-based property index.
+    * @param value1 The left-hand-side value.
+    * @param value2 The right-hand-side value.
+    * @return A negative integer, 0, or a positive integer if
+    *    <code>value1</code> is less than, equal to, or greater than
+    *    <code>value2</code>.
+    * @throws UnsupportedOperationException If the property's type is not
+    *    <code>Comparable</code>.
+    */
+   @SuppressWarnings("unchecked")
+   int compareValues(int i, Object value1, Object value2)
+   {
+      try
+      {
+         if (value1 == null)
+            return (value2 == null) ? 0 : 1;
+         if (value2 == null)
+            return -1;
+         return ((Comparable) value1).compareTo(value2);
+      }
+      catch (ClassCastException e)
+      {
+         throw new UnsupportedOperationException("Property \"" + myProperties.get(i) +
+            "\" needs to be Comparable.");
+      }
+   }
+}
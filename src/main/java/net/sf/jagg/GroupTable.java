@@ -0,0 +1,296 @@
+package net.sf.jagg;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>A <code>GroupTable</code> is an open-addressing hash table that maps
+ * <em>group keys</em>, the values of the "group by" properties of an object,
+ * to <code>Groups</code>.  Each <code>Group</code> holds the first object
+ * found with that key and the <code>List</code> of <code>Aggregators</code>
+ * that is accumulating the group's aggregate values.  It is used by
+ * <code>Aggregation</code> to aggregate values in a single pass, without
+ * sorting the values first.</p>
+ * <p>Keys are compared with <code>equals</code> and <code>hashCode</code>,
+ * not with <code>compareTo</code>.  Lookups extract the key into a scratch
+ * array, so no key is allocated unless a new <code>Group</code> is added.
+ * <code>Groups</code> are kept in the order in which they were first found.
+ * A <code>GroupTable</code> is meant to be used by one thread at a time.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+class GroupTable<T>
+{
+   private static final int INITIAL_CAPACITY = 64;
+
+   private PropertyAccessor[] myAccessors;
+   private int myNumProperties;
+   private Object[] myScratch;
+   private int myScratchHash;
+   // Each slot holds 1 + the index of a Group, or 0 if the slot is empty.
+   private int[] mySlots;
+   private int myMask;
+   private List<Group<T>> myGroups;
+
+   /**
+    * Constructs an empty <code>GroupTable</code> that groups by the given
+    * properties.
+    * @param properties The <code>List</code> of "group by" properties.
+    */
+   public GroupTable(List<String> properties)
+   {
+      myNumProperties = properties.size();
+      myAccessors = new PropertyAccessor[myNumProperties];
+      for (int i = 0; i < myNumProperties; i++)
+         myAccessors[i] = new PropertyAccessor(properties.get(i));
+      myScratch = new Object[myNumProperties];
+      mySlots = new int[INITIAL_CAPACITY];
+      myMask = INITIAL_CAPACITY - 1;
+      myGroups = new ArrayList<Group<T>>();
+   }
+
+   /**
+    * Finds the <code>Group</code> to which the given object belongs.  The
+    * object's key is left in an internal scratch area, so that if this returns
+    * <code>null</code>, a subsequent call to <code>add</code> can create the
+    * <code>Group</code> without extracting the key again.
+    * @param value The object.
+    * @return The <code>Group</code>, or <code>null</code> if no
+    *    <code>Group</code> exists yet for the object's key.
+    */
+   public Group<T> find(T value)
+   {
+      for (int i = 0; i < myNumProperties; i++)
+         myScratch[i] = myAccessors[i].get(value);
+      return find(myScratch);
+   }
+
+   /**
+    * Finds the <code>Group</code> for the given key values.  The key values
+    * are remembered, so that if this returns <code>null</code>, a subsequent
+    * call to <code>add</code> can create the <code>Group</code>.
+    * @param keyValues The key values.  This array is not retained.
+    * @return The <code>Group</code>, or <code>null</code> if no
+    *    <code>Group</code> exists yet for the key.
+    */
+   public Group<T> find(Object[] keyValues)
+   {
+      if (keyValues != myScratch)
+         System.arraycopy(keyValues, 0, myScratch, 0, myNumProperties);
+      int hash = hash(myScratch);
+      myScratchHash = hash;
+      int slot = hash & myMask;
+      while (true)
+      {
+         int entry = mySlots[slot];
+         if (entry == 0)
+            return null;
+         Group<T> group = myGroups.get(entry - 1);
+         if (group.myHash == hash && keysEqual(group.myKey, myScratch))
+            return group;
+         slot = (slot + 1) & myMask;
+      }
+   }
+
+   /**
+    * Adds a new <code>Group</code> for the key that was passed to (or
+    * extracted by) the most recent call to <code>find</code>, which must have
+    * returned <code>null</code>.
+    * @param value The first object found with the key.
+    * @param aggregators The <code>List</code> of <code>Aggregators</code> that
+    *    will accumulate the group's aggregate values.
+    * @return The new <code>Group</code>.
+    */
+   public Group<T> add(T value, List<Aggregator> aggregators)
+   {
+      Object[] key = new Object[myNumProperties];
+      System.arraycopy(myScratch, 0, key, 0, myNumProperties);
+      Group<T> group = new Group<T>(key, myScratchHash, value, aggregators);
+      myGroups.add(group);
+      if (myGroups.size() * 2 > mySlots.length)
+         rehash(mySlots.length * 2);
+      else
+         insert(myScratchHash, myGroups.size());
+      return group;
+   }
+
+   /**
+    * Merges all <code>Groups</code> of the given <code>GroupTable</code> into
+    * this <code>GroupTable</code>, in order.  The <code>Aggregators</code> of
+    * a <code>Group</code> whose key is already present here are merged into
+    * the existing <code>Group</code>'s <code>Aggregators</code>, then they are
+    * marked as no longer in use.  Other <code>Groups</code> are added.
+    * @param other Another <code>GroupTable</code>, whose values followed the
+    *    values of this <code>GroupTable</code>.
+    */
+   public void merge(GroupTable<T> other)
+   {
+      List<Group<T>> otherGroups = other.myGroups;
+      int numGroups = otherGroups.size();
+      for (int g = 0; g < numGroups; g++)
+      {
+         Group<T> otherGroup = otherGroups.get(g);
+         Group<T> group = find(otherGroup.myKey);
+         if (group == null)
+         {
+            add(otherGroup.myObject, otherGroup.myAggregators);
+         }
+         else
+         {
+            List<Aggregator> aggList = group.myAggregators;
+            List<Aggregator> otherAggList = otherGroup.myAggregators;
+            int aggSize = aggList.size();
+            for (int a = 0; a < aggSize; a++)
+            {
+               Aggregator otherAgg = otherAggList.get(a);
+               aggList.get(a).merge(otherAgg);
+               otherAgg.setInUse(false);
+            }
+         }
+      }
+   }
+
+   /**
+    * Returns all <code>Groups</code>, in the order in which they were added.
+    * @return A <code>List</code> of <code>Groups</code>.
+    */
+   public List<Group<T>> getGroups()
+   {
+      return myGroups;
+   }
+
+   /**
+    * Returns the number of <code>Groups</code>.
+    * @return The number of <code>Groups</code>.
+    */
+   public int size()
+   {
+      return myGroups.size();
+   }
+
+   /**
+    * Places the given entry in the first empty slot at or after the slot that
+    * the hash code selects.
+    * @param hash The hash code of the key.
+    * @param entry 1 + the index of the <code>Group</code>.
+    */
+   private void insert(int hash, int entry)
+   {
+      int slot = hash & myMask;
+      while (mySlots[slot] != 0)
+         slot = (slot + 1) & myMask;
+      mySlots[slot] = entry;
+   }
+
+   /**
+    * Grows the slot array to the given capacity and re-inserts all
+    * <code>Groups</code>.
+    * @param capacity The new capacity, a power of 2.
+    */
+   private void rehash(int capacity)
+   {
+      mySlots = new int[capacity];
+      myMask = capacity - 1;
+      int size = myGroups.size();
+      for (int i = 0; i < size; i++)
+         insert(myGroups.get(i).myHash, i + 1);
+   }
+
+   /**
+    * Computes a well-spread hash code for the given key values.
+    * @param keyValues The key values.
+    * @return A hash code.
+    */
+   static int hash(Object[] keyValues)
+   {
+      int hash = 1;
+      for (int i = 0; i < keyValues.length; i++)
+      {
+         Object keyValue = keyValues[i];
+         hash = 31 * hash + ((keyValue == null) ? 0 : keyValue.hashCode());
+      }
+      // Spread the high bits into the low bits, which select the slot.
+      hash ^= (hash >>> 16);
+      hash *= 0x85ebca6b;
+      hash ^= (hash >>> 13);
+      return hash;
+   }
+
+   /**
+    * Determines whether the given keys are equal, element by element.
+    * @param key1 A key.
+    * @param key2 Another key.
+    * @return <code>true</code> if equal, <code>false</code> otherwise.
+    */
+   static boolean keysEqual(Object[] key1, Object[] key2)
+   {
+      for (int i = 0; i < key1.length; i++)
+      {
+         Object value1 = key1[i];
+         Object value2 = key2[i];
+         if (value1 == null)
+         {
+            if (value2 != null)
+               return false;
+         }
+         else if (!value1.equals(value2))
+            return false;
+      }
+      return true;
+   }
+
+   /**
+    * A <code>Group</code> is one entry in a <code>GroupTable</code>.
+    * @param <T> The type of object being aggregated.
+    */
+   static class Group<T>
+   {
+      private Object[] myKey;
+      private int myHash;
+      private T myObject;
+      private List<Aggregator> myAggregators;
+
+      /**
+       * Constructs a <code>Group</code>.
+       * @param key The key values.
+       * @param hash The hash code of the key values.
+       * @param object The first object found with the key.
+       * @param aggregators The <code>List</code> of <code>Aggregators</code>.
+       */
+      Group(Object[] key, int hash, T object, List<Aggregator> aggregators)
+      {
+         myKey = key;
+         myHash = hash;
+         myObject = object;
+         myAggregators = aggregators;
+      }
+
+      /**
+       * Returns the key values.
+       * @return The key values.
+       */
+      public Object[] getKey()
+      {
+         return myKey;
+      }
+
+      /**
+       * Returns the first object found with this group's key.
+       * @return The first object found with this group's key.
+       */
+      public T getObject()
+      {
+         return myObject;
+      }
+
+      /**
+       * Returns the <code>List</code> of <code>Aggregators</code>.
+       * @return The <code>List</code> of <code>Aggregators</code>.
+       */
+      public List<Aggregator> getAggregators()
+      {
+         return myAggregators;
+      }
+   }
+}
@@ -0,0 +1,225 @@
+package net.sf.jagg;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>A <code>GroupingSetPlan</code> decides how the super-aggregate values
+ * of each grouping set are computed from the values of a superset: the
+ * aggregate values of all "group by" properties, or the super-aggregate
+ * values of an earlier grouping set.  The values of each grouping set are
+ * produced in the order of its properties, ascending by index, so a grouping
+ * set whose properties are the leading properties of a superset, e.g.
+ * <code>{0, 1}</code> of <code>{0, 1, 3}</code>, can be computed from that
+ * superset's values in a single pass without sorting them.  Only when no
+ * superset has such an order is a copy of a superset's values sorted.</p>
+ * <p>Among supersets that need no sort, or if all of them do, among all
+ * supersets, the one with the fewest properties, i.e. with the fewest
+ * values, is chosen; ties go to the latest grouping set.  The plan assumes
+ * that the aggregate values of all properties are sorted by all properties;
+ * if they aren't, then they are sorted once, as a copy, before any grouping
+ * set that relies on their order.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+final class GroupingSetPlan
+{
+   // No source chosen yet.
+   private static final int NONE = -2;
+
+   private List<String> myProperties;
+   private List<List<Integer>> myGroupingSets;
+   // The index of each grouping set's source grouping set, or -1 for the
+   // aggregate values of all properties.
+   private int[] myParents;
+   private boolean[] amISortings;
+
+   /**
+    * Plans the computation of the given grouping sets.
+    * @param properties The "group by" properties.
+    * @param groupingSets The validated grouping sets, in descending order of
+    *    size, each sorted in ascending order.
+    */
+   public GroupingSetPlan(List<String> properties, List<List<Integer>> groupingSets)
+   {
+      myProperties = properties;
+      myGroupingSets = groupingSets;
+      int numGroupingSets = groupingSets.size();
+      int numProperties = properties.size();
+      myParents = new int[numGroupingSets];
+      amISortings = new boolean[numGroupingSets];
+      for (int g = 0; g < numGroupingSets; g++)
+      {
+         List<Integer> groupingSet = groupingSets.get(g);
+         if (groupingSet.size() == numProperties)
+         {
+            // The aggregate values themselves.
+            myParents[g] = -1;
+            continue;
+         }
+         // The best source already in order, and the best source otherwise.
+         // The aggregate values of all properties are in the order of all
+         // properties.
+         int inOrder = isPrefix(groupingSet, null) ? -1 : NONE;
+         int unordered = NONE;
+         for (int j = g - 1; j >= 0; j--)
+         {
+            List<Integer> candidate = groupingSets.get(j);
+            if (candidate.size() == numProperties || !candidate.containsAll(groupingSet))
+               continue;
+            if (isPrefix(groupingSet, candidate))
+            {
+               if (inOrder == NONE || candidate.size() < getSize(inOrder))
+                  inOrder = j;
+            }
+            else if (unordered == NONE || candidate.size() < getSize(unordered))
+               unordered = j;
+         }
+         if (inOrder != NONE)
+            myParents[g] = inOrder;
+         else
+         {
+            // Sorting a superset's values beats sorting all aggregate values.
+            myParents[g] = (unordered != NONE) ? unordered : -1;
+            amISortings[g] = true;
+         }
+      }
+   }
+
+   /**
+    * Returns the number of properties of a source of values.
+    * @param g The index of a grouping set, or <code>-1</code> for the
+    *    aggregate values of all properties.
+    * @return The number of properties.
+    */
+   private int getSize(int g)
+   {
+      return (g == -1) ? myProperties.size() : myGroupingSets.get(g).size();
+   }
+
+   /**
+    * Returns the index of the grouping set from whose values the given
+    * grouping set's super-aggregate values are computed.
+    * @param g The index of a grouping set.
+    * @return The index of the source grouping set, or <code>-1</code> for
+    *    the aggregate values of all properties.
+    */
+   public int getParent(int g)
+   {
+      return myParents[g];
+   }
+
+   /**
+    * Returns whether a copy of the source values must be sorted for the
+    * given grouping set.
+    * @param g The index of a grouping set.
+    * @return <code>true</code> if a copy of the source values must be
+    *    sorted, <code>false</code> if they are already in order.
+    */
+   public boolean isSorting(int g)
+   {
+      return amISortings[g];
+   }
+
+   /**
+    * Returns whether any grouping set relies on the aggregate values of all
+    * properties being sorted by all properties.
+    * @return <code>true</code> if any grouping set is computed from the
+    *    aggregate values of all properties without sorting them.
+    */
+   public boolean isRelyingOnOrder()
+   {
+      for (int g = 0; g < myParents.length; g++)
+      {
+         if (myParents[g] == -1 && !amISortings[g] && myGroupingSets.get(g).size() < myProperties.size())
+            return true;
+      }
+      return false;
+   }
+
+   /**
+    * Returns the number of sorts in this plan.
+    * @return The number of grouping sets whose source values are sorted.
+    */
+   public int getNumSorts()
+   {
+      int numSorts = 0;
+      for (boolean sorting : amISortings)
+      {
+         if (sorting)
+            numSorts++;
+      }
+      return numSorts;
+   }
+
+   /**
+    * Describes this plan, one line per grouping set, followed by the number
+    * of sorts, e.g.
+    * <pre>
+    * [a, b, c]: the aggregate values
+    * [a, c]: from [a, b, c], sorted
+    * [a]: from [a, b, c], in order
+    * []: from [a], in order
+    * Sorts: 1
+    * </pre>
+    * @return A description of this plan.
+    */
+   @Override
+   public String toString()
+   {
+      StringBuffer buf = new StringBuffer();
+      for (int g = 0; g < myParents.length; g++)
+      {
+         List<Integer> groupingSet = myGroupingSets.get(g);
+         buf.append(getNames(groupingSet));
+         if (groupingSet.size() == myProperties.size())
+            buf.append(": the aggregate values");
+         else
+         {
+            buf.append(": from ");
+            buf.append((myParents[g] == -1) ? myProperties.toString() : getNames(myGroupingSets.get(myParents[g])));
+            buf.append(amISortings[g] ? ", sorted" : ", in order");
+         }
+         buf.append("\n");
+      }
+      buf.append("Sorts: ");
+      buf.append(getNumSorts());
+      return buf.toString();
+   }
+
+   /**
+    * Returns the names of the properties of a grouping set.
+    * @param groupingSet A grouping set.
+    * @return A <code>String</code> listing the property names.
+    */
+   private String getNames(List<Integer> groupingSet)
+   {
+      List<String> names = new ArrayList<String>(groupingSet.size());
+      for (int index : groupingSet)
+         names.add(myProperties.get(index));
+      return names.toString();
+   }
+
+   /**
+    * Determines whether a grouping set's properties are the leading
+    * properties of another grouping set, so that values in the order of the
+    * other grouping set are also in the order of this one.
+    * @param groupingSet A grouping set.
+    * @param other Another grouping set, or <code>null</code> for all
+    *    properties.
+    * @return <code>true</code> if the grouping set is a prefix of the other,
+    *    <code>false</code> otherwise.
+    */
+   private static boolean isPrefix(List<Integer> groupingSet, List<Integer> other)
+   {
+      int size = groupingSet.size();
+      for (int i = 0; i < size; i++)
+      {
+         int index = (other == null) ? i : other.get(i);
+         if (groupingSet.get(i) != index)
+            return false;
+      }
+      return true;
+   }
+}
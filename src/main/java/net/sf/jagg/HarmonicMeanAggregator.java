@@ -1,5 +1,7 @@
 package net.sf.jagg;
 
+import java.util.List;
+
 /**
  * This class represents the "harmonic mean" aggregator over numeric values.
  *
@@ -9,6 +11,8 @@ package net.sf.jagg;
 public class HarmonicMeanAggregator extends Aggregator
 {
    private DoubleDouble mySum = new DoubleDouble();
+   // Reused for each reciprocal, so that iterating doesn't allocate.
+   private DoubleDouble myTemp = new DoubleDouble();
    private long   myCount;
    private long   myZeroes;
 
@@ -55,20 +59,11 @@ public class HarmonicMeanAggregator extends Aggregator
          String property = getProperty();
          try
          {
-            Number obj = (Number) getValueFromProperty(value, property);
+            Number obj = (Number) getValueFromProperty(value);
             // Don't count nulls.
             if (obj != null)
             {
-               myCount++;
-               double d = obj.doubleValue();
-               if (d == 0)
-                  myZeroes++;
-               else
-               {
-                  DoubleDouble temp = new DoubleDouble(1.0);
-                  temp.divideSelfBy(obj.doubleValue());
-                  mySum.addToSelf(temp);
-               }
+               add(obj.doubleValue());
             }
          }
          catch (ClassCastException e)
@@ -79,6 +74,54 @@ public class HarmonicMeanAggregator extends Aggregator
       }
    }
 
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
+   /**
+    * Adds the reciprocals of the values, without boxing them.
+    *
+    * @param values An array of property values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateDoubles(double[] values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         add(values[i]);
+   }
+
+   /**
+    * Count the value, and add its reciprocal to the sum, unless it's zero.
+    * @param d The value.
+    */
+   private void add(double d)
+   {
+      myCount++;
+      if (d == 0)
+         myZeroes++;
+      else
+      {
+         DoubleDouble temp = myTemp;
+         temp.set(1.0);
+         temp.divideSelfBy(d);
+         mySum.addToSelf(temp);
+      }
+   }
+
    /**
     * Merge the given <code>Aggregator</code> into this one by adding counts
     * and sums.
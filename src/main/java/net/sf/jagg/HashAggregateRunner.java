@@ -0,0 +1,98 @@
+package net.sf.jagg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * <p>Gets partial aggregate values for a sub-range of an unsorted
+ * <code>List</code> of Objects, by hashing each object on its "group by"
+ * property values into a <code>GroupTable</code>.  Each <code>Group</code>
+ * in the resultant <code>GroupTable</code> holds initialized and iterated,
+ * but not terminated, <code>Aggregators</code>, which may be merged with the
+ * <code>Aggregators</code> of the same <code>Group</code> from other
+ * sub-ranges.  Running Time: <em>O(n * a)</em>, where <em>n</em> is the
+ * number of items to process (<code>end - start + 1</code>), and <em>a</em>
+ * is the number of aggregators desired.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+class HashAggregateRunner<T> implements Callable<GroupTable<T>>
+{
+   private List<Aggregator> myAggregators;
+   private List<T> myValuesList;
+   private int myStart;
+   private int myEnd;
+   private List<String> myProperties;
+
+   /**
+    * Construct a <code>HashAggregateRunner</code> that in a separate
+    * <code>Thread</code> will create a <code>GroupTable</code>.
+    *
+    * @param aggregators The <code>List</code> of <code>Aggregators</code>.
+    * @param valuesList The list of values to aggregate.
+    * @param start The start index.
+    * @param end The end index.
+    * @param properties The <code>List</code> of properties.
+    */
+   public HashAggregateRunner(List<Aggregator> aggregators, List<T> valuesList,
+      int start, int end, List<String> properties)
+   {
+      myAggregators = aggregators;
+      myValuesList = valuesList;
+      myStart = start;
+      myEnd = end;
+      myProperties = properties;
+   }
+
+   /**
+    * Runs through a section of the values list from start to end, finding
+    * each value's <code>Group</code>, creating it with newly acquired
+    * <code>Aggregators</code> if necessary, and iterating the value into the
+    * <code>Group</code>'s <code>Aggregators</code>.
+    *
+    * @return A <code>GroupTable</code>, with <code>Groups</code> in the order
+    *    in which they were first encountered.
+    */
+   public GroupTable<T> call()
+   {
+      GroupTable<T> table = new GroupTable<T>(myProperties);
+      int aggSize = myAggregators.size();
+      for (int i = myStart; i <= myEnd; i++)
+      {
+         T value = myValuesList.get(i);
+         GroupTable.Group<T> group = table.find(value);
+         if (group == null)
+            group = table.add(value, getAggregatorsList());
+         List<Aggregator> aggList = group.getAggregators();
+         for (int a = 0; a < aggSize; a++)
+         {
+            Aggregator agg = aggList.get(a);
+            agg.iterate(value);
+         }
+      }
+      return table;
+   }
+
+   /**
+    * Helper function to create a new <code>List</code> of
+    * <code>Aggregators</code>, given a list of archetypes.  Each newly
+    * acquired <code>Aggregator</code> is initialized by calling
+    * <code>init()</code> before adding it to the returned list.
+    * @return A <code>List</code> of <code>Aggregators</code>.
+    */
+   private List<Aggregator> getAggregatorsList()
+   {
+      int aggSize = myAggregators.size();
+      List<Aggregator> aggList = new ArrayList<Aggregator>(aggSize);
+      for (int a = 0; a < aggSize; a++)
+      {
+         Aggregator archetype = myAggregators.get(a);
+         Aggregator agg = Aggregator.getAggregator(archetype);
+         agg.init();
+         aggList.add(agg);
+      }
+      return aggList;
+   }
+}
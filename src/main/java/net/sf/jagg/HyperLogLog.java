@@ -0,0 +1,271 @@
+package net.sf.jagg;
+
+/**
+ * <p>A <code>HyperLogLog</code> is a mergeable sketch that estimates the
+ * number of distinct values it has seen, using memory fixed by its
+ * <em>precision</em> <em>p</em>.  Each value is hashed to 64 bits.  The first
+ * <em>p</em> bits select one of <em>m</em> = 2<sup><em>p</em></sup>
+ * registers, which keeps the maximum, over all values selecting it, of the
+ * position of the first one bit in the remaining bits.  Merging is a
+ * register-wise maximum.  The relative standard error is about
+ * 1.04 / sqrt(<em>m</em>).</p>
+ * <p>The estimate is computed with Ertl's improved estimator, which needs no
+ * empirical bias correction for small or large cardinalities.</p>
+ * <p>While few distinct values have been seen, the registers are not
+ * allocated.  Instead, the distinct hashes are kept in a
+ * <code>LongHashSet</code>, which uses less memory, and which is counted
+ * exactly.  When that set grows to <em>m</em> / 16 hashes, the hashes are
+ * folded into the registers.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+class HyperLogLog
+{
+   /**
+    * The default precision.
+    */
+   public static final int DEFAULT_PRECISION = 14;
+   /**
+    * The minimum precision.
+    */
+   public static final int MIN_PRECISION = 4;
+   /**
+    * The maximum precision.
+    */
+   public static final int MAX_PRECISION = 18;
+
+   private int myPrecision;
+   private int myNumRegisters;
+   // Null until the hashes are folded into the registers.
+   private byte[] myRegisters;
+   private LongHashSet myHashes;
+
+   /**
+    * Constructs an empty <code>HyperLogLog</code> with the given precision.
+    * @param precision The precision, from <code>MIN_PRECISION</code> to
+    *    <code>MAX_PRECISION</code>.
+    * @throws IllegalArgumentException If the precision is out of range.
+    */
+   public HyperLogLog(int precision)
+   {
+      if (precision < MIN_PRECISION || precision > MAX_PRECISION)
+         throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION + " and " +
+            MAX_PRECISION + " inclusive: " + precision);
+      myPrecision = precision;
+      myNumRegisters = 1 << precision;
+      myHashes = new LongHashSet();
+   }
+
+   /**
+    * Removes all values.
+    */
+   public void reset()
+   {
+      myRegisters = null;
+      myHashes.clear();
+   }
+
+   /**
+    * Adds a value.
+    * @param value The value, which must not be <code>null</code>.
+    */
+   public void add(Object value)
+   {
+      addHash(hash(value));
+   }
+
+   /**
+    * Adds a value by its 64-bit hash.
+    * @param hash The hash of the value.
+    */
+   public void addHash(long hash)
+   {
+      if (myRegisters == null)
+      {
+         if (myHashes.add(hash) && myHashes.size() > myNumRegisters / 16)
+            fold();
+      }
+      else
+         update(hash);
+   }
+
+   /**
+    * Merges all values from the given <code>HyperLogLog</code>, which must
+    * have the same precision, into this one.
+    * @param other Another <code>HyperLogLog</code>.
+    * @throws IllegalArgumentException If the precisions differ.
+    */
+   public void merge(HyperLogLog other)
+   {
+      if (other.myPrecision != myPrecision)
+         throw new IllegalArgumentException("Can't merge a HyperLogLog of precision " +
+            other.myPrecision + " into one of precision " + myPrecision + ".");
+      if (other.myRegisters == null)
+      {
+         long[] hashes = other.myHashes.toArray();
+         for (int i = 0; i < hashes.length; i++)
+            addHash(hashes[i]);
+      }
+      else
+      {
+         if (myRegisters == null)
+            fold();
+         byte[] otherRegisters = other.myRegisters;
+         for (int i = 0; i < myNumRegisters; i++)
+         {
+            if (otherRegisters[i] > myRegisters[i])
+               myRegisters[i] = otherRegisters[i];
+         }
+      }
+   }
+
+   /**
+    * Estimates the number of distinct values.
+    * @return The estimated number of distinct values.
+    */
+   public long cardinality()
+   {
+      if (myRegisters == null)
+         return myHashes.size();
+
+      int q = 64 - myPrecision;
+      int[] counts = new int[q + 2];
+      for (int i = 0; i < myNumRegisters; i++)
+         counts[myRegisters[i]]++;
+      double m = myNumRegisters;
+      double z = m * tau(1 - counts[q + 1] / m);
+      for (int k = q; k >= 1; k--)
+      {
+         z += counts[k];
+         z *= 0.5;
+      }
+      z += m * sigma(counts[0] / m);
+      return Math.round(m * m / (2 * Math.log(2) * z));
+   }
+
+   /**
+    * Moves the distinct hashes into newly allocated registers.
+    */
+   private void fold()
+   {
+      myRegisters = new byte[myNumRegisters];
+      long[] hashes = myHashes.toArray();
+      for (int i = 0; i < hashes.length; i++)
+         update(hashes[i]);
+      myHashes.clear();
+   }
+
+   /**
+    * Updates the register selected by the given hash.
+    * @param hash The hash of a value.
+    */
+   private void update(long hash)
+   {
+      int index = (int) (hash >>> (64 - myPrecision));
+      // One more than the number of leading zeros in the remaining bits,
+      // limited to 65 - p.
+      byte rank = (byte) (Long.numberOfLeadingZeros((hash << myPrecision) | (1L << (myPrecision - 1))) + 1);
+      if (rank > myRegisters[index])
+         myRegisters[index] = rank;
+   }
+
+   /**
+    * The sigma function of the improved estimator, which accounts for empty
+    * registers.
+    * @param x The fraction of registers that are empty.
+    * @return The sigma function of <code>x</code>.
+    */
+   private static double sigma(double x)
+   {
+      if (x == 1)
+         return Double.POSITIVE_INFINITY;
+      double y = 1;
+      double z = x;
+      double zPrev;
+      do
+      {
+         x *= x;
+         zPrev = z;
+         z += x * y;
+         y += y;
+      }
+      while (z != zPrev);
+      return z;
+   }
+
+   /**
+    * The tau function of the improved estimator, which accounts for
+    * registers that have reached the maximum rank.
+    * @param x The fraction of registers that have not reached the maximum
+    *    rank.
+    * @return The tau function of <code>x</code>.
+    */
+   private static double tau(double x)
+   {
+      if (x == 0 || x == 1)
+         return 0;
+      double y = 1;
+      double z = 1 - x;
+      double zPrev;
+      do
+      {
+         x = Math.sqrt(x);
+         zPrev = z;
+         y *= 0.5;
+         z -= (1 - x) * (1 - x) * y;
+      }
+      while (z != zPrev);
+      return z / 3;
+   }
+
+   /**
+    * Hashes the given value to 64 bits.  Values of primitive numeric types
+    * are hashed by their value, so that e.g. an <code>Integer</code> and a
+    * <code>Double</code> with the same value hash alike, as
+    * <code>CountDistinctAggregator</code> considers them the same.  <code>Strings</code> are hashed over all of
+    * their characters to 64 bits.  Other objects are hashed by their
+    * <code>hashCode</code>.
+    * @param value The value, which must not be <code>null</code>.
+    * @return A 64-bit hash.
+    */
+   static long hash(Object value)
+   {
+      if (CountDistinctAggregator.isIntegral(value))
+         return mix(((Number) value).longValue());
+      if (value instanceof Double || value instanceof Float)
+      {
+         double d = ((Number) value).doubleValue();
+         if (CountDistinctAggregator.isIntegral(d))
+            return mix((long) d);
+         // Distinguish non-integral values from integral ones.
+         return mix(Double.doubleToLongBits(d) ^ 0x5DEECE66DL);
+      }
+      if (value instanceof String)
+      {
+         String s = (String) value;
+         long h = 0xCBF29CE484222325L;
+         int length = s.length();
+         for (int i = 0; i < length; i++)
+            h = (h ^ s.charAt(i)) * 0x100000001B3L;
+         return mix(h ^ length);
+      }
+      return mix(value.hashCode());
+   }
+
+   /**
+    * Scrambles all 64 bits of the given value, so that each output bit
+    * depends on every input bit.  This is the finalizer of MurmurHash3.
+    * @param h The value.
+    * @return The scrambled value.
+    */
+   private static long mix(long h)
+   {
+      h ^= h >>> 33;
+      h *= 0xFF51AFD7ED558CCDL;
+      h ^= h >>> 33;
+      h *= 0xC4CEB9FE1A85EC53L;
+      h ^= h >>> 33;
+      return h;
+   }
+}
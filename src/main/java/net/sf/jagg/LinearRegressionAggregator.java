@@ -1,5 +1,7 @@
 package net.sf.jagg;
 
+import java.util.List;
+
 /**
  * This class represents the "linear regression" aggregator over two sets of
  * numeric values.  Many values can be returned by this
@@ -96,11 +98,8 @@ public class LinearRegressionAggregator extends TwoPropAggregator
       // Do the count here to detect only when both properties are non-null.
       if (value != null)
       {
-         String property1 = getProperty();
-         String property2 = getProperty2();
-
-         Object obj1 = getValueFromProperty(value, property1);
-         Object obj2 = getValueFromProperty(value, property2);
+         Object obj1 = getValueFromProperty(value);
+         Object obj2 = getValueFromProperty2(value);
          // Don't count nulls.
          if (obj1 != null && obj2 != null)
          {
@@ -116,6 +115,21 @@ public class LinearRegressionAggregator extends TwoPropAggregator
       }
    }
 
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
    /**
     * Merge the given <code>Aggregator</code> into this one.  Add the internal
     * counts.
@@ -0,0 +1,148 @@
+package net.sf.jagg;
+
+/**
+ * A <code>LongHashSet</code> is a set of primitive <code>long</code> values,
+ * which avoids the boxing and the per-entry objects of a
+ * <code>HashSet&lt;Long&gt;</code>.  It uses open addressing with linear
+ * probing in a table whose size is a power of two, which is doubled whenever
+ * it becomes half full.  Because a zero slot marks an empty slot, the value
+ * zero is tracked with a separate flag.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+class LongHashSet
+{
+   private static final int INITIAL_CAPACITY = 16;
+
+   private long[] myTable;
+   private int mySize;
+   private boolean amIContainingZero;
+
+   /**
+    * Constructs an empty <code>LongHashSet</code>.
+    */
+   public LongHashSet()
+   {
+      myTable = new long[INITIAL_CAPACITY];
+      mySize = 0;
+      amIContainingZero = false;
+   }
+
+   /**
+    * Returns the number of values in this set.
+    * @return The number of values.
+    */
+   public int size()
+   {
+      return amIContainingZero ? mySize + 1 : mySize;
+   }
+
+   /**
+    * Adds the given value, if it's not already in this set.
+    * @param value The value.
+    * @return <code>true</code> if the value was added, <code>false</code> if
+    *    it was already in this set.
+    */
+   public boolean add(long value)
+   {
+      if (value == 0)
+      {
+         if (amIContainingZero)
+            return false;
+         amIContainingZero = true;
+         return true;
+      }
+      int mask = myTable.length - 1;
+      int slot = mix(value) & mask;
+      while (myTable[slot] != 0)
+      {
+         if (myTable[slot] == value)
+            return false;
+         slot = (slot + 1) & mask;
+      }
+      myTable[slot] = value;
+      mySize++;
+      if (2 * mySize > myTable.length)
+         rehash(2 * myTable.length);
+      return true;
+   }
+
+   /**
+    * Adds all values from the given set to this set.
+    * @param other Another <code>LongHashSet</code>.
+    */
+   public void addAll(LongHashSet other)
+   {
+      if (other.amIContainingZero)
+         amIContainingZero = true;
+      long[] table = other.myTable;
+      for (int i = 0; i < table.length; i++)
+      {
+         if (table[i] != 0)
+            add(table[i]);
+      }
+   }
+
+   /**
+    * Returns all values in this set, in no particular order.
+    * @return A new array of the values.
+    */
+   public long[] toArray()
+   {
+      long[] values = new long[size()];
+      int v = 0;
+      if (amIContainingZero)
+         values[v++] = 0;
+      for (int i = 0; i < myTable.length; i++)
+      {
+         if (myTable[i] != 0)
+            values[v++] = myTable[i];
+      }
+      return values;
+   }
+
+   /**
+    * Removes all values, shrinking the table back to its initial size.
+    */
+   public void clear()
+   {
+      myTable = new long[INITIAL_CAPACITY];
+      mySize = 0;
+      amIContainingZero = false;
+   }
+
+   /**
+    * Moves all values into a new table of the given size.
+    * @param capacity The new table size, a power of two.
+    */
+   private void rehash(int capacity)
+   {
+      long[] oldTable = myTable;
+      myTable = new long[capacity];
+      int mask = capacity - 1;
+      for (int i = 0; i < oldTable.length; i++)
+      {
+         long value = oldTable[i];
+         if (value != 0)
+         {
+            int slot = mix(value) & mask;
+            while (myTable[slot] != 0)
+               slot = (slot + 1) & mask;
+            myTable[slot] = value;
+         }
+      }
+   }
+
+   /**
+    * Spreads the bits of the given value, so that values differing only in
+    * their high bits, or forming a sequence, don't cluster in the table.
+    * @param value The value.
+    * @return A hash of the value.
+    */
+   private static int mix(long value)
+   {
+      long h = value * 0x9E3779B97F4A7C15L;
+      return (int) (h ^ (h >>> 32));
+   }
+}
@@ -1,5 +1,7 @@
 package net.sf.jagg;
 
+import java.util.List;
+
 /**
  * This class represents the "max" aggregator over <code>Comparable</code>
  * values.
@@ -52,7 +54,7 @@ public class MaxAggregator extends Aggregator
          String property = getProperty();
          try
          {
-            Comparable obj = (Comparable) getValueFromProperty(value, property);
+            Comparable obj = (Comparable) getValueFromProperty(value);
             // Don't count nulls.
             if (obj != null)
             {
@@ -68,6 +70,47 @@ public class MaxAggregator extends Aggregator
       }
    }
 
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
+   /**
+    * Finds the maximum of the values without boxing them, in the order of
+    * <code>Double.compareTo</code>, then stores it if it's higher than the
+    * current maximum.
+    *
+    * @param values An array of property values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateDoubles(double[] values, int start, int end)
+   {
+      if (start >= end)
+         return;
+      double max = values[start];
+      for (int i = start + 1; i < end; i++)
+      {
+         if (Double.compare(values[i], max) > 0)
+            max = values[i];
+      }
+      Double obj = max;
+      if (myMax == null || obj.compareTo((Double) myMax) > 0)
+         myMax = obj;
+   }
+
    /**
     * Merge the given <code>Aggregator</code> into this one by taking the
     * maximum of the two maximums.
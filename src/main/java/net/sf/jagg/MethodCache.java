@@ -3,14 +3,19 @@ package net.sf.jagg;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created as a wrapper around a <code>HashMap</code> that maps property names
  * to <code>Methods</code>.  Method calls with best matches for argument types
  * are found.  Property names, e.g. "property", are mapped to "getProperty()"
  * or "isProperty()" methods if found.
+ * <p>As of 0.7.3, the cache is a <code>ConcurrentHashMap</code> of
+ * <code>Classes</code> to <code>ConcurrentHashMaps</code> of property names,
+ * so that lookups neither build a <code>String</code> key nor take a lock.
+ * Callers that repeatedly retrieve the same property should hold a
+ * {@link PropertyAccessor}, which avoids even these lookups.</p>
  *
  * @author Randy Gettman
  * @since 0.1.0
@@ -21,21 +26,21 @@ public class MethodCache
 
    private static MethodCache theMethodCache = null;
 
-   private final HashMap<String, MethodCall> myMethods;
+   private final ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, MethodCall>> myMethods;
 
    /**
     * Private constructor for the singleton pattern.
     */
    private MethodCache()
    {
-      myMethods = new HashMap<String, MethodCall>();
+      myMethods = new ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, MethodCall>>();
    }
 
    /**
     * Returns the singleton <code>MethodCache</code>.
     * @return The singleton <code>MethodCache</code>.
     */
-   public static MethodCache getMethodCache()
+   public static synchronized MethodCache getMethodCache()
    {
       if (theMethodCache == null)
       {
@@ -84,99 +89,128 @@ public class MethodCache
     */
    public MethodCall getMethodCallFromProperty(Object value, String property)
       throws NoSuchMethodException
+   {
+      Class<?> theClass = value.getClass();
+      ConcurrentHashMap<String, MethodCall> classMethods = myMethods.get(theClass);
+      if (classMethods == null)
+      {
+         classMethods = new ConcurrentHashMap<String, MethodCall>();
+         ConcurrentHashMap<String, MethodCall> existing = myMethods.putIfAbsent(theClass, classMethods);
+         if (existing != null)
+            classMethods = existing;
+      }
+      MethodCall methodCall = classMethods.get(property);
+      // If not in cache...
+      if (methodCall == null)
+      {
+         // Multiple Threads may "find" the same Method, but only the first one
+         // to be cached is used.
+         methodCall = findMethodCall(value, property);
+         MethodCall existing = classMethods.putIfAbsent(property, methodCall);
+         if (existing != null)
+            methodCall = existing;
+      }
+      return methodCall;
+   }
+
+   /**
+    * Creates a <code>MethodCall</code> by finding the <code>Method</code>
+    * using reflection.
+    *
+    * @param value The object on which to lookup a property value.
+    * @param property The property or method name plus signature to lookup.
+    * @return A <code>MethodCall</code>.
+    * @throws NoSuchMethodException If a suitable <code>Method</code> couldn't
+    *    be found.
+    */
+   private MethodCall findMethodCall(Object value, String property)
+      throws NoSuchMethodException
    {
       MethodCall methodCall;
-      String lookup = value.getClass().getName() + "." + property;
       Object[] parameterArray;
-      // Synchronize access to the cache so multiple Threads don't "find"
-      // the same Method.
-      synchronized (myMethods)
+      if (Aggregator.PROP_SELF.equals(property))
       {
-         methodCall = myMethods.get(lookup);
-         // If not in cache...
-         if (methodCall == null)
+         // Get a SelfMethodCall.
+         methodCall = new SelfMethodCall(value);
+      }
+      else if (value instanceof ColumnarTable.Row)
+      {
+         // Properties of a Row are its columns.
+         methodCall = new ColumnMethodCall(property);
+      }
+      else
+      {
+         // Get a MethodCall.
+         PropertyParser parser = new PropertyParser(property);
+         parser.parse();
+         Method method;
+
+         if (parser.isMethod())
          {
-            if (Aggregator.PROP_SELF.equals(property))
+            // Method with possible parameters.
+            String methodName = parser.getPropertyName();
+            if (DEBUG)
+               System.out.println("Method name: \"" + methodName + "\".");
+            List<Object> parameters = parser.getParameters();
+            Class<?>[] classes = new Class<?>[parameters.size()];
+            for (int i = 0; i < parameters.size(); i++)
+            {
+               Class theClass = parameters.get(i).getClass();
+               classes[i] = theClass;
+               if (DEBUG)
+                  System.out.println("  Param Class: \"" + classes[i].getName() + "\".");
+            }
+            parameterArray = parameters.toArray();
+            // Hopefully the parameter types match EXACTLY.
+            try
             {
-               // Get a SelfMethodCall.
-               methodCall = new SelfMethodCall(value);
+               method = value.getClass().getMethod(methodName, classes);
+            }
+            catch (NoSuchMethodException e)
+            {
+               // No exact match.  Find the "best" "applicable" method.
+               method = findMethod(value.getClass(), methodName, classes);
+            }
+            if (method != null)
+            {
+               assignParameters(method.getParameterTypes(), parameterArray);
             }
             else
             {
-               // Get a MethodCall.
-               PropertyParser parser = new PropertyParser(property);
-               parser.parse();
-               Method method;
-
-               if (parser.isMethod())
+               // Couldn't find a Method.
+               throw new NoSuchMethodException("Couldn't find Method: " + methodName);
+            }
+         }
+         else
+         {
+            // Simple property name.
+            try
+            {
+               // getPropertyName
+               String methodName = "get" + property.substring(0, 1).toUpperCase() +
+                       property.substring(1);
+               method = value.getClass().getMethod(methodName);
+            }
+            catch (NoSuchMethodException e)
+            {
+               try
                {
-                  // Method with possible parameters.
-                  String methodName = parser.getPropertyName();
-                  if (DEBUG)
-                     System.out.println("Method name: \"" + methodName + "\".");
-                  List<Object> parameters = parser.getParameters();
-                  Class<?>[] classes = new Class<?>[parameters.size()];
-                  for (int i = 0; i < parameters.size(); i++)
-                  {
-                     Class theClass = parameters.get(i).getClass();
-                     classes[i] = theClass;
-                     if (DEBUG)
-                        System.out.println("  Param Class: \"" + classes[i].getName() + "\".");
-                  }
-                  parameterArray = parameters.toArray();
-                  // Hopefully the parameter types match EXACTLY.
-                  try
-                  {
-                     method = value.getClass().getMethod(methodName, classes);
-                  }
-                  catch (NoSuchMethodException e)
-                  {
-                     // No exact match.  Find the "best" "applicable" method.
-                     method = findMethod(value.getClass(), methodName, classes);
-                  }
-                  if (method != null)
-                  {
-                     assignParameters(method.getParameterTypes(), parameterArray);
-                  }
-                  else
-                  {
-                     // Couldn't find a Method.
-                     throw new NoSuchMethodException("Couldn't find Method: " + methodName);
-                  }
+                  // isPropertyName
+                  String methodName = "is" + property.substring(0, 1).toUpperCase() +
+                          property.substring(1);
+                  method = value.getClass().getMethod(methodName);
                }
-               else
+               catch (NoSuchMethodException e2)
                {
-                  // Simple property name.
-                  try
-                  {
-                     // getPropertyName
-                     String methodName = "get" + property.substring(0, 1).toUpperCase() +
-                             property.substring(1);
-                     method = value.getClass().getMethod(methodName);
-                  }
-                  catch (NoSuchMethodException e)
-                  {
-                     try
-                     {
-                        // isPropertyName
-                        String methodName = "is" + property.substring(0, 1).toUpperCase() +
-                                property.substring(1);
-                        method = value.getClass().getMethod(methodName);
-                     }
-                     catch (NoSuchMethodException e2)
-                     {
-                        throw new NoSuchMethodException("No matching method found for property \"" + property + "\"");
-                     }
-                  }
-                  parameterArray = new Object[0];
+                  throw new NoSuchMethodException("No matching method found for property \"" + property + "\"");
                }
-
-               if (DEBUG)
-                  System.out.println("  Method found: " + method);
-               methodCall = new MethodCall(method, parameterArray);
             }
-            myMethods.put(lookup, methodCall);
+            parameterArray = new Object[0];
          }
+
+         if (DEBUG)
+            System.out.println("  Method found: " + method);
+         methodCall = new MethodCall(method, parameterArray);
       }
       return methodCall;
    }
@@ -19,7 +19,9 @@ public class MethodCall
    private Object[] myParameters;
 
    /**
-    * Constructs a <code>MethodCall</code>.
+    * Constructs a <code>MethodCall</code>.  If permitted, Java language
+    * access checks are suppressed on the <code>Method</code>, which makes
+    * each invocation cheaper.
     * @param method The <code>Method</code>.
     * @param parameters The array of parameter values.
     */
@@ -27,6 +29,17 @@ public class MethodCall
    {
       myMethod = method;
       myParameters = parameters;
+      if (method != null)
+      {
+         try
+         {
+            method.setAccessible(true);
+         }
+         catch (SecurityException ignored)
+         {
+            // Access checks will just be performed on each invocation.
+         }
+      }
    }
 
    /**
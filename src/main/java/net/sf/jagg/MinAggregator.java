@@ -1,5 +1,7 @@
 package net.sf.jagg;
 
+import java.util.List;
+
 /**
  * This class represents the "min" aggregator over <code>Comparable</code>
  * values.
@@ -52,7 +54,7 @@ public class MinAggregator extends Aggregator
          String property = getProperty();
          try
          {
-            Comparable obj = (Comparable) getValueFromProperty(value, property);
+            Comparable obj = (Comparable) getValueFromProperty(value);
             // Don't count nulls.
             if (obj != null)
             {
@@ -68,6 +70,47 @@ public class MinAggregator extends Aggregator
       }
    }
 
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
+   /**
+    * Finds the minimum of the values without boxing them, in the order of
+    * <code>Double.compareTo</code>, then stores it if it's lower than the
+    * current minimum.
+    *
+    * @param values An array of property values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateDoubles(double[] values, int start, int end)
+   {
+      if (start >= end)
+         return;
+      double min = values[start];
+      for (int i = start + 1; i < end; i++)
+      {
+         if (Double.compare(values[i], min) < 0)
+            min = values[i];
+      }
+      Double obj = min;
+      if (myMin == null || obj.compareTo((Double) myMin) < 0)
+         myMin = obj;
+   }
+
    /**
     * Merge the given <code>Aggregator</code> into this one by taking the
     * minimum of the two minimums.
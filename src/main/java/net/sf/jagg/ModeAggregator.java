@@ -1,19 +1,28 @@
 package net.sf.jagg;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class represents the "mode" aggregator over <code>Comparable</code>
  * values.
  *
+ * <p>As of 0.7.3, the frequency of each distinct value is counted in a
+ * <code>HashMap</code> as it's iterated, instead of collecting all values
+ * and sorting them, so memory is proportional to the number of distinct
+ * values.  Values are therefore distinguished by <code>equals</code>, which
+ * for most <code>Comparables</code> is consistent with
+ * <code>compareTo</code>.</p>
+ *
+ * @see TopKAggregator
+ *
  * @author Randy Gettman
  * @since 0.6.0
  */
 public class ModeAggregator extends Aggregator
 {
-   private List<Comparable> myRecords;
+   private Map<Object, Frequency> myFrequencies;
 
    /**
     * Constructs a <code>ModeAggregator</code> that operates on the specified
@@ -36,16 +45,16 @@ public class ModeAggregator extends Aggregator
    }
 
    /**
-    * Initialize an internal list to empty.
+    * Initialize an internal map of frequencies to empty.
     */
    public void init()
    {
-      myRecords = new ArrayList<Comparable>();
+      myFrequencies = new HashMap<Object, Frequency>();
    }
 
    /**
-    * Make sure the second property's value is not null, then add the entire
-    * <code>Object</code> to an internal list.
+    * Make sure the property's value is not null, then count it in an
+    * internal map of frequencies.
     *
     * @param value The value to aggregate.
     */
@@ -58,12 +67,12 @@ public class ModeAggregator extends Aggregator
          try
          {
             // The property must be Comparable.
-            Comparable comp = (Comparable) getValueFromProperty(value, property);
+            Comparable comp = (Comparable) getValueFromProperty(value);
 
             // Don't count nulls.
             if (comp != null)
             {
-               myRecords.add(comp);
+               add(comp, 1);
             }
          }
          catch (ClassCastException e)
@@ -74,10 +83,25 @@ public class ModeAggregator extends Aggregator
       }
    }
 
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
    /**
     * Merge the given <code>Aggregator</code> into this one by adding the
-    * contents of the given <code>Aggregator's</code> internal list into this
-    * <code>Aggregator's</code> internal list.
+    * frequencies in the given <code>Aggregator's</code> internal map to the
+    * frequencies in this <code>Aggregator's</code> internal map.
     *
     * @param agg The <code>Aggregator</code> to merge into this one.
     */
@@ -86,66 +110,59 @@ public class ModeAggregator extends Aggregator
       if (agg != null && agg instanceof ModeAggregator)
       {
          ModeAggregator otherAgg = (ModeAggregator) agg;
-         myRecords.addAll(otherAgg.myRecords);
+         for (Map.Entry<Object, Frequency> entry : otherAgg.myFrequencies.entrySet())
+            add(entry.getKey(), entry.getValue().myCount);
       }
    }
 
    /**
     * Return the value among the values in the specified property that occurs
-    * most often (the statistical mode), or any of the modes if there is more
-    * than one, with the following algorithm:
-    * <ol>
-    * <li>Sort the internal list with respect to all values, using
-    *    <code>Collections.sort</code>.
-    * <li>Walk through the list of values, keeping track of the current value
-    *    and the current value's frequency.
-    * <li>Return the mode.
-    * </ol>
+    * most often (the statistical mode).  If there is more than one mode, then
+    * the least of them is returned, as if the values had been sorted.
     *
-    * @return The statistical mode.
-    * @see java.util.Collections#sort
-    * @see ComparableComparator
+    * @return The statistical mode, or <code>null</code> if no values have
+    *    been accumulated.
     */
    @SuppressWarnings("unchecked")
    public Comparable terminate()
    {
-      int numItems = myRecords.size();
-
-      if (numItems == 0)
-         return null;
-
-      // Must sort it before determining the mode!
-      Collections.sort(myRecords);
-
       Comparable mode = null;
-      Comparable prev = null;
-      int frequency = 0;
-      int maxFrequency = 0;
-
-      // Walk through the list.
-      for (int i = 0; i < numItems; i++)
+      long maxFrequency = 0;
+      for (Map.Entry<Object, Frequency> entry : myFrequencies.entrySet())
       {
-         Comparable c = myRecords.get(i);
-         if (prev != null && c.compareTo(prev) == 0)
-         {
-            frequency++;
-         }
-         else
+         long frequency = entry.getValue().myCount;
+         Comparable c = (Comparable) entry.getKey();
+         if (frequency > maxFrequency || (frequency == maxFrequency && c.compareTo(mode) < 0))
          {
-            if (frequency > maxFrequency)
-            {
-               maxFrequency = frequency;
-               mode = prev;
-            }
-            frequency = 1;
-            prev = c;
+            maxFrequency = frequency;
+            mode = c;
          }
       }
-      // Account for last run.
-      if (frequency > maxFrequency)
+      return mode;
+   }
+
+   /**
+    * Adds the given number of occurrences of the given value.
+    * @param comp The <code>Comparable</code> value.
+    * @param count The number of occurrences.
+    */
+   private void add(Object comp, long count)
+   {
+      Frequency frequency = myFrequencies.get(comp);
+      if (frequency == null)
       {
-         mode = prev;
+         frequency = new Frequency();
+         myFrequencies.put(comp, frequency);
       }
-      return mode;
+      frequency.myCount += count;
+   }
+
+   /**
+    * A mutable count, so that counting an occurrence doesn't replace the
+    * map's entry.
+    */
+   private static class Frequency
+   {
+      private long myCount;
    }
 }
@@ -0,0 +1,205 @@
+package net.sf.jagg;
+
+import java.util.Date;
+
+/**
+ * <p>A <code>NormalizedKeyEncoder</code> encodes the "group by" property
+ * values of an object, as extracted by <code>PropertiesComparator.getKey</code>,
+ * into a single normalized key: an array of bytes which, compared as
+ * unsigned bytes from left to right, with a shorter array that is a prefix of
+ * a longer one comparing first, orders the objects exactly as the
+ * <code>PropertiesComparator</code> does.  Two keys are equal if and only if
+ * the <code>PropertiesComparator</code> considers the objects equal.</p>
+ * <p>Each property value is preceded by a byte that is <code>0</code> if the
+ * value is not <code>null</code> and <code>1</code> if it is, so that nulls
+ * sort last.  Non-null values are encoded as follows:</p>
+ * <ul>
+ * <li><code>Byte</code>, <code>Short</code>, <code>Integer</code>,
+ *    <code>Long</code>: big-endian, with the sign bit flipped.
+ * <li><code>Float</code>, <code>Double</code>: the big-endian bits, with the
+ *    sign bit flipped if positive, or all bits flipped if negative.  This
+ *    matches <code>compareTo</code>, including for -0.0 and NaN.
+ * <li><code>Character</code>: big-endian.  <code>Boolean</code>: one byte.
+ * <li><code>Dates</code>, including <code>java.sql.Dates</code> and
+ *    <code>Times</code>: the time in milliseconds, as a <code>long</code>.
+ * <li><code>Enums</code>: the ordinal, as an <code>int</code>.
+ * <li><code>Strings</code>: each character plus one, in one byte if less than
+ *    <code>0x80</code>, two bytes with a lead byte from <code>0x80</code> to
+ *    <code>0xBF</code> if less than <code>0x4000</code>, and three bytes with
+ *    a lead byte of <code>0xC0</code> or <code>0xC1</code> otherwise,
+ *    followed by a <code>0</code> byte.  This matches
+ *    <code>String.compareTo</code>, which compares characters.
+ * </ul>
+ * <p>Any other type, e.g. <code>BigDecimal</code>, has no normalized key,
+ * and neither do values of the same property with different types.  This
+ * class is not thread-safe.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+final class NormalizedKeyEncoder
+{
+   private Class<?>[] myClasses;
+   private byte[] myBuffer;
+   private int myLength;
+
+   /**
+    * Constructs a <code>NormalizedKeyEncoder</code> for keys of the given
+    * number of properties.
+    * @param numProperties The number of properties.
+    */
+   public NormalizedKeyEncoder(int numProperties)
+   {
+      myClasses = new Class<?>[numProperties];
+      myBuffer = new byte[64];
+   }
+
+   /**
+    * Encodes the given key.
+    * @param key An array of property values.
+    * @return The normalized key, or <code>null</code> if a value's type has
+    *    no normalized key, or differs from the type of that property's
+    *    values in previously encoded keys.
+    */
+   public byte[] encode(Object[] key)
+   {
+      myLength = 0;
+      for (int i = 0; i < key.length; i++)
+      {
+         Object value = key[i];
+         if (value == null)
+         {
+            write(1);
+            continue;
+         }
+         Class<?> type = (value instanceof Enum) ? ((Enum<?>) value).getDeclaringClass() : value.getClass();
+         if (myClasses[i] == null)
+            myClasses[i] = type;
+         else if (myClasses[i] != type)
+            return null;
+         write(0);
+         if (!encodeValue(value))
+            return null;
+      }
+      byte[] normalizedKey = new byte[myLength];
+      System.arraycopy(myBuffer, 0, normalizedKey, 0, myLength);
+      return normalizedKey;
+   }
+
+   /**
+    * Encodes a non-null value.
+    * @param value The value.
+    * @return <code>false</code> if the value's type has no normalized key,
+    *    else <code>true</code>.
+    */
+   private boolean encodeValue(Object value)
+   {
+      if (value instanceof String)
+         writeString((String) value);
+      else if (value instanceof Integer)
+         writeInt(((Integer) value) ^ Integer.MIN_VALUE);
+      else if (value instanceof Long)
+         writeLong(((Long) value) ^ Long.MIN_VALUE);
+      else if (value instanceof Double)
+      {
+         long bits = Double.doubleToLongBits((Double) value);
+         writeLong(bits ^ ((bits >> 63) | Long.MIN_VALUE));
+      }
+      else if (value instanceof Float)
+      {
+         int bits = Float.floatToIntBits((Float) value);
+         writeInt(bits ^ ((bits >> 31) | Integer.MIN_VALUE));
+      }
+      else if (value instanceof Short)
+      {
+         int bits = ((Short) value) ^ Short.MIN_VALUE;
+         write(bits >>> 8);
+         write(bits);
+      }
+      else if (value instanceof Byte)
+         write(((Byte) value) ^ Byte.MIN_VALUE);
+      else if (value instanceof Character)
+      {
+         char c = (Character) value;
+         write(c >>> 8);
+         write(c);
+      }
+      else if (value instanceof Boolean)
+         write(((Boolean) value) ? 1 : 0);
+      else if (value instanceof Enum)
+         writeInt(((Enum<?>) value).ordinal());
+      else if (value.getClass() == Date.class || value.getClass() == java.sql.Date.class ||
+         value.getClass() == java.sql.Time.class)
+         writeLong(((Date) value).getTime() ^ Long.MIN_VALUE);
+      else
+         return false;
+      return true;
+   }
+
+   /**
+    * Writes a <code>String</code>, each character in one to three bytes,
+    * followed by a <code>0</code> byte.
+    * @param s The <code>String</code>.
+    */
+   private void writeString(String s)
+   {
+      int length = s.length();
+      for (int i = 0; i < length; i++)
+      {
+         // Shift by one, so that 0 terminates.
+         int c = s.charAt(i) + 1;
+         if (c < 0x80)
+            write(c);
+         else if (c < 0x4000)
+         {
+            write(0x80 | (c >>> 8));
+            write(c);
+         }
+         else
+         {
+            write(0xC0 | (c >>> 16));
+            write(c >>> 8);
+            write(c);
+         }
+      }
+      write(0);
+   }
+
+   /**
+    * Writes an <code>int</code>, big-endian.
+    * @param bits The <code>int</code>.
+    */
+   private void writeInt(int bits)
+   {
+      write(bits >>> 24);
+      write(bits >>> 16);
+      write(bits >>> 8);
+      write(bits);
+   }
+
+   /**
+    * Writes a <code>long</code>, big-endian.
+    * @param bits The <code>long</code>.
+    */
+   private void writeLong(long bits)
+   {
+      writeInt((int) (bits >>> 32));
+      writeInt((int) bits);
+   }
+
+   /**
+    * Writes the low 8 bits of the given <code>int</code>, growing the buffer
+    * if necessary.
+    * @param b The byte to write.
+    */
+   private void write(int b)
+   {
+      if (myLength == myBuffer.length)
+      {
+         byte[] buffer = new byte[2 * myLength];
+         System.arraycopy(myBuffer, 0, buffer, 0, myLength);
+         myBuffer = buffer;
+      }
+      myBuffer[myLength++] = (byte) b;
+   }
+}
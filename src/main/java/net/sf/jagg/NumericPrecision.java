@@ -0,0 +1,84 @@
+package net.sf.jagg;
+
+/**
+ * <p>A <code>NumericPrecision</code> determines how numeric
+ * <code>Aggregators</code>, such as <code>SumAggregator</code>,
+ * <code>AvgAggregator</code>, and the variance and standard deviation
+ * <code>Aggregators</code>, accumulate values.  It may be given as an
+ * additional property in an <code>Aggregator</code> specification, e.g.
+ * <code>Sum(value, compensated)</code>, ignoring case.</p>
+ * <p>In every precision, values of integral types (<code>Long</code>,
+ * <code>Integer</code>, <code>Short</code>, and <code>Byte</code>) are
+ * summed exactly as <code>longs</code>, as long as the sum doesn't
+ * overflow.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public enum NumericPrecision
+{
+   /**
+    * Accumulate in plain <code>doubles</code>.  This is the fastest, with no
+    * allocation per value, but rounding errors accumulate with the number of
+    * values.  Variances use Welford's algorithm.
+    */
+   DOUBLE,
+   /**
+    * Accumulate in <code>doubles</code> with Neumaier's compensated
+    * summation, which tracks the rounding error of each addition in a second
+    * <code>double</code>.  The error is nearly independent of the number of
+    * values, with no allocation per value.
+    */
+   COMPENSATED,
+   /**
+    * Accumulate in <code>DoubleDoubles</code>, with about 106 bits of
+    * precision.  This is the most precise and the slowest.  This is the
+    * default.
+    */
+   DOUBLE_DOUBLE;
+
+   /**
+    * Returns the <code>NumericPrecision</code> with the given name, ignoring
+    * case and surrounding whitespace.
+    * @param name The name, e.g. "double", "compensated", or "double_double".
+    * @return The <code>NumericPrecision</code>.
+    * @throws IllegalArgumentException If there is no
+    *    <code>NumericPrecision</code> with the given name.
+    */
+   public static NumericPrecision fromName(String name)
+   {
+      String trimmed = name.trim();
+      for (NumericPrecision precision : values())
+      {
+         if (precision.name().equalsIgnoreCase(trimmed))
+            return precision;
+      }
+      throw new IllegalArgumentException("Unknown NumericPrecision: \"" + trimmed + "\".");
+   }
+
+   /**
+    * Finds a <code>NumericPrecision</code> at the end of an
+    * <code>Aggregator's</code> property, in the format:
+    * <code>property[, precision]</code>.  The property itself may contain
+    * commas, e.g. in method arguments, so the text after the last comma is
+    * only taken to be a precision if it names one.
+    * @param property The property, which may be <code>null</code>.
+    * @return The index of the comma before the precision, or <code>-1</code>
+    *    if the property doesn't end with a precision.
+    */
+   static int indexOfPrecision(String property)
+   {
+      if (property == null)
+         return -1;
+      int comma = property.lastIndexOf(',');
+      if (comma < 0)
+         return -1;
+      String name = property.substring(comma + 1).trim();
+      for (NumericPrecision precision : values())
+      {
+         if (precision.name().equalsIgnoreCase(name))
+            return comma;
+      }
+      return -1;
+   }
+}
@@ -0,0 +1,194 @@
+package net.sf.jagg;
+
+/**
+ * <p>A <code>NumericSum</code> is a running sum of <code>Numbers</code> in a
+ * given <code>NumericPrecision</code>, used by <code>SumAggregator</code> and
+ * <code>AvgAggregator</code>.  Values of integral types are summed exactly in
+ * a <code>long</code>; if that would overflow, the value is summed as a
+ * floating-point value instead.  Other values are summed as
+ * <code>doubles</code>: in a plain <code>double</code>, in a
+ * <code>double</code> compensated with Neumaier's algorithm, or in a
+ * <code>DoubleDouble</code>, depending on the precision.  No objects are
+ * allocated while adding values.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+final class NumericSum
+{
+   private NumericPrecision myPrecision;
+   private long myLongSum;
+   // The floating-point sum, for DOUBLE and COMPENSATED.
+   private double myDoubleSum;
+   // The accumulated rounding error of myDoubleSum, for COMPENSATED.
+   private double myCompensation;
+   // The floating-point sum, for DOUBLE_DOUBLE.
+   private DoubleDouble myDoubleDoubleSum;
+
+   /**
+    * Constructs a zero <code>NumericSum</code>.
+    * @param precision The <code>NumericPrecision</code>.
+    */
+   public NumericSum(NumericPrecision precision)
+   {
+      myPrecision = precision;
+      if (precision == NumericPrecision.DOUBLE_DOUBLE)
+         myDoubleDoubleSum = new DoubleDouble();
+   }
+
+   /**
+    * Resets the sum to zero.
+    */
+   public void reset()
+   {
+      myLongSum = 0;
+      myDoubleSum = 0;
+      myCompensation = 0;
+      if (myDoubleDoubleSum != null)
+         myDoubleDoubleSum.reset();
+   }
+
+   /**
+    * Adds a value.
+    * @param value The value, which must not be <code>null</code>.
+    */
+   public void add(Number value)
+   {
+      if (CountDistinctAggregator.isIntegral(value))
+         add(value.longValue());
+      else
+         add(value.doubleValue());
+   }
+
+   /**
+    * Adds an integral value exactly, unless the <code>long</code> sum would
+    * overflow.
+    * @param value The value.
+    */
+   public void add(long value)
+   {
+      long sum = myLongSum + value;
+      // Overflow iff both operands have the sign opposite to the result's.
+      if (((myLongSum ^ sum) & (value ^ sum)) < 0)
+         addLongAsDouble(value);
+      else
+         myLongSum = sum;
+   }
+
+   /**
+    * Adds a floating-point value.
+    * @param value The value.
+    */
+   public void add(double value)
+   {
+      switch (myPrecision)
+      {
+      case DOUBLE:
+         myDoubleSum += value;
+         break;
+      case COMPENSATED:
+         // Neumaier's variant of Kahan summation: the lost low-order bits
+         // come from whichever operand is smaller in magnitude.
+         double sum = myDoubleSum + value;
+         if (Math.abs(myDoubleSum) >= Math.abs(value))
+            myCompensation += (myDoubleSum - sum) + value;
+         else
+            myCompensation += (value - sum) + myDoubleSum;
+         myDoubleSum = sum;
+         break;
+      default:
+         myDoubleDoubleSum.addToSelf(value);
+      }
+   }
+
+   /**
+    * Adds the floating-point values in the given range of an array, choosing
+    * the precision once for all of them.
+    * @param values An array of values.
+    * @param start The index of the first value, inclusive.
+    * @param end The index after the last value, exclusive.
+    */
+   public void addAll(double[] values, int start, int end)
+   {
+      switch (myPrecision)
+      {
+      case DOUBLE:
+         double sum = myDoubleSum;
+         for (int i = start; i < end; i++)
+            sum += values[i];
+         myDoubleSum = sum;
+         break;
+      case COMPENSATED:
+         for (int i = start; i < end; i++)
+            add(values[i]);
+         break;
+      default:
+         for (int i = start; i < end; i++)
+            myDoubleDoubleSum.addToSelf(values[i]);
+      }
+   }
+
+   /**
+    * Adds all values from another <code>NumericSum</code> of the same
+    * precision.
+    * @param other Another <code>NumericSum</code>.
+    */
+   public void merge(NumericSum other)
+   {
+      add(other.myLongSum);
+      switch (myPrecision)
+      {
+      case DOUBLE:
+         myDoubleSum += other.myDoubleSum;
+         break;
+      case COMPENSATED:
+         add(other.myDoubleSum);
+         myCompensation += other.myCompensation;
+         break;
+      default:
+         myDoubleDoubleSum.addToSelf(other.myDoubleDoubleSum);
+      }
+   }
+
+   /**
+    * Returns the sum as a new <code>DoubleDouble</code>.
+    * @return The sum.
+    */
+   public DoubleDouble toDoubleDouble()
+   {
+      DoubleDouble result;
+      switch (myPrecision)
+      {
+      case DOUBLE:
+         result = new DoubleDouble(myDoubleSum);
+         break;
+      case COMPENSATED:
+         result = new DoubleDouble(myDoubleSum);
+         // An infinite sum leaves a NaN compensation.
+         if (!Double.isInfinite(myDoubleSum))
+            result.addToSelf(myCompensation);
+         break;
+      default:
+         result = new DoubleDouble(myDoubleDoubleSum);
+      }
+      if (myLongSum != 0)
+      {
+         double high = myLongSum;
+         result.addToSelf(high);
+         result.addToSelf((double) (myLongSum - (long) high));
+      }
+      return result;
+   }
+
+   /**
+    * Adds an integral value that doesn't fit in the <code>long</code> sum as
+    * a floating-point value, split in two so that no bits are lost.
+    * @param value The value.
+    */
+   private void addLongAsDouble(long value)
+   {
+      double high = value;
+      add(high);
+      add((double) (value - (long) high));
+   }
+}
@@ -0,0 +1,165 @@
+package net.sf.jagg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * <p>A <code>ParallelSorter</code> sorts a <code>List</code> using multiple
+ * <code>Threads</code> from a given <code>ExecutorService</code>.  It is a
+ * merge sort: the elements are copied into an array, which is divided into
+ * as many contiguous chunks as the desired parallelism.  Each chunk is sorted
+ * concurrently with <code>Arrays.sort</code>, then adjacent pairs of sorted
+ * chunks are merged concurrently, doubling the chunk width each round until
+ * one sorted array remains.  Finally the elements are written back into the
+ * <code>List</code>, as <code>Collections.sort</code> does.</p>
+ * <p>Like <code>Collections.sort</code>, this sort is stable: elements that
+ * compare equal remain in their original relative order.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+class ParallelSorter
+{
+   /**
+    * Private constructor; all methods are static.
+    */
+   private ParallelSorter() {}
+
+   /**
+    * Sorts the given <code>List</code> in place, using up to the given
+    * number of concurrent tasks.
+    * @param <T> The type of elements.
+    * @param list The <code>List</code> to sort.
+    * @param comparator The <code>Comparator</code> that determines the order.
+    * @param parallelism The number of chunks to sort concurrently.
+    * @param executor The <code>ExecutorService</code> that runs the tasks.
+    */
+   @SuppressWarnings("unchecked")
+   public static <T> void sort(List<T> list, final Comparator<? super T> comparator,
+      int parallelism, ExecutorService executor)
+   {
+      final Object[] array = list.toArray();
+      int size = array.length;
+      if (parallelism > size)
+         parallelism = size;
+      if (parallelism <= 1)
+      {
+         Arrays.sort((T[]) array, comparator);
+      }
+      else
+      {
+         // Chunk boundaries: chunk c is [bounds[c], bounds[c + 1]).
+         int[] bounds = new int[parallelism + 1];
+         for (int c = 0; c <= parallelism; c++)
+            bounds[c] = (int) (((long) size * c) / parallelism);
+
+         List<Future<?>> futures = new ArrayList<Future<?>>(parallelism);
+         for (int c = 0; c < parallelism; c++)
+         {
+            final int from = bounds[c];
+            final int to = bounds[c + 1];
+            futures.add(executor.submit(new Runnable() {
+               public void run()
+               {
+                  Arrays.sort((T[]) array, from, to, comparator);
+               }
+            }));
+         }
+         Aggregations.waitFor(futures, "sorting");
+
+         // Merge adjacent pairs of chunks, back and forth between the two
+         // arrays, until one chunk remains.
+         Object[] src = array;
+         Object[] dest = new Object[size];
+         int numChunks = parallelism;
+         while (numChunks > 1)
+         {
+            futures.clear();
+            int newNumChunks = (numChunks + 1) / 2;
+            int[] newBounds = new int[newNumChunks + 1];
+            for (int c = 0; c < numChunks; c += 2)
+            {
+               final Object[] mergeSrc = src;
+               final Object[] mergeDest = dest;
+               final int from = bounds[c];
+               final int mid = bounds[Math.min(c + 1, numChunks)];
+               final int to = bounds[Math.min(c + 2, numChunks)];
+               newBounds[c / 2] = from;
+               if (mid == to)
+               {
+                  // Odd chunk out; just copy it.
+                  System.arraycopy(mergeSrc, from, mergeDest, from, to - from);
+               }
+               else
+               {
+                  futures.add(executor.submit(new Runnable() {
+                     public void run()
+                     {
+                        merge(mergeSrc, mergeDest, from, mid, to, comparator);
+                     }
+                  }));
+               }
+            }
+            newBounds[newNumChunks] = size;
+            Aggregations.waitFor(futures, "sorting");
+            bounds = newBounds;
+            numChunks = newNumChunks;
+            Object[] temp = src;
+            src = dest;
+            dest = temp;
+         }
+         System.arraycopy(src, 0, array, 0, size);
+      }
+
+      ListIterator<T> itr = list.listIterator();
+      for (int i = 0; i < size; i++)
+      {
+         itr.next();
+         itr.set((T) array[i]);
+      }
+   }
+
+   /**
+    * Merges the two adjacent sorted ranges <code>[from, mid)</code> and
+    * <code>[mid, to)</code> of <code>src</code> into the range
+    * <code>[from, to)</code> of <code>dest</code>.  When elements compare
+    * equal, the one from the left range is taken first, which keeps the sort
+    * stable.
+    * @param src The source array.
+    * @param dest The destination array.
+    * @param from The start of the left range, inclusive.
+    * @param mid The end of the left range and the start of the right range.
+    * @param to The end of the right range, exclusive.
+    * @param comparator The <code>Comparator</code> that determines the order.
+    */
+   @SuppressWarnings("unchecked")
+   private static <T> void merge(Object[] src, Object[] dest, int from, int mid, int to,
+      Comparator<? super T> comparator)
+   {
+      int left = from;
+      int right = mid;
+      int d = from;
+      // If the ranges are already in order, just copy them.
+      if (comparator.compare((T) src[mid - 1], (T) src[mid]) <= 0)
+      {
+         System.arraycopy(src, from, dest, from, to - from);
+         return;
+      }
+      while (left < mid && right < to)
+      {
+         if (comparator.compare((T) src[right], (T) src[left]) < 0)
+            dest[d++] = src[right++];
+         else
+            dest[d++] = src[left++];
+      }
+      if (left < mid)
+         System.arraycopy(src, left, dest, d, mid - left);
+      else if (right < to)
+         System.arraycopy(src, right, dest, d, to - right);
+   }
+}
@@ -1,7 +1,6 @@
 package net.sf.jagg;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -11,12 +10,23 @@ import java.util.List;
  * The first property is the desired percentile, between 0 and 1 inclusive, and
  * the second property denotes the desired sort order and return value.
  *
+ * <p>As of 0.7.3, the values of the second property are extracted once, in
+ * <code>iterate</code>, into a growable array of <code>doubles</code>, and
+ * the result is found with a selection algorithm instead of a sort.</p>
+ *
  * @author Randy Gettman
  * @since 0.1.0
  */
 public class PercentileAggregator extends TwoPropAggregator
 {
-   private List<Object> myRecords;
+   private static final int INITIAL_CAPACITY = 16;
+   // Ranges this small are finished with an insertion sort.
+   private static final int INSERTION_SORT_THRESHOLD = 16;
+
+   private double[] myValues;
+   private int     mySize;
+   // NaN values are counted separately; they are ordered after all others.
+   private int     myNaNs;
    private double  myPercentile;
 
    /**
@@ -81,16 +91,18 @@ public class PercentileAggregator extends TwoPropAggregator
    }
 
    /**
-    * Initialize an internal list to empty.
+    * Initialize an internal array to empty.
     */
    public void init()
    {
-      myRecords = new ArrayList<Object>();
+      myValues = new double[INITIAL_CAPACITY];
+      mySize = 0;
+      myNaNs = 0;
    }
 
    /**
-    * Make sure the second property's value is not null, then add the entire
-    * <code>Object</code> to an internal list.
+    * Make sure the second property's value is not null, then add its value
+    * to an internal array.
     *
     * @param value The value to aggregate.
     */
@@ -103,12 +115,19 @@ public class PercentileAggregator extends TwoPropAggregator
          try
          {
             // Examine the second property which is the sort order.
-            Number obj = (Number) getValueFromProperty(value, property);
+            Number obj = (Number) getValueFromProperty2(value);
 
             // Don't count nulls.
             if (obj != null)
             {
-               myRecords.add(value);
+               double d = obj.doubleValue();
+               if (Double.isNaN(d))
+                  myNaNs++;
+               else
+               {
+                  ensureCapacity(mySize + 1);
+                  myValues[mySize++] = d;
+               }
             }
          }
          catch (ClassCastException e)
@@ -120,9 +139,62 @@ public class PercentileAggregator extends TwoPropAggregator
    }
 
    /**
-    * Merge the given <code>Aggregator</code> into this one by adding the
-    * contents of the given <code>Aggregator's</code> internal list into this
-    * <code>Aggregator's</code> internal list.
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
+   /**
+    * Adds the values of the second property to the internal array, without
+    * boxing them.
+    *
+    * @param values An array of property values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateDoubles(double[] values, int start, int end)
+   {
+      if (end > start)
+         ensureCapacity(mySize + end - start);
+      for (int i = start; i < end; i++)
+      {
+         double d = values[i];
+         if (Double.isNaN(d))
+            myNaNs++;
+         else
+            myValues[mySize++] = d;
+      }
+   }
+
+   /**
+    * The first property is the percentile, not a property of the objects, so
+    * this <code>Aggregator</code> may be given values of the second property
+    * in place of the objects, if it's built in.
+    *
+    * @return Whether this <code>Aggregator</code> is built in.
+    * @since 0.7.3
+    */
+   @Override
+   protected boolean isAcceptingPropertyValues()
+   {
+      return isBuiltIn();
+   }
+
+   /**
+    * Merge the given <code>Aggregator</code> into this one by appending the
+    * contents of the given <code>Aggregator's</code> internal array to this
+    * <code>Aggregator's</code> internal array.
     *
     * @param agg The <code>Aggregator</code> to merge into this one.
     */
@@ -131,7 +203,10 @@ public class PercentileAggregator extends TwoPropAggregator
       if (agg != null && agg instanceof PercentileAggregator)
       {
          PercentileAggregator otherAgg = (PercentileAggregator) agg;
-         myRecords.addAll(otherAgg.myRecords);
+         ensureCapacity(mySize + otherAgg.mySize);
+         System.arraycopy(otherAgg.myValues, 0, myValues, mySize, otherAgg.mySize);
+         mySize += otherAgg.mySize;
+         myNaNs += otherAgg.myNaNs;
       }
    }
 
@@ -139,25 +214,24 @@ public class PercentileAggregator extends TwoPropAggregator
     * Return the value among the values in the specified property that matches
     * the given percentile value, with the following algorithm:
     * <ol>
-    * <li>Sort the internal list with respect to the second property, using
-    *    <code>Collections.sort</code>, using a
-    *    <code>PropertiesComparator</code> that compares values based on the
-    *    second property given.
     * <li>Calculate a zero-based "row number" based on the percentile value
     *    (the first property given), with the formula <em>r</em> = <em>p</em> *
     *    (<em>n</em> - 1), where <em>r</em> is the row number, <em>p</em> is
     *    the percentile value, and <em>n</em> is the number of non-null values
     *    processed.
-    * <li>If <em>r</em> is an integer, then return the value of that row's
-    *    property.
-    * <li>Else, return a linear interpolation of the values of the two rows'
-    *    properties bounding <em>r</em>.
+    * <li>Select the value that would be at the floor of <em>r</em> if the
+    *    values were sorted, using an introspective selection, which takes
+    *    <em>O(n)</em> time.  The values after it are not less than it.
+    * <li>If <em>r</em> is an integer, then return that value.
+    * <li>Else, find the value that would be at the ceiling of <em>r</em>,
+    *    the minimum of the values after the floor, and return a linear
+    *    interpolation of the two values.
     * </ol>
+    * <code>NaN</code> values are ordered after all other values, as
+    * <code>Double.compareTo</code> orders them.
     *
     * @return The desired <code>Double</code> that best matches the given
     *    percentile value, or <code>null</code> if no items were processed.
-    * @see Collections#sort
-    * @see PropertiesComparator
     */
    public Double terminate()
    {
@@ -175,77 +249,158 @@ public class PercentileAggregator extends TwoPropAggregator
     */
    public DoubleDouble terminateDoubleDouble()
    {
-      int numItems = myRecords.size();
+      int numItems = mySize + myNaNs;
       DoubleDouble rownum = new DoubleDouble(myPercentile);
       rownum.multiplySelfBy(numItems - 1);
       // Don't need to implement DoubleDouble.floor() and DoubleDouble.ceil(),
       // unless we are aggregating over 2^52 items (4 quadrillion).  That's
-      // impossible, because the ArrayList.get method takes an int, which is
-      // limited to 2 billion or so.
+      // impossible, because arrays are indexed by an int, which is limited
+      // to 2 billion or so.
       double floor = Math.floor(rownum.doubleValue());
       double ceiling = Math.ceil(rownum.doubleValue());
 
       if (numItems == 0)
          return new DoubleDouble(DoubleDouble.NaN);
+      // NaNs sort last.
+      if (ceiling >= mySize)
+         return new DoubleDouble(DoubleDouble.NaN);
 
-      // Must sort it before determining the correct value!
-      ArrayList<String> sortProperties = new ArrayList<String>();
-      sortProperties.add(getProperty2());
-      PropertiesComparator<Object> comparator = new PropertiesComparator<Object>(sortProperties);
-      Collections.sort(myRecords, comparator);
+      int floorIndex = (int) floor;
+      double lowValue = select(myValues, 0, mySize, floorIndex);
 
       // Now check if the mapped row number maps directly to a specific row or
       // somewhere in between two rows.
       if (rownum.doubleValue() == floor && rownum.doubleValue() == ceiling)
       {
-         // Return value of property at specified row.
-         String property = null;
-         Object value = myRecords.get((int) floor);
-
-         try
-         {
-            // Examine the second property which is the sort order.
-            property = getProperty2();
-            Number obj = (Number) getValueFromProperty(value, property);
-            return new DoubleDouble(obj.doubleValue());
-         }
-         catch (ClassCastException e)
-         {
-            throw new UnsupportedOperationException("Property \"" + property +
-               "\" must represent a Number.", e);
-         }
+         // Return value at specified row.
+         return new DoubleDouble(lowValue);
       }
       else
       {
+         // The ceiling row's value is the least value after the floor row.
+         double highValue = myValues[floorIndex + 1];
+         for (int i = floorIndex + 2; i < mySize; i++)
+         {
+            if (myValues[i] < highValue)
+               highValue = myValues[i];
+         }
          // Return linear interpolation of the values at the floor row and the
          // ceiling row.
-         String property = null;
-         Object lowValue = myRecords.get((int) floor);
-         Object highValue = myRecords.get((int) ceiling);
+         DoubleDouble low = new DoubleDouble(lowValue);
+         DoubleDouble high = new DoubleDouble(highValue);
+         DoubleDouble temp = new DoubleDouble(rownum);
+         temp.subtractFromSelf(floor);
+         temp.multiplySelfBy(high);
+         DoubleDouble temp2 = new DoubleDouble(rownum);
+         temp2.negateSelf();
+         temp2.addToSelf(ceiling);
+         temp2.multiplySelfBy(low);
+         temp2.addToSelf(temp);
+         return temp2;
+      }
+   }
 
-         try
+   /**
+    * Ensures that the internal array can hold at least the given number of
+    * values, doubling its size as necessary.
+    * @param capacity The desired capacity.
+    */
+   private void ensureCapacity(int capacity)
+   {
+      if (capacity > myValues.length)
+      {
+         int newLength = Math.max(capacity, 2 * myValues.length);
+         double[] newValues = new double[newLength];
+         System.arraycopy(myValues, 0, newValues, 0, mySize);
+         myValues = newValues;
+      }
+   }
+
+   /**
+    * Partially reorders the given range of the array so that the value at
+    * index <code>k</code> is the value that would be there if the range were
+    * sorted, no value before it is greater, and no value after it is less.
+    * This is a quickselect with a median-of-three pivot and a three-way
+    * partition, so that duplicates are handled in linear time.  If
+    * partitioning fails to narrow the range quickly enough, the range is
+    * sorted instead, which bounds the worst case to <em>O(n log n)</em>.
+    * @param values The array of values.
+    * @param from The start of the range, inclusive.
+    * @param to The end of the range, exclusive.
+    * @param k The index whose value is desired.
+    * @return The value at index <code>k</code>.
+    */
+   private static double select(double[] values, int from, int to, int k)
+   {
+      int depthLimit = 2 * (32 - Integer.numberOfLeadingZeros(to - from));
+      while (to - from > INSERTION_SORT_THRESHOLD)
+      {
+         if (depthLimit-- == 0)
          {
-            // Examine the second property which is the sort order.
-            property = getProperty2();
-            Number obj1 = (Number) getValueFromProperty(lowValue, property);
-            Number obj2 = (Number) getValueFromProperty(highValue, property);
-            DoubleDouble low = new DoubleDouble(obj1.doubleValue());
-            DoubleDouble high = new DoubleDouble(obj2.doubleValue());
-            DoubleDouble temp = new DoubleDouble(rownum);
-            temp.subtractFromSelf(floor);
-            temp.multiplySelfBy(high);
-            DoubleDouble temp2 = new DoubleDouble(rownum);
-            temp2.negateSelf();
-            temp2.addToSelf(ceiling);
-            temp2.multiplySelfBy(low);
-            temp2.addToSelf(temp);
-            return temp2;
+            Arrays.sort(values, from, to);
+            return values[k];
          }
-         catch (ClassCastException e)
+         double pivot = medianOfThree(values[from], values[(from + to) >>> 1], values[to - 1]);
+         // Partition into [from, lt) < pivot, [lt, gt] == pivot, and
+         // (gt, to) > pivot.
+         int lt = from;
+         int gt = to - 1;
+         int i = from;
+         while (i <= gt)
          {
-            throw new UnsupportedOperationException("Property \"" + property +
-               "\" must represent a Number.", e);
+            double v = values[i];
+            if (v < pivot)
+            {
+               values[i++] = values[lt];
+               values[lt++] = v;
+            }
+            else if (v > pivot)
+            {
+               values[i] = values[gt];
+               values[gt--] = v;
+            }
+            else
+               i++;
          }
+         if (k < lt)
+            to = lt;
+         else if (k > gt)
+            from = gt + 1;
+         else
+            return pivot;
+      }
+      // Insertion sort the small range that remains.
+      for (int i = from + 1; i < to; i++)
+      {
+         double v = values[i];
+         int j = i - 1;
+         while (j >= from && values[j] > v)
+         {
+            values[j + 1] = values[j];
+            j--;
+         }
+         values[j + 1] = v;
+      }
+      return values[k];
+   }
+
+   /**
+    * Returns the median of three values.
+    * @param a A value.
+    * @param b Another value.
+    * @param c Another value.
+    * @return The median.
+    */
+   private static double medianOfThree(double a, double b, double c)
+   {
+      if (a < b)
+      {
+         if (b < c)
+            return b;
+         return (a < c) ? c : a;
       }
+      if (a < c)
+         return a;
+      return (b < c) ? c : b;
    }
 }
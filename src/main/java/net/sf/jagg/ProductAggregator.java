@@ -1,5 +1,7 @@
 package net.sf.jagg;
 
+import java.util.List;
+
 /**
  * This class allows represents the "product" aggregator over numeric values.
  *
@@ -52,7 +54,7 @@ public class ProductAggregator extends Aggregator
 
          try
          {
-            Number obj = (Number) getValueFromProperty(value, property);
+            Number obj = (Number) getValueFromProperty(value);
             // Don't count nulls.
             if (obj != null)
             {
@@ -67,6 +69,36 @@ public class ProductAggregator extends Aggregator
       }
    }
 
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
+   /**
+    * Multiplies in the values, without boxing them.
+    *
+    * @param values An array of property values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateDoubles(double[] values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         myProduct.multiplySelfBy(values[i]);
+   }
+
    /**
     * Merge the given <code>Aggregator</code> into this one by multiplying the
     * respective products.
@@ -16,6 +16,8 @@ import java.util.List;
 public class PropertiesComparator<T> implements Comparator<T>
 {
    private List<String> myProperties;
+   private PropertyAccessor[] myAccessors;
+   private GroupKeyComparator myKeyComparator;
    private int mySize;
 
    /**
@@ -29,6 +31,10 @@ public class PropertiesComparator<T> implements Comparator<T>
    {
       myProperties = properties;
       mySize = properties.size();
+      myAccessors = new PropertyAccessor[mySize];
+      for (int i = 0; i < mySize; i++)
+         myAccessors[i] = new PropertyAccessor(properties.get(i));
+      myKeyComparator = new GroupKeyComparator(properties);
    }
 
    /**
@@ -48,43 +54,66 @@ public class PropertiesComparator<T> implements Comparator<T>
     *    getter method in <code>T</code>, or if the property's type is not
     *    <code>Comparable</code>.
     */
-   @SuppressWarnings("unchecked")
    public int compare(T o1, T o2) throws UnsupportedOperationException
    {
       int comp;
       for (int i = 0; i < mySize; i++)
       {
-         String property = myProperties.get(i);
-         Comparable value1 = (Comparable)
-            Aggregator.getValueFromProperty(o1, property);
-         Comparable value2 = (Comparable)
-            Aggregator.getValueFromProperty(o2, property);
-         try
-         {
-            if (value1 == null)
-            {
-               if (value2 == null)
-                  comp = 0;
-               else
-                  comp = 1;
-            }
-            else
-            {
-               if (value2 == null)
-                  comp = -1;
-               else
-                  comp = value1.compareTo(value2);
-            }
-            if (comp != 0) return comp;
-         }
-         catch (ClassCastException e)
-         {
-            throw new UnsupportedOperationException("Property \"" + property + "\" needs to be Comparable.");
-         }
+         PropertyAccessor accessor = myAccessors[i];
+         comp = myKeyComparator.compareValues(i, accessor.get(o1), accessor.get(o2));
+         if (comp != 0) return comp;
       }
       return 0;
    }
 
+   /**
+    * Extracts the values of all properties from the given object, in order,
+    * so that objects can be compared repeatedly by their keys with the
+    * <code>Comparator</code> returned by <code>getKeyComparator</code>,
+    * without accessing their properties again.
+    * @param value The object.
+    * @return An array of the property values.
+    * @throws UnsupportedOperationException If any property doesn't
+    *    correspond to a method in <code>T</code>.
+    * @since 0.7.3
+    */
+   Object[] getKey(T value)
+   {
+      Object[] key = new Object[mySize];
+      for (int i = 0; i < mySize; i++)
+         key[i] = myAccessors[i].get(value);
+      return key;
+   }
+
+   /**
+    * Returns a <code>Comparator</code> of keys returned by
+    * <code>getKey</code>, which orders them as this
+    * <code>PropertiesComparator</code> orders the objects themselves.
+    * @return A <code>Comparator</code> of keys.
+    * @since 0.7.3
+    */
+   Comparator<Object[]> getKeyComparator()
+   {
+      return myKeyComparator;
+   }
+
+   /**
+    * Returns the number of leading properties whose values compare equal in
+    * the given keys returned by <code>getKey</code>.
+    * @param key1 A key.
+    * @param key2 Another key.
+    * @return The number of leading properties whose values compare equal,
+    *    from 0 to the number of properties.
+    * @since 0.7.3
+    */
+   int getCommonPrefixLength(Object[] key1, Object[] key2)
+   {
+      int i = 0;
+      while (i < mySize && myKeyComparator.compareValues(i, key1[i], key2[i]) == 0)
+         i++;
+      return i;
+   }
+
    /**
     * Indicates whether the given <code>PropertiesComparator</code> is equal to
     * this <code>PropertiesComparator</code>.  All property names must match in
@@ -0,0 +1,131 @@
+package net.sf.jagg;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * <p>A <code>PropertyAccessor</code> retrieves the value of one property from
+ * objects, on behalf of an <code>Aggregator</code> or a
+ * <code>Comparator</code> that reads the same property from many objects.
+ * It resolves the property to a <code>MethodCall</code> only once per
+ * <code>Class</code>, and it remembers the most recent resolution, so that
+ * repeated calls on objects of the same <code>Class</code> require no
+ * <code>String</code> concatenation, no map lookup, and no locking.</p>
+ * <p>The remembered resolution is a single immutable object referenced by a
+ * <code>volatile</code> field, so a <code>PropertyAccessor</code> may be
+ * shared among <code>Threads</code>.  If objects of different
+ * <code>Classes</code> are presented, then the <code>MethodCache</code> is
+ * consulted and the remembered resolution is replaced.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class PropertyAccessor
+{
+   // Cache Method objects to save on instantiation/garbage collection costs.
+   private static final MethodCache myMethodCache = MethodCache.getMethodCache();
+
+   private final String myProperty;
+   private final boolean amISelf;
+   private volatile Binding myBinding;
+
+   /**
+    * Constructs a <code>PropertyAccessor</code> for the given property.
+    * @param property The property, method, or <code>Aggregator.PROP_SELF</code>.
+    */
+   public PropertyAccessor(String property)
+   {
+      myProperty = property;
+      amISelf = Aggregator.PROP_SELF.equals(property);
+      myBinding = null;
+   }
+
+   /**
+    * Returns the property.
+    * @return The property.
+    */
+   public String getProperty()
+   {
+      return myProperty;
+   }
+
+   /**
+    * Retrieves the property value from the given object.
+    * @param value The object on which to lookup the property value.
+    * @return The object's property value.
+    * @throws UnsupportedOperationException If the desired <code>Method</code>
+    *    does not exist, if the <code>Method</code> cannot be invoked because
+    *    of Java language access control (e.g. private, etc.), or if  the
+    *    invoked <code>Method</code> throws an <code>Exception</code>.
+    */
+   public Object get(Object value)
+   {
+      // Pseudo-property indicating to use the object itself, instead of a
+      // property of the object.
+      if (amISelf)
+         return value;
+      try
+      {
+         return getMethodCall(value).invoke(value);
+      }
+      catch (IllegalAccessException e)
+      {
+         throw new UnsupportedOperationException("Illegal method access detected for property \"" +
+            myProperty + "\".", e);
+      }
+      catch (InvocationTargetException e)
+      {
+         throw new UnsupportedOperationException("Exception detected getting property \"" +
+            myProperty + "\".", e);
+      }
+   }
+
+   /**
+    * Returns the <code>MethodCall</code> that retrieves the property value
+    * from the given object, resolving it if the object's <code>Class</code> is
+    * not the one most recently seen.
+    * @param value The object on which to lookup the property value.
+    * @return A <code>MethodCall</code>.
+    * @throws UnsupportedOperationException If the desired <code>Method</code>
+    *    does not exist.
+    */
+   public MethodCall getMethodCall(Object value)
+   {
+      Binding binding = myBinding;
+      Class<?> theClass = value.getClass();
+      if (binding != null && binding.myClass == theClass)
+         return binding.myMethodCall;
+      try
+      {
+         MethodCall methodCall = myMethodCache.getMethodCallFromProperty(value, myProperty);
+         myBinding = new Binding(theClass, methodCall);
+         return methodCall;
+      }
+      catch (NoSuchMethodException e)
+      {
+         throw new UnsupportedOperationException("No matching method found for \"" +
+            myProperty + "\".", e);
+      }
+   }
+
+   /**
+    * A <code>Binding</code> is an immutable pairing of a <code>Class</code>
+    * and the <code>MethodCall</code> that retrieves the property from objects
+    * of that <code>Class</code>.
+    */
+   private static class Binding
+   {
+      private final Class<?> myClass;
+      private final MethodCall myMethodCall;
+
+      /**
+       * Constructs a <code>Binding</code>.
+       * @param theClass The <code>Class</code>.
+       * @param methodCall The <code>MethodCall</code>.
+       */
+      private Binding(Class<?> theClass, MethodCall methodCall)
+      {
+         myClass = theClass;
+         myMethodCall = methodCall;
+      }
+   }
+}
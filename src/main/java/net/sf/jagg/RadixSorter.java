@@ -0,0 +1,277 @@
+package net.sf.jagg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * <p>A <code>RadixSorter</code> sorts byte array keys, such as those created
+ * by a <code>NormalizedKeyEncoder</code>, with a most-significant-digit
+ * radix sort.  Rather than moving the keys, it sorts an array of their
+ * indexes.  Each pass distributes a range of indexes into 257 buckets by the
+ * byte at the current depth, the first bucket holding the keys that have
+ * already ended; each bucket of more than one key is then sorted at the next
+ * depth, except the first bucket, whose keys are all equal.  Small ranges
+ * are sorted by insertion sort instead.  Bytes are compared as unsigned, and
+ * a key that is a prefix of another key sorts first.</p>
+ * <p>With parallelism, the largest ranges are distributed in the calling
+ * <code>Thread</code> until no range holds more than its share of the keys,
+ * then the ranges are divided among concurrent tasks, balancing the number
+ * of keys per task.</p>
+ * <p>This sort is stable: equal keys remain in their original relative
+ * order.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+class RadixSorter
+{
+   // Ranges smaller than this are sorted by insertion sort.
+   private static final int INSERTION_SORT_THRESHOLD = 32;
+
+   /**
+    * Private constructor; all methods are static.
+    */
+   private RadixSorter() {}
+
+   /**
+    * Sorts the given keys, in the calling <code>Thread</code>.
+    * @param keys The keys to sort, which are not modified.
+    * @return An array of the indexes of the keys, in sorted order.
+    */
+   public static int[] sort(byte[][] keys)
+   {
+      return sort(keys, 1, null);
+   }
+
+   /**
+    * Sorts the given keys, using up to the given number of concurrent tasks.
+    * @param keys The keys to sort, which are not modified.
+    * @param parallelism The number of tasks to run concurrently.
+    * @param executor The <code>ExecutorService</code> that runs the tasks.
+    * @return An array of the indexes of the keys, in sorted order.
+    */
+   public static int[] sort(final byte[][] keys, int parallelism, ExecutorService executor)
+   {
+      int size = keys.length;
+      final int[] order = new int[size];
+      for (int i = 0; i < size; i++)
+         order[i] = i;
+      final int[] aux = new int[size];
+      List<int[]> ranges = new ArrayList<int[]>();
+      if (size > 1)
+         ranges.add(new int[] {0, size, 0});
+      if (parallelism <= 1 || executor == null)
+      {
+         sortRanges(keys, order, aux, ranges);
+         return order;
+      }
+
+      // Distribute the largest range until each range is small enough to
+      // balance the tasks.
+      int share = size / parallelism;
+      while (!ranges.isEmpty())
+      {
+         int largest = 0;
+         for (int r = 1; r < ranges.size(); r++)
+         {
+            if (length(ranges.get(r)) > length(ranges.get(largest)))
+               largest = r;
+         }
+         int[] range = ranges.get(largest);
+         if (length(range) <= share || length(range) < INSERTION_SORT_THRESHOLD)
+            break;
+         ranges.remove(largest);
+         distribute(keys, order, aux, range[0], range[1], range[2], ranges);
+      }
+
+      // Assign each range, largest first, to the task with the fewest keys.
+      List<List<int[]>> tasks = new ArrayList<List<int[]>>(parallelism);
+      long[] loads = new long[parallelism];
+      for (int t = 0; t < parallelism; t++)
+         tasks.add(new ArrayList<int[]>());
+      while (!ranges.isEmpty())
+      {
+         int largest = 0;
+         for (int r = 1; r < ranges.size(); r++)
+         {
+            if (length(ranges.get(r)) > length(ranges.get(largest)))
+               largest = r;
+         }
+         int[] range = ranges.remove(largest);
+         int lightest = 0;
+         for (int t = 1; t < parallelism; t++)
+         {
+            if (loads[t] < loads[lightest])
+               lightest = t;
+         }
+         tasks.get(lightest).add(range);
+         loads[lightest] += length(range);
+      }
+
+      List<Future<?>> futures = new ArrayList<Future<?>>(parallelism);
+      for (final List<int[]> task : tasks)
+      {
+         if (!task.isEmpty())
+         {
+            futures.add(executor.submit(new Runnable() {
+               public void run()
+               {
+                  // The ranges are disjoint, so the tasks don't interfere.
+                  sortRanges(keys, order, aux, task);
+               }
+            }));
+         }
+      }
+      Aggregations.waitFor(futures, "sorting");
+      return order;
+   }
+
+   /**
+    * Completely sorts the given ranges of indexes.
+    * @param keys The keys.
+    * @param order The indexes of the keys, being sorted.
+    * @param aux An auxiliary array of the same length as <code>order</code>.
+    * @param ranges The ranges to sort, each an array of the start index,
+    *    inclusive, the end index, exclusive, and the depth, the index of the
+    *    byte by which the range is not yet sorted.  This <code>List</code>
+    *    is used as a stack of ranges remaining to be sorted.
+    */
+   private static void sortRanges(byte[][] keys, int[] order, int[] aux, List<int[]> ranges)
+   {
+      while (!ranges.isEmpty())
+      {
+         int[] range = ranges.remove(ranges.size() - 1);
+         if (length(range) < INSERTION_SORT_THRESHOLD)
+            insertionSort(keys, order, range[0], range[1], range[2]);
+         else
+            distribute(keys, order, aux, range[0], range[1], range[2], ranges);
+      }
+   }
+
+   /**
+    * Distributes a range of indexes into buckets by the byte of each key at
+    * the given depth, and adds each bucket that remains to be sorted to the
+    * given ranges.
+    * @param keys The keys.
+    * @param order The indexes of the keys, being sorted.
+    * @param aux An auxiliary array of the same length as <code>order</code>.
+    * @param start The start of the range, inclusive.
+    * @param end The end of the range, exclusive.
+    * @param depth The index of the byte by which to distribute.
+    * @param ranges The <code>List</code> to which to add ranges that remain
+    *    to be sorted.
+    */
+   private static void distribute(byte[][] keys, int[] order, int[] aux, int start, int end, int depth,
+      List<int[]> ranges)
+   {
+      // Bucket 0 holds keys that have ended; bucket b + 1 holds byte b.
+      int[] counts = new int[258];
+      for (int i = start; i < end; i++)
+         counts[bucket(keys[order[i]], depth) + 1]++;
+      // If all keys are in one bucket, there's nothing to move.
+      boolean oneBucket = false;
+      for (int b = 1; b < counts.length; b++)
+      {
+         if (counts[b] == end - start)
+         {
+            oneBucket = true;
+            if (b > 1)
+               ranges.add(new int[] {start, end, depth + 1});
+            break;
+         }
+         if (counts[b] != 0)
+            break;
+      }
+      if (oneBucket)
+         return;
+
+      // Turn the counts into each bucket's next position.
+      counts[0] = start;
+      for (int b = 1; b < counts.length; b++)
+         counts[b] += counts[b - 1];
+      for (int i = start; i < end; i++)
+      {
+         int index = order[i];
+         aux[counts[bucket(keys[index], depth)]++] = index;
+      }
+      System.arraycopy(aux, start, order, start, end - start);
+
+      // Now counts[b] is the end of bucket b; bucket 0 is already sorted.
+      for (int b = 1; b < counts.length - 1; b++)
+      {
+         if (counts[b] - counts[b - 1] > 1)
+            ranges.add(new int[] {counts[b - 1], counts[b], depth + 1});
+      }
+   }
+
+   /**
+    * Sorts a range of indexes by insertion sort, comparing keys from the
+    * given depth, because the bytes before it are all equal.
+    * @param keys The keys.
+    * @param order The indexes of the keys, being sorted.
+    * @param start The start of the range, inclusive.
+    * @param end The end of the range, exclusive.
+    * @param depth The index of the first byte to compare.
+    */
+   private static void insertionSort(byte[][] keys, int[] order, int start, int end, int depth)
+   {
+      for (int i = start + 1; i < end; i++)
+      {
+         int index = order[i];
+         byte[] key = keys[index];
+         int j = i;
+         // Only move past strictly greater keys, to keep the sort stable.
+         while (j > start && compare(keys[order[j - 1]], key, depth) > 0)
+         {
+            order[j] = order[j - 1];
+            j--;
+         }
+         order[j] = index;
+      }
+   }
+
+   /**
+    * Compares two keys from the given depth, as unsigned bytes.
+    * @param key1 The left-hand-side key.
+    * @param key2 The right-hand-side key.
+    * @param depth The index of the first byte to compare.
+    * @return A negative integer, 0, or a positive integer if
+    *    <code>key1</code> is less than, equal to, or greater than
+    *    <code>key2</code>.
+    */
+   static int compare(byte[] key1, byte[] key2, int depth)
+   {
+      int length = Math.min(key1.length, key2.length);
+      for (int i = depth; i < length; i++)
+      {
+         int comp = (key1[i] & 0xFF) - (key2[i] & 0xFF);
+         if (comp != 0)
+            return comp;
+      }
+      return key1.length - key2.length;
+   }
+
+   /**
+    * Returns the bucket of a key at the given depth.
+    * @param key The key.
+    * @param depth The index of the byte.
+    * @return The bucket: 0 if the key has ended, else the unsigned byte plus
+    *    one.
+    */
+   private static int bucket(byte[] key, int depth)
+   {
+      return (depth < key.length) ? (key[depth] & 0xFF) + 1 : 0;
+   }
+
+   /**
+    * Returns the number of indexes in a range.
+    * @param range A range.
+    * @return The number of indexes in the range.
+    */
+   private static int length(int[] range)
+   {
+      return range[1] - range[0];
+   }
+}
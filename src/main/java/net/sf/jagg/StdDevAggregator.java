@@ -19,6 +19,18 @@ public class StdDevAggregator extends AbstractVarianceAggregator
       super(property);
    }
 
+   /**
+    * Constructs an <code>StdDevAggregator</code> that operates on the specified
+    * property in the specified precision.
+    * @param property Calculate the standard deviation of this property's values.
+    * @param precision The <code>NumericPrecision</code>.
+    * @since 0.7.3
+    */
+   public StdDevAggregator(String property, NumericPrecision precision)
+   {
+      super(property, precision);
+   }
+
    /**
     * Returns an uninitialized copy of this <code>Aggregator</code> object,
     * with the same property(ies) to analyze.
@@ -26,7 +38,7 @@ public class StdDevAggregator extends AbstractVarianceAggregator
     */
    public StdDevAggregator replicate()
    {
-      return new StdDevAggregator(getProperty());
+      return new StdDevAggregator(getProperty(), getPrecision());
    }
    
    /**
@@ -57,7 +69,7 @@ public class StdDevAggregator extends AbstractVarianceAggregator
          return new DoubleDouble(DoubleDouble.NaN);
       if (myCount == 1)
          return new DoubleDouble(0);
-      DoubleDouble result = new DoubleDouble(myVarNumerator);
+      DoubleDouble result = new DoubleDouble(getVarNumerator());
       result.divideSelfBy(myCount - 1);
       result.sqrtSelf();
       return result;
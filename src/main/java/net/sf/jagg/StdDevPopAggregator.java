@@ -19,6 +19,18 @@ public class StdDevPopAggregator extends AbstractVarianceAggregator
       super(property);
    }
 
+   /**
+    * Constructs an <code>StdDevPopAggregator</code> that operates on the specified
+    * property in the specified precision.
+    * @param property Calculate the population standard deviation of this property's values.
+    * @param precision The <code>NumericPrecision</code>.
+    * @since 0.7.3
+    */
+   public StdDevPopAggregator(String property, NumericPrecision precision)
+   {
+      super(property, precision);
+   }
+
    /**
     * Returns an uninitialized copy of this <code>Aggregator</code> object,
     * with the same property(ies) to analyze.
@@ -26,7 +38,7 @@ public class StdDevPopAggregator extends AbstractVarianceAggregator
     */
    public StdDevPopAggregator replicate()
    {
-      return new StdDevPopAggregator(getProperty());
+      return new StdDevPopAggregator(getProperty(), getPrecision());
    }
    /**
     * Return the population standard deviation by taking the square root of the
@@ -56,7 +68,7 @@ public class StdDevPopAggregator extends AbstractVarianceAggregator
          return new DoubleDouble(DoubleDouble.NaN);
       if (myCount == 1)
          return new DoubleDouble(0);
-      DoubleDouble result = new DoubleDouble(myVarNumerator);
+      DoubleDouble result = new DoubleDouble(getVarNumerator());
       result.divideSelfBy(myCount);
       result.sqrtSelf();
       return result;
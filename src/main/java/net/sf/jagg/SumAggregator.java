@@ -1,23 +1,43 @@
 package net.sf.jagg;
 
+import java.util.List;
+
 /**
  * This class represents the "sum" aggregator over numeric values.
  *
+ * The optional second property is the <code>NumericPrecision</code>, e.g.
+ * <code>Sum(value, compensated)</code>, which defaults to
+ * <code>DOUBLE_DOUBLE</code>.  Values of integral types are summed exactly.
+ *
  * @author Randy Gettman
  * @since 0.1.0
  */
 public class SumAggregator extends Aggregator
 {
-   private DoubleDouble mySum = new DoubleDouble();
+   private NumericPrecision myPrecision;
+   private NumericSum mySum;
 
    /**
     * Constructs an <code>SumAggregator</code> that operates on the specified
-    * property.
+    * property, in the format: <code>property[, precision]</code>.
     * @param property Add up all this property's values.
     */
    public SumAggregator(String property)
    {
       setProperty(property);
+      mySum = new NumericSum(myPrecision);
+   }
+
+   /**
+    * Constructs an <code>SumAggregator</code> that operates on the specified
+    * property in the specified precision.
+    * @param property Add up all this property's values.
+    * @param precision The <code>NumericPrecision</code>.
+    * @since 0.7.3
+    */
+   public SumAggregator(String property, NumericPrecision precision)
+   {
+      this(property + "," + precision.name());
    }
 
    /**
@@ -27,7 +47,40 @@ public class SumAggregator extends Aggregator
     */
    public SumAggregator replicate()
    {
-      return new SumAggregator(getProperty());
+      return new SumAggregator(getProperty(), myPrecision);
+   }
+
+   /**
+    * Extracts a possible <code>NumericPrecision</code> from the property in
+    * the format: <code>property[, precision]</code>.
+    *
+    * @param property A property name and possible precision.
+    * @since 0.7.3
+    */
+   @Override
+   protected void setProperty(String property)
+   {
+      int comma = NumericPrecision.indexOfPrecision(property);
+      if (comma < 0)
+      {
+         super.setProperty(property);
+         myPrecision = NumericPrecision.DOUBLE_DOUBLE;
+      }
+      else
+      {
+         super.setProperty(property.substring(0, comma).trim());
+         myPrecision = NumericPrecision.fromName(property.substring(comma + 1));
+      }
+   }
+
+   /**
+    * Returns the <code>NumericPrecision</code>.
+    * @return The <code>NumericPrecision</code>.
+    * @since 0.7.3
+    */
+   public NumericPrecision getPrecision()
+   {
+      return myPrecision;
    }
 
    /**
@@ -50,11 +103,11 @@ public class SumAggregator extends Aggregator
          String property = getProperty();
          try
          {
-            Number obj = (Number) getValueFromProperty(value, property);
+            Number obj = (Number) getValueFromProperty(value);
             // Don't count nulls.
             if (obj != null)
             {
-               mySum.addToSelf(obj.doubleValue());
+               mySum.add(obj);
             }
          }
          catch (ClassCastException e)
@@ -65,6 +118,35 @@ public class SumAggregator extends Aggregator
       }
    }
 
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
+   /**
+    * Adds the values to the sum, without boxing them.
+    *
+    * @param values An array of property values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateDoubles(double[] values, int start, int end)
+   {
+      mySum.addAll(values, start, end);
+   }
+
    /**
     * Merge the given <code>Aggregator</code> into this one by adding the
     * respective sums.
@@ -76,7 +158,7 @@ public class SumAggregator extends Aggregator
       if (agg != null && agg instanceof SumAggregator)
       {
          SumAggregator otherAgg = (SumAggregator) agg;
-         mySum.addToSelf(otherAgg.mySum);
+         mySum.merge(otherAgg.mySum);
       }
    }
 
@@ -101,6 +183,20 @@ public class SumAggregator extends Aggregator
     */
    public DoubleDouble terminateDoubleDouble()
    {
-      return new DoubleDouble(mySum);
+      return mySum.toDoubleDouble();
+   }
+
+   /**
+    * A <code>String</code> representation of this
+    * <code>SumAggregator</code>.  It includes the precision unless it's the
+    * default, so that <code>Aggregators</code> with different precisions are
+    * distinguished.
+    */
+   @Override
+   public String toString()
+   {
+      if (myPrecision == NumericPrecision.DOUBLE_DOUBLE)
+         return super.toString();
+      return getClass().getName() + "(" + getProperty() + "," + myPrecision + ")";
    }
 }
@@ -0,0 +1,341 @@
+package net.sf.jagg;
+
+import java.util.Arrays;
+
+/**
+ * <p>A <code>TDigest</code> is a mergeable sketch of a distribution of
+ * <code>double</code> values, from which quantiles may be estimated using
+ * bounded memory.  It is a "merging" t-digest: values are summarized by
+ * <em>centroids</em>, each a mean and a weight, kept in order of their means.
+ * Centroids near the tails of the distribution are kept small and centroids
+ * near the median may grow large, which keeps quantile estimates near the
+ * tails accurate.  The <em>compression</em> bounds the number of centroids to
+ * about twice its value.</p>
+ * <p>Added values are collected in a buffer.  When the buffer is full, it is
+ * sorted and merged with the existing centroids in one pass.  Therefore,
+ * adding a value takes <em>O(1)</em> amortized time, excluding the sort.
+ * Until the buffer is full for the first time, the values are kept exactly,
+ * so quantiles of at most <code>getBufferSize()</code> values are
+ * exact.</p>
+ * <p><code>NaN</code> values are ignored.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+class TDigest
+{
+   /**
+    * The default compression.
+    */
+   public static final double DEFAULT_COMPRESSION = 100;
+
+   // The buffer holds this many values per unit of compression.
+   private static final int BUFFER_FACTOR = 5;
+
+   private double myCompression;
+   // Centroids, in order of their means.
+   private double[] myMeans;
+   private double[] myWeights;
+   private int myNumCentroids;
+   private double myCentroidWeight;
+   // Buffered values, not yet merged into the centroids.
+   private double[] myBuffer;
+   private double[] myUnitWeights;
+   private int myNumBuffered;
+   // Spare arrays to which centroids are merged, then swapped.
+   private double[] myTempMeans;
+   private double[] myTempWeights;
+   private double myMin;
+   private double myMax;
+
+   /**
+    * Constructs an empty <code>TDigest</code> with the given compression.
+    * @param compression The compression, which must be at least 10.
+    * @throws IllegalArgumentException If the compression is less than 10.
+    */
+   public TDigest(double compression)
+   {
+      if (!(compression >= 10))
+         throw new IllegalArgumentException("Compression must be at least 10: " + compression);
+      myCompression = compression;
+      int capacity = 2 * (int) Math.ceil(compression) + 10;
+      myMeans = new double[capacity];
+      myWeights = new double[capacity];
+      myTempMeans = new double[capacity];
+      myTempWeights = new double[capacity];
+      myBuffer = new double[BUFFER_FACTOR * (int) Math.ceil(compression)];
+      myUnitWeights = new double[myBuffer.length];
+      Arrays.fill(myUnitWeights, 1);
+      reset();
+   }
+
+   /**
+    * Removes all values.
+    */
+   public void reset()
+   {
+      myNumCentroids = 0;
+      myCentroidWeight = 0;
+      myNumBuffered = 0;
+      myMin = Double.POSITIVE_INFINITY;
+      myMax = Double.NEGATIVE_INFINITY;
+   }
+
+   /**
+    * Returns the number of values that are kept exactly before centroids
+    * are formed.
+    * @return The size of the buffer.
+    */
+   public int getBufferSize()
+   {
+      return myBuffer.length;
+   }
+
+   /**
+    * Returns the number of values added, including those merged from other
+    * <code>TDigests</code>.
+    * @return The number of values.
+    */
+   public long size()
+   {
+      return (long) myCentroidWeight + myNumBuffered;
+   }
+
+   /**
+    * Adds a value.
+    * @param value The value.
+    */
+   public void add(double value)
+   {
+      if (Double.isNaN(value))
+         return;
+      if (myNumBuffered == myBuffer.length)
+         flush();
+      myBuffer[myNumBuffered++] = value;
+      if (value < myMin)
+         myMin = value;
+      if (value > myMax)
+         myMax = value;
+   }
+
+   /**
+    * Merges all values from the given <code>TDigest</code> into this one.
+    * The given <code>TDigest</code> is only read, not modified, so it may be
+    * merged into several <code>TDigests</code> at the same time.
+    * @param other Another <code>TDigest</code>.
+    */
+   public void merge(TDigest other)
+   {
+      // Its buffered values are added as values, so they become unit-weight
+      // centroids when this buffer is flushed.
+      for (int i = 0; i < other.myNumBuffered; i++)
+         add(other.myBuffer[i]);
+      if (other.myNumCentroids == 0)
+         return;
+      flush();
+      merge(other.myMeans, other.myWeights, other.myNumCentroids, other.myCentroidWeight);
+      if (other.myMin < myMin)
+         myMin = other.myMin;
+      if (other.myMax > myMax)
+         myMax = other.myMax;
+   }
+
+   /**
+    * Estimates the value at the given quantile.  If all values are still
+    * buffered, then the result is exact, interpolating linearly between the
+    * two values that bound the zero-based row number <em>q</em> *
+    * (<em>n</em> - 1), as <code>PercentileAggregator</code> does.
+    * @param q The quantile, between 0 and 1 inclusive.
+    * @return The estimated value, or <code>NaN</code> if there are no values.
+    */
+   public double quantile(double q)
+   {
+      if (myNumCentroids == 0)
+         return exactQuantile(q);
+      flush();
+      int n = myNumCentroids;
+      double[] means = myMeans;
+      double[] weights = myWeights;
+      double totalWeight = myCentroidWeight;
+      if (n == 1)
+         return means[0];
+
+      double index = q * totalWeight;
+      if (index < 1)
+         return myMin;
+      // Interpolate from the minimum to the first centroid's mean.
+      if (weights[0] > 1 && index < weights[0] / 2)
+         return myMin + (index - 1) / (weights[0] / 2 - 1) * (means[0] - myMin);
+      if (index > totalWeight - 1)
+         return myMax;
+      // Interpolate from the last centroid's mean to the maximum.
+      if (weights[n - 1] > 1 && totalWeight - index <= weights[n - 1] / 2)
+         return myMax - (totalWeight - index - 1) / (weights[n - 1] / 2 - 1) * (myMax - means[n - 1]);
+
+      // Interpolate between the midpoints of adjacent centroids.  A centroid
+      // of weight 1 is a single value, which occupies the half-unit on each
+      // side of its midpoint.
+      double weightSoFar = weights[0] / 2;
+      for (int i = 0; i < n - 1; i++)
+      {
+         double dw = (weights[i] + weights[i + 1]) / 2;
+         if (weightSoFar + dw > index)
+         {
+            double leftUnit = 0;
+            if (weights[i] == 1)
+            {
+               if (index - weightSoFar < 0.5)
+                  return means[i];
+               leftUnit = 0.5;
+            }
+            double rightUnit = 0;
+            if (weights[i + 1] == 1)
+            {
+               if (weightSoFar + dw - index <= 0.5)
+                  return means[i + 1];
+               rightUnit = 0.5;
+            }
+            double z1 = index - weightSoFar - leftUnit;
+            double z2 = weightSoFar + dw - index - rightUnit;
+            return weightedAverage(means[i], z2, means[i + 1], z1);
+         }
+         weightSoFar += dw;
+      }
+      // Only reachable through rounding.
+      return myMax;
+   }
+
+   /**
+    * Determines the quantile exactly from the buffered values, which must be
+    * all of the values.
+    * @param q The quantile, between 0 and 1 inclusive.
+    * @return The value, or <code>NaN</code> if there are no values.
+    */
+   private double exactQuantile(double q)
+   {
+      int n = myNumBuffered;
+      if (n == 0)
+         return Double.NaN;
+      Arrays.sort(myBuffer, 0, n);
+      double rownum = q * (n - 1);
+      int floor = (int) Math.floor(rownum);
+      int ceiling = (int) Math.ceil(rownum);
+      if (floor == ceiling)
+         return myBuffer[floor];
+      return (rownum - floor) * myBuffer[ceiling] + (ceiling - rownum) * myBuffer[floor];
+   }
+
+   /**
+    * Merges the buffered values into the centroids.
+    */
+   private void flush()
+   {
+      if (myNumBuffered == 0)
+         return;
+      Arrays.sort(myBuffer, 0, myNumBuffered);
+      int numBuffered = myNumBuffered;
+      myNumBuffered = 0;
+      merge(myBuffer, myUnitWeights, numBuffered, numBuffered);
+   }
+
+   /**
+    * Merges the given centroids, in order of their means, with this
+    * <code>TDigest's</code> centroids, combining adjacent centroids as long
+    * as each stays within the size allowed by the scale function.
+    * @param means The means of the centroids to merge.
+    * @param weights The weights of the centroids to merge.
+    * @param count The number of centroids to merge.
+    * @param weight The total weight of the centroids to merge.
+    */
+   private void merge(double[] means, double[] weights, int count, double weight)
+   {
+      double totalWeight = myCentroidWeight + weight;
+      int capacity = myNumCentroids + count;
+      if (myTempMeans.length < capacity)
+      {
+         myTempMeans = new double[capacity];
+         myTempWeights = new double[capacity];
+      }
+      double[] outMeans = myTempMeans;
+      double[] outWeights = myTempWeights;
+      int out = -1;
+      double weightSoFar = 0;
+      double weightLimit = 0;
+      int i = 0;
+      int j = 0;
+      while (i < myNumCentroids || j < count)
+      {
+         double mean;
+         double w;
+         if (j >= count || (i < myNumCentroids && myMeans[i] <= means[j]))
+         {
+            mean = myMeans[i];
+            w = myWeights[i++];
+         }
+         else
+         {
+            mean = means[j];
+            w = weights[j++];
+         }
+         if (out >= 0 && weightSoFar + outWeights[out] + w <= weightLimit)
+         {
+            // Absorb into the current centroid.
+            outWeights[out] += w;
+            outMeans[out] += (mean - outMeans[out]) * w / outWeights[out];
+         }
+         else
+         {
+            // Start a new centroid.
+            if (out >= 0)
+               weightSoFar += outWeights[out];
+            out++;
+            outMeans[out] = mean;
+            outWeights[out] = w;
+            weightLimit = totalWeight * getQ(getK(weightSoFar / totalWeight) + 1);
+         }
+      }
+      myTempMeans = myMeans;
+      myTempWeights = myWeights;
+      myMeans = outMeans;
+      myWeights = outWeights;
+      myNumCentroids = out + 1;
+      myCentroidWeight = totalWeight;
+   }
+
+   /**
+    * The scale function, which maps a quantile to a centroid index between 0
+    * and the compression.  Its slope is steepest at the tails, which keeps
+    * centroids there small.
+    * @param q The quantile.
+    * @return The centroid index.
+    */
+   private double getK(double q)
+   {
+      return myCompression * (Math.asin(2 * Math.min(1, q) - 1) + Math.PI / 2) / Math.PI;
+   }
+
+   /**
+    * The inverse of the scale function.
+    * @param k The centroid index.
+    * @return The quantile.
+    */
+   private double getQ(double k)
+   {
+      return (Math.sin(Math.min(k, myCompression) * Math.PI / myCompression - Math.PI / 2) + 1) / 2;
+   }
+
+   /**
+    * Computes the weighted average of two values, kept between them despite
+    * rounding.
+    * @param x1 The first value.
+    * @param w1 The first weight.
+    * @param x2 The second value, not less than the first.
+    * @param w2 The second weight.
+    * @return The weighted average.
+    */
+   private static double weightedAverage(double x1, double w1, double x2, double w2)
+   {
+      double avg = (x1 * w1 + x2 * w2) / (w1 + w2);
+      return Math.max(x1, Math.min(avg, x2));
+   }
+}
@@ -0,0 +1,294 @@
+package net.sf.jagg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents the "top k" aggregator, which finds the <em>k</em>
+ * most frequent values, the "heavy hitters", using bounded memory.  It uses
+ * the Misra-Gries summary: at most <em>c</em> values, the capacity, are
+ * counted at once.  When a value that's not counted arrives and all
+ * <em>c</em> counters are in use, every counter is decremented instead, and
+ * counters that reach zero are freed.  Each count is therefore an
+ * underestimate by at most <em>n</em> / (<em>c</em> + 1), where <em>n</em>
+ * is the number of values, and every value that occurs more than that many
+ * times is counted.  If there are no more than <em>c</em> distinct values,
+ * then the counts are exact.  Summaries are merged by adding counts, then
+ * subtracting the (<em>c</em> + 1)th largest count from all counts, which
+ * keeps the same guarantee.
+ *
+ * The first property is the property whose values are counted, the second
+ * property is <em>k</em>, and the optional third property is the capacity,
+ * which must be at least <em>k</em>, and which defaults to the greater of
+ * 10<em>k</em> and 100.  Values are distinguished by <code>equals</code>.
+ *
+ * @see ModeAggregator
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class TopKAggregator extends Aggregator
+{
+   private Map<Object, Frequency> myFrequencies;
+   private int myK;
+   private int myCapacity;
+
+   /**
+    * Constructs a <code>TopKAggregator</code> on the specified properties, in
+    * the format: <code>property, k[, capacity]</code>.
+    * @param properties A specification string in the format:
+    *    <code>property, k[, capacity]</code>.
+    */
+   public TopKAggregator(String properties)
+   {
+      setProperty(properties);
+   }
+
+   /**
+    * Constructs a <code>TopKAggregator</code> that operates on the specified
+    * property, with the default capacity.
+    * @param property Find the most frequent of this property's values.
+    * @param k The number of values to find.
+    */
+   public TopKAggregator(String property, int k)
+   {
+      setProperty(property + "," + k);
+   }
+
+   /**
+    * Constructs a <code>TopKAggregator</code> that operates on the specified
+    * property.
+    * @param property Find the most frequent of this property's values.
+    * @param k The number of values to find.
+    * @param capacity The maximum number of values counted at once.
+    */
+   public TopKAggregator(String property, int k, int capacity)
+   {
+      setProperty(property + "," + k + "," + capacity);
+   }
+
+   /**
+    * Returns an uninitialized copy of this <code>Aggregator</code> object,
+    * with the same property(ies) to analyze.
+    * @return An uninitialized copy of this <code>Aggregator</code> object.
+    */
+   public TopKAggregator replicate()
+   {
+      return new TopKAggregator(getProperty(), myK, myCapacity);
+   }
+
+   /**
+    * Extracts <em>k</em> and a possible capacity from the property in the
+    * format: <code>property, k[, capacity]</code>.
+    *
+    * @param property A property name, <em>k</em>, and possible capacity.
+    * @throws NumberFormatException If <em>k</em> or the capacity is not an
+    *    integer.
+    * @throws IllegalArgumentException If <em>k</em> is missing or not
+    *    positive, or if the capacity is less than <em>k</em>.
+    */
+   @Override
+   protected void setProperty(String property)
+   {
+      String[] fields = property.split(",");
+      if (fields.length < 2)
+      {
+         throw new IllegalArgumentException("Second property (k) must be specified: " + property);
+      }
+      super.setProperty(fields[0].trim());
+      myK = Integer.parseInt(fields[1].trim());
+      if (myK < 1)
+      {
+         throw new IllegalArgumentException("Second property (k) must be positive: " + myK);
+      }
+      myCapacity = (fields.length >= 3) ? Integer.parseInt(fields[2].trim()) : Math.max(10 * myK, 100);
+      if (myCapacity < myK)
+      {
+         throw new IllegalArgumentException("Third property (capacity) must be at least k: " + myCapacity);
+      }
+   }
+
+   /**
+    * Returns <em>k</em>, the number of values to find.
+    * @return <em>k</em>.
+    */
+   public int getK()
+   {
+      return myK;
+   }
+
+   /**
+    * Returns the capacity, the maximum number of values counted at once.
+    * @return The capacity.
+    */
+   public int getCapacity()
+   {
+      return myCapacity;
+   }
+
+   /**
+    * Initialize an internal map of counters to empty.
+    */
+   public void init()
+   {
+      myFrequencies = new HashMap<Object, Frequency>();
+   }
+
+   /**
+    * If the property's value is not null, count it if it's already counted
+    * or if there is a free counter.  Else, decrement all counters, freeing
+    * those that reach zero.
+    *
+    * @param value The value to aggregate.
+    */
+   public void iterate(Object value)
+   {
+      if (value != null)
+      {
+         Object obj = getValueFromProperty(value);
+         // Don't count nulls.
+         if (obj != null)
+         {
+            Frequency frequency = myFrequencies.get(obj);
+            if (frequency != null)
+               frequency.myCount++;
+            else if (myFrequencies.size() < myCapacity)
+               myFrequencies.put(obj, new Frequency(1));
+            else
+               subtract(1);
+         }
+      }
+   }
+
+   /**
+    * Iterates over the values in the given range.
+    *
+    * @param values A <code>List</code> of values.
+    * @param start The index of the first value to aggregate, inclusive.
+    * @param end The index after the last value to aggregate, exclusive.
+    * @since 0.7.3
+    */
+   @Override
+   public void iterateRange(List<?> values, int start, int end)
+   {
+      for (int i = start; i < end; i++)
+         iterate(values.get(i));
+   }
+
+   /**
+    * Merge the given <code>Aggregator</code> into this one by adding its
+    * counts to this one's counts, then, if more than the capacity of values
+    * are counted, subtracting the (capacity + 1)th largest count from all
+    * counts.
+    *
+    * @param agg The <code>Aggregator</code> to merge into this one.
+    */
+   public void merge(Aggregator agg)
+   {
+      if (agg != null && agg instanceof TopKAggregator)
+      {
+         TopKAggregator otherAgg = (TopKAggregator) agg;
+         for (Map.Entry<Object, Frequency> entry : otherAgg.myFrequencies.entrySet())
+         {
+            Frequency frequency = myFrequencies.get(entry.getKey());
+            if (frequency != null)
+               frequency.myCount += entry.getValue().myCount;
+            else
+               myFrequencies.put(entry.getKey(), new Frequency(entry.getValue().myCount));
+         }
+         int size = myFrequencies.size();
+         if (size > myCapacity)
+         {
+            long[] counts = new long[size];
+            int i = 0;
+            for (Frequency frequency : myFrequencies.values())
+               counts[i++] = frequency.myCount;
+            Arrays.sort(counts);
+            subtract(counts[size - myCapacity - 1]);
+         }
+      }
+   }
+
+   /**
+    * Return the most frequent values, at most <em>k</em> of them, with their
+    * estimated counts, in descending order of count.
+    *
+    * @return A <code>Map</code> of values to their estimated counts, whose
+    *    iteration order is descending order of count.  It is empty if no
+    *    values have been accumulated.
+    */
+   public Map<Object, Long> terminate()
+   {
+      List<Map.Entry<Object, Frequency>> entries =
+         new ArrayList<Map.Entry<Object, Frequency>>(myFrequencies.entrySet());
+      Collections.sort(entries, new Comparator<Map.Entry<Object, Frequency>>() {
+         public int compare(Map.Entry<Object, Frequency> e1, Map.Entry<Object, Frequency> e2)
+         {
+            long c1 = e1.getValue().myCount;
+            long c2 = e2.getValue().myCount;
+            return (c1 > c2) ? -1 : ((c1 < c2) ? 1 : 0);
+         }
+      });
+      int size = Math.min(myK, entries.size());
+      Map<Object, Long> topK = new LinkedHashMap<Object, Long>();
+      for (int i = 0; i < size; i++)
+      {
+         Map.Entry<Object, Frequency> entry = entries.get(i);
+         topK.put(entry.getKey(), entry.getValue().myCount);
+      }
+      return topK;
+   }
+
+   /**
+    * Subtracts the given amount from all counts, freeing counters that reach
+    * zero.
+    * @param amount The amount to subtract.
+    */
+   private void subtract(long amount)
+   {
+      Iterator<Frequency> itr = myFrequencies.values().iterator();
+      while (itr.hasNext())
+      {
+         Frequency frequency = itr.next();
+         frequency.myCount -= amount;
+         if (frequency.myCount <= 0)
+            itr.remove();
+      }
+   }
+
+   /**
+    * A <code>String</code> representation of this
+    * <code>TopKAggregator</code>.  It includes <em>k</em> and the capacity,
+    * so that <code>Aggregators</code> with different ones are distinguished.
+    */
+   @Override
+   public String toString()
+   {
+      return getClass().getName() + "(" + getProperty() + "," + myK + "," + myCapacity + ")";
+   }
+
+   /**
+    * A mutable count, so that counting an occurrence doesn't replace the
+    * map's entry.
+    */
+   private static class Frequency
+   {
+      private long myCount;
+
+      /**
+       * Constructs a <code>Frequency</code>.
+       * @param count The initial count.
+       */
+      private Frequency(long count)
+      {
+         myCount = count;
+      }
+   }
+}
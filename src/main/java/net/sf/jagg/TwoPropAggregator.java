@@ -14,6 +14,7 @@ package net.sf.jagg;
 public abstract class TwoPropAggregator extends Aggregator
 {
    private String myProperty2;
+   private PropertyAccessor myAccessor2;
 
    /**
     * Default constructor is protected so that only subclasses of
@@ -49,6 +50,30 @@ public abstract class TwoPropAggregator extends Aggregator
          super.setProperty(fields[0].trim());
          myProperty2 = fields[1].trim();
       }
+      myAccessor2 = new PropertyAccessor(myProperty2);
+   }
+
+   /**
+    * Retrieves the value of the second property, as returned by
+    * <code>getProperty2</code>, from the given object, using a
+    * <code>PropertyAccessor</code> held by this <code>Aggregator</code>.  If
+    * this <code>TwoPropAggregator</code> is iterating over values of its
+    * second property, then the given value is already that value.
+    *
+    * @param value The object on which to lookup the property value.
+    * @return The object's value of the second property.
+    * @throws UnsupportedOperationException If the desired <code>Method</code>
+    *    does not exist, if the <code>Method</code> cannot be invoked because
+    *    of Java language access control (e.g. private, etc.), or if  the
+    *    invoked <code>Method</code> throws an <code>Exception</code>.
+    * @see #getValueFromProperty(Object)
+    * @since 0.7.3
+    */
+   protected Object getValueFromProperty2(Object value)
+   {
+      if (isIteratingPropertyValues())
+         return value;
+      return myAccessor2.get(value);
    }
 
    /**
@@ -61,6 +86,25 @@ public abstract class TwoPropAggregator extends Aggregator
       return myProperty2;
    }
 
+   /**
+    * A <code>TwoPropAggregator</code> usually aggregates the values of both of
+    * its properties, so by default, it may not be given values of a single
+    * property in place of the objects.  Subclasses that aggregate only the
+    * values of the second property, whose first property is e.g. a constant,
+    * may override this to opt in.  Then the values given to
+    * <code>iterateDoubles</code> and <code>iteratePropertyValues</code> are
+    * those of the second property.
+    *
+    * @return <code>false</code>, unless overridden.
+    * @see #getValueFromProperty2(Object)
+    * @since 0.7.3
+    */
+   @Override
+   protected boolean isAcceptingPropertyValues()
+   {
+      return false;
+   }
+
    /**
     * A <code>String</code> representation of this
     * <code>TwoPropAggregator</code>.  It takes into account that there are
@@ -18,6 +18,18 @@ public class VarianceAggregator extends AbstractVarianceAggregator
       super(property);
    }
 
+   /**
+    * Constructs an <code>VarianceAggregator</code> that operates on the specified
+    * property in the specified precision.
+    * @param property Calculate the variance of this property's values.
+    * @param precision The <code>NumericPrecision</code>.
+    * @since 0.7.3
+    */
+   public VarianceAggregator(String property, NumericPrecision precision)
+   {
+      super(property, precision);
+   }
+
    /**
     * Returns an uninitialized copy of this <code>Aggregator</code> object,
     * with the same property(ies) to analyze.
@@ -25,7 +37,7 @@ public class VarianceAggregator extends AbstractVarianceAggregator
     */
    public VarianceAggregator replicate()
    {
-      return new VarianceAggregator(getProperty());
+      return new VarianceAggregator(getProperty(), getPrecision());
    }
 
    /**
@@ -57,7 +69,7 @@ public class VarianceAggregator extends AbstractVarianceAggregator
          return new DoubleDouble(DoubleDouble.NaN);
       if (myCount == 1)
          return new DoubleDouble(0);
-      DoubleDouble result = new DoubleDouble(myVarNumerator);
+      DoubleDouble result = new DoubleDouble(getVarNumerator());
       result.divideSelfBy(myCount - 1);
       return result;
    }
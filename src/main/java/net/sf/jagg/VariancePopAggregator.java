@@ -18,6 +18,18 @@ public class VariancePopAggregator extends AbstractVarianceAggregator
       super(property);
    }
 
+   /**
+    * Constructs an <code>VariancePopAggregator</code> that operates on the specified
+    * property in the specified precision.
+    * @param property Calculate the population variance of this property's values.
+    * @param precision The <code>NumericPrecision</code>.
+    * @since 0.7.3
+    */
+   public VariancePopAggregator(String property, NumericPrecision precision)
+   {
+      super(property, precision);
+   }
+
    /**
     * Returns an uninitialized copy of this <code>Aggregator</code> object,
     * with the same property(ies) to analyze.
@@ -25,7 +37,7 @@ public class VariancePopAggregator extends AbstractVarianceAggregator
     */
    public VariancePopAggregator replicate()
    {
-      return new VariancePopAggregator(getProperty());
+      return new VariancePopAggregator(getProperty(), getPrecision());
    }
 
    /**
@@ -57,7 +69,7 @@ public class VariancePopAggregator extends AbstractVarianceAggregator
          return new DoubleDouble(DoubleDouble.NaN);
       if (myCount == 1)
          return new DoubleDouble(0);
-      DoubleDouble result = new DoubleDouble(myVarNumerator);
+      DoubleDouble result = new DoubleDouble(getVarNumerator());
       result.divideSelfBy(myCount);
       return result;
    }
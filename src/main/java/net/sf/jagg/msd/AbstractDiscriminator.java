@@ -1,5 +1,6 @@
 package net.sf.jagg.msd;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -30,4 +31,200 @@ public abstract class AbstractDiscriminator<T> implements Discriminator<T>
    {
       return discriminate(elements, new SelfExtractor<T>(), workspace);
    }
+
+   /**
+    * Discriminates the given <code>List</code> of elements, producing one
+    * <code>IndexPartition</code> instead of a <code>List</code> of
+    * <code>Lists</code>.
+    * @param elements A <code>List</code> of elements.  For efficiency, this
+    *    should be a <code>RandomAccess</code> <code>List</code>.
+    * @param workspace The <code>MsdWorkspace</code> used in the
+    *    discrimination process.
+    * @return An <code>IndexPartition</code> of the elements into equivalence
+    *    classes, or <code>null</code> if unable to discriminate the
+    *    <code>List</code>.
+    * @since 0.7.3
+    */
+   public IndexPartition discriminateIndexes(List<T> elements, MsdWorkspace workspace)
+   {
+      int size = elements.size();
+      IndexPartition partition = new IndexPartition(size);
+      if (size > 0 && !discriminate(elements, new SelfExtractor<T>(), partition, 0, size, workspace))
+         return null;
+      return partition;
+   }
+
+   /**
+    * Refines the equivalence class that occupies the given range of the given
+    * <code>IndexPartition</code> into smaller equivalence classes, according
+    * to the given <code>Extractor</code>.  The positions in the range are
+    * reordered so that each new equivalence class is contiguous, and the new
+    * class boundaries are recorded.  Elements that compare equal remain in
+    * the same order as before.
+    * <p>This implementation defers to the <code>List</code>-based
+    * <code>discriminate</code> method.  Subclasses override this to
+    * discriminate without creating <code>Lists</code>.</p>
+    * @param elements The <code>List</code> of all elements.
+    * @param extractor An <code>Extractor</code> that gives <em>labels</em> for
+    *    each element.
+    * @param partition The <code>IndexPartition</code>.
+    * @param from The start of the range.
+    * @param to The end of the range, exclusive.
+    * @param workspace The <code>MsdWorkspace</code> used in the
+    *    discrimination process.
+    * @param <E> The type of element.
+    * @return <code>true</code> if successful, <code>false</code> if unable to
+    *    discriminate the elements.
+    * @since 0.7.3
+    */
+   public <E> boolean discriminate(List<E> elements, Extractor<E, T> extractor, IndexPartition partition,
+      int from, int to, MsdWorkspace workspace)
+   {
+      return discriminateByLists(this, elements, extractor, partition, from, to, workspace);
+   }
+
+   /**
+    * Refines the equivalence class that occupies the given range of the given
+    * <code>IndexPartition</code> with the given <code>Discriminator</code>,
+    * which may or may not be able to discriminate by index.
+    * @param discriminator The <code>Discriminator</code>.
+    * @param elements The <code>List</code> of all elements.
+    * @param extractor An <code>Extractor</code> that gives <em>labels</em> for
+    *    each element.
+    * @param partition The <code>IndexPartition</code>.
+    * @param from The start of the range.
+    * @param to The end of the range, exclusive.
+    * @param workspace The <code>MsdWorkspace</code> used in the
+    *    discrimination process.
+    * @param <E> The type of element.
+    * @param <L> The type of label.
+    * @return <code>true</code> if successful, <code>false</code> if unable to
+    *    discriminate the elements.
+    * @since 0.7.3
+    */
+   @SuppressWarnings("unchecked")
+   protected static <E, L> boolean discriminateRange(Discriminator<L> discriminator, List<E> elements,
+      Extractor<E, L> extractor, IndexPartition partition, int from, int to, MsdWorkspace workspace)
+   {
+      if (discriminator instanceof AbstractDiscriminator)
+      {
+         return ((AbstractDiscriminator<L>) discriminator).discriminate(elements, extractor, partition,
+            from, to, workspace);
+      }
+      return discriminateByLists(discriminator, elements, extractor, partition, from, to, workspace);
+   }
+
+   /**
+    * Refines the equivalence class that occupies the given range of the given
+    * <code>IndexPartition</code> by discriminating a <code>List</code> of the
+    * positions in that range with the <code>List</code>-based
+    * <code>discriminate</code> method, then writing the resultant equivalence
+    * classes back into the range.
+    * @param discriminator The <code>Discriminator</code>.
+    * @param elements The <code>List</code> of all elements.
+    * @param extractor An <code>Extractor</code> that gives <em>labels</em> for
+    *    each element.
+    * @param partition The <code>IndexPartition</code>.
+    * @param from The start of the range.
+    * @param to The end of the range, exclusive.
+    * @param workspace The <code>MsdWorkspace</code> used in the
+    *    discrimination process.
+    * @param <E> The type of element.
+    * @param <L> The type of label.
+    * @return <code>true</code> if successful, <code>false</code> if unable to
+    *    discriminate the elements.
+    */
+   @SuppressWarnings("ForLoopReplaceableByForEach")
+   private static <E, L> boolean discriminateByLists(Discriminator<L> discriminator, List<E> elements,
+      Extractor<E, L> extractor, IndexPartition partition, int from, int to, MsdWorkspace workspace)
+   {
+      int[] indexes = partition.getIndexes();
+      List<Integer> positions = new ArrayList<Integer>(to - from);
+      for (int i = from; i < to; i++)
+         positions.add(indexes[i]);
+      List<List<Integer>> equivClasses = discriminator.discriminate(positions,
+         new PositionExtractor<E, L>(elements, extractor), workspace);
+      if (equivClasses == null)
+         return false;
+      IntList starts = new IntList();
+      int i = from;
+      for (int c = 0; c < equivClasses.size(); c++)
+      {
+         List<Integer> equivClass = equivClasses.get(c);
+         int size = equivClass.size();
+         if (size == 0)
+            continue;
+         starts.add(i);
+         partition.setEnd(i, i + size);
+         for (int j = 0; j < size; j++)
+            indexes[i++] = equivClass.get(j);
+      }
+      if (!starts.isEmpty())
+         partition.setOrder(from, starts);
+      return true;
+   }
+
+   /**
+    * A <code>PositionExtractor</code> gives the labels of the elements at
+    * positions in a <code>List</code>, using another <code>Extractor</code>.
+    * @param <E> The type of element.
+    * @param <L> The type of label.
+    */
+   private static class PositionExtractor<E, L> implements Extractor<Integer, L>
+   {
+      private List<E> myElements;
+      private Extractor<E, L> myExtractor;
+
+      /**
+       * Constructs a <code>PositionExtractor</code>.
+       * @param elements The <code>List</code> of elements.
+       * @param extractor The <code>Extractor</code> of the elements.
+       */
+      private PositionExtractor(List<E> elements, Extractor<E, L> extractor)
+      {
+         myElements = elements;
+         myExtractor = extractor;
+      }
+
+      /**
+       * Returns the label of the element at the given position.
+       * @param position The position.
+       * @return The label.
+       */
+      public L getLabel(Integer position)
+      {
+         return myExtractor.getLabel(myElements.get(position));
+      }
+
+      /**
+       * Determines whether discrimination is complete for the element at the
+       * given position.
+       * @param position The position.
+       * @return Whether discrimination is complete for the element.
+       */
+      public boolean isComplete(Integer position)
+      {
+         return myExtractor.isComplete(myElements.get(position));
+      }
+
+      /**
+       * Passes the indication of whether all elements were complete to the
+       * other <code>Extractor</code>.
+       * @param allComplete Whether all elements were complete.
+       */
+      public void setAllComplete(boolean allComplete)
+      {
+         myExtractor.setAllComplete(allComplete);
+      }
+
+      /**
+       * Determines whether all elements were complete, according to the other
+       * <code>Extractor</code>.
+       * @return Whether all elements were complete.
+       */
+      public boolean isAllComplete()
+      {
+         return myExtractor.isAllComplete();
+      }
+   }
 }
@@ -46,4 +46,48 @@ public class BooleanDiscriminator extends AbstractDiscriminator<Boolean>
 
       return equivClasses;
    }
-}
\ No newline at end of file
+
+   /**
+    * Refines the equivalence class that occupies the given range of the given
+    * <code>IndexPartition</code> into a class of <code>true</code> labels
+    * followed by a class of <code>false</code> labels.
+    * @param elements The <code>List</code> of all elements.
+    * @param extractor An <code>Extractor</code> that gives <em>labels</em> for
+    *    each element.
+    * @param partition The <code>IndexPartition</code>.
+    * @param from The start of the range.
+    * @param to The end of the range, exclusive.
+    * @param workspace The <code>MsdWorkspace</code> used in the
+    *    discrimination process.
+    * @param <E> The type of element.
+    * @return <code>true</code>, always.
+    * @since 0.7.3
+    */
+   public <E> boolean discriminate(List<E> elements, Extractor<E, Boolean> extractor, IndexPartition partition,
+      int from, int to, MsdWorkspace workspace)
+   {
+      int[] indexes = partition.getIndexes();
+      int[] scratch = workspace.getScratch(to - from);
+      int numTrues = 0;
+      int numFalses = 0;
+      for (int i = from; i < to; i++)
+      {
+         int position = indexes[i];
+         if (extractor.getLabel(elements.get(position)))
+            indexes[from + numTrues++] = position;
+         else
+            scratch[numFalses++] = position;
+      }
+      if (numTrues > 0 && numFalses > 0)
+      {
+         int falseStart = from + numTrues;
+         System.arraycopy(scratch, 0, indexes, falseStart, numFalses);
+         partition.setEnd(from, falseStart);
+         partition.setEnd(falseStart, to);
+         partition.setSingleClass(from);
+         partition.setNext(from, falseStart);
+         partition.setNext(falseStart, -1);
+      }
+      return true;
+   }
+}
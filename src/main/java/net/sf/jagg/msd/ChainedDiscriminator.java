@@ -3,6 +3,11 @@ package net.sf.jagg.msd;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import net.sf.jagg.Aggregations;
 
 /**
  * A <code>ChainedDiscriminator</code> relies on another
@@ -15,6 +20,9 @@ import java.util.List;
 public abstract class ChainedDiscriminator<T> extends AbstractDiscriminator<T>
 {
    private static final boolean DEBUG = false;
+   // Equivalence classes at least this large after the first loop are
+   // discriminated by worker tasks in parallel discrimination.
+   private static final int PARALLEL_THRESHOLD = 1000;
 
    /**
     * Partitions the given <code>List</code> of elements into another
@@ -33,7 +41,7 @@ public abstract class ChainedDiscriminator<T> extends AbstractDiscriminator<T>
     *    <code>Discriminable</code> objects, then this returns
     *    <code>null</code>.
     */
-   @SuppressWarnings({"unchecked","ForLoopReplaceableByForEach"})
+   @SuppressWarnings("unchecked")
    public <E> List<List<E>> discriminate(List<E> elements, Extractor<E, T> extractor, MsdWorkspace workspace)
    {
       if (DEBUG)
@@ -44,24 +52,183 @@ public abstract class ChainedDiscriminator<T> extends AbstractDiscriminator<T>
 
       List<List<E>> curr = new ArrayList<List<E>>(1);
       curr.add(elements);
-      List<List<E>> equivClasses;
       List<List<E>> results = new ArrayList<List<E>>();
       ChainedExtractor/*<E, ?, T>*/ chainedExtractor = getChainedExtractor(elements, extractor);
 
+      if (!discriminate(elements, curr, 0, Integer.MAX_VALUE, chainedExtractor, workspace, results))
+         return null;
+
+      if (DEBUG)
+      {
+         System.err.println("  " + getClass().getName() + " results: ");
+         for (List<E> result : results)
+            System.err.println("    " + Arrays.deepToString(result.toArray()));
+      }
+
+      return results;
+   }
+
+   /**
+    * Partitions the given <code>List</code> of elements into equivalence
+    * classes, as <code>discriminate</code> does, but using multiple
+    * <code>Threads</code> from the given <code>ExecutorService</code>.  The
+    * first loop is run in the calling <code>Thread</code>.  The equivalence
+    * classes that it produces are independent of each other, so the large
+    * ones are divided among up to <code>parallelism</code> batches, and all
+    * but one batch are discriminated by tasks, each with its own
+    * <code>MsdWorkspace</code> and its own <code>ChainedExtractor</code>.  The
+    * calling <code>Thread</code> discriminates the remaining batch and the
+    * small classes with the given <code>MsdWorkspace</code>.
+    * @param elements A <code>List</code> of elements.
+    * @param workspace The <code>MsdWorkspace</code> used by the calling
+    *    <code>Thread</code>.
+    * @param parallelism The maximum number of batches to discriminate
+    *    concurrently.
+    * @param executor The <code>ExecutorService</code> that runs the tasks.
+    * @return A <code>List</code> of <code>Lists</code> containing all
+    *    equivalence classes, as with <code>discriminate</code>, or
+    *    <code>null</code> if unable to discriminate the <code>List</code>.
+    *    The equivalence classes themselves are the same as those returned by
+    *    <code>discriminate</code>, but they may be in a different order.
+    * @since 0.7.3
+    */
+   public List<List<T>> discriminate(List<T> elements, MsdWorkspace workspace, int parallelism,
+      ExecutorService executor)
+   {
+      return discriminate(elements, new SelfExtractor<T>(), workspace, parallelism, executor);
+   }
+
+   /**
+    * Partitions the given <code>List</code> of elements into equivalence
+    * classes according to the given <code>Extractor</code>, as
+    * <code>discriminate</code> does, but using multiple <code>Threads</code>
+    * from the given <code>ExecutorService</code>.
+    * @param elements A <code>List</code> of elements.
+    * @param extractor An <code>Extractor</code> that gives <em>labels</em> for
+    *    each element.
+    * @param workspace The <code>MsdWorkspace</code> used by the calling
+    *    <code>Thread</code>.
+    * @param parallelism The maximum number of batches to discriminate
+    *    concurrently.
+    * @param executor The <code>ExecutorService</code> that runs the tasks.
+    * @param <E> The type of element.
+    * @return A <code>List</code> of <code>Lists</code> containing all
+    *    equivalence classes, or <code>null</code> if unable to discriminate
+    *    the <code>List</code>.
+    * @see #discriminate(List, MsdWorkspace, int, ExecutorService)
+    * @since 0.7.3
+    */
+   @SuppressWarnings({"unchecked","ForLoopReplaceableByForEach"})
+   public <E> List<List<E>> discriminate(final List<E> elements, final Extractor<E, T> extractor,
+      MsdWorkspace workspace, int parallelism, ExecutorService executor)
+   {
+      if (parallelism <= 1 || elements.size() < PARALLEL_THRESHOLD)
+         return discriminate(elements, extractor, workspace);
+
+      List<List<E>> curr = new ArrayList<List<E>>(1);
+      curr.add(elements);
+      List<List<E>> results = new ArrayList<List<E>>();
+      ChainedExtractor<E, ?, T> chainedExtractor = getChainedExtractor(elements, extractor);
+
+      // Run the first loop only; what remains are independent equivalence
+      // classes.
+      if (!discriminate(elements, curr, 0, 1, chainedExtractor, workspace, results))
+         return null;
+
+      // Assign each large class to the batch with the fewest elements so far.
+      // Batch 0 also gets the small classes, and it stays in this Thread.
+      List<List<List<E>>> batches = new ArrayList<List<List<E>>>(parallelism);
+      int[] batchSizes = new int[parallelism];
+      for (int b = 0; b < parallelism; b++)
+         batches.add(new ArrayList<List<E>>());
+      for (int i = 0; i < curr.size(); i++)
+      {
+         List<E> equivClass = curr.get(i);
+         int size = equivClass.size();
+         int b = 0;
+         if (size >= PARALLEL_THRESHOLD)
+         {
+            for (int c = 1; c < parallelism; c++)
+            {
+               if (batchSizes[c] < batchSizes[b])
+                  b = c;
+            }
+         }
+         batches.get(b).add(equivClass);
+         batchSizes[b] += size;
+      }
+
+      List<Future<List<List<E>>>> futures = new ArrayList<Future<List<List<E>>>>(parallelism - 1);
+      for (int b = 1; b < parallelism; b++)
+      {
+         final List<List<E>> batch = batches.get(b);
+         if (batch.isEmpty())
+            continue;
+         futures.add(executor.submit(new Callable<List<List<E>>>() {
+            public List<List<E>> call()
+            {
+               // A ChainedExtractor holds the current index, so each task
+               // needs its own, as well as its own workspace.
+               List<List<E>> batchResults = new ArrayList<List<E>>();
+               ChainedExtractor<E, ?, T> batchExtractor = getChainedExtractor(elements, extractor);
+               if (!discriminate(elements, batch, 1, Integer.MAX_VALUE, batchExtractor, new MsdWorkspace(),
+                  batchResults))
+                  return null;
+               return batchResults;
+            }
+         }));
+      }
+
+      boolean succeeded = discriminate(elements, batches.get(0), 1, Integer.MAX_VALUE, chainedExtractor,
+         workspace, results);
+
+      for (int f = 0; f < futures.size(); f++)
+      {
+         List<List<E>> batchResults = Aggregations.waitFor(futures.get(f), "discriminating");
+         if (batchResults == null)
+            succeeded = false;
+         else
+            results.addAll(batchResults);
+      }
+      return succeeded ? results : null;
+   }
+
+   /**
+    * Runs the index loop on the given equivalence classes, starting at the
+    * given index, and stopping before the given end index or when no
+    * equivalence classes remain to be discriminated further.  Completed
+    * equivalence classes are added to the given results.  Any that remain
+    * when the end index is reached are left in <code>curr</code>.
+    * @param elements The <code>List</code> of all elements.
+    * @param curr The equivalence classes to discriminate further.  This is
+    *    replaced with the classes that remain.
+    * @param index The index of the first loop.
+    * @param endIndex The index at which to stop, exclusive.
+    * @param chainedExtractor The <code>ChainedExtractor</code>.
+    * @param workspace The <code>MsdWorkspace</code>.
+    * @param results The <code>List</code> to which completed equivalence
+    *    classes are added.
+    * @return <code>true</code> if successful, <code>false</code> if unable to
+    *    get a <code>Discriminator</code>.
+    */
+   @SuppressWarnings({"unchecked","ForLoopReplaceableByForEach"})
+   private <E> boolean discriminate(List<E> elements, List<List<E>> curr, int index, int endIndex,
+      ChainedExtractor<E, ?, T> chainedExtractor, MsdWorkspace workspace, List<List<E>> results)
+   {
+      List<List<E>> equivClasses;
       // Index loop.
-      int index = 0;
       // Cannot get a wildcard for the extractor -- which could possibly
       // be any type -- to line up with the wildcard for the
       // discriminator.  That is, one <capture ?> cannot equal another
       // <capture ?>.  That's okay, the type might vary from one loop
       // iteration to the next.
-      while (!curr.isEmpty())
+      while (!curr.isEmpty() && index < endIndex)
       {
          Discriminator/*<?>*/ discr = getDiscriminator(elements, chainedExtractor, index);
          if (discr == null)
          {
             // Failed to get a Discriminator; can't discriminate.
-            return null;
+            return false;
          }
 
          List<List<E>> next = new ArrayList<List<E>>();
@@ -129,26 +296,263 @@ public abstract class ChainedDiscriminator<T> extends AbstractDiscriminator<T>
          }
 
          // Prepare for next loop.
-         curr = next;
+         curr.clear();
+         curr.addAll(next);
          index++;
       }
 
-      // Add the last iteration in.
-      int size = curr.size();
-      // Avoid creating an Iterator in a call to "addAll".
-      for (int i = 0; i < size; i++)
+      if (index < endIndex)
       {
-         results.add(curr.get(i));
+         // Add the last iteration in.
+         int size = curr.size();
+         // Avoid creating an Iterator in a call to "addAll".
+         for (int i = 0; i < size; i++)
+         {
+            results.add(curr.get(i));
+         }
+         curr.clear();
       }
+      return true;
+   }
 
-      if (DEBUG)
+   /**
+    * Refines the equivalence class that occupies the given range of the given
+    * <code>IndexPartition</code>, one "chained" label at a time, without
+    * creating any <code>Lists</code>.
+    * @param elements The <code>List</code> of all elements.
+    * @param extractor An <code>Extractor</code> that gives <em>labels</em> for
+    *    each element.
+    * @param partition The <code>IndexPartition</code>.
+    * @param from The start of the range.
+    * @param to The end of the range, exclusive.
+    * @param workspace The <code>MsdWorkspace</code> used in the
+    *    discrimination process.
+    * @param <E> The type of element.
+    * @return <code>true</code> if successful, <code>false</code> if unable to
+    *    discriminate the elements, e.g. they are non-
+    *    <code>Discriminable</code> objects.
+    * @since 0.7.3
+    */
+   public <E> boolean discriminate(List<E> elements, Extractor<E, T> extractor, IndexPartition partition,
+      int from, int to, MsdWorkspace workspace)
+   {
+      if (to - from <= 1)
+         return true;
+      List<E> view = partition.getView(elements, from, to);
+      ChainedExtractor<E, ?, T> chainedExtractor = getChainedExtractor(view, extractor);
+      IntList curr = new IntList();
+      curr.add(from);
+      IntList results = new IntList();
+      if (discriminate(view, elements, curr, 0, Integer.MAX_VALUE, chainedExtractor, partition, workspace,
+         results) == null)
+         return false;
+      partition.setOrder(from, results);
+      return true;
+   }
+
+   /**
+    * Discriminates the given <code>List</code> of elements into an
+    * <code>IndexPartition</code>, as <code>discriminateIndexes</code> does,
+    * but using multiple <code>Threads</code> from the given
+    * <code>ExecutorService</code>, in the same way as the parallel
+    * <code>discriminate</code> method.  Each task refines its own ranges of
+    * the same <code>IndexPartition</code>.
+    * @param elements A <code>List</code> of elements.  For efficiency, this
+    *    should be a <code>RandomAccess</code> <code>List</code>.
+    * @param workspace The <code>MsdWorkspace</code> used by the calling
+    *    <code>Thread</code>.
+    * @param parallelism The maximum number of batches to discriminate
+    *    concurrently.
+    * @param executor The <code>ExecutorService</code> that runs the tasks.
+    * @return An <code>IndexPartition</code> of the elements into equivalence
+    *    classes, or <code>null</code> if unable to discriminate the
+    *    <code>List</code>.
+    * @see #discriminate(List, MsdWorkspace, int, ExecutorService)
+    * @since 0.7.3
+    */
+   @SuppressWarnings("unchecked")
+   public IndexPartition discriminateIndexes(final List<T> elements, MsdWorkspace workspace, int parallelism,
+      ExecutorService executor)
+   {
+      final int size = elements.size();
+      if (parallelism <= 1 || size < PARALLEL_THRESHOLD)
+         return discriminateIndexes(elements, workspace);
+
+      final IndexPartition partition = new IndexPartition(size);
+      ChainedExtractor<T, ?, T> chainedExtractor = getChainedExtractor(elements, new SelfExtractor<T>());
+      IntList curr = new IntList();
+      curr.add(0);
+
+      // Run the first loop only; what remains are independent equivalence
+      // classes.  The tasks examine the original List, not a view of the
+      // partition, because the tasks reorder the partition concurrently.
+      IntList results = new IntList();
+      curr = discriminate(elements, elements, curr, 0, 1, chainedExtractor, partition, workspace, results);
+      if (curr == null)
+         return null;
+
+      // Assign each large class to the batch with the fewest elements so far.
+      // Batch 0 also gets the small classes, and it stays in this Thread.
+      IntList[] batches = new IntList[parallelism];
+      int[] batchSizes = new int[parallelism];
+      for (int b = 0; b < parallelism; b++)
+         batches[b] = new IntList();
+      for (int i = 0; i < curr.size(); i++)
       {
-         System.err.println("  " + getClass().getName() + " results: ");
-         for (List<E> result : results)
-            System.err.println("    " + Arrays.deepToString(result.toArray()));
+         int start = curr.get(i);
+         int classSize = partition.getEnd(start) - start;
+         int b = 0;
+         if (classSize >= PARALLEL_THRESHOLD)
+         {
+            for (int c = 1; c < parallelism; c++)
+            {
+               if (batchSizes[c] < batchSizes[b])
+                  b = c;
+            }
+         }
+         batches[b].add(start);
+         batchSizes[b] += classSize;
       }
 
-      return results;
+      List<Future<IntList>> futures = new ArrayList<Future<IntList>>(parallelism - 1);
+      for (int b = 1; b < parallelism; b++)
+      {
+         final IntList batch = batches[b];
+         if (batch.isEmpty())
+            continue;
+         futures.add(executor.submit(new Callable<IntList>() {
+            public IntList call()
+            {
+               // A ChainedExtractor holds the current index, so each task
+               // needs its own, as well as its own workspace.
+               ChainedExtractor<T, ?, T> batchExtractor = getChainedExtractor(elements, new SelfExtractor<T>());
+               IntList batchResults = new IntList();
+               if (discriminate(elements, elements, batch, 1, Integer.MAX_VALUE, batchExtractor, partition,
+                  new MsdWorkspace(), batchResults) == null)
+                  return null;
+               return batchResults;
+            }
+         }));
+      }
+
+      boolean succeeded = discriminate(elements, elements, batches[0], 1, Integer.MAX_VALUE, chainedExtractor,
+         partition, workspace, results) != null;
+
+      for (int f = 0; f < futures.size(); f++)
+      {
+         IntList batchResults = Aggregations.waitFor(futures.get(f), "discriminating");
+         if (batchResults == null)
+            succeeded = false;
+         else
+            results.addAll(batchResults);
+      }
+      if (!succeeded)
+         return null;
+      partition.setOrder(0, results);
+      return partition;
+   }
+
+   /**
+    * Runs the index loop on the equivalence classes that start at the given
+    * positions of the given <code>IndexPartition</code>, starting at the
+    * given index, and stopping before the given end index or when no
+    * equivalence classes remain to be discriminated further.  The starts of
+    * finished equivalence classes are added to the given results, in order.
+    * @param view The <code>List</code> of elements from which to determine
+    *    the <code>Discriminator</code> for each loop.
+    * @param elements The <code>List</code> of all elements.
+    * @param curr The starts of the equivalence classes to discriminate.
+    * @param index The index of the first loop.
+    * @param endIndex The index at which to stop, exclusive.
+    * @param chainedExtractor The <code>ChainedExtractor</code>.
+    * @param partition The <code>IndexPartition</code>.
+    * @param workspace The <code>MsdWorkspace</code>.
+    * @param results Receives the starts of the finished equivalence classes.
+    * @return The starts of the equivalence classes that remain to be
+    *    discriminated when the end index is reached, or <code>null</code> if
+    *    unable to discriminate.
+    */
+   @SuppressWarnings({"unchecked", "rawtypes"})
+   private <E> IntList discriminate(List<E> view, List<E> elements, IntList curr, int index, int endIndex,
+      ChainedExtractor<E, ?, T> chainedExtractor, IndexPartition partition, MsdWorkspace workspace, IntList results)
+   {
+      int[] indexes = partition.getIndexes();
+      IntList next = new IntList();
+      // The Discriminator is raw, because its wildcard cannot be made to
+      // line up with the wildcard of the ChainedExtractor's label.
+      while (!curr.isEmpty() && index < endIndex)
+      {
+         Discriminator/*<?>*/ discr = getDiscriminator(view, chainedExtractor, index);
+         if (discr == null)
+         {
+            // Failed to get a Discriminator; can't discriminate.
+            return null;
+         }
+
+         chainedExtractor.setIndex(index);
+
+         // Loop through each equivalence class to create sub-equivalence
+         // classes.
+         int size = curr.size();
+         for (int i = 0; i < size; i++)
+         {
+            int start = curr.get(i);
+            int end = partition.getEnd(start);
+            // Move those elements that are complete according to the given
+            // extractor to the front, in their own equivalence class.
+            int[] scratch = workspace.getScratch(end - start);
+            int numFinished = 0;
+            int numRemaining = 0;
+            for (int j = start; j < end; j++)
+            {
+               int position = indexes[j];
+               if (chainedExtractor.isComplete(elements.get(position)))
+                  indexes[start + numFinished++] = position;
+               else
+                  scratch[numRemaining++] = position;
+            }
+            // Add in finished results in their own equivalence class, if any.
+            if (numFinished > 0)
+               results.add(start);
+            if (numRemaining == 0)
+               continue;
+            int remainingStart = start + numFinished;
+            System.arraycopy(scratch, 0, indexes, remainingStart, numRemaining);
+            if (numFinished > 0)
+               partition.setEnd(start, remainingStart);
+            partition.setEnd(remainingStart, end);
+            partition.setSingleClass(remainingStart);
+
+            // The discriminator will mark the "complete" property in portionExtractor.
+            if (!discriminateRange(discr, elements, chainedExtractor, partition, remainingStart, end, workspace))
+               return null;
+
+            // If the condition says for all of the elements that they all
+            // terminated, then they are all equivalent, in one class.
+            if (partition.getEnd(remainingStart) == end && chainedExtractor.isAllComplete())
+            {
+               results.add(remainingStart);
+               continue;
+            }
+            // Store the sub-equivalence classes.  Don't bother with classes
+            // of size 1, which won't change in subsequent loops.
+            for (int s = partition.getHead(remainingStart); s >= 0; s = partition.getNext(s))
+            {
+               if (partition.getEnd(s) - s > 1)
+                  next.add(s);
+               else
+                  results.add(s);
+            }
+         }
+
+         // Prepare for next loop.
+         IntList temp = curr;
+         curr = next;
+         next = temp;
+         next.clear();
+         index++;
+      }
+      return curr;
    }
 
    /**
@@ -35,6 +35,31 @@ public class CollectionDiscriminator<T> extends ChainedDiscriminator<Collection<
       return listDiscr.discriminate(elements, ce, workspace);
    }
 
+   /**
+    * Refines the equivalence class that occupies the given range of the given
+    * <code>IndexPartition</code>, treating the <code>Collections</code> as
+    * <code>RandomAccess</code> <code>Lists</code>.
+    * @param elements The <code>List</code> of all elements.
+    * @param extractor An <code>Extractor</code> that gives <em>labels</em> for
+    *    each element.
+    * @param partition The <code>IndexPartition</code>.
+    * @param from The start of the range.
+    * @param to The end of the range, exclusive.
+    * @param workspace The <code>MsdWorkspace</code> used in the
+    *    discrimination process.
+    * @param <E> The type of element.
+    * @return <code>true</code> if successful, <code>false</code> if unable to
+    *    discriminate the elements.
+    * @since 0.7.3
+    */
+   public <E> boolean discriminate(List<E> elements, Extractor<E, Collection<T>> extractor,
+      IndexPartition partition, int from, int to, MsdWorkspace workspace)
+   {
+      RandomAccessListDiscriminator<T> listDiscr = new RandomAccessListDiscriminator<T>();
+      ChainedExtractor<E, List<T>, Collection<T>> ce = getChainedExtractor(elements, extractor);
+      return listDiscr.discriminate(elements, ce, partition, from, to, workspace);
+   }
+
    /**
     * Returns an appropriate <code>ChainedExtractor</code>.
     * @param elements The <code>List</code> of elements.
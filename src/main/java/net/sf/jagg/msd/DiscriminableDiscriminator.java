@@ -60,4 +60,48 @@ public class DiscriminableDiscriminator<T> extends AbstractDiscriminator<T>
       }
       return pd.discriminate(elements, extractor, workspace);
    }
+
+   /**
+    * Refines the equivalence class that occupies the given range of the given
+    * <code>IndexPartition</code> by the discriminable properties of the
+    * labels.
+    * @param elements The <code>List</code> of all elements.
+    * @param extractor An <code>Extractor</code> that gives <em>labels</em> for
+    *    each element.
+    * @param partition The <code>IndexPartition</code>.
+    * @param from The start of the range.
+    * @param to The end of the range, exclusive.
+    * @param workspace The <code>MsdWorkspace</code> used in the
+    *    discrimination process.
+    * @param <E> The type of element.
+    * @return <code>true</code> if successful, <code>false</code> if unable to
+    *    discriminate the elements.
+    * @since 0.7.3
+    */
+   public <E> boolean discriminate(List<E> elements, Extractor<E, T> extractor, IndexPartition partition,
+      int from, int to, MsdWorkspace workspace)
+   {
+      int[] indexes = partition.getIndexes();
+      T label = null;
+      for (int i = from; i < to; i++)
+      {
+         label = extractor.getLabel(elements.get(indexes[i]));
+         if (label != null)
+            break;
+      }
+
+      AbstractDiscriminator<T> pd;
+      if (label == null)
+      {
+         // All nulls
+         pd = new NullDiscriminator<T>(null);
+      }
+      else
+      {
+         Discriminable d = (Discriminable) label;
+         List<String> properties = d.getDiscriminableProperties();
+         pd = new PropertiesDiscriminator<T>(properties);
+      }
+      return pd.discriminate(elements, extractor, partition, from, to, workspace);
+   }
 }
@@ -0,0 +1,294 @@
+package net.sf.jagg.msd;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * <p>An <code>IndexPartition</code> represents the equivalence classes of a
+ * <code>List</code> of elements without creating any <code>Lists</code>.  It
+ * holds a permutation of the positions of the elements in the
+ * <code>List</code>, in which each equivalence class occupies a contiguous
+ * range, and for the start of each range, the end of that range.  The
+ * equivalence classes are chained together in the same order in which the
+ * <code>List</code>-based <code>discriminate</code> methods would return
+ * them.</p>
+ * <p>Initially, all elements are in one equivalence class, in their original
+ * order.  Index-based discrimination refines a range into smaller
+ * equivalence classes by reordering the positions in that range, with a
+ * count pass followed by a scatter pass, and by recording the new class
+ * boundaries.</p>
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class IndexPartition
+{
+   private int[] myIndexes;
+   private int[] myEnds;
+   // The start of the next equivalence class in order, or -1 for the last.
+   private int[] myNext;
+   // The start of the first equivalence class, in order, of the range that
+   // was refined starting at each position.
+   private int[] myHeads;
+
+   /**
+    * Creates an <code>IndexPartition</code> of the given number of elements,
+    * all in one equivalence class, in their original order.
+    * @param size The number of elements.
+    */
+   public IndexPartition(int size)
+   {
+      myIndexes = new int[size];
+      myEnds = new int[size];
+      myNext = new int[size];
+      myHeads = new int[size];
+      for (int i = 0; i < size; i++)
+         myIndexes[i] = i;
+      if (size > 0)
+      {
+         myEnds[0] = size;
+         setSingleClass(0);
+      }
+   }
+
+   /**
+    * Returns the number of elements.
+    * @return The number of elements.
+    */
+   public int size()
+   {
+      return myIndexes.length;
+   }
+
+   /**
+    * Returns the position, in the original <code>List</code>, of the element
+    * that is now at the given position.
+    * @param position The position in the partition.
+    * @return The position in the original <code>List</code>.
+    */
+   public int getIndex(int position)
+   {
+      return myIndexes[position];
+   }
+
+   /**
+    * Returns the end, exclusive, of the equivalence class that starts at the
+    * given position.
+    * @param start The start of an equivalence class.
+    * @return The end of that equivalence class, exclusive.
+    */
+   public int getEnd(int start)
+   {
+      return myEnds[start];
+   }
+
+   /**
+    * Returns the number of equivalence classes.
+    * @return The number of equivalence classes.
+    */
+   public int getNumClasses()
+   {
+      int numClasses = 0;
+      for (int start = getFirst(); start >= 0; start = myNext[start])
+         numClasses++;
+      return numClasses;
+   }
+
+   /**
+    * Returns a new <code>List</code> of the given elements, reordered so that
+    * all elements of each equivalence class are adjacent, with the
+    * equivalence classes in order.
+    * @param elements The <code>List</code> of elements that was
+    *    discriminated.
+    * @param <E> The type of element.
+    * @return A new, reordered <code>List</code>.
+    */
+   public <E> List<E> getReorderedList(List<E> elements)
+   {
+      List<E> reordered = new ArrayList<E>(myIndexes.length);
+      for (int start = getFirst(); start >= 0; start = myNext[start])
+      {
+         int end = myEnds[start];
+         for (int i = start; i < end; i++)
+            reordered.add(elements.get(myIndexes[i]));
+      }
+      return reordered;
+   }
+
+   /**
+    * Returns a <code>List</code> of <code>Lists</code> containing all
+    * equivalence classes, as the <code>List</code>-based
+    * <code>discriminate</code> methods do.
+    * @param elements The <code>List</code> of elements that was
+    *    discriminated.
+    * @param <E> The type of element.
+    * @return A <code>List</code> of <code>Lists</code> containing all
+    *    equivalence classes.
+    */
+   public <E> List<List<E>> getEquivalenceClasses(List<E> elements)
+   {
+      List<List<E>> equivClasses = new ArrayList<List<E>>();
+      for (int start = getFirst(); start >= 0; start = myNext[start])
+      {
+         int end = myEnds[start];
+         List<E> equivClass = new ArrayList<E>(end - start);
+         for (int i = start; i < end; i++)
+            equivClass.add(elements.get(myIndexes[i]));
+         equivClasses.add(equivClass);
+      }
+      return equivClasses;
+   }
+
+   /**
+    * Returns the permutation array itself, for discriminators to reorder.
+    * @return The permutation array.
+    */
+   int[] getIndexes()
+   {
+      return myIndexes;
+   }
+
+   /**
+    * Records that the equivalence class starting at the given position ends
+    * at the given position.
+    * @param start The start of an equivalence class.
+    * @param end The end of that equivalence class, exclusive.
+    */
+   void setEnd(int start, int end)
+   {
+      myEnds[start] = end;
+   }
+
+   /**
+    * Returns the start of the first equivalence class in order.
+    * @return The start of the first equivalence class, or <code>-1</code> if
+    *    there are no elements.
+    */
+   private int getFirst()
+   {
+      return (myIndexes.length > 0) ? myHeads[0] : -1;
+   }
+
+   /**
+    * Returns the start of the first equivalence class, in order, of the
+    * range that was refined starting at the given position.
+    * @param from The start of the range.
+    * @return The start of its first equivalence class.
+    */
+   int getHead(int from)
+   {
+      return myHeads[from];
+   }
+
+   /**
+    * Returns the start of the equivalence class that follows the one that
+    * starts at the given position, in order.
+    * @param start The start of an equivalence class.
+    * @return The start of the next equivalence class, or <code>-1</code> if
+    *    it is the last one in its range.
+    */
+   int getNext(int start)
+   {
+      return myNext[start];
+   }
+
+   /**
+    * Links the equivalence class that starts at the given position to the
+    * one that follows it, in order.
+    * @param start The start of an equivalence class.
+    * @param next The start of the next equivalence class, or <code>-1</code>.
+    */
+   void setNext(int start, int next)
+   {
+      myNext[start] = next;
+   }
+
+   /**
+    * Records that the range starting at the given position, which is about
+    * to be refined, is so far one equivalence class.
+    * @param from The start of the range.
+    */
+   void setSingleClass(int from)
+   {
+      myHeads[from] = from;
+      myNext[from] = -1;
+   }
+
+   /**
+    * Records the order of the equivalence classes of the range that was
+    * refined starting at the given position.
+    * @param from The start of the range.
+    * @param starts The starts of its equivalence classes, in order.
+    */
+   void setOrder(int from, IntList starts)
+   {
+      int size = starts.size();
+      myHeads[from] = starts.get(0);
+      for (int i = 1; i < size; i++)
+         myNext[starts.get(i - 1)] = starts.get(i);
+      myNext[starts.get(size - 1)] = -1;
+   }
+
+   /**
+    * Returns a read-only <code>List</code> view of the elements in the given
+    * range of this partition, in their current order.
+    * @param elements The <code>List</code> of elements that is being
+    *    discriminated.
+    * @param from The start of the range.
+    * @param to The end of the range, exclusive.
+    * @param <E> The type of element.
+    * @return A <code>List</code> view of the elements in the range.
+    */
+   <E> List<E> getView(List<E> elements, int from, int to)
+   {
+      return new RangeView<E>(elements, from, to);
+   }
+
+   /**
+    * A <code>RangeView</code> is a read-only <code>List</code> view of the
+    * elements in a range of this partition.
+    * @param <E> The type of element.
+    */
+   private class RangeView<E> extends AbstractList<E> implements RandomAccess
+   {
+      private List<E> myElements;
+      private int myFrom;
+      private int mySize;
+
+      /**
+       * Constructs a <code>RangeView</code>.
+       * @param elements The <code>List</code> of elements.
+       * @param from The start of the range.
+       * @param to The end of the range, exclusive.
+       */
+      private RangeView(List<E> elements, int from, int to)
+      {
+         myElements = elements;
+         myFrom = from;
+         mySize = to - from;
+      }
+
+      /**
+       * Returns the element at the given position in the range.
+       * @param index The position in the range.
+       * @return The element.
+       */
+      public E get(int index)
+      {
+         if (index < 0 || index >= mySize)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mySize);
+         return myElements.get(myIndexes[myFrom + index]);
+      }
+
+      /**
+       * Returns the number of elements in the range.
+       * @return The number of elements in the range.
+       */
+      public int size()
+      {
+         return mySize;
+      }
+   }
+}
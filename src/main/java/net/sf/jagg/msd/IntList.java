@@ -0,0 +1,86 @@
+package net.sf.jagg.msd;
+
+/**
+ * An <code>IntList</code> is a growable list of <code>ints</code>, used by
+ * index-based discrimination to hold the starts of the equivalence classes
+ * that remain to be discriminated, without boxing them.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+class IntList
+{
+   private int[] myValues;
+   private int mySize;
+
+   /**
+    * Constructs an empty <code>IntList</code>.
+    */
+   IntList()
+   {
+      myValues = new int[16];
+      mySize = 0;
+   }
+
+   /**
+    * Appends the given value.
+    * @param value The value.
+    */
+   void add(int value)
+   {
+      if (mySize == myValues.length)
+      {
+         int[] values = new int[mySize * 2];
+         System.arraycopy(myValues, 0, values, 0, mySize);
+         myValues = values;
+      }
+      myValues[mySize++] = value;
+   }
+
+   /**
+    * Appends all values of the given <code>IntList</code>.
+    * @param other The other <code>IntList</code>.
+    */
+   void addAll(IntList other)
+   {
+      for (int i = 0; i < other.mySize; i++)
+         add(other.myValues[i]);
+   }
+
+   /**
+    * Returns the value at the given position.
+    * @param index The position.
+    * @return The value.
+    */
+   int get(int index)
+   {
+      return myValues[index];
+   }
+
+   /**
+    * Returns the number of values.
+    * @return The number of values.
+    */
+   int size()
+   {
+      return mySize;
+   }
+
+   /**
+    * Returns whether there are no values.
+    * @return <code>true</code> if there are no values, <code>false</code>
+    *    otherwise.
+    */
+   boolean isEmpty()
+   {
+      return mySize == 0;
+   }
+
+   /**
+    * Removes all values.
+    */
+   void clear()
+   {
+      mySize = 0;
+   }
+}
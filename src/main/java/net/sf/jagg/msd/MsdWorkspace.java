@@ -24,5 +24,41 @@ public class MsdWorkspace
     * The array of used indexes.
     */
    public final int[] myUsedIndexes = new int[SIZE];
+   /**
+    * The array of counts of labels, used by index-based discrimination.  It
+    * is all zeroes between uses.
+    * @since 0.7.3
+    */
+   public final int[] myCounts = new int[SIZE];
+
+   private int[] myLabels = new int[0];
+   private int[] myScratch = new int[0];
+
+   /**
+    * Returns an array, of at least the given length, in which index-based
+    * discrimination can store the labels of a range of elements.
+    * @param length The minimum length.
+    * @return An array of at least the given length.
+    * @since 0.7.3
+    */
+   public int[] getLabels(int length)
+   {
+      if (myLabels.length < length)
+         myLabels = new int[length];
+      return myLabels;
+   }
 
+   /**
+    * Returns an array, of at least the given length, into which index-based
+    * discrimination can scatter the positions of a range of elements.
+    * @param length The minimum length.
+    * @return An array of at least the given length.
+    * @since 0.7.3
+    */
+   public int[] getScratch(int length)
+   {
+      if (myScratch.length < length)
+         myScratch = new int[length];
+      return myScratch;
+   }
 }
@@ -63,4 +63,65 @@ public class NullDiscriminator<T> extends AbstractDiscriminator<T>
       
       return equivClasses;
    }
+
+   /**
+    * Refines the equivalence class that occupies the given range of the given
+    * <code>IndexPartition</code>.  Elements with <code>null</code> labels are
+    * moved to the end of the range, in their own equivalence class, which
+    * follows the others, and the decorated <code>Discriminator</code> refines
+    * the rest.
+    * @param elements The <code>List</code> of all elements.
+    * @param extractor An <code>Extractor</code> that gives <em>labels</em> for
+    *    each element.
+    * @param partition The <code>IndexPartition</code>.
+    * @param from The start of the range.
+    * @param to The end of the range, exclusive.
+    * @param workspace The <code>MsdWorkspace</code> used in the
+    *    discrimination process.
+    * @param <E> The type of element.
+    * @return <code>true</code> if successful, <code>false</code> if unable to
+    *    discriminate the elements.
+    * @since 0.7.3
+    */
+   public <E> boolean discriminate(List<E> elements, Extractor<E, T> extractor, IndexPartition partition,
+      int from, int to, MsdWorkspace workspace)
+   {
+      int[] indexes = partition.getIndexes();
+      int[] scratch = workspace.getScratch(to - from);
+      int numNonNulls = 0;
+      int numNulls = 0;
+      for (int i = from; i < to; i++)
+      {
+         int position = indexes[i];
+         if (extractor.getLabel(elements.get(position)) == null)
+            scratch[numNulls++] = position;
+         else
+            indexes[from + numNonNulls++] = position;
+      }
+      // Note: if all nulls, then the nested Discriminator is not necessary.
+      if (numNonNulls == 0)
+         return true;
+      if (myDiscriminator == null)
+         return false;
+      int nullStart = from + numNonNulls;
+      if (numNulls > 0)
+      {
+         System.arraycopy(scratch, 0, indexes, nullStart, numNulls);
+         partition.setEnd(from, nullStart);
+         partition.setEnd(nullStart, to);
+      }
+      partition.setSingleClass(from);
+      if (!discriminateRange(myDiscriminator, elements, extractor, partition, from, nullStart, workspace))
+         return false;
+      if (numNulls > 0)
+      {
+         // The nulls' equivalence class follows the others.
+         int last = partition.getHead(from);
+         while (partition.getNext(last) >= 0)
+            last = partition.getNext(last);
+         partition.setNext(last, nullStart);
+         partition.setNext(nullStart, -1);
+      }
+      return true;
+   }
 }
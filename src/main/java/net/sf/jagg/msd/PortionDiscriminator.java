@@ -170,6 +170,167 @@ public abstract class PortionDiscriminator<T> extends AbstractDiscriminator<T>
       return result;
    }
 
+   /**
+    * Refines the equivalence class that occupies the given range of the given
+    * <code>IndexPartition</code>, one portion at a time, without creating any
+    * <code>Lists</code>.
+    * @param elements The <code>List</code> of all elements.
+    * @param extractor An <code>Extractor</code> that gives <em>labels</em> for
+    *    each element.
+    * @param partition The <code>IndexPartition</code>.
+    * @param from The start of the range.
+    * @param to The end of the range, exclusive.
+    * @param workspace The <code>MsdWorkspace</code> used in the
+    *    discrimination process.
+    * @param <E> The type of element.
+    * @return <code>true</code>, always.
+    * @since 0.7.3
+    */
+   public <E> boolean discriminate(List<E> elements, Extractor<E, T> extractor, IndexPartition partition,
+      int from, int to, MsdWorkspace workspace)
+   {
+      if (to - from <= 1)
+         return true;
+      PortionExtractor<E, T> portionExtractor = getPortionExtractor(extractor);
+      IntList curr = new IntList();
+      IntList next = new IntList();
+      IntList results = new IntList();
+      curr.add(from);
+      // Index loop.
+      int index = 0;
+      while (!curr.isEmpty())
+      {
+         portionExtractor.setIndex(index);
+         // Loop through each equivalence class to create sub-equivalence
+         // classes.
+         int size = curr.size();
+         for (int i = 0; i < size; i++)
+         {
+            int start = curr.get(i);
+            discriminatePortion(elements, portionExtractor, partition, start, partition.getEnd(start),
+               workspace, next, results);
+         }
+         // Prepare for next loop.
+         IntList temp = curr;
+         curr = next;
+         next = temp;
+         next.clear();
+         index++;
+      }
+      partition.setOrder(from, results);
+      return true;
+   }
+
+   /**
+    * Perform index-based multiset discrimination for a portion of the
+    * elements in the given range.  The first pass counts the elements with
+    * each label; the second pass scatters their positions into place.
+    * Elements that are complete are placed first, in their own equivalence
+    * class.
+    * @param elements The <code>List</code> of all elements.
+    * @param extractor A <code>PortionExtractor</code>.
+    * @param partition The <code>IndexPartition</code>.
+    * @param from The start of the range.
+    * @param to The end of the range, exclusive.
+    * @param workspace A <code>MsdWorkspace</code>.
+    * @param next Receives the starts of the new equivalence classes that need
+    *    to be discriminated further.
+    * @param results Receives the starts of the new equivalence classes that
+    *    are finished.
+    * @param <E> The type of elements to discriminate.
+    */
+   private <E> void discriminatePortion(List<E> elements, PortionExtractor<E, T> extractor,
+      IndexPartition partition, int from, int to, MsdWorkspace workspace, IntList next, IntList results)
+   {
+      int[] indexes = partition.getIndexes();
+      int[] counts = workspace.myCounts;
+      int[] usedIndexes = workspace.myUsedIndexes;
+      int length = to - from;
+      int[] labels = workspace.getLabels(length);
+      int usedSize = 0;
+      int numCompleted = 0;
+      // Count pass.
+      for (int i = 0; i < length; i++)
+      {
+         E element = elements.get(indexes[from + i]);
+         if (extractor.isComplete(element))
+         {
+            labels[i] = -1;
+            numCompleted++;
+         }
+         else
+         {
+            int label = extractor.getLabel(element);
+            labels[i] = label;
+            if (counts[label]++ == 0)
+               usedIndexes[usedSize++] = label;
+         }
+      }
+      // Notify the PortionExtractor if all labels were complete.  This is used
+      // as a termination condition.
+      extractor.setAllComplete(usedSize == 0);
+      if (usedSize == 0)
+      {
+         // If all of the elements terminated, then they are all equivalent,
+         // in one class.
+         results.add(from);
+         return;
+      }
+
+      // Turn the counts into offsets, in the order in which the labels were
+      // first encountered, recording the new equivalence classes.  Don't
+      // bother with classes of size 1, which won't change in subsequent
+      // loops.
+      int offset = numCompleted;
+      if (numCompleted > 0)
+      {
+         partition.setEnd(from, from + numCompleted);
+         addClass(from, numCompleted, next, results);
+      }
+      for (int u = 0; u < usedSize; u++)
+      {
+         int label = usedIndexes[u];
+         int count = counts[label];
+         counts[label] = offset;
+         partition.setEnd(from + offset, from + offset + count);
+         addClass(from + offset, count, next, results);
+         offset += count;
+      }
+
+      // Scatter pass.
+      int[] scratch = workspace.getScratch(length);
+      int completed = 0;
+      for (int i = 0; i < length; i++)
+      {
+         int label = labels[i];
+         if (label < 0)
+            scratch[completed++] = indexes[from + i];
+         else
+            scratch[counts[label]++] = indexes[from + i];
+      }
+      System.arraycopy(scratch, 0, indexes, from, length);
+
+      // Empty the workspace as we exit.
+      for (int u = 0; u < usedSize; u++)
+         counts[usedIndexes[u]] = 0;
+   }
+
+   /**
+    * Sends a new equivalence class of more than one element to the next loop,
+    * or a class of one element to the results.
+    * @param start The start of the equivalence class.
+    * @param size The size of the equivalence class.
+    * @param next The starts of the classes for the next loop.
+    * @param results The starts of the finished classes.
+    */
+   private static void addClass(int start, int size, IntList next, IntList results)
+   {
+      if (size > 1)
+         next.add(start);
+      else
+         results.add(start);
+   }
+
    /**
     * Returns an appropriate <code>PortionExtractor</code>.
     * @param extractor A <code>PortionExtractor</code> that returns appropriate
@@ -61,19 +61,23 @@ public class PropertiesDiscriminator<T> extends ChainedDiscriminator<T>
    @SuppressWarnings({"unchecked", "ForLoopReplaceableByForEach"})
    protected <E> ChainedExtractor<E, ?, T> getChainedExtractor(List<E> elements, Extractor<E, T> extractor)
    {
-      // Get all MethodCalls here.
-      T obj = extractor.getLabel(elements.get(0));
-      MethodCache cache = MethodCache.getMethodCache();
-      for (int i = 0; i < myProperties.length; i++)
+      // Get all MethodCalls here, once.  Parallel discrimination gets a
+      // ChainedExtractor for each task, and the tasks share the MethodCalls.
+      if (myMethodCalls.size() != myProperties.length)
       {
-         String property = myProperties[i];
-         try
-         {
-            myMethodCalls.add(cache.getMethodCallFromProperty(obj, property));
-         }
-         catch (NoSuchMethodException e)
+         T obj = extractor.getLabel(elements.get(0));
+         MethodCache cache = MethodCache.getMethodCache();
+         for (int i = 0; i < myProperties.length; i++)
          {
-            throw new UnsupportedOperationException("Method or Property not found: " + e.getMessage(), e);
+            String property = myProperties[i];
+            try
+            {
+               myMethodCalls.add(cache.getMethodCallFromProperty(obj, property));
+            }
+            catch (NoSuchMethodException e)
+            {
+               throw new UnsupportedOperationException("Method or Property not found: " + e.getMessage(), e);
+            }
          }
       }
       return new MethodCallChainedExtractor(extractor);
@@ -0,0 +1,34 @@
+package net.sf.jagg;
+
+import org.junit.Ignore;
+
+/**
+ * A utility class that lets tests outside of the <code>net.sf.jagg</code>
+ * package force parallelism, even on a machine with fewer processors than
+ * the desired degree of parallelism, which would otherwise limit it.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+@Ignore
+public class ParallelismUtility
+{
+   /**
+    * Allows <code>Aggregations</code> built afterwards to use up to the given
+    * degree of parallelism, regardless of the number of processors.
+    * @param parallelism The maximum degree of parallelism.
+    */
+   public static void forceParallelism(int parallelism)
+   {
+      Aggregation.setNumProcessors(parallelism);
+   }
+
+   /**
+    * Limits parallelism to the number of processors available to the JVM
+    * again.
+    */
+   public static void reset()
+   {
+      Aggregation.setNumProcessors(0);
+   }
+}
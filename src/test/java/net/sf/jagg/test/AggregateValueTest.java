@@ -0,0 +1,152 @@
+package net.sf.jagg.test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregation;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.AvgAggregator;
+import net.sf.jagg.CountAggregator;
+import net.sf.jagg.SumAggregator;
+import net.sf.jagg.test.model.Record;
+
+/**
+ * Tests storing and retrieving values in <code>AggregateValues</code>.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class AggregateValueTest
+{
+   /**
+    * Test values set by <code>Aggregator</code> and retrieved by equal
+    * <code>Aggregators</code> and by index.
+    */
+   @Test
+   public void testSetAndGet()
+   {
+      AggregateValue<String> aggValue = new AggregateValue<String>("object");
+      aggValue.setAggregateValue(new SumAggregator("value1"), 1);
+      aggValue.setAggregateValue(new CountAggregator("*"), 2);
+
+      assertEquals(1, aggValue.getAggregateValue(new SumAggregator("value1")));
+      assertEquals(2, aggValue.getAggregateValue(Aggregator.getAggregator("Count(*)")));
+      assertNull(aggValue.getAggregateValue(new SumAggregator("value2")));
+      assertEquals(1, aggValue.getAggregateValue(0));
+      assertEquals(2, aggValue.getAggregateValue(1));
+   }
+
+   /**
+    * Test that setting a value for an equal <code>Aggregator</code> again
+    * replaces the value retrieved by <code>Aggregator</code>, but not by
+    * index.
+    */
+   @Test
+   public void testSetTwice()
+   {
+      AggregateValue<String> aggValue = new AggregateValue<String>("object");
+      aggValue.setAggregateValue(new SumAggregator("value1"), 1);
+      aggValue.setAggregateValue(new SumAggregator("value1"), 3);
+
+      assertEquals(3, aggValue.getAggregateValue(new SumAggregator("value1")));
+      assertEquals(1, aggValue.getAggregateValue(0));
+      assertEquals(3, aggValue.getAggregateValue(1));
+   }
+
+   /**
+    * Ensure an <code>IndexOutOfBoundsException</code> is thrown for an index
+    * past the values set.
+    */
+   @Test(expected = IndexOutOfBoundsException.class)
+   public void testIndexOutOfRange()
+   {
+      AggregateValue<String> aggValue = new AggregateValue<String>("object");
+      aggValue.setAggregateValue(new SumAggregator("value1"), 1);
+      aggValue.getAggregateValue(1);
+   }
+
+   /**
+    * Test that values from an <code>Aggregation</code> are retrieved by the
+    * archetype <code>Aggregators</code>, by equal ones, and by index, and
+    * that a copy shares no values.
+    */
+   @Test
+   public void testFromAggregation()
+   {
+      Aggregator sum = new SumAggregator("value1");
+      Aggregator avg = new AvgAggregator("value2");
+      Aggregation aggregation = new Aggregation.Builder().setProperties(Arrays.asList("category1"))
+         .setAggregators(Arrays.asList(sum, avg)).build();
+      List<AggregateValue<Record>> aggValues = aggregation.groupBy(TestUtility.getTestData());
+      AggregateValue<Record> aggValue = aggValues.get(0);
+
+      assertEquals(aggValue.getAggregateValue(0), aggValue.getAggregateValue(sum));
+      assertEquals(aggValue.getAggregateValue(1), aggValue.getAggregateValue(avg));
+      assertEquals(aggValue.getAggregateValue(sum), aggValue.getAggregateValue(new SumAggregator("value1")));
+
+      AggregateValue<Record> copy = new AggregateValue<Record>(aggValue);
+      assertSame(aggValue.getObject(), copy.getObject());
+      assertNull(copy.getAggregateValue(sum));
+      copy.setAggregateValue(new AvgAggregator("value2"), 4.5);
+      assertEquals(4.5, copy.getAggregateValue(avg));
+      assertNull(copy.getAggregateValue(sum));
+      assertEquals(4.5, copy.getAggregateValue(0));
+   }
+
+   /**
+    * Test that the "group by" property values are captured when aggregating,
+    * with the <code>HASH</code> strategy and with super-aggregation.
+    */
+   @Test
+   public void testPropertyValuesCaptured()
+   {
+      List<String> properties = Arrays.asList("category1", "category2");
+      for (Aggregation.Strategy strategy : Aggregation.Strategy.values())
+      {
+         List<Record> records = TestUtility.getTestData();
+         Aggregation aggregation = new Aggregation.Builder().setProperties(properties)
+            .setAggregators(Arrays.<Aggregator>asList(new CountAggregator("*")))
+            .setStrategy(strategy).setRollup(Arrays.asList(0, 1)).build();
+         List<AggregateValue<Record>> aggValues = aggregation.groupBy(records);
+         Object[][] expected = new Object[aggValues.size()][];
+         for (int i = 0; i < expected.length; i++)
+         {
+            AggregateValue<Record> aggValue = aggValues.get(i);
+            expected[i] = new Object[] {aggValue.getPropertyValue(0), aggValue.getPropertyValue("category2")};
+            assertEquals(aggValue.isGrouping(0), expected[i][0] == null);
+            assertEquals(aggValue.isGrouping("category2"), expected[i][1] == null);
+         }
+         // Changing the objects afterwards doesn't change the results.
+         for (Record record : records)
+         {
+            record.setCategory1("changed");
+            record.setCategory2(-1);
+         }
+         for (int i = 0; i < expected.length; i++)
+         {
+            AggregateValue<Record> aggValue = aggValues.get(i);
+            assertEquals(expected[i][0], aggValue.getPropertyValue("category1"));
+            assertEquals(expected[i][1], aggValue.getPropertyValue(1));
+            assertNull(aggValue.getPropertyValue("value1"));
+         }
+      }
+   }
+
+   /**
+    * Test that equal <code>Aggregators</code> have equal hash codes.
+    */
+   @Test
+   public void testAggregatorEquality()
+   {
+      Aggregator sum = new SumAggregator("value1");
+      assertEquals(sum, sum);
+      assertEquals(sum, Aggregator.getAggregator("Sum(value1)"));
+      assertEquals(sum.hashCode(), Aggregator.getAggregator("Sum(value1)").hashCode());
+      assertFalse(sum.equals(new SumAggregator("value2")));
+      assertFalse(sum.equals(new CountAggregator("value1")));
+   }
+}
@@ -0,0 +1,167 @@
+package net.sf.jagg.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregation;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.AggregatorCache;
+import net.sf.jagg.AvgAggregator;
+import net.sf.jagg.CountAggregator;
+import net.sf.jagg.MaxAggregator;
+import net.sf.jagg.ParallelismUtility;
+import net.sf.jagg.SumAggregator;
+import net.sf.jagg.test.model.Record;
+
+/**
+ * Tests the <code>AggregatorCache</code>.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class AggregatorCacheTest
+{
+   /**
+    * Limits parallelism to the number of processors again.
+    */
+   @After
+   public void resetParallelism()
+   {
+      ParallelismUtility.reset();
+   }
+
+   /**
+    * Tests that the archetype itself is used first, then replicas.
+    */
+   @Test
+   public void testArchetypeThenReplica()
+   {
+      Aggregator archetype = new SumAggregator("value1");
+      Aggregator agg1 = Aggregator.getAggregator(archetype);
+      Aggregator agg2 = Aggregator.getAggregator(archetype);
+
+      assertSame(archetype, agg1);
+      assertNotSame(agg1, agg2);
+      assertEquals(archetype, agg2);
+      assertTrue(agg1.isInUse());
+      assertTrue(agg2.isInUse());
+   }
+
+   /**
+    * Tests that a replica that is no longer in use is reused.
+    */
+   @Test
+   public void testReuse()
+   {
+      AggregatorCache cache = AggregatorCache.getAggregatorCache();
+      Aggregator archetype = new MaxAggregator("category4");
+      archetype.setInUse(true);
+
+      Aggregator replica = Aggregator.getAggregator(archetype);
+      assertNotSame(archetype, replica);
+      replica.setInUse(false);
+
+      long hits = cache.getHits();
+      Aggregator reused = Aggregator.getAggregator(archetype);
+      assertSame(replica, reused);
+      assertTrue(reused.isInUse());
+      assertEquals(hits + 1, cache.getHits());
+
+      // No other Aggregator is available, so a new one is replicated.
+      long misses = cache.getMisses();
+      Aggregator another = Aggregator.getAggregator(archetype);
+      assertNotSame(reused, another);
+      assertEquals(misses + 1, cache.getMisses());
+   }
+
+   /**
+    * Tests that a pooled <code>Aggregator</code> that was put back in use
+    * outside of the cache isn't handed out.
+    */
+   @Test
+   public void testNoDoubleUse()
+   {
+      Aggregator archetype = new CountAggregator("category4");
+      archetype.setInUse(true);
+
+      Aggregator replica = Aggregator.getAggregator(archetype);
+      replica.setInUse(false);
+      replica.setInUse(true);
+
+      Aggregator agg = Aggregator.getAggregator(archetype);
+      assertNotSame(replica, agg);
+   }
+
+   /**
+    * Tests that the hits and misses of other <code>Threads</code>, including
+    * ones that have died, are included in the counts.
+    * @throws InterruptedException If interrupted while waiting for the other
+    *    <code>Thread</code>.
+    */
+   @Test
+   public void testCountsOfOtherThreads() throws InterruptedException
+   {
+      AggregatorCache cache = AggregatorCache.getAggregatorCache();
+      final Aggregator archetype = new SumAggregator("value2");
+      archetype.setInUse(true);
+      long hits = cache.getHits();
+      long misses = cache.getMisses();
+
+      Thread thread = new Thread(new Runnable() {
+         /**
+          * Causes a miss, or a hit if another test left a replica in a pool,
+          * then a hit.
+          */
+         public void run()
+         {
+            Aggregator replica = Aggregator.getAggregator(archetype);
+            replica.setInUse(false);
+            Aggregator.getAggregator(archetype);
+         }
+      });
+      thread.start();
+      thread.join();
+
+      assertTrue(cache.getHits() > hits);
+      assertEquals(hits + misses + 2, cache.getHits() + cache.getMisses());
+   }
+
+   /**
+    * Tests that the <code>Aggregators</code> replicated by the worker
+    * <code>Threads</code> of a parallel aggregation, which are released by
+    * the calling <code>Thread</code>, are reused by a later parallel
+    * aggregation.
+    */
+   @Test
+   public void testParallelReuse()
+   {
+      ParallelismUtility.forceParallelism(4);
+      int size = 4000;
+      List<Record> records = new ArrayList<Record>(size);
+      for (int i = 0; i < size; i++)
+         records.add(new Record("A", i % 50, "C", "D", i, i));
+
+      Aggregator agg1 = new AvgAggregator("value2");
+      Aggregator agg2 = new MaxAggregator("value2");
+      Aggregation agg = new Aggregation.Builder().setProperties(Arrays.asList("category2"))
+         .setAggregators(Arrays.asList(agg1, agg2)).setParallelism(4).build();
+
+      AggregatorCache cache = AggregatorCache.getAggregatorCache();
+      List<AggregateValue<Record>> expected = agg.groupBy(records);
+      long hits = cache.getHits();
+      long misses = cache.getMisses();
+      List<AggregateValue<Record>> actual = agg.groupBy(records);
+
+      assertTrue(cache.getHits() > hits);
+      assertEquals(misses, cache.getMisses());
+      assertEquals(50, actual.size());
+      for (int i = 0; i < expected.size(); i++)
+         assertEquals(expected.get(i).getAggregateValue(agg1), actual.get(i).getAggregateValue(agg1));
+   }
+}
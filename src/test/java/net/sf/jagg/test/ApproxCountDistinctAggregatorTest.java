@@ -0,0 +1,139 @@
+package net.sf.jagg.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregation;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.ApproxCountDistinctAggregator;
+import net.sf.jagg.test.model.Record;
+
+/**
+ * Tests the <code>ApproxCountDistinctAggregator</code>.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class ApproxCountDistinctAggregatorTest
+{
+   /**
+    * Test that a few distinct values are counted exactly.
+    */
+   @Test
+   public void testExactWhenSmall()
+   {
+      ApproxCountDistinctAggregator agg = new ApproxCountDistinctAggregator(".");
+      agg.init();
+      for (int i = 0; i < 3000; i++)
+         agg.iterate("value" + (i % 1000));
+      assertEquals(1000L, agg.terminate().longValue());
+   }
+
+   /**
+    * Test the accuracy with many distinct values, across the transition from
+    * exact counting to the registers.
+    */
+   @Test
+   public void testAccuracy()
+   {
+      for (int n : new int[] {2000, 10000, 50000, 1000000})
+      {
+         ApproxCountDistinctAggregator agg = new ApproxCountDistinctAggregator(".");
+         agg.init();
+         for (int i = 0; i < n; i++)
+         {
+            agg.iterate(i);
+            // Repeats don't count.
+            agg.iterate((long) (i / 2));
+         }
+         // 4 standard errors.
+         assertEquals("n = " + n, n, agg.terminate(), 4 * 0.0081 * n);
+      }
+   }
+
+   /**
+    * Test that merging sketches of overlapping values counts the union.
+    */
+   @Test
+   public void testMerge()
+   {
+      ApproxCountDistinctAggregator agg1 = new ApproxCountDistinctAggregator(".", 12);
+      ApproxCountDistinctAggregator agg2 = agg1.replicate();
+      ApproxCountDistinctAggregator agg3 = agg1.replicate();
+      agg1.init();
+      agg2.init();
+      agg3.init();
+      for (int i = 0; i < 60000; i++)
+         agg1.iterate(i);
+      for (int i = 30000; i < 100000; i++)
+         agg2.iterate(i);
+      // Still exact.
+      for (int i = 0; i < 200; i++)
+         agg3.iterate(i * 1000);
+
+      agg1.merge(agg2);
+      agg1.merge(agg3);
+      assertEquals(100000.0, agg1.terminate(), 4 * 0.0163 * 100000);
+   }
+
+   /**
+    * Test the aggregator in a parallel aggregation, in which the grand total
+    * is a super aggregate of the groups.
+    */
+   @Test
+   public void testParallelRollup()
+   {
+      int n = 200000;
+      List<Record> records = new ArrayList<Record>(n);
+      for (int i = 0; i < n; i++)
+         records.add(new Record("cat" + (i % 4), 0, "", "", i % 100000, i));
+
+      Aggregator agg = Aggregator.getAggregator("ApproxCountDistinct(value1)");
+      Aggregation aggregation = new Aggregation.Builder()
+         .setProperties(Arrays.asList("category1"))
+         .setAggregators(Arrays.asList(agg))
+         .setRollup(Arrays.asList(0))
+         .setParallelism(4)
+         .build();
+
+      List<AggregateValue<Record>> aggValues = aggregation.groupBy(records);
+
+      assertEquals(5, aggValues.size());
+      for (int i = 0; i < 4; i++)
+         assertEquals(25000.0, ((Number) aggValues.get(i).getAggregateValue(agg)).doubleValue(), 4 * 0.0081 * 25000);
+      AggregateValue<Record> grandTotal = aggValues.get(4);
+      assertTrue(grandTotal.isGrouping("category1"));
+      assertEquals(100000.0, ((Number) grandTotal.getAggregateValue(agg)).doubleValue(), 4 * 0.0081 * 100000);
+   }
+
+   /**
+    * Test the specification format, with and without the precision.
+    */
+   @Test
+   public void testSpecification()
+   {
+      ApproxCountDistinctAggregator agg =
+         (ApproxCountDistinctAggregator) Aggregator.getAggregator("ApproxCountDistinct(category1)");
+      assertEquals("category1", agg.getProperty());
+      assertEquals(14, agg.getPrecision());
+      agg = (ApproxCountDistinctAggregator) Aggregator.getAggregator("ApproxCountDistinct(category1, 10)");
+      assertEquals("category1", agg.getProperty());
+      assertEquals(10, agg.getPrecision());
+      assertEquals(10, agg.replicate().getPrecision());
+   }
+
+   /**
+    * Ensure an <code>IllegalArgumentException</code> is thrown given a
+    * precision that is too large.
+    */
+   @Test(expected = IllegalArgumentException.class)
+   public void testPrecisionTooHigh()
+   {
+      new ApproxCountDistinctAggregator("value1", 19);
+   }
+}
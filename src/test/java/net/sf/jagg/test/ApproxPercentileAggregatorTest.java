@@ -0,0 +1,210 @@
+package net.sf.jagg.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregation;
+import net.sf.jagg.Aggregations;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.ApproxPercentileAggregator;
+import net.sf.jagg.PercentileAggregator;
+import net.sf.jagg.test.model.Record;
+
+/**
+ * Tests the <code>ApproxPercentileAggregator</code>.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class ApproxPercentileAggregatorTest
+{
+   private static final double[] PERCENTILES = {0.0, 0.001, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 0.999, 1.0};
+
+   /**
+    * Test that with few values, the result is exact, and matches the
+    * <code>PercentileAggregator</code>.
+    */
+   @Test
+   public void testMatchesPercentile()
+   {
+      List<Record> records = TestUtility.getTestData();
+      List<String> properties = Arrays.asList("category1", "category2");
+      List<Aggregator> aggs = new ArrayList<Aggregator>();
+      for (double p : new double[] {0.0, 0.1, 0.4, 0.5, 0.9, 1.0})
+      {
+         aggs.add(new PercentileAggregator(p, "value2"));
+         aggs.add(new ApproxPercentileAggregator(p, "value2"));
+      }
+
+      List<AggregateValue<Record>> aggValues = Aggregations.groupBy(records, properties, aggs);
+
+      assertEquals(7, aggValues.size());
+      for (AggregateValue<Record> aggValue : aggValues)
+      {
+         for (int i = 0; i < aggs.size(); i += 2)
+         {
+            double expected = ((Number) aggValue.getAggregateValue(i)).doubleValue();
+            assertEquals(expected, ((Number) aggValue.getAggregateValue(i + 1)).doubleValue(),
+               Math.abs(TestUtility.DELTA * expected));
+         }
+      }
+   }
+
+   /**
+    * Test that with many values, the result is close to the exact
+    * percentile, measured by rank.
+    */
+   @Test
+   public void testAccuracy()
+   {
+      int n = 100000;
+      List<Integer> values = getShuffledValues(n);
+      for (double p : PERCENTILES)
+      {
+         ApproxPercentileAggregator agg = new ApproxPercentileAggregator(p, ".");
+         agg.init();
+         for (Integer value : values)
+            agg.iterate(value);
+         assertRankError(p, agg.terminate(), n);
+      }
+   }
+
+   /**
+    * Test that merging digests of parts of the values yields a result close
+    * to the exact percentile.
+    */
+   @Test
+   public void testMerge()
+   {
+      int n = 100000;
+      List<Integer> values = getShuffledValues(n);
+      for (double p : PERCENTILES)
+      {
+         ApproxPercentileAggregator agg = new ApproxPercentileAggregator(p, ".");
+         agg.init();
+         for (int part = 0; part < 10; part++)
+         {
+            ApproxPercentileAggregator partAgg = agg.replicate();
+            partAgg.init();
+            for (int i = part; i < n; i += 10)
+               partAgg.iterate(values.get(i));
+            agg.merge(partAgg);
+         }
+         assertRankError(p, agg.terminate(), n);
+      }
+   }
+
+   /**
+    * Test the aggregator in a parallel aggregation, in which the grand total
+    * is a super aggregate of the groups.
+    */
+   @Test
+   public void testParallelRollup()
+   {
+      int n = 100000;
+      List<Integer> values = getShuffledValues(n);
+      List<Record> records = new ArrayList<Record>(n);
+      for (Integer value : values)
+         records.add(new Record((value % 2 == 0) ? "even" : "odd", 0, "", "", value, value));
+
+      Aggregator agg = Aggregator.getAggregator("ApproxPercentile(0.99, value1)");
+      Aggregation aggregation = new Aggregation.Builder()
+         .setProperties(Arrays.asList("category1"))
+         .setAggregators(Arrays.asList(agg))
+         .setRollup(Arrays.asList(0))
+         .setParallelism(4)
+         .build();
+
+      List<AggregateValue<Record>> aggValues = aggregation.groupBy(records);
+
+      assertEquals(3, aggValues.size());
+      AggregateValue<Record> grandTotal = aggValues.get(2);
+      assertTrue(grandTotal.isGrouping("category1"));
+      assertRankError(0.99, ((Number) grandTotal.getAggregateValue(agg)).doubleValue(), n);
+   }
+
+   /**
+    * Test the specification format, with and without the compression.
+    */
+   @Test
+   public void testSpecification()
+   {
+      Aggregator agg = Aggregator.getAggregator("ApproxPercentile(0.99, latency)");
+      assertTrue(agg instanceof ApproxPercentileAggregator);
+      ApproxPercentileAggregator approx = (ApproxPercentileAggregator) agg;
+      assertEquals("0.99", approx.getProperty());
+      assertEquals("latency", approx.getProperty2());
+      assertEquals(100, approx.getCompression(), 0);
+
+      approx = (ApproxPercentileAggregator) Aggregator.getAggregator("ApproxPercentile(0.5, latency, 200)");
+      assertEquals(200, approx.getCompression(), 0);
+      assertEquals(200, approx.replicate().getCompression(), 0);
+   }
+
+   /**
+    * Test that there are no values.
+    */
+   @Test
+   public void testEmpty()
+   {
+      ApproxPercentileAggregator agg = new ApproxPercentileAggregator("0.5, .");
+      agg.init();
+      assertTrue(Double.isNaN(agg.terminate()));
+   }
+
+   /**
+    * Ensure an <code>IllegalArgumentException</code> is thrown given a
+    * percentile greater than one.
+    */
+   @Test(expected = IllegalArgumentException.class)
+   public void testPercentileTooHigh()
+   {
+      new ApproxPercentileAggregator(1.01, "value");
+   }
+
+   /**
+    * Ensure an <code>IllegalArgumentException</code> is thrown given a
+    * compression that is too small.
+    */
+   @Test(expected = IllegalArgumentException.class)
+   public void testCompressionTooLow()
+   {
+      new ApproxPercentileAggregator(0.5, "value", 5);
+   }
+
+   /**
+    * Returns the integers from 0 to n - 1, shuffled.
+    * @param n The number of values.
+    * @return The shuffled values.
+    */
+   private static List<Integer> getShuffledValues(int n)
+   {
+      List<Integer> values = new ArrayList<Integer>(n);
+      for (int i = 0; i < n; i++)
+         values.add(i);
+      Collections.shuffle(values, new Random(7));
+      return values;
+   }
+
+   /**
+    * Asserts that the result, an estimate of the given percentile of the
+    * integers 0 to n - 1, is within 0.5% of n of the exact rank at the median,
+    * and closer still toward the tails.
+    * @param p The percentile.
+    * @param result The estimate.
+    * @param n The number of values.
+    */
+   private static void assertRankError(double p, double result, int n)
+   {
+      double exact = p * (n - 1);
+      double tolerance = Math.max(1, 0.01 * n * Math.sqrt(p * (1 - p)));
+      assertEquals("Percentile " + p, exact, result, tolerance);
+   }
+}
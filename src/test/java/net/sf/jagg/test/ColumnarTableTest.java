@@ -0,0 +1,207 @@
+package net.sf.jagg.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregation;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.ColumnarTable;
+import net.sf.jagg.test.model.Record;
+import net.sf.jagg.test.model.StaticPropertySumAggregator;
+
+/**
+ * Tests aggregating a <code>ColumnarTable</code>.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class ColumnarTableTest
+{
+   private static final String[] AGGREGATOR_SPECS = {"Sum(value1)", "Sum(value2, compensated)",
+      "Avg(value2)", "Count(*)", "Count(category3)", "Min(value2)", "Max(category3)",
+      "Collect(value1)", "Concat(category4, /)", "Variance(value2)", "Percentile(0.5, value2)",
+      "Percentile(0.25, value1)", "ApproxPercentile(0.9, value2)", "Covariance(value1, value2)"};
+
+   /**
+    * Test that aggregating a <code>ColumnarTable</code> yields the same
+    * results, in the same order, as aggregating the equivalent objects.
+    */
+   @Test
+   public void testMatchesObjects()
+   {
+      assertMatches(TestUtility.getTestData(), Arrays.asList("category1", "category2"));
+      assertMatches(TestUtility.getTestData(), Arrays.asList("value2"));
+      assertMatches(TestUtility.getTestData(), Arrays.<String>asList());
+      assertMatches(TestUtility.getSomeNullData(), Arrays.asList("category3", "category1"));
+   }
+
+   /**
+    * Test that super-aggregation of a <code>ColumnarTable</code> yields the
+    * same results as super-aggregation of the equivalent objects.
+    */
+   @Test
+   public void testRollup()
+   {
+      List<Record> records = TestUtility.getTestData();
+      List<String> properties = Arrays.asList("category1", "category2");
+      List<Aggregator> aggs = Arrays.asList(Aggregator.getAggregator("Sum(value1)"),
+         Aggregator.getAggregator("Avg(value2)"), Aggregator.getAggregator("Count(*)"));
+      Aggregation aggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).setRollup(Arrays.asList(0, 1)).build();
+
+      List<AggregateValue<Record>> expected = aggregation.groupBy(records);
+      List<AggregateValue<ColumnarTable.Row>> actual = aggregation.groupBy(getTable(records));
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++)
+      {
+         assertEquals(expected.get(i).getGroupingId(properties), actual.get(i).getGroupingId(properties));
+         for (String property : properties)
+            assertEquals(expected.get(i).getPropertyValue(property), actual.get(i).getPropertyValue(property));
+         for (Aggregator agg : aggs)
+            assertEquals(expected.get(i).getAggregateValue(agg), actual.get(i).getAggregateValue(agg));
+      }
+   }
+
+   /**
+    * Test dictionary-encoded columns and access to a <code>Row's</code>
+    * values.
+    */
+   @Test
+   public void testDictionaryEncoded()
+   {
+      ColumnarTable table = new ColumnarTable(4)
+         .addColumn("name", new int[] {1, 0, -1, 1}, new String[] {"b", "a"})
+         .addColumn("amount", new long[] {1L << 40, 2, 3, 4});
+      assertEquals(Arrays.asList("name", "amount"), table.getColumnNames());
+      assertEquals("a", table.getRow(0).getValue("name"));
+      assertNull(table.getValue("name", 2));
+      assertEquals(3L, Aggregator.getValueFromProperty(table.getRow(2), "amount"));
+
+      Aggregator sum = Aggregator.getAggregator("Sum(amount)");
+      Aggregation aggregation = new Aggregation.Builder().setProperties(Arrays.asList("name"))
+         .setAggregators(Arrays.asList(sum)).build();
+      List<AggregateValue<ColumnarTable.Row>> values = aggregation.groupBy(table);
+      assertEquals(3, values.size());
+      assertEquals("a", values.get(0).getPropertyValue("name"));
+      assertEquals(4.0 + (1L << 40), values.get(0).getAggregateValue(sum));
+      assertEquals("b", values.get(1).getPropertyValue("name"));
+      assertEquals(2.0, values.get(1).getAggregateValue(sum));
+      // Nulls sort last.
+      assertNull(values.get(2).getPropertyValue("name"));
+      assertEquals(2, values.get(2).getObject().getIndex());
+   }
+
+   /**
+    * Test that a custom <code>Aggregator</code> that accesses its property
+    * through the static <code>getValueFromProperty</code> method iterates
+    * over <code>Rows</code>, for both <code>double</code> and
+    * <code>int</code> columns.
+    */
+   @Test
+   public void testStaticPropertyAccess()
+   {
+      List<Record> records = TestUtility.getTestData();
+      List<String> properties = Arrays.asList("category1");
+      Aggregator sum1 = new StaticPropertySumAggregator("value1");
+      Aggregator sum2 = new StaticPropertySumAggregator("value2");
+      Aggregation aggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(Arrays.asList(sum1, sum2)).build();
+
+      List<AggregateValue<Record>> expected = aggregation.groupBy(records);
+      List<AggregateValue<ColumnarTable.Row>> actual = aggregation.groupBy(getTable(records));
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++)
+      {
+         assertEquals(expected.get(i).getPropertyValue("category1"), actual.get(i).getPropertyValue("category1"));
+         assertEquals(expected.get(i).getAggregateValue(sum1), actual.get(i).getAggregateValue(sum1));
+         assertEquals(expected.get(i).getAggregateValue(sum2), actual.get(i).getAggregateValue(sum2));
+      }
+   }
+
+   /**
+    * Ensure an <code>IllegalArgumentException</code> is thrown if a column's
+    * length doesn't match the number of rows.
+    */
+   @Test(expected = IllegalArgumentException.class)
+   public void testWrongLength()
+   {
+      new ColumnarTable(3).addColumn("x", new double[] {1, 2});
+   }
+
+   /**
+    * Ensure an <code>IllegalArgumentException</code> is thrown if a "group by"
+    * property is not a column.
+    */
+   @Test(expected = IllegalArgumentException.class)
+   public void testUnknownGroupByColumn()
+   {
+      ColumnarTable table = new ColumnarTable(1).addColumn("x", new double[] {1});
+      Aggregation aggregation = new Aggregation.Builder().setProperties(Arrays.asList("y"))
+         .setAggregators(Arrays.asList(Aggregator.getAggregator("Count(*)"))).build();
+      aggregation.groupBy(table);
+   }
+
+   /**
+    * Asserts that aggregating the table equivalent to the given
+    * <code>Records</code> matches aggregating the <code>Records</code>.
+    * @param records The <code>Records</code>.
+    * @param properties The "group by" properties.
+    */
+   private void assertMatches(List<Record> records, List<String> properties)
+   {
+      List<Aggregator> aggs = new ArrayList<Aggregator>();
+      for (String spec : AGGREGATOR_SPECS)
+         aggs.add(Aggregator.getAggregator(spec));
+      Aggregation aggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).build();
+
+      List<AggregateValue<Record>> expected = aggregation.groupBy(records);
+      List<AggregateValue<ColumnarTable.Row>> actual = aggregation.groupBy(getTable(records));
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++)
+      {
+         for (String property : properties)
+            assertEquals(expected.get(i).getPropertyValue(property), actual.get(i).getPropertyValue(property));
+         for (Aggregator agg : aggs)
+         {
+            assertEquals(agg.toString(), String.valueOf(expected.get(i).getAggregateValue(agg)),
+               String.valueOf(actual.get(i).getAggregateValue(agg)));
+         }
+      }
+   }
+
+   /**
+    * Returns a <code>ColumnarTable</code> with the same values as the given
+    * <code>Records</code>, with their property names as column names.
+    * @param records The <code>Records</code>.
+    * @return A <code>ColumnarTable</code>.
+    */
+   private ColumnarTable getTable(List<Record> records)
+   {
+      int size = records.size();
+      String[] category1 = new String[size];
+      int[] category2 = new int[size];
+      String[] category3 = new String[size];
+      String[] category4 = new String[size];
+      int[] value1 = new int[size];
+      double[] value2 = new double[size];
+      for (int i = 0; i < size; i++)
+      {
+         Record record = records.get(i);
+         category1[i] = record.getCategory1();
+         category2[i] = record.getCategory2();
+         category3[i] = record.getCategory3();
+         category4[i] = record.getCategory4();
+         value1[i] = record.getValue1();
+         value2[i] = record.getValue2();
+      }
+      return new ColumnarTable(size).addColumn("category1", category1).addColumn("category2", category2)
+         .addColumn("category3", category3).addColumn("category4", category4)
+         .addColumn("value1", value1).addColumn("value2", value2);
+   }
+}
@@ -0,0 +1,134 @@
+package net.sf.jagg.test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregation;
+import net.sf.jagg.Aggregations;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.CountDistinctAggregator;
+import net.sf.jagg.test.model.Record;
+
+/**
+ * Tests the <code>CountDistinctAggregator</code>.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class CountDistinctAggregatorTest
+{
+   /**
+    * Test the distinct counts of numeric and <code>String</code> properties.
+    */
+   @Test
+   public void testByProperty()
+   {
+      List<Record> records = TestUtility.getTestData();
+      List<String> properties = Arrays.asList("category1");
+      Aggregator agg1 = new CountDistinctAggregator("category2");
+      Aggregator agg2 = new CountDistinctAggregator("category4");
+      Aggregator agg3 = new CountDistinctAggregator("value1");
+      Aggregator agg4 = new CountDistinctAggregator("value2");
+      List<Aggregator> aggs = Arrays.asList(agg1, agg2, agg3, agg4);
+
+      List<AggregateValue<Record>> aggValues = Aggregations.groupBy(records, properties, aggs);
+
+      assertEquals(3, aggValues.size());
+      for (AggregateValue<Record> aggValue : aggValues)
+      {
+         Object cat1 = aggValue.getPropertyValue(0);
+         assertEquals(countDistinct(records, cat1, "category2"), aggValue.getAggregateValue(agg1));
+         assertEquals(countDistinct(records, cat1, "category4"), aggValue.getAggregateValue(agg2));
+         assertEquals(countDistinct(records, cat1, "value1"), aggValue.getAggregateValue(agg3));
+         assertEquals(countDistinct(records, cat1, "value2"), aggValue.getAggregateValue(agg4));
+      }
+   }
+
+   /**
+    * Test that numeric values are compared by value, that nulls aren't
+    * counted, and that <code>NaN</code> and the zeroes are handled.
+    */
+   @Test
+   public void testMixedValues()
+   {
+      CountDistinctAggregator agg = new CountDistinctAggregator(".");
+      agg.init();
+      for (Object value : Arrays.asList(1, 1L, 1.0, 1.0f, (short) 1, (byte) 1,
+         0.0, -0.0, 0, 2.5, 2.5f, Double.NaN, Double.NaN, "1", "1", null))
+      {
+         agg.iterate(value);
+      }
+      // 1, 0, 2.5, NaN, "1"
+      assertEquals(5L, agg.terminate().longValue());
+   }
+
+   /**
+    * Test merging, in a parallel aggregation with super aggregation.
+    */
+   @Test
+   public void testParallelRollup()
+   {
+      List<Record> records = TestUtility.getTestData();
+      Aggregator agg = Aggregator.getAggregator("CountDistinct(category3)");
+      Aggregation aggregation = new Aggregation.Builder()
+         .setProperties(Arrays.asList("category1", "category2"))
+         .setAggregators(Arrays.asList(agg))
+         .setRollup(Arrays.asList(1))
+         .setParallelism(3)
+         .build();
+
+      List<AggregateValue<Record>> aggValues = aggregation.groupBy(records);
+
+      Map<Object, Long> byCat1 = new HashMap<Object, Long>();
+      for (AggregateValue<Record> aggValue : aggValues)
+      {
+         if (aggValue.isGrouping(1))
+            byCat1.put(aggValue.getPropertyValue(0), (Long) aggValue.getAggregateValue(agg));
+      }
+      assertEquals(3, byCat1.size());
+      for (Map.Entry<Object, Long> entry : byCat1.entrySet())
+         assertEquals(countDistinct(records, entry.getKey(), "category3"), entry.getValue());
+   }
+
+   /**
+    * Test that there are no values.
+    */
+   @Test
+   public void testEmpty()
+   {
+      CountDistinctAggregator agg = new CountDistinctAggregator("value1");
+      agg.init();
+      assertEquals(0L, agg.terminate().longValue());
+   }
+
+   /**
+    * Counts the distinct non-null values of the given property among the
+    * records in the given category.
+    * @param records The records.
+    * @param category1 The value of <code>category1</code>.
+    * @param property The property.
+    * @return The number of distinct values.
+    */
+   private static Long countDistinct(List<Record> records, Object category1, String property)
+   {
+      Set<Object> distinct = new HashSet<Object>();
+      for (Record record : records)
+      {
+         if (record.getCategory1().equals(category1))
+         {
+            Object value = Aggregator.getValueFromProperty(record, property);
+            if (value != null)
+               distinct.add(value);
+         }
+      }
+      return (long) distinct.size();
+   }
+}
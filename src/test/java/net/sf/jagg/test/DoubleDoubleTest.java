@@ -299,4 +299,39 @@ public class DoubleDoubleTest
       assertEquals(high, dd3.doubleValue(), Double.MIN_VALUE);
       assertEquals(low, dd3.getLow(), Math.abs(TestUtility.DELTA * low));
    }
+
+   /**
+    * Tests setting a <code>DoubleDouble</code> for reuse, including dividing
+    * repeatedly with the same <code>DoubleDouble</code>.
+    */
+   @Test
+   public void testSet()
+   {
+      DoubleDouble dd = new DoubleDouble(1L << 53);
+      dd.addToSelf(1);
+      DoubleDouble temp = new DoubleDouble(7);
+      temp.set(dd);
+      assertEquals(dd.doubleValue(), temp.doubleValue(), Double.MIN_VALUE);
+      assertEquals(1, temp.getLow(), Double.MIN_VALUE);
+
+      for (int i = 1; i <= 3; i++)
+      {
+         temp.set(1.0);
+         assertEquals(0, temp.getLow(), Double.MIN_VALUE);
+         temp.divideSelfBy(3 * i);
+         DoubleDouble expected = new DoubleDouble(1.0);
+         expected.divideSelfBy(new DoubleDouble(3 * i));
+         assertEquals(0, temp.compareTo(expected));
+      }
+   }
+
+   /**
+    * Ensure an <code>UnsupportedOperationException</code> is thrown when
+    * setting a constant.
+    */
+   @Test(expected = UnsupportedOperationException.class)
+   public void testSetConstant()
+   {
+      DoubleDouble.ZERO.set(1.0);
+   }
 }
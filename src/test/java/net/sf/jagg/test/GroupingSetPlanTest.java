@@ -0,0 +1,172 @@
+package net.sf.jagg.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregation;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.ParallelismUtility;
+import net.sf.jagg.test.model.Record;
+
+/**
+ * Tests the plan that decides from which values, and with which sorts, the
+ * super-aggregate values of grouping sets are computed.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class GroupingSetPlanTest
+{
+   private static final List<String> PROPERTIES = Arrays.asList("category1", "category2", "category3");
+
+   /**
+    * Tests that there is no plan without super-aggregation.
+    */
+   @Test
+   public void testNoPlan()
+   {
+      Aggregation aggregation = new Aggregation.Builder().setProperties(PROPERTIES)
+         .setAggregators(Arrays.asList(Aggregator.getAggregator("Count(*)"))).build();
+      assertNull(aggregation.getGroupingSetPlan());
+   }
+
+   /**
+    * Tests that a rollup needs no sorts.
+    */
+   @Test
+   public void testRollupPlan()
+   {
+      Aggregation aggregation = new Aggregation.Builder().setProperties(PROPERTIES)
+         .setAggregators(Arrays.asList(Aggregator.getAggregator("Count(*)")))
+         .setRollup(Arrays.asList(0, 1, 2)).build();
+      assertEquals("[category1, category2, category3]: the aggregate values\n" +
+         "[category1, category2]: from [category1, category2, category3], in order\n" +
+         "[category1]: from [category1, category2], in order\n" +
+         "[]: from [category1], in order\n" +
+         "Sorts: 0", aggregation.getGroupingSetPlan());
+   }
+
+   /**
+    * Tests that a cube sorts only the grouping sets that aren't prefixes of
+    * a superset.
+    */
+   @Test
+   public void testCubePlan()
+   {
+      Aggregation aggregation = new Aggregation.Builder().setProperties(PROPERTIES)
+         .setAggregators(Arrays.asList(Aggregator.getAggregator("Count(*)")))
+         .setCube(Arrays.asList(0, 1, 2)).build();
+      assertEquals("[category1, category2, category3]: the aggregate values\n" +
+         "[category2, category3]: from [category1, category2, category3], sorted\n" +
+         "[category1, category3]: from [category1, category2, category3], sorted\n" +
+         "[category1, category2]: from [category1, category2, category3], in order\n" +
+         "[category3]: from [category1, category3], sorted\n" +
+         "[category2]: from [category2, category3], in order\n" +
+         "[category1]: from [category1, category2], in order\n" +
+         "[]: from [category1], in order\n" +
+         "Sorts: 3", aggregation.getGroupingSetPlan());
+
+      // The cube's results don't depend on the plan's sharing of values.
+      List<Record> records = TestUtility.getTestData();
+      List<AggregateValue<Record>> aggValues = aggregation.groupBy(records);
+      int total = 0;
+      for (AggregateValue<Record> aggValue : aggValues)
+      {
+         if (aggValue.isGrouping(0) && aggValue.isGrouping(1) && aggValue.isGrouping(2))
+            total = ((Number) aggValue.getAggregateValue(0)).intValue();
+      }
+      assertEquals(records.size(), total);
+   }
+
+   /**
+    * Limits parallelism to the number of processors again.
+    */
+   @After
+   public void resetParallelism()
+   {
+      ParallelismUtility.reset();
+   }
+
+   /**
+    * Tests that computing independent grouping sets in parallel, from
+    * aggregate values that were themselves computed in parallel, yields the
+    * same results, in the same order, as computing them one at a time, with
+    * every strategy.
+    */
+   @Test
+   public void testParallelCube()
+   {
+      ParallelismUtility.forceParallelism(4);
+      assertSameInParallel(Aggregation.Strategy.SORT, false, Arrays.asList(0, 1, 2, 3), null);
+      assertSameInParallel(Aggregation.Strategy.SORT, true, Arrays.asList(0, 1, 2, 3), null);
+      assertSameInParallel(Aggregation.Strategy.RADIX, false, Arrays.asList(0, 1, 2, 3), null);
+      assertSameInParallel(Aggregation.Strategy.HASH, false, Arrays.asList(0, 1, 2, 3), null);
+   }
+
+   /**
+    * Tests that a rollup computed in parallel yields the same results, in
+    * the same order, as one computed serially, with every strategy.
+    */
+   @Test
+   public void testParallelRollup()
+   {
+      ParallelismUtility.forceParallelism(4);
+      assertSameInParallel(Aggregation.Strategy.SORT, false, null, Arrays.asList(0, 1, 2, 3));
+      assertSameInParallel(Aggregation.Strategy.SORT, true, null, Arrays.asList(0, 1, 2, 3));
+      assertSameInParallel(Aggregation.Strategy.RADIX, false, null, Arrays.asList(0, 1, 2, 3));
+      assertSameInParallel(Aggregation.Strategy.HASH, false, null, Arrays.asList(0, 1, 2, 3));
+   }
+
+   /**
+    * Aggregates the test data with a cube or a rollup, serially and with a
+    * parallelism of 4, and checks that the results match.
+    * @param strategy The <code>Strategy</code>.
+    * @param useMsd Whether to use multiset discrimination.
+    * @param cube The cube, or <code>null</code>.
+    * @param rollup The rollup, or <code>null</code>.
+    */
+   private void assertSameInParallel(Aggregation.Strategy strategy, boolean useMsd, List<Integer> cube,
+      List<Integer> rollup)
+   {
+      List<String> properties = Arrays.asList("category1", "category2", "category3", "category4");
+      List<Aggregator> aggs = Arrays.asList(Aggregator.getAggregator("Sum(value1)"),
+         Aggregator.getAggregator("Avg(value2)"), Aggregator.getAggregator("Concat(category4, /)"));
+      List<Record> records = TestUtility.getTestData();
+      List<List<AggregateValue<Record>>> results = new ArrayList<List<AggregateValue<Record>>>(2);
+      for (int parallelism = 1; parallelism <= 4; parallelism += 3)
+      {
+         Aggregation.Builder builder = new Aggregation.Builder().setProperties(properties).setAggregators(aggs)
+            .setStrategy(strategy).setUseMsd(useMsd).setParallelism(parallelism);
+         if (cube != null)
+            builder.setCube(cube);
+         else
+            builder.setRollup(rollup);
+         results.add(builder.build().groupBy(records));
+      }
+      List<AggregateValue<Record>> expected = results.get(0);
+      List<AggregateValue<Record>> actual = results.get(1);
+
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++)
+      {
+         AggregateValue<Record> expValue = expected.get(i);
+         AggregateValue<Record> actValue = actual.get(i);
+         for (int a = 0; a < aggs.size(); a++)
+         {
+            assertEquals(String.valueOf(expValue.getAggregateValue(a)),
+               String.valueOf(actValue.getAggregateValue(a)));
+         }
+         for (int p = 0; p < properties.size(); p++)
+         {
+            assertEquals(expValue.getPropertyValue(p), actValue.getPropertyValue(p));
+            assertEquals(expValue.isGrouping(p), actValue.isGrouping(p));
+         }
+      }
+   }
+}
@@ -52,28 +52,28 @@ public class GroupingSetsTest
 
       List<String> cats1 = Arrays.asList(
          // grouping set: {0, 1}
-         "AAA", "BBB", "CCC", "AAA", "BBB", "CCC", "CCC",
+         "AAA", "AAA", "BBB", "BBB", "CCC", "CCC", "CCC",
          // grouping set: {0}
          "AAA", "BBB", "CCC",
          // grouping set: {1}
          null, null, null);
       List<Integer> cats2 = Arrays.asList(
          // grouping set: {0, 1}
-         1, 1, 1, 2, 2, 2, 3,
+         1, 2, 1, 2, 1, 2, 3,
          // grouping set: {0}
          null, null, null,
          // grouping set: {1}
          1, 2, 3);
       List<Double> values1 = Arrays.asList(
          // grouping set: {0, 1}
-         51.0, 2279.0, 10.0, 1037.0, 1550.0, 21.0, 15.0,
+         51.0, 1037.0, 2279.0, 1550.0, 10.0, 21.0, 15.0,
          // grouping set: {0}
          1088.0, 3829.0, 46.0,
          // grouping set: {1}
          2340.0, 2608.0, 15.0);
       List<Double> values2 = Arrays.asList(
          // grouping set: {0, 1}
-         3.4244675, 17.25, 6.0, 91.1425, 74.25, 9.1666666666666667, 13.8,
+         3.4244675, 91.1425, 17.25, 74.25, 6.0, 9.1666666666666667, 13.8,
          // grouping set: {0}
          47.28348375, 48.9166666666666667, 9.8666666666666667,
          // grouping set: {1}
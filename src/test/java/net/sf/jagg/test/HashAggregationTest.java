@@ -0,0 +1,280 @@
+package net.sf.jagg.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregation;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.AvgAggregator;
+import net.sf.jagg.ConcatAggregator;
+import net.sf.jagg.CountAggregator;
+import net.sf.jagg.MaxAggregator;
+import net.sf.jagg.ParallelismUtility;
+import net.sf.jagg.SumAggregator;
+import net.sf.jagg.test.model.Record;
+
+/**
+ * Tests the <code>HASH</code> strategy, which aggregates values without
+ * sorting them first.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class HashAggregationTest
+{
+   /**
+    * Allows a degree of parallelism of up to 3, even on a machine with fewer
+    * processors, so that the parallel tests run in parallel.
+    */
+   @Before
+   public void forceParallelism()
+   {
+      ParallelismUtility.forceParallelism(3);
+   }
+
+   /**
+    * Limits parallelism to the number of processors again.
+    */
+   @After
+   public void resetParallelism()
+   {
+      ParallelismUtility.reset();
+   }
+
+   /**
+    * Test that the <code>HASH</code> strategy yields the same results, in the
+    * same order, as the <code>SORT</code> strategy.
+    */
+   @Test
+   public void testHashMatchesSort()
+   {
+      List<Record> records = TestUtility.getTestData();
+      List<String> properties = Arrays.asList("category1", "category2");
+
+      Aggregator agg1 = new SumAggregator("value1");
+      Aggregator agg2 = new AvgAggregator("value2");
+      Aggregator agg3 = new CountAggregator("*");
+      Aggregator agg4 = new MaxAggregator("category3");
+      List<Aggregator> aggs = Arrays.asList(agg1, agg2, agg3, agg4);
+
+      Aggregation sortAggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).build();
+      Aggregation hashAggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).setStrategy(Aggregation.Strategy.HASH).build();
+
+      List<AggregateValue<Record>> sortValues = sortAggregation.groupBy(records);
+      List<AggregateValue<Record>> hashValues = hashAggregation.groupBy(records);
+
+      assertEquals(7, hashValues.size());
+      assertEquals(sortValues.size(), hashValues.size());
+      for (int i = 0; i < sortValues.size(); i++)
+      {
+         AggregateValue<Record> sortValue = sortValues.get(i);
+         AggregateValue<Record> hashValue = hashValues.get(i);
+         assertEquals(sortValue.getPropertyValue(0), hashValue.getPropertyValue(0));
+         assertEquals(sortValue.getPropertyValue(1), hashValue.getPropertyValue(1));
+         for (Aggregator agg : aggs)
+            assertEquals(sortValue.getAggregateValue(agg), hashValue.getAggregateValue(agg));
+      }
+   }
+
+   /**
+    * Test that the parallel <code>HASH</code> strategy, which merges partial
+    * results, yields the same results, in the same order, as the
+    * <code>SORT</code> strategy, even for an order-sensitive
+    * <code>Aggregator</code>.
+    */
+   @Test
+   public void testParallelHashMatchesSort()
+   {
+      List<Record> records = TestUtility.getTestData();
+      List<String> properties = Arrays.asList("category1");
+
+      Aggregator agg1 = new SumAggregator("value1");
+      Aggregator agg2 = new CountAggregator("*");
+      Aggregator agg3 = new ConcatAggregator("category3, \",\"");
+      List<Aggregator> aggs = Arrays.asList(agg1, agg2, agg3);
+
+      Aggregation sortAggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).build();
+      Aggregation hashAggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).setStrategy(Aggregation.Strategy.HASH).setParallelism(3).build();
+
+      List<AggregateValue<Record>> sortValues = sortAggregation.groupBy(records);
+      List<AggregateValue<Record>> hashValues = hashAggregation.groupBy(records);
+
+      assertEquals(3, hashValues.size());
+      assertEquals(sortValues.size(), hashValues.size());
+      for (int i = 0; i < sortValues.size(); i++)
+      {
+         AggregateValue<Record> sortValue = sortValues.get(i);
+         AggregateValue<Record> hashValue = hashValues.get(i);
+         assertEquals(sortValue.getPropertyValue(0), hashValue.getPropertyValue(0));
+         for (Aggregator agg : aggs)
+            assertEquals(sortValue.getAggregateValue(agg), hashValue.getAggregateValue(agg));
+      }
+   }
+
+   /**
+    * Test that the parallel <code>HASH</code> strategy yields the same
+    * results, in the same order, as the serial <code>HASH</code> strategy,
+    * when each slice sees most groups, and the partial results of every slice
+    * must be merged in order.
+    */
+   @Test
+   public void testParallelHashMatchesSerial()
+   {
+      int size = 5000;
+      List<Record> records = new ArrayList<Record>(size);
+      for (int i = 0; i < size; i++)
+         records.add(new Record((i % 3 == 0) ? "A" : "B", (i * 7919) % 40, "C", "D", i, i));
+      List<String> properties = Arrays.asList("category2", "category1");
+
+      Aggregator agg1 = new CountAggregator("*");
+      Aggregator agg2 = new ConcatAggregator("value1");
+      List<Aggregator> aggs = Arrays.asList(agg1, agg2);
+
+      Aggregation serial = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).setStrategy(Aggregation.Strategy.HASH).build();
+      Aggregation parallel = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).setStrategy(Aggregation.Strategy.HASH).setParallelism(3).build();
+
+      List<AggregateValue<Record>> expected = serial.groupBy(records);
+      List<AggregateValue<Record>> actual = parallel.groupBy(records);
+
+      assertEquals(80, expected.size());
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++)
+      {
+         AggregateValue<Record> expValue = expected.get(i);
+         AggregateValue<Record> actValue = actual.get(i);
+         assertEquals(expValue.getPropertyValue(0), actValue.getPropertyValue(0));
+         assertEquals(expValue.getPropertyValue(1), actValue.getPropertyValue(1));
+         assertEquals(expValue.getAggregateValue(agg1), actValue.getAggregateValue(agg1));
+         assertEquals(expValue.getAggregateValue(agg2), actValue.getAggregateValue(agg2));
+      }
+   }
+
+   /**
+    * Test that the <code>HASH</code> strategy doesn't modify the given list of
+    * values.
+    */
+   @Test
+   public void testHashDoesNotModifyValues()
+   {
+      List<Record> records = TestUtility.getTestData();
+      List<Record> copy = new ArrayList<Record>(records);
+      List<String> properties = Arrays.asList("category2", "category1");
+
+      Aggregation aggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(Arrays.<Aggregator>asList(new CountAggregator("*")))
+         .setStrategy(Aggregation.Strategy.HASH).build();
+      aggregation.groupBy(records);
+
+      assertEquals(copy.size(), records.size());
+      for (int i = 0; i < copy.size(); i++)
+         assertSame(copy.get(i), records.get(i));
+   }
+
+   /**
+    * Test that unsorted results contain the same groups, in the order in which
+    * each group was first encountered.
+    */
+   @Test
+   public void testHashUnsorted()
+   {
+      List<Record> records = TestUtility.getTestData();
+      List<String> properties = Arrays.asList("category1");
+
+      Aggregator agg = new SumAggregator("value1");
+      Aggregation aggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(Arrays.asList(agg)).setStrategy(Aggregation.Strategy.HASH)
+         .setSortResults(false).build();
+
+      List<AggregateValue<Record>> aggValues = aggregation.groupBy(records);
+
+      List<String> firstSeen = new ArrayList<String>();
+      Set<String> seen = new HashSet<String>();
+      for (Record record : records)
+      {
+         if (seen.add(record.getCategory1()))
+            firstSeen.add(record.getCategory1());
+      }
+      assertEquals(firstSeen.size(), aggValues.size());
+      double total = 0;
+      for (int i = 0; i < aggValues.size(); i++)
+      {
+         AggregateValue<Record> aggValue = aggValues.get(i);
+         assertEquals(firstSeen.get(i), aggValue.getPropertyValue(0));
+         total += ((Number) aggValue.getAggregateValue(agg)).doubleValue();
+      }
+      assertEquals(1088.0 + 3829.0 + 46.0, total, TestUtility.DELTA);
+   }
+
+   /**
+    * Test the <code>HASH</code> strategy with grouping sets, which creates
+    * "super-aggregate" data from the hashed aggregate values.
+    */
+   @Test
+   public void testHashGroupingSets()
+   {
+      List<Record> records = TestUtility.getTestData();
+      List<String> properties = Arrays.asList("category1", "category2");
+
+      Aggregator agg1 = new SumAggregator("value1");
+      Aggregator agg2 = new AvgAggregator("value2");
+      List<Aggregator> aggs = Arrays.asList(agg1, agg2);
+
+      List<List<Integer>> groupingSets = new ArrayList<List<Integer>>();
+      groupingSets.add(Arrays.asList(0, 1));
+      groupingSets.add(Arrays.asList(0));
+      groupingSets.add(Arrays.asList(1));
+
+      Aggregation sortAggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).setGroupingSets(groupingSets).build();
+      Aggregation hashAggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).setGroupingSets(groupingSets)
+         .setStrategy(Aggregation.Strategy.HASH).build();
+
+      List<AggregateValue<Record>> sortValues = sortAggregation.groupBy(records);
+      List<AggregateValue<Record>> hashValues = hashAggregation.groupBy(records);
+
+      assertEquals(13, hashValues.size());
+      for (int i = 0; i < sortValues.size(); i++)
+      {
+         AggregateValue<Record> sortValue = sortValues.get(i);
+         AggregateValue<Record> hashValue = hashValues.get(i);
+         assertEquals(sortValue.getPropertyValue(0), hashValue.getPropertyValue(0));
+         assertEquals(sortValue.getPropertyValue(1), hashValue.getPropertyValue(1));
+         assertEquals(((Number) sortValue.getAggregateValue(agg1)).doubleValue(),
+            ((Number) hashValue.getAggregateValue(agg1)).doubleValue(), TestUtility.DELTA);
+         assertEquals(((Number) sortValue.getAggregateValue(agg2)).doubleValue(),
+            ((Number) hashValue.getAggregateValue(agg2)).doubleValue(),
+            Math.abs(TestUtility.DELTA * ((Number) sortValue.getAggregateValue(agg2)).doubleValue()));
+      }
+   }
+
+   /**
+    * Test the <code>HASH</code> strategy with an empty list.
+    */
+   @Test
+   public void testHashEmpty()
+   {
+      Aggregation aggregation = new Aggregation.Builder()
+         .setProperties(Arrays.asList("category1"))
+         .setAggregators(Arrays.<Aggregator>asList(new CountAggregator("*")))
+         .setStrategy(Aggregation.Strategy.HASH).build();
+
+      List<AggregateValue<Record>> aggValues = aggregation.groupBy(new ArrayList<Record>());
+      assertEquals(0, aggValues.size());
+   }
+}
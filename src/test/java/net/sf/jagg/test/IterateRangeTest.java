@@ -0,0 +1,134 @@
+package net.sf.jagg.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.CollectAggregator;
+import net.sf.jagg.CovarianceAggregator;
+import net.sf.jagg.test.model.Record;
+
+/**
+ * Tests that <code>Aggregator.iterateRange</code> and
+ * <code>Aggregator.iterateDoubles</code> aggregate the same as
+ * <code>iterate</code>.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class IterateRangeTest
+{
+   private static final String[] SINGLE_PROPERTY_SPECS = {"Avg(value2)", "Avg(value2, double)",
+      "ApproxPercentile(0.9, value2)", "Collect(value2)", "Count(value2)", "CountDistinct(value2)",
+      "GeometricMean(value2)", "HarmonicMean(value2)", "Max(value2)", "Min(value2)", "Mode(value2)",
+      "Percentile(0.25, value2)", "Product(value2)", "StdDev(value2)", "StdDevPop(value2, compensated)",
+      "Sum(value2)", "Sum(value2, double)", "Sum(value2, compensated)", "Variance(value2)",
+      "VariancePop(value2, double)"};
+
+   /**
+    * Test that iterating ranges, including empty ones, matches iterating
+    * each value.
+    */
+   @Test
+   public void testIterateRange()
+   {
+      List<Record> records = getRecords();
+      List<String> specs = new ArrayList<String>(Arrays.asList(SINGLE_PROPERTY_SPECS));
+      specs.addAll(Arrays.asList("Concat(category1, /)", "Correlation(value1, value2)",
+         "Covariance(value1, value2)", "LinearRegression(value1, value2)", "TopK(category1, 2)"));
+      for (String spec : specs)
+      {
+         Aggregator expected = Aggregator.getAggregator(spec);
+         expected.init();
+         for (int i = 10; i < 90; i++)
+            expected.iterate(records.get(i));
+
+         Aggregator actual = expected.replicate();
+         actual.init();
+         actual.iterateRange(records, 10, 40);
+         actual.iterateRange(records, 40, 40);
+         actual.iterateRange(records, 40, 90);
+
+         // Not all results implement equals.
+         assertEquals(spec, String.valueOf(expected.terminate()), String.valueOf(actual.terminate()));
+      }
+   }
+
+   /**
+    * Test that iterating doubles matches iterating the values of the
+    * property.
+    */
+   @Test
+   public void testIterateDoubles()
+   {
+      List<Record> records = getRecords();
+      double[] values = new double[records.size()];
+      for (int i = 0; i < values.length; i++)
+         values[i] = records.get(i).getValue2();
+      for (String spec : SINGLE_PROPERTY_SPECS)
+      {
+         Aggregator expected = Aggregator.getAggregator(spec);
+         expected.init();
+         for (int i = 10; i < 90; i++)
+            expected.iterate(records.get(i));
+
+         Aggregator actual = expected.replicate();
+         actual.init();
+         actual.iterateDoubles(values, 10, 40);
+         actual.iterateDoubles(values, 40, 40);
+         actual.iterateDoubles(values, 40, 90);
+
+         assertEquals(spec, expected.terminate(), actual.terminate());
+      }
+   }
+
+   /**
+    * Test that an <code>Aggregator</code> without its own
+    * <code>iterateDoubles</code> still accesses its property normally
+    * afterwards.
+    */
+   @Test
+   public void testIterateDoublesDefault()
+   {
+      CollectAggregator agg = new CollectAggregator("value1");
+      agg.init();
+      agg.iterateDoubles(new double[] {1.5, 2.5}, 0, 2);
+      agg.iterate(new Record("a", 1, "b", "c", 7, 0.5));
+      assertEquals(Arrays.asList((Object) 1.5, 2.5, 7), agg.terminate());
+   }
+
+   /**
+    * Test that iterating doubles into an <code>Aggregator</code> of two
+    * properties loops over <code>iterate</code>, with each value as the value
+    * of both properties, so the covariance is the variance.
+    */
+   @Test
+   public void testIterateDoublesTwoProperties()
+   {
+      CovarianceAggregator agg = new CovarianceAggregator("value1", "value2");
+      agg.init();
+      agg.iterateDoubles(new double[] {0, 1, 2, 3, 4}, 1, 4);
+      assertEquals(1.0, agg.terminate(), TestUtility.DELTA);
+   }
+
+   /**
+    * Returns records with repeated and distinct values.
+    * @return A <code>List</code> of <code>Records</code>.
+    */
+   private List<Record> getRecords()
+   {
+      Random random = new Random(17);
+      List<Record> records = new ArrayList<Record>();
+      for (int i = 0; i < 100; i++)
+      {
+         records.add(new Record("cat" + (i % 3), i % 4, "", "", random.nextInt(20),
+            (i % 5 == 0) ? 0.5 * (i % 7) : 1 + random.nextDouble()));
+      }
+      return records;
+   }
+}
@@ -256,4 +256,37 @@ public class ModeAggregatorTest {
 			}
 		}
 	}
+
+	/**
+	 * Tests that after a merge that ties several modes, the least of them is
+	 * returned.
+	 */
+	@Test
+	public void testMergeTiedModes() {
+		ModeAggregator agg1 = new ModeAggregator(".");
+		ModeAggregator agg2 = new ModeAggregator(".");
+		agg1.init();
+		agg2.init();
+
+		for (String value : Arrays.asList("b", "c", "c", "a", null))
+			agg1.iterate(value);
+		for (String value : Arrays.asList("b", "a", "d", "d"))
+			agg2.iterate(value);
+		assertEquals("c", agg1.terminate());
+		assertEquals("d", agg2.terminate());
+
+		// "a", "b", "c", and "d" each occur twice.
+		agg1.merge(agg2);
+		assertEquals("a", agg1.terminate());
+	}
+
+	/**
+	 * Tests that there are no values.
+	 */
+	@Test
+	public void testEmpty() {
+		ModeAggregator agg = new ModeAggregator(".");
+		agg.init();
+		assertNull(agg.terminate());
+	}
 }
@@ -0,0 +1,188 @@
+package net.sf.jagg.test;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.AbstractVarianceAggregator;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.AvgAggregator;
+import net.sf.jagg.NumericPrecision;
+import net.sf.jagg.StdDevPopAggregator;
+import net.sf.jagg.SumAggregator;
+import net.sf.jagg.VarianceAggregator;
+
+/**
+ * Tests the <code>NumericPrecisions</code> of the numeric
+ * <code>Aggregators</code>.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class NumericPrecisionTest
+{
+   /**
+    * Test the specification format, with and without the precision.
+    */
+   @Test
+   public void testSpecification()
+   {
+      SumAggregator sum = (SumAggregator) Aggregator.getAggregator("Sum(value2)");
+      assertEquals("value2", sum.getProperty());
+      assertEquals(NumericPrecision.DOUBLE_DOUBLE, sum.getPrecision());
+
+      sum = (SumAggregator) Aggregator.getAggregator("Sum(value2, Compensated)");
+      assertEquals("value2", sum.getProperty());
+      assertEquals(NumericPrecision.COMPENSATED, sum.getPrecision());
+      assertEquals(NumericPrecision.COMPENSATED, sum.replicate().getPrecision());
+      assertFalse(sum.equals(Aggregator.getAggregator("Sum(value2)")));
+      assertEquals(sum, Aggregator.getAggregator("Sum(value2,COMPENSATED)"));
+
+      AbstractVarianceAggregator variance =
+         (AbstractVarianceAggregator) Aggregator.getAggregator("Variance(value1, double)");
+      assertEquals("value1", variance.getProperty());
+      assertEquals(NumericPrecision.DOUBLE, variance.getPrecision());
+      assertEquals(NumericPrecision.DOUBLE, ((VarianceAggregator) variance.replicate()).getPrecision());
+
+      AvgAggregator avg = new AvgAggregator("value1", NumericPrecision.DOUBLE);
+      assertEquals("value1", avg.getProperty());
+      assertEquals(NumericPrecision.DOUBLE, avg.replicate().getPrecision());
+   }
+
+   /**
+    * Ensure an <code>IllegalArgumentException</code> is thrown given an
+    * unknown precision name.
+    */
+   @Test(expected = IllegalArgumentException.class)
+   public void testUnknownPrecision()
+   {
+      NumericPrecision.fromName("quadruple");
+   }
+
+   /**
+    * Test that integral values are summed exactly, even in
+    * <code>DOUBLE</code> precision.
+    */
+   @Test
+   public void testIntegralExact()
+   {
+      SumAggregator agg = new SumAggregator(".", NumericPrecision.DOUBLE);
+      agg.init();
+      agg.iterate(1L << 53);
+      agg.iterate(1);
+      agg.iterate((short) 1);
+      assertEquals(9007199254740994.0, agg.terminate(), 0);
+   }
+
+   /**
+    * Test that an integral sum that overflows a <code>long</code> continues
+    * as a floating-point sum.
+    */
+   @Test
+   public void testIntegralOverflow()
+   {
+      for (NumericPrecision precision : NumericPrecision.values())
+      {
+         SumAggregator agg = new SumAggregator(".", precision);
+         agg.init();
+         agg.iterate(Long.MAX_VALUE);
+         agg.iterate(Long.MAX_VALUE);
+         agg.iterate(-Long.MAX_VALUE);
+         assertEquals(precision.toString(), 9.223372036854775807E18, agg.terminate(), 0);
+      }
+   }
+
+   /**
+    * Test that compensated summation keeps small values that plain summation
+    * loses.
+    */
+   @Test
+   public void testCompensated()
+   {
+      SumAggregator plain = new SumAggregator(".", NumericPrecision.DOUBLE);
+      SumAggregator compensated = new SumAggregator(".", NumericPrecision.COMPENSATED);
+      plain.init();
+      compensated.init();
+      for (Aggregator agg : new Aggregator[] {plain, compensated})
+      {
+         agg.iterate(1e16);
+         for (int i = 0; i < 1000; i++)
+            agg.iterate(1.0);
+         agg.iterate(-1e16);
+      }
+      assertEquals(0.0, plain.terminate(), 0);
+      assertEquals(1000.0, compensated.terminate(), 0);
+   }
+
+   /**
+    * Test that all precisions agree on the sum, average, and variances, with
+    * and without merging.
+    */
+   @Test
+   public void testPrecisionsAgree()
+   {
+      Random random = new Random(15);
+      double[] values = new double[10000];
+      for (int i = 0; i < values.length; i++)
+         values[i] = 1e6 + random.nextGaussian();
+
+      for (String name : new String[] {"Sum", "Avg", "Variance", "StdDevPop"})
+      {
+         double expected = getResult(name + "(.)", values);
+         for (NumericPrecision precision : NumericPrecision.values())
+         {
+            String spec = name + "(., " + precision + ")";
+            assertEquals(spec, expected, getResult(spec, values), Math.abs(expected) * 1e-9);
+         }
+      }
+   }
+
+   /**
+    * Test the variance of too few values in the faster precisions.
+    */
+   @Test
+   public void testVarianceFewValues()
+   {
+      VarianceAggregator variance = new VarianceAggregator(".", NumericPrecision.DOUBLE);
+      StdDevPopAggregator stdDevPop = new StdDevPopAggregator(".", NumericPrecision.COMPENSATED);
+      variance.init();
+      stdDevPop.init();
+      assertTrue(Double.isNaN(variance.terminate()));
+      assertTrue(Double.isNaN(stdDevPop.terminate()));
+      variance.iterate(4.5);
+      stdDevPop.iterate(4.5);
+      assertEquals(0.0, variance.terminate(), 0);
+      assertEquals(0.0, stdDevPop.terminate(), 0);
+   }
+
+   /**
+    * Aggregates the given values, merging three partial aggregations, and
+    * checks that the result matches aggregating them all at once.
+    * @param spec The <code>Aggregator</code> specification.
+    * @param values The values.
+    * @return The result.
+    */
+   private double getResult(String spec, double[] values)
+   {
+      Aggregator whole = Aggregator.getAggregator(spec);
+      whole.init();
+      for (double value : values)
+         whole.iterate(value);
+
+      Aggregator[] parts = new Aggregator[3];
+      for (int i = 0; i < parts.length; i++)
+      {
+         parts[i] = whole.replicate();
+         parts[i].init();
+      }
+      for (int i = 0; i < values.length; i++)
+         parts[i * parts.length / values.length].iterate(values[i]);
+      parts[0].merge(parts[1]);
+      parts[0].merge(parts[2]);
+
+      double result = ((Number) whole.terminate()).doubleValue();
+      assertEquals(spec, result, ((Number) parts[0].terminate()).doubleValue(), Math.abs(result) * 1e-9);
+      return result;
+   }
+}
@@ -0,0 +1,85 @@
+package net.sf.jagg.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregation;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.ConcatAggregator;
+import net.sf.jagg.CountAggregator;
+import net.sf.jagg.ParallelismUtility;
+import net.sf.jagg.test.model.Record;
+
+/**
+ * Tests that lists large enough to be sorted in parallel are sorted stably,
+ * yielding the same results as a single-threaded sort.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class ParallelSortTest
+{
+   /**
+    * Allows a degree of parallelism of up to 3, even on a machine with fewer
+    * processors, so that the parallel tests run in parallel.
+    */
+   @Before
+   public void forceParallelism()
+   {
+      ParallelismUtility.forceParallelism(3);
+   }
+
+   /**
+    * Limits parallelism to the number of processors again.
+    */
+   @After
+   public void resetParallelism()
+   {
+      ParallelismUtility.reset();
+   }
+
+   /**
+    * Test with an odd degree of parallelism, so that one chunk must wait a
+    * round before it's merged.  The "concat" of an increasing value reveals
+    * whether the original order within each group was kept.
+    */
+   @Test
+   public void testParallelSortIsStable()
+   {
+      int size = 30001;
+      List<Record> records = new ArrayList<Record>(size);
+      for (int i = 0; i < size; i++)
+         records.add(new Record((i % 2 == 0) ? "A" : "B", (i * 7919) % 50, "C", "D", i, i));
+      List<String> properties = Arrays.asList("category2", "category1");
+      Aggregator agg1 = new CountAggregator("*");
+      Aggregator agg2 = new ConcatAggregator("value1");
+      List<Aggregator> aggs = Arrays.asList(agg1, agg2);
+
+      Aggregation serial = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).build();
+      Aggregation parallel = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).setParallelism(3).build();
+
+      List<AggregateValue<Record>> expected = serial.groupBy(records);
+      List<AggregateValue<Record>> actual = parallel.groupBy(records);
+
+      assertEquals(50, expected.size());
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++)
+      {
+         AggregateValue<Record> expValue = expected.get(i);
+         AggregateValue<Record> actValue = actual.get(i);
+         assertEquals(expValue.getPropertyValue(0), actValue.getPropertyValue(0));
+         assertEquals(expValue.getPropertyValue(1), actValue.getPropertyValue(1));
+         assertEquals(expValue.getAggregateValue(agg1), actValue.getAggregateValue(agg1));
+         assertEquals(expValue.getAggregateValue(agg2), actValue.getAggregateValue(agg2));
+      }
+   }
+}
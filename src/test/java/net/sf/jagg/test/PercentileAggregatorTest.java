@@ -3,6 +3,7 @@ package net.sf.jagg.test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -214,4 +215,41 @@ public class PercentileAggregatorTest {
 		assertEquals(fortieth, agg1.terminate(),
 				Math.abs(TestUtility.DELTA * fortieth));
 	}
+
+	/**
+	 * Tests that selection finds the same values as sorting, with many
+	 * duplicate values, over merged <code>Aggregators</code>.
+	 */
+	@Test
+	public void testSelectionMatchesSort() {
+		Random random = new Random(11);
+		int n = 20001;
+		double[] values = new double[n];
+		PercentileAggregator[] parts = new PercentileAggregator[3];
+		for (int i = 0; i < parts.length; i++) {
+			parts[i] = new PercentileAggregator("0.5,.");
+			parts[i].init();
+		}
+		for (int i = 0; i < n; i++) {
+			values[i] = (i % 2 == 0) ? random.nextInt(50) : random.nextGaussian();
+			parts[i % parts.length].iterate(values[i]);
+		}
+		Arrays.sort(values);
+
+		for (double p : new double[] { 0.0, 0.00001, 0.1, 0.25, 0.3333, 0.5,
+				0.75, 0.99, 0.99999, 1.0 }) {
+			PercentileAggregator agg = new PercentileAggregator(p, ".");
+			agg.init();
+			for (PercentileAggregator part : parts)
+				agg.merge(part);
+
+			double rownum = p * (n - 1);
+			int floor = (int) Math.floor(rownum);
+			int ceiling = (int) Math.ceil(rownum);
+			double expected = values[floor] + (rownum - floor)
+					* (values[ceiling] - values[floor]);
+			assertEquals(expected, agg.terminate(),
+					Math.abs(TestUtility.DELTA * expected));
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package net.sf.jagg.test;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.PropertyAccessor;
+import net.sf.jagg.test.model.Record;
+
+/**
+ * Tests the <code>PropertyAccessor</code>.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class PropertyAccessorTest
+{
+   /**
+    * Tests retrieving a simple property.
+    */
+   @Test
+   public void testProperty()
+   {
+      PropertyAccessor accessor = new PropertyAccessor("category1");
+      Record record1 = new Record("AAA", 1, "a", "b", 10, 1.5);
+      Record record2 = new Record("BBB", 2, "c", "d", 20, 2.5);
+
+      assertEquals("AAA", accessor.get(record1));
+      assertEquals("BBB", accessor.get(record2));
+      assertEquals("AAA", accessor.get(record1));
+   }
+
+   /**
+    * Tests retrieving the object itself.
+    */
+   @Test
+   public void testSelf()
+   {
+      PropertyAccessor accessor = new PropertyAccessor(Aggregator.PROP_SELF);
+      Record record = new Record("AAA", 1, "a", "b", 10, 1.5);
+
+      assertSame(record, accessor.get(record));
+   }
+
+   /**
+    * Tests retrieving a method call with a parameter.
+    */
+   @Test
+   public void testMethod()
+   {
+      PropertyAccessor accessor = new PropertyAccessor("substring(1)");
+
+      assertEquals("BC", accessor.get("ABC"));
+      assertEquals("YZ", accessor.get("XYZ"));
+   }
+
+   /**
+    * Tests that objects of different classes may be presented to the same
+    * <code>PropertyAccessor</code>.
+    */
+   @Test
+   public void testDifferentClasses()
+   {
+      PropertyAccessor accessor = new PropertyAccessor("class");
+      Record record = new Record("AAA", 1, "a", "b", 10, 1.5);
+
+      assertEquals(Record.class, accessor.get(record));
+      assertEquals(String.class, accessor.get("ABC"));
+      assertEquals(Record.class, accessor.get(record));
+   }
+
+   /**
+    * Tests that a nonexistent property is reported.
+    */
+   @Test(expected = UnsupportedOperationException.class)
+   public void testNoSuchProperty()
+   {
+      PropertyAccessor accessor = new PropertyAccessor("noSuchProperty");
+      accessor.get(new Record("AAA", 1, "a", "b", 10, 1.5));
+   }
+}
@@ -0,0 +1,218 @@
+package net.sf.jagg.test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregation;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.ConcatAggregator;
+import net.sf.jagg.CountAggregator;
+import net.sf.jagg.ParallelismUtility;
+
+/**
+ * Tests that the <code>RADIX</code> strategy yields the same results, in the
+ * same order, as the <code>SORT</code> strategy, for each type that has a
+ * normalized key and for types that don't.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class RadixStrategyTest
+{
+   /**
+    * Allows a degree of parallelism of up to 4, even on a machine with fewer
+    * processors, so that the parallel tests run in parallel.
+    */
+   @Before
+   public void forceParallelism()
+   {
+      ParallelismUtility.forceParallelism(4);
+   }
+
+   /**
+    * Limits parallelism to the number of processors again.
+    */
+   @After
+   public void resetParallelism()
+   {
+      ParallelismUtility.reset();
+   }
+
+   private static final String[] STRINGS = {"", "a", "ab", "abc", "b", "B", "\u0000", "a\u0000", "\u007f",
+      "\u0080", "\u00ff", "\u3ffe", "\u3fff", "\u4000", "\uffff", "\uffff\uffff", "caf\u00e9", "\ud83d\ude00"};
+   private static final double[] DOUBLES = {0.0, -0.0, 1.0, -1.0, 1.5, -1.5, Double.NaN,
+      Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE, -Double.MIN_VALUE,
+      Double.MAX_VALUE, -Double.MAX_VALUE};
+   private static final long[] LONGS = {0, 1, -1, 255, 256, -256, Integer.MAX_VALUE, Integer.MIN_VALUE,
+      Long.MAX_VALUE, Long.MIN_VALUE};
+
+   /**
+    * The properties of a <code>Mixed</code> value.
+    */
+   public static enum Color {RED, GREEN, BLUE}
+
+   /**
+    * Test each type in turn, followed by all of them together, serially.
+    */
+   @Test
+   public void testSerial()
+   {
+      List<Mixed> values = getValues(3000);
+      for (String property : Arrays.asList("string", "int", "long", "double", "float", "short", "byte",
+         "char", "boolean", "date", "color"))
+      {
+         assertSameResults(values, Arrays.asList(property), 1);
+      }
+      assertSameResults(values, Arrays.asList("color", "string", "double", "int", "date"), 1);
+   }
+
+   /**
+    * Test enough values to radix sort in parallel.
+    */
+   @Test
+   public void testParallel()
+   {
+      List<Mixed> values = getValues(40000);
+      assertSameResults(values, Arrays.asList("boolean", "string", "long"), 4);
+      assertSameResults(values, Arrays.asList("double", "color"), 3);
+   }
+
+   /**
+    * Test that a type without a normalized key falls back to sorting.
+    */
+   @Test
+   public void testNoNormalizedKey()
+   {
+      List<Mixed> values = getValues(500);
+      assertSameResults(values, Arrays.asList("string", "decimal"), 1);
+   }
+
+   /**
+    * Aggregates the given values serially with the <code>SORT</code>
+    * strategy and with the <code>RADIX</code> strategy at the given degree of
+    * parallelism, and checks that the results match, including the order of
+    * the values within each group.
+    * @param values The values.
+    * @param properties The "group by" properties.
+    * @param parallelism The degree of parallelism of the <code>RADIX</code>
+    *    strategy.
+    */
+   private void assertSameResults(List<Mixed> values, List<String> properties, int parallelism)
+   {
+      Aggregator count = new CountAggregator("*");
+      Aggregator concat = new ConcatAggregator("id");
+      List<Aggregator> aggs = Arrays.asList(count, concat);
+      Aggregation sort = new Aggregation.Builder().setProperties(properties).setAggregators(aggs).build();
+      Aggregation radix = new Aggregation.Builder().setProperties(properties).setAggregators(aggs)
+         .setParallelism(parallelism).setStrategy(Aggregation.Strategy.RADIX).build();
+
+      List<AggregateValue<Mixed>> expected = sort.groupBy(values);
+      List<AggregateValue<Mixed>> actual = radix.groupBy(values);
+      assertEquals(properties.toString(), expected.size(), actual.size());
+      assertTrue(expected.size() > 1);
+      for (int i = 0; i < expected.size(); i++)
+      {
+         AggregateValue<Mixed> expValue = expected.get(i);
+         AggregateValue<Mixed> actValue = actual.get(i);
+         for (int p = 0; p < properties.size(); p++)
+            assertEquals(properties.toString(), expValue.getPropertyValue(p), actValue.getPropertyValue(p));
+         assertEquals(expValue.getAggregateValue(count), actValue.getAggregateValue(count));
+         assertEquals(expValue.getAggregateValue(concat), actValue.getAggregateValue(concat));
+      }
+   }
+
+   /**
+    * Returns values with some <code>null</code> properties.
+    * @param size The number of values.
+    * @return A <code>List</code> of <code>Mixed</code> values.
+    */
+   private List<Mixed> getValues(int size)
+   {
+      Random random = new Random(22);
+      List<Mixed> values = new ArrayList<Mixed>(size);
+      for (int i = 0; i < size; i++)
+      {
+         Mixed value = new Mixed(i);
+         if (random.nextInt(20) != 0)
+         {
+            value.myString = STRINGS[random.nextInt(STRINGS.length)];
+            value.myInt = (int) LONGS[random.nextInt(LONGS.length)];
+            value.myLong = LONGS[random.nextInt(LONGS.length)];
+            value.myDouble = DOUBLES[random.nextInt(DOUBLES.length)];
+            value.myFloat = (float) DOUBLES[random.nextInt(DOUBLES.length)];
+            value.myShort = (short) LONGS[random.nextInt(LONGS.length)];
+            value.myByte = (byte) LONGS[random.nextInt(LONGS.length)];
+            value.myChar = STRINGS[random.nextInt(STRINGS.length - 1) + 1].charAt(0);
+            value.myBoolean = random.nextBoolean();
+            value.myDate = new Date(LONGS[random.nextInt(LONGS.length)] / 1000);
+            value.myColor = Color.values()[random.nextInt(3)];
+            value.myDecimal = new BigDecimal(random.nextInt(5));
+         }
+         values.add(value);
+      }
+      return values;
+   }
+
+   /**
+    * A value with properties of many types, all <code>null</code> by
+    * default.
+    */
+   public static class Mixed
+   {
+      private int myId;
+      private String myString;
+      private Integer myInt;
+      private Long myLong;
+      private Double myDouble;
+      private Float myFloat;
+      private Short myShort;
+      private Byte myByte;
+      private Character myChar;
+      private Boolean myBoolean;
+      private Date myDate;
+      private Color myColor;
+      private BigDecimal myDecimal;
+
+      /**
+       * Constructs a <code>Mixed</code> value.
+       * @param id The id.
+       */
+      public Mixed(int id) { myId = id; }
+      /** @return The id. */
+      public int getId() { return myId; }
+      /** @return The <code>String</code>. */
+      public String getString() { return myString; }
+      /** @return The <code>Integer</code>. */
+      public Integer getInt() { return myInt; }
+      /** @return The <code>Long</code>. */
+      public Long getLong() { return myLong; }
+      /** @return The <code>Double</code>. */
+      public Double getDouble() { return myDouble; }
+      /** @return The <code>Float</code>. */
+      public Float getFloat() { return myFloat; }
+      /** @return The <code>Short</code>. */
+      public Short getShort() { return myShort; }
+      /** @return The <code>Byte</code>. */
+      public Byte getByte() { return myByte; }
+      /** @return The <code>Character</code>. */
+      public Character getChar() { return myChar; }
+      /** @return The <code>Boolean</code>. */
+      public Boolean getBoolean() { return myBoolean; }
+      /** @return The <code>Date</code>. */
+      public Date getDate() { return myDate; }
+      /** @return The <code>Color</code>. */
+      public Color getColor() { return myColor; }
+      /** @return The <code>BigDecimal</code>. */
+      public BigDecimal getDecimal() { return myDecimal; }
+   }
+}
@@ -147,13 +147,13 @@ public class RollupsTest
          // grouping set: {0, 1, 2, 3}
          "AAA", "AAA", "AAA", "AAA", "AAA", "AAA", "AAA", "AAA", "BBB", "BBB", "BBB", "BBB", "BBB", "BBB", "BBB", "BBB", "CCC", "CCC", "CCC",
          // grouping set: {0, 2, 3}
-         "CCC", "CCC", "CCC", "AAA", "BBB", "AAA", "BBB", "AAA", "BBB", "AAA", "BBB",
+         "AAA", "AAA", "AAA", "AAA", "BBB", "BBB", "BBB", "BBB", "CCC", "CCC", "CCC",
          // grouping set: {0, 1, 3}
          "AAA", "AAA", "AAA", "AAA", "BBB", "BBB", "BBB", "BBB", "CCC", "CCC", "CCC",
          // grouping set: {2, 3}
          null, null, null, null, null, null, null,
          // grouping set: {0, 3}
-         "AAA", "BBB", "AAA", "BBB", "CCC",
+         "AAA", "AAA", "BBB", "BBB", "CCC",
          // grouping set: {3}
          null, null, null
       );
@@ -163,7 +163,7 @@ public class RollupsTest
          // grouping set: {0, 2, 3}
          null, null, null, null, null, null, null, null, null, null, null,
          // grouping set: {0, 1, 3}
-         1, 2, 1, 2, 1, 2, 1, 2, 1, 2, 3,
+         1, 1, 2, 2, 1, 1, 2, 2, 1, 2, 3,
          // grouping set: {2, 3}
          null, null, null, null, null, null, null,
          // grouping set: {0, 3}
@@ -173,9 +173,9 @@ public class RollupsTest
       );
       List<String> cats3 = Arrays.asList(
          // grouping set: {0, 1, 2, 3}
-         "yyy", "zzz", "yyy", "zzz", "yyy", "zzz", "yyy", "zzz", "yyy", "zzz", "yyy", "zzz", "yyy", "zzz", "yyy", "zzz", "abcd", "efgh", "ijk",
+         "yyy", "yyy", "zzz", "zzz", "yyy", "yyy", "zzz", "zzz", "yyy", "yyy", "zzz", "zzz", "yyy", "yyy", "zzz", "zzz", "abcd", "efgh", "ijk",
          // grouping set: {0, 2, 3}
-         "abcd", "efgh", "ijk", "yyy", "yyy", "yyy", "yyy", "zzz", "zzz", "zzz", "zzz",
+         "yyy", "yyy", "zzz", "zzz", "yyy", "yyy", "zzz", "zzz", "abcd", "efgh", "ijk",
          // grouping set: {0, 1, 3}
          null, null, null, null, null, null, null, null, null, null, null,
          // grouping set: {2, 3}
@@ -187,47 +187,47 @@ public class RollupsTest
       );
       List<String> cats4 = Arrays.asList(
          // grouping set: {0, 1, 2, 3}
-         "baseball", "baseball", "basketball", "basketball", "baseball", "baseball", "basketball", "basketball",
-         "baseball", "baseball", "basketball", "basketball", "baseball", "baseball", "basketball", "basketball",
+         "baseball", "basketball", "baseball", "basketball", "baseball", "basketball", "baseball", "basketball",
+         "baseball", "basketball", "baseball", "basketball", "baseball", "basketball", "baseball", "basketball",
          "football", "football", "football",
          // grouping set: {0, 2, 3}
+         "baseball", "basketball", "baseball", "basketball", "baseball", "basketball", "baseball", "basketball",
          "football", "football", "football",
-         "baseball", "baseball", "basketball", "basketball", "baseball", "baseball", "basketball", "basketball",
          // grouping set: {0, 1, 3}
-         "baseball", "baseball", "basketball", "basketball", "baseball", "baseball", "basketball", "basketball",
+         "baseball", "basketball", "baseball", "basketball", "baseball", "basketball", "baseball", "basketball",
          "football", "football", "football",
          // grouping set: {2, 3}
          "football", "football", "football", "baseball", "basketball", "baseball", "basketball",
          // grouping set: {0, 3}
-         "baseball", "baseball", "basketball", "basketball", "football",
+         "baseball", "basketball", "baseball", "basketball", "football",
          // grouping set: {3}
          "baseball", "basketball", "football"
       );
       List<Double> values1 = Arrays.asList(
          // grouping set: {0, 1, 2, 3}
-         23.0, 10.0, 7.0, 11.0, 323.0, 1.0, 710.0, 3.0, 99.0, 1111.0, 68.0, 1001.0, 55.0, 405.0, 1010.0, 80.0, 10.0, 21.0, 15.0,
+         23.0, 7.0, 10.0, 11.0, 323.0, 710.0, 1.0, 3.0, 99.0, 68.0, 1111.0, 1001.0, 55.0, 1010.0, 405.0, 80.0, 10.0, 21.0, 15.0,
          // grouping set: {0, 2, 3}
-         10.0, 21.0, 15.0, 346.0, 154.0, 717.0, 1078.0, 11.0, 1516.0, 14.0, 1081.0,
+         346.0, 717.0, 11.0, 14.0, 154.0, 1078.0, 1516.0, 1081.0, 10.0, 21.0, 15.0,
          // grouping set: {0, 1, 3}
-         33.0, 324.0, 18.0, 713.0, 1210.0, 460.0, 1069.0, 1090.0, 10.0, 21.0, 15.0,
+         33.0, 18.0, 324.0, 713.0, 1210.0, 1069.0, 460.0, 1090.0, 10.0, 21.0, 15.0,
          // grouping set: {2, 3}
          10.0, 21.0, 15.0, 500.0, 1795.0, 1527.0, 1095.0,
          // grouping set: {0, 3}
-         357.0, 1670.0, 731.0, 2159.0, 46.0,
+         357.0, 731.0, 1670.0, 2159.0, 46.0,
          // grouping set: {3}
          2027.0, 2890.0, 46.0
       );
       List<Double> values2 = Arrays.asList(
          // grouping set: {0, 1, 2, 3}
-         3.14159, 6.5, 2.71828, 1.338, 92.15, 201.5, 2.25, 68.67, 20.25, 6.25, 30.25, 12.25, 72.25, 42.25, 100.25, 56.25, 6.0, 9.1666666666666667, 13.8,
+         3.14159, 2.71828, 6.5, 1.338, 92.15, 2.25, 201.5, 68.67, 20.25, 30.25, 6.25, 12.25, 72.25, 100.25, 42.25, 56.25, 6.0, 9.1666666666666667, 13.8,
          // grouping set: {0, 2, 3}
-         6.0, 9.1666666666666667, 13.8, 47.645795, 46.25, 2.48414, 76.9166666666666667, 104.0, 24.25, 35.004, 34.25,
+         47.645795, 2.48414, 104.0, 35.004, 46.25, 76.9166666666666667, 24.25, 34.25, 6.0, 9.1666666666666667, 13.8,
          // grouping set: {0, 1, 3}
-         4.820795, 146.825, 2.02814, 35.46, 13.25, 57.25, 21.25, 85.5833333333333333, 6.0, 9.1666666666666667, 13.8,
+         4.820795, 2.02814, 146.825, 35.46, 13.25, 21.25, 57.25, 85.5833333333333333, 6.0, 9.1666666666666667, 13.8,
          // grouping set: {2, 3}
          6.0, 9.1666666666666667, 13.8, 46.9478975, 47.143656, 64.125, 34.627,
          // grouping set: {0, 3}
-         75.8228975, 35.25, 18.74407, 59.85, 9.8666666666666667,
+         75.8228975, 18.74407, 35.25, 59.85, 9.8666666666666667,
          // grouping set: {3}
          55.53644875, 41.580697777777778, 9.8666666666666667
       );
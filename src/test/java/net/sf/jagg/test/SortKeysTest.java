@@ -0,0 +1,162 @@
+package net.sf.jagg.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregation;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.CountAggregator;
+import net.sf.jagg.ParallelismUtility;
+import net.sf.jagg.SumAggregator;
+
+/**
+ * Tests that sorting by "group by" properties extracts each value's
+ * properties only once.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class SortKeysTest
+{
+   /**
+    * Allows a degree of parallelism of up to 4, even on a machine with fewer
+    * processors, so that the parallel tests run in parallel.
+    */
+   @Before
+   public void forceParallelism()
+   {
+      ParallelismUtility.forceParallelism(4);
+   }
+
+   /**
+    * Limits parallelism to the number of processors again.
+    */
+   @After
+   public void resetParallelism()
+   {
+      ParallelismUtility.reset();
+   }
+
+   /**
+    * Test that the "group by" property is accessed once per value when
+    * sorting, and that the results are grouped and ordered correctly,
+    * with nulls last.
+    */
+   @Test
+   public void testPropertyAccessedOnce()
+   {
+      List<CountingValue> values = getValues(1000);
+      Aggregator sum = new SumAggregator("amount");
+      Aggregator count = new CountAggregator("*");
+      Aggregation aggregation = new Aggregation.Builder().setProperties(Arrays.asList("key"))
+         .setAggregators(Arrays.asList(sum, count)).build();
+
+      CountingValue.theKeyAccesses = 0;
+      List<AggregateValue<CountingValue>> aggValues = aggregation.groupBy(values);
+      assertEquals(values.size(), CountingValue.theKeyAccesses);
+
+      assertEquals(11, aggValues.size());
+      long total = 0;
+      for (int i = 0; i < 10; i++)
+      {
+         AggregateValue<CountingValue> aggValue = aggValues.get(i);
+         assertEquals("key" + i, aggValue.getPropertyValue("key"));
+         total += (Long) aggValue.getAggregateValue(count);
+      }
+      assertNull(aggValues.get(10).getPropertyValue(0));
+      total += (Long) aggValues.get(10).getAggregateValue(count);
+      assertEquals(values.size(), total);
+      assertEquals(CountingValue.theKeyAccesses, values.size());
+   }
+
+   /**
+    * Test that parallel aggregation of sorted keys yields the same results as
+    * serial aggregation.
+    */
+   @Test
+   public void testParallel()
+   {
+      List<CountingValue> values = getValues(20000);
+      List<Aggregator> aggs = Arrays.<Aggregator>asList(new SumAggregator("amount"), new CountAggregator("*"));
+      Aggregation serial = new Aggregation.Builder().setProperties(Arrays.asList("key"))
+         .setAggregators(aggs).build();
+      Aggregation parallel = new Aggregation.Builder().setProperties(Arrays.asList("key"))
+         .setAggregators(aggs).setParallelism(4).build();
+
+      List<AggregateValue<CountingValue>> expected = serial.groupBy(values);
+      List<AggregateValue<CountingValue>> actual = parallel.groupBy(values);
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++)
+      {
+         assertEquals(expected.get(i).getPropertyValue(0), actual.get(i).getPropertyValue(0));
+         for (Aggregator agg : aggs)
+            assertEquals(expected.get(i).getAggregateValue(agg), actual.get(i).getAggregateValue(agg));
+      }
+   }
+
+   /**
+    * Returns values with 10 distinct keys and a <code>null</code> key.
+    * @param size The number of values.
+    * @return A <code>List</code> of <code>CountingValues</code>.
+    */
+   private List<CountingValue> getValues(int size)
+   {
+      Random random = new Random(21);
+      List<CountingValue> values = new ArrayList<CountingValue>(size);
+      for (int i = 0; i < size; i++)
+      {
+         int k = random.nextInt(11);
+         values.add(new CountingValue((k == 10) ? null : "key" + k, random.nextInt(100)));
+      }
+      return values;
+   }
+
+   /**
+    * A value that counts how many times its key is accessed.
+    */
+   public static class CountingValue
+   {
+      private static int theKeyAccesses = 0;
+
+      private String myKey;
+      private int myAmount;
+
+      /**
+       * Constructs a <code>CountingValue</code>.
+       * @param key The key.
+       * @param amount The amount.
+       */
+      public CountingValue(String key, int amount)
+      {
+         myKey = key;
+         myAmount = amount;
+      }
+
+      /**
+       * Returns the key, counting the access.
+       * @return The key.
+       */
+      public String getKey()
+      {
+         theKeyAccesses++;
+         return myKey;
+      }
+
+      /**
+       * Returns the amount.
+       * @return The amount.
+       */
+      public int getAmount()
+      {
+         return myAmount;
+      }
+   }
+}
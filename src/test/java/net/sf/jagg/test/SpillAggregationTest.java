@@ -0,0 +1,198 @@
+package net.sf.jagg.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregation;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.AvgAggregator;
+import net.sf.jagg.CountAggregator;
+import net.sf.jagg.SumAggregator;
+import net.sf.jagg.test.model.Record;
+
+/**
+ * Tests sorting values externally, with sorted runs spilled to disk.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class SpillAggregationTest
+{
+   /**
+    * Test that spilling yields the same results as sorting in memory, for
+    * both a <code>List</code> and an <code>Iterator</code>, and that no
+    * temporary files remain afterwards.
+    */
+   @Test
+   public void testSpill() throws IOException
+   {
+      List<Record> records = TestUtility.getTestData();
+      List<String> properties = Arrays.asList("category1", "category2");
+      Aggregator agg1 = new SumAggregator("value1");
+      Aggregator agg2 = new CountAggregator("*");
+      List<Aggregator> aggs = Arrays.asList(agg1, agg2);
+      File dir = createTempDirectory();
+
+      Aggregation aggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).build();
+      Aggregation spillAggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).setSpillThreshold(5).setSpillDirectory(dir).build();
+
+      List<AggregateValue<Record>> expected = aggregation.groupBy(records);
+      List<AggregateValue<Record>> fromList = spillAggregation.groupBy(records);
+      List<AggregateValue<Record>> fromIterator = spillAggregation.groupBy(records.iterator());
+
+      assertEquals(7, fromList.size());
+      TestUtility.assertResultsEqual(expected, fromList, aggs);
+      TestUtility.assertResultsEqual(expected, fromIterator, aggs);
+      assertEquals(0, dir.listFiles().length);
+      dir.delete();
+   }
+
+   /**
+    * Test spilling with grouping sets.
+    */
+   @Test
+   public void testSpillGroupingSets()
+   {
+      List<Record> records = TestUtility.getTestData();
+      List<String> properties = Arrays.asList("category1", "category2");
+      Aggregator agg1 = new SumAggregator("value1");
+      Aggregator agg2 = new AvgAggregator("value2");
+      List<Aggregator> aggs = Arrays.asList(agg1, agg2);
+      List<List<Integer>> groupingSets = new ArrayList<List<Integer>>();
+      groupingSets.add(Arrays.asList(0, 1));
+      groupingSets.add(Arrays.asList(1));
+
+      Aggregation aggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).setGroupingSets(groupingSets).build();
+      Aggregation spillAggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).setGroupingSets(groupingSets).setSpillThreshold(7).build();
+
+      List<AggregateValue<Record>> expected = aggregation.groupBy(records);
+      List<AggregateValue<Record>> actual = spillAggregation.groupBy(records.iterator());
+
+      assertEquals(10, actual.size());
+      TestUtility.assertResultsEqual(expected, actual, aggs);
+   }
+
+   /**
+    * Test that values that aren't <code>Serializable</code> are reported.
+    */
+   @Test(expected = UnsupportedOperationException.class)
+   public void testNotSerializable()
+   {
+      List<Unserializable> values = new ArrayList<Unserializable>();
+      for (int i = 0; i < 10; i++)
+         values.add(new Unserializable(i % 3));
+
+      Aggregation aggregation = new Aggregation.Builder().setProperties(Arrays.asList("key"))
+         .setAggregators(Arrays.<Aggregator>asList(new CountAggregator("*")))
+         .setSpillThreshold(4).build();
+      aggregation.groupBy(values);
+   }
+
+   /**
+    * Test that temporary files are deleted even if aggregation fails after
+    * runs were spilled.
+    */
+   @Test
+   public void testSpillFailureDeletesFiles() throws IOException
+   {
+      final List<Record> records = TestUtility.getTestData();
+      File dir = createTempDirectory();
+      Aggregation aggregation = new Aggregation.Builder().setProperties(Arrays.asList("category1"))
+         .setAggregators(Arrays.<Aggregator>asList(new CountAggregator("*")))
+         .setSpillThreshold(5).setSpillDirectory(dir).build();
+
+      // Fails after two runs have been spilled.
+      Iterator<Record> failing = new Iterator<Record>() {
+         private int myIndex = 0;
+
+         /**
+          * There are always more values, until the failure.
+          * @return <code>true</code>.
+          */
+         public boolean hasNext()
+         {
+            return true;
+         }
+
+         /**
+          * Returns the next value, or fails after 12 values.
+          * @return The next value.
+          */
+         public Record next()
+         {
+            if (myIndex == 12)
+               throw new IllegalStateException("Failure after spilling");
+            return records.get(myIndex++);
+         }
+
+         /**
+          * Not supported.
+          */
+         public void remove()
+         {
+            throw new UnsupportedOperationException();
+         }
+      };
+      try
+      {
+         aggregation.groupBy(failing);
+         fail("Expected IllegalStateException");
+      }
+      catch (IllegalStateException expected) {}
+      assertEquals(0, dir.listFiles().length);
+      dir.delete();
+   }
+
+   /**
+    * Creates an empty temporary directory.
+    * @return The directory.
+    * @throws IOException If it couldn't be created.
+    */
+   private File createTempDirectory() throws IOException
+   {
+      File dir = File.createTempFile("jaggtest", "");
+      dir.delete();
+      dir.mkdir();
+      dir.deleteOnExit();
+      return dir;
+   }
+
+
+   /**
+    * A value that can't be spilled to disk.
+    */
+   public static class Unserializable
+   {
+      private Integer myKey;
+
+      /**
+       * Constructs an <code>Unserializable</code>.
+       * @param key The key.
+       */
+      public Unserializable(int key)
+      {
+         myKey = key;
+      }
+
+      /**
+       * Returns the key.
+       * @return The key.
+       */
+      public Integer getKey()
+      {
+         return myKey;
+      }
+   }
+}
@@ -0,0 +1,194 @@
+package net.sf.jagg.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregation;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.AvgAggregator;
+import net.sf.jagg.CountAggregator;
+import net.sf.jagg.PropertiesComparator;
+import net.sf.jagg.SumAggregator;
+import net.sf.jagg.test.model.Record;
+
+/**
+ * Tests aggregating values supplied by an <code>Iterator</code> or an
+ * <code>Iterable</code>.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class StreamingAggregationTest
+{
+   /**
+    * Test that an unsorted <code>Iterator</code> yields the same results as a
+    * <code>List</code>.
+    */
+   @Test
+   public void testUnsortedIterator()
+   {
+      List<Record> records = TestUtility.getTestData();
+      List<String> properties = Arrays.asList("category1", "category2");
+      Aggregator agg1 = new SumAggregator("value1");
+      Aggregator agg2 = new CountAggregator("*");
+      List<Aggregator> aggs = Arrays.asList(agg1, agg2);
+
+      Aggregation aggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).build();
+
+      List<AggregateValue<Record>> expected = aggregation.groupBy(records);
+      List<AggregateValue<Record>> actual = aggregation.groupBy(records.iterator());
+
+      TestUtility.assertResultsEqual(expected, actual, aggs);
+   }
+
+   /**
+    * Test that a presorted <code>Iterator</code> yields the same results as a
+    * <code>List</code>.
+    */
+   @Test
+   public void testPresortedIterator()
+   {
+      List<Record> records = TestUtility.getTestData();
+      List<String> properties = Arrays.asList("category1", "category2");
+      Aggregator agg1 = new SumAggregator("value1");
+      Aggregator agg2 = new AvgAggregator("value2");
+      List<Aggregator> aggs = Arrays.asList(agg1, agg2);
+
+      List<Record> sorted = new ArrayList<Record>(records);
+      Collections.sort(sorted, new PropertiesComparator<Record>(properties));
+
+      Aggregation aggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).build();
+      Aggregation presortedAggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).setPresorted(true).build();
+
+      List<AggregateValue<Record>> expected = aggregation.groupBy(records);
+      List<AggregateValue<Record>> actual = presortedAggregation.groupBy(sorted.iterator());
+      TestUtility.assertResultsEqual(expected, actual, aggs);
+
+      // A presorted List isn't sorted again.
+      actual = presortedAggregation.groupBy(sorted);
+      TestUtility.assertResultsEqual(expected, actual, aggs);
+   }
+
+   /**
+    * Test that a presorted <code>Iterator</code> that isn't sorted is
+    * detected.
+    */
+   @Test(expected = IllegalArgumentException.class)
+   public void testPresortedIteratorNotSorted()
+   {
+      List<Record> records = TestUtility.getTestData();
+      List<String> properties = Arrays.asList("category1", "category2");
+      List<Record> sorted = new ArrayList<Record>(records);
+      Collections.sort(sorted, new PropertiesComparator<Record>(properties));
+      Collections.reverse(sorted);
+
+      Aggregation aggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(Arrays.<Aggregator>asList(new CountAggregator("*")))
+         .setPresorted(true).build();
+      aggregation.groupBy(sorted.iterator());
+   }
+
+   /**
+    * Test that a presorted <code>List</code> whose values aren't sorted is
+    * reported, rather than aggregated into split groups, even if only one
+    * value is out of order.
+    */
+   @Test
+   public void testPresortedListNotSorted()
+   {
+      List<Record> records = TestUtility.getTestData();
+      List<String> properties = Arrays.asList("category1", "category2");
+      List<Record> sorted = new ArrayList<Record>(records);
+      Collections.sort(sorted, new PropertiesComparator<Record>(properties));
+      Aggregation aggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(Arrays.<Aggregator>asList(new CountAggregator("*")))
+         .setPresorted(true).build();
+
+      List<Record> reversed = new ArrayList<Record>(sorted);
+      Collections.reverse(reversed);
+      try
+      {
+         aggregation.groupBy(reversed);
+         fail("Expected IllegalArgumentException for reversed values");
+      }
+      catch (IllegalArgumentException expected) {}
+
+      // Move the last value to the front.
+      List<Record> oneOutOfOrder = new ArrayList<Record>(sorted);
+      oneOutOfOrder.add(0, oneOutOfOrder.remove(oneOutOfOrder.size() - 1));
+      try
+      {
+         aggregation.groupBy(oneOutOfOrder);
+         fail("Expected IllegalArgumentException for one value out of order");
+      }
+      catch (IllegalArgumentException expected) {}
+
+      // Sorted values are still aggregated.
+      assertEquals(7, aggregation.groupBy(sorted).size());
+   }
+
+   /**
+    * Test an <code>Iterable</code> that isn't a <code>List</code>, with
+    * grouping sets.
+    */
+   @Test
+   public void testIterableGroupingSets()
+   {
+      final List<Record> records = TestUtility.getTestData();
+      List<String> properties = Arrays.asList("category1", "category2");
+      Aggregator agg1 = new SumAggregator("value1");
+      Aggregator agg2 = new AvgAggregator("value2");
+      List<Aggregator> aggs = Arrays.asList(agg1, agg2);
+      List<List<Integer>> groupingSets = new ArrayList<List<Integer>>();
+      groupingSets.add(Arrays.asList(0, 1));
+      groupingSets.add(Arrays.asList(0));
+      groupingSets.add(Arrays.<Integer>asList());
+
+      Aggregation aggregation = new Aggregation.Builder().setProperties(properties)
+         .setAggregators(aggs).setGroupingSets(groupingSets).build();
+
+      Iterable<Record> iterable = new Iterable<Record>() {
+         public Iterator<Record> iterator()
+         {
+            return records.iterator();
+         }
+      };
+
+      List<AggregateValue<Record>> expected = aggregation.groupBy(records);
+      List<AggregateValue<Record>> actual = aggregation.groupBy(iterable);
+      assertEquals(11, actual.size());
+      TestUtility.assertResultsEqual(expected, actual, aggs);
+   }
+
+   /**
+    * Test an <code>Iterator</code> with no "group by" properties.
+    */
+   @Test
+   public void testNoProperties()
+   {
+      List<Record> records = TestUtility.getTestData();
+      Aggregator agg = new CountAggregator("*");
+
+      Aggregation aggregation = new Aggregation.Builder()
+         .setProperties(new ArrayList<String>())
+         .setAggregators(Arrays.asList(agg)).build();
+
+      List<AggregateValue<Record>> aggValues = aggregation.groupBy(records.iterator());
+      assertEquals(1, aggValues.size());
+      assertEquals((long) records.size(), aggValues.get(0).getAggregateValue(agg));
+
+      aggValues = aggregation.groupBy(new ArrayList<Record>().iterator());
+      assertEquals(1, aggValues.size());
+      assertEquals(0L, aggValues.get(0).getAggregateValue(agg));
+   }
+}
@@ -0,0 +1,165 @@
+package net.sf.jagg.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregation;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.ParallelismUtility;
+import net.sf.jagg.PropertiesComparator;
+import net.sf.jagg.test.model.Record;
+
+/**
+ * Tests that rollups of prefixes of the "group by" properties, which are
+ * computed as sorted values are aggregated, match the super-aggregate values
+ * computed afterwards by the <code>HASH</code> strategy.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class StreamingRollupTest
+{
+   private static final List<String> PROPERTIES = Arrays.asList("category1", "category2", "category3");
+   private static final List<Aggregator> AGGREGATORS = Arrays.asList(Aggregator.getAggregator("Sum(value1)"),
+      Aggregator.getAggregator("Avg(value2)"), Aggregator.getAggregator("Count(*)"),
+      Aggregator.getAggregator("Concat(category4, /)"), Aggregator.getAggregator("Max(value2)"));
+
+   /**
+    * Limits parallelism to the number of processors again.
+    */
+   @After
+   public void resetParallelism()
+   {
+      ParallelismUtility.reset();
+   }
+
+   /**
+    * Test a rollup of all properties, with the base grouping set.
+    */
+   @Test
+   public void testRollup()
+   {
+      assertSameResults(TestUtility.getTestData(), Arrays.asList(
+         Arrays.asList(0, 1, 2), Arrays.asList(0, 1), Arrays.asList(0), Arrays.<Integer>asList()));
+      assertSameResults(TestUtility.getSomeNullData(), Arrays.asList(
+         Arrays.asList(0, 1, 2), Arrays.asList(0, 1), Arrays.asList(0), Arrays.<Integer>asList()));
+   }
+
+   /**
+    * Test prefix grouping sets without the base grouping set, and with a
+    * level skipped.
+    */
+   @Test
+   public void testWithoutBase()
+   {
+      assertSameResults(TestUtility.getTestData(), Arrays.asList(
+         Arrays.asList(0, 1), Arrays.<Integer>asList()));
+   }
+
+   /**
+    * Test that parallel aggregation still rolls up the merged results.
+    */
+   @Test
+   public void testParallel()
+   {
+      ParallelismUtility.forceParallelism(4);
+      List<Record> records = new ArrayList<Record>(TestUtility.getTestData());
+      records.addAll(TestUtility.getSomeNullData());
+      assertSameResults(records, Arrays.asList(
+         Arrays.asList(0, 1, 2), Arrays.asList(0, 1), Arrays.asList(0), Arrays.<Integer>asList()), 4);
+      assertSameResults(TestUtility.getTestData(), Arrays.asList(
+         Arrays.asList(0, 1), Arrays.<Integer>asList()), 3);
+   }
+
+   /**
+    * Test that no values yield no super-aggregate values.
+    */
+   @Test
+   public void testEmpty()
+   {
+      assertSameResults(new ArrayList<Record>(), Arrays.asList(Arrays.asList(0, 1, 2), Arrays.asList(0)));
+   }
+
+   /**
+    * Aggregates the given values with the given grouping sets by sorting,
+    * by radix sorting, by spilling to disk, and from presorted values, and
+    * checks that the results match those of the <code>HASH</code> strategy.
+    * @param records The values.
+    * @param groupingSets The grouping sets, all prefixes of the properties.
+    */
+   private void assertSameResults(List<Record> records, List<List<Integer>> groupingSets)
+   {
+      assertSameResults(records, groupingSets, 1);
+   }
+
+   /**
+    * Aggregates the given values with the given grouping sets by sorting,
+    * by radix sorting, by spilling to disk, and from presorted values, with
+    * the given degree of parallelism, and checks that the results match
+    * those of the <code>HASH</code> strategy.
+    * @param records The values.
+    * @param groupingSets The grouping sets, all prefixes of the properties.
+    * @param parallelism The degree of parallelism.
+    */
+   private void assertSameResults(List<Record> records, List<List<Integer>> groupingSets, int parallelism)
+   {
+      List<Aggregator> aggs = AGGREGATORS;
+      List<AggregateValue<Record>> expected = new Aggregation.Builder().setProperties(PROPERTIES)
+         .setAggregators(aggs).setGroupingSets(groupingSets).setStrategy(Aggregation.Strategy.HASH)
+         .build().groupBy(records);
+
+      assertSameValues(expected, new Aggregation.Builder().setProperties(PROPERTIES).setAggregators(aggs)
+         .setGroupingSets(groupingSets).setParallelism(parallelism).build().groupBy(records), true);
+      assertSameValues(expected, new Aggregation.Builder().setProperties(PROPERTIES).setAggregators(aggs)
+         .setGroupingSets(groupingSets).setStrategy(Aggregation.Strategy.RADIX).setParallelism(parallelism)
+         .build().groupBy(records), true);
+      // Spilled values are copies.
+      assertSameValues(expected, new Aggregation.Builder().setProperties(PROPERTIES).setAggregators(aggs)
+         .setGroupingSets(groupingSets).setSpillThreshold(4).build().groupBy(records.iterator()), false);
+
+      List<Record> sorted = new ArrayList<Record>(records);
+      Collections.sort(sorted, new PropertiesComparator<Record>(PROPERTIES));
+      Aggregation presorted = new Aggregation.Builder().setProperties(PROPERTIES).setAggregators(aggs)
+         .setGroupingSets(groupingSets).setPresorted(true).setParallelism(parallelism).build();
+      assertSameValues(expected, presorted.groupBy(sorted), true);
+      assertSameValues(expected, presorted.groupBy(sorted.iterator()), true);
+   }
+
+   /**
+    * Checks that the actual results match the expected results, in order.
+    * @param expected The expected <code>AggregateValues</code>.
+    * @param actual The actual <code>AggregateValues</code>.
+    * @param sameObjects Whether the objects of the <code>AggregateValues</code>
+    *    are expected to be the same objects, not copies.
+    */
+   private void assertSameValues(List<AggregateValue<Record>> expected, List<AggregateValue<Record>> actual,
+      boolean sameObjects)
+   {
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++)
+      {
+         AggregateValue<Record> expValue = expected.get(i);
+         AggregateValue<Record> actValue = actual.get(i);
+         if (sameObjects)
+            assertSame(expValue.getObject(), actValue.getObject());
+         // Not all results implement equals.
+         for (int a = 0; a < AGGREGATORS.size(); a++)
+         {
+            assertEquals(String.valueOf(expValue.getAggregateValue(a)),
+               String.valueOf(actValue.getAggregateValue(a)));
+         }
+         for (int p = 0; p < PROPERTIES.size(); p++)
+         {
+            assertEquals(expValue.getPropertyValue(p), actValue.getPropertyValue(p));
+            assertEquals(expValue.isGrouping(p), actValue.isGrouping(p));
+         }
+      }
+   }
+}
@@ -4,7 +4,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.Ignore;
+import static org.junit.Assert.*;
 
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregator;
 import net.sf.jagg.test.model.CountyData;
 import net.sf.jagg.test.model.Record;
 
@@ -208,4 +211,33 @@ public class TestUtility
 
       return countyDataList;
    }
+
+   /**
+    * Asserts that the expected and actual results contain the same groups
+    * with the same aggregate values, in the same order.
+    * @param expected The expected results.
+    * @param actual The actual results.
+    * @param aggs The <code>Aggregators</code>.
+    */
+   public static void assertResultsEqual(List<AggregateValue<Record>> expected,
+      List<AggregateValue<Record>> actual, List<Aggregator> aggs)
+   {
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++)
+      {
+         AggregateValue<Record> expValue = expected.get(i);
+         AggregateValue<Record> actValue = actual.get(i);
+         assertEquals(expValue.getPropertyValue(0), actValue.getPropertyValue(0));
+         assertEquals(expValue.getPropertyValue(1), actValue.getPropertyValue(1));
+         for (Aggregator agg : aggs)
+         {
+            Object expAgg = expValue.getAggregateValue(agg);
+            Object actAgg = actValue.getAggregateValue(agg);
+            if (expAgg instanceof Double)
+               assertEquals((Double) expAgg, (Double) actAgg, Math.abs(DELTA * (Double) expAgg));
+            else
+               assertEquals(expAgg, actAgg);
+         }
+      }
+   }
 }
@@ -0,0 +1,168 @@
+package net.sf.jagg.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregation;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.TopKAggregator;
+import net.sf.jagg.test.model.Record;
+
+/**
+ * Tests the <code>TopKAggregator</code>.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class TopKAggregatorTest
+{
+   /**
+    * Test that with few distinct values, the counts are exact and in
+    * descending order.
+    */
+   @Test
+   public void testExact()
+   {
+      TopKAggregator agg = new TopKAggregator(".", 3);
+      agg.init();
+      for (String value : Arrays.asList("a", "b", "c", "b", "d", "c", "b", "e", "c", "c", null))
+         agg.iterate(value);
+
+      Map<Object, Long> topK = agg.terminate();
+      assertEquals(3, topK.size());
+      Iterator<Map.Entry<Object, Long>> itr = topK.entrySet().iterator();
+      Map.Entry<Object, Long> entry = itr.next();
+      assertEquals("c", entry.getKey());
+      assertEquals(4L, entry.getValue().longValue());
+      entry = itr.next();
+      assertEquals("b", entry.getKey());
+      assertEquals(3L, entry.getValue().longValue());
+      entry = itr.next();
+      assertEquals(1L, entry.getValue().longValue());
+   }
+
+   /**
+    * Test that heavy hitters among many distinct values are found, with
+    * counts within the error bound, and across merges.
+    */
+   @Test
+   public void testHeavyHitters()
+   {
+      int capacity = 100;
+      List<Integer> values = getValues();
+      int n = values.size();
+      TopKAggregator agg = new TopKAggregator(".", 5, capacity);
+      agg.init();
+      for (int part = 0; part < 4; part++)
+      {
+         TopKAggregator partAgg = agg.replicate();
+         partAgg.init();
+         for (int i = part; i < n; i += 4)
+            partAgg.iterate(values.get(i));
+         agg.merge(partAgg);
+      }
+
+      Map<Object, Long> topK = agg.terminate();
+      assertEquals(Arrays.<Object>asList(-1, -2, -3, -4, -5), new ArrayList<Object>(topK.keySet()));
+      long bound = n / (capacity + 1);
+      for (int h = 1; h <= 5; h++)
+      {
+         long count = topK.get(-h);
+         long exact = 10000 / h;
+         assertTrue(count <= exact);
+         assertTrue(count >= exact - bound);
+      }
+   }
+
+   /**
+    * Test the aggregator in a parallel aggregation with super aggregation.
+    */
+   @Test
+   public void testParallelRollup()
+   {
+      List<Integer> values = getValues();
+      List<Record> records = new ArrayList<Record>(values.size());
+      for (int i = 0; i < values.size(); i++)
+         records.add(new Record("cat" + (i % 2), 0, "", "", values.get(i), 0));
+
+      Aggregator agg = Aggregator.getAggregator("TopK(value1, 2)");
+      Aggregation aggregation = new Aggregation.Builder()
+         .setProperties(Arrays.asList("category1"))
+         .setAggregators(Arrays.asList(agg))
+         .setRollup(Arrays.asList(0))
+         .setParallelism(4)
+         .build();
+
+      List<AggregateValue<Record>> aggValues = aggregation.groupBy(records);
+
+      assertEquals(3, aggValues.size());
+      AggregateValue<Record> grandTotal = aggValues.get(2);
+      assertTrue(grandTotal.isGrouping("category1"));
+      Map<?, ?> topK = (Map<?, ?>) grandTotal.getAggregateValue(agg);
+      assertEquals(Arrays.<Object>asList(-1, -2), new ArrayList<Object>(topK.keySet()));
+   }
+
+   /**
+    * Test the specification format.
+    */
+   @Test
+   public void testSpecification()
+   {
+      TopKAggregator agg = (TopKAggregator) Aggregator.getAggregator("TopK(category1, 10)");
+      assertEquals("category1", agg.getProperty());
+      assertEquals(10, agg.getK());
+      assertEquals(100, agg.getCapacity());
+      agg = (TopKAggregator) Aggregator.getAggregator("TopK(category1, 20, 500)");
+      assertEquals(20, agg.getK());
+      assertEquals(500, agg.getCapacity());
+      assertEquals(500, agg.replicate().getCapacity());
+   }
+
+   /**
+    * Ensure an <code>IllegalArgumentException</code> is thrown if k is
+    * missing.
+    */
+   @Test(expected = IllegalArgumentException.class)
+   public void testMissingK()
+   {
+      new TopKAggregator("value1");
+   }
+
+   /**
+    * Ensure an <code>IllegalArgumentException</code> is thrown if the
+    * capacity is less than k.
+    */
+   @Test(expected = IllegalArgumentException.class)
+   public void testCapacityTooLow()
+   {
+      new TopKAggregator("value1", 10, 5);
+   }
+
+   /**
+    * Returns shuffled values, in which each heavy hitter -h, for h from 1 to
+    * 5, occurs 10000 / h times, among 100000 values that occur once each.
+    * @return The values.
+    */
+   private static List<Integer> getValues()
+   {
+      List<Integer> values = new ArrayList<Integer>();
+      for (int h = 1; h <= 5; h++)
+      {
+         for (int i = 0; i < 10000 / h; i++)
+            values.add(-h);
+      }
+      for (int i = 0; i < 100000; i++)
+         values.add(i);
+      Collections.shuffle(values, new Random(5));
+      return values;
+   }
+}
@@ -1,5 +1,6 @@
 package net.sf.jagg.test.model;
 
+import java.io.Serializable;
 import java.util.Arrays;
 import java.util.List;
 
@@ -11,8 +12,10 @@ import net.sf.jagg.msd.Discriminable;
  * @author Randy Gettman
  * @since 0.1.0
  */
-public class Record implements Comparable<Record>, Discriminable
+public class Record implements Comparable<Record>, Discriminable, Serializable
 {
+   private static final long serialVersionUID = 1L;
+
    private String myCategory1;
    private int    myCategory2;
    private String myCategory3;
@@ -0,0 +1,74 @@
+package net.sf.jagg.test.model;
+
+import net.sf.jagg.Aggregator;
+
+/**
+ * This class represents a custom "sum" aggregator that accesses its property
+ * through the static <code>Aggregator.getValueFromProperty</code> method, as
+ * custom <code>Aggregators</code> written before version 0.7.3 do.
+ *
+ * @author Randy Gettman
+ * @since 0.7.3
+ */
+public class StaticPropertySumAggregator extends Aggregator
+{
+   private double mySum;
+
+   /**
+    * Constructs a <code>StaticPropertySumAggregator</code> that operates on
+    * the specified property.
+    * @param property Sum up the values of this property.
+    */
+   public StaticPropertySumAggregator(String property)
+   {
+      setProperty(property);
+   }
+
+   /**
+    * Returns an uninitialized copy of this <code>Aggregator</code> object,
+    * with the same property(ies) to analyze.
+    * @return An uninitialized copy of this <code>Aggregator</code> object.
+    */
+   public StaticPropertySumAggregator replicate()
+   {
+      return new StaticPropertySumAggregator(getProperty());
+   }
+
+   /**
+    * Initialize the sum to zero.
+    */
+   public void init()
+   {
+      mySum = 0;
+   }
+
+   /**
+    * Add the property value to the sum.
+    * @param value The value to aggregate.
+    */
+   public void iterate(Object value)
+   {
+      Number obj = (Number) getValueFromProperty(value, getProperty());
+      if (obj != null)
+         mySum += obj.doubleValue();
+   }
+
+   /**
+    * Merge the given <code>Aggregator</code> into this one.
+    * @param agg The <code>Aggregator</code> to merge into this one.
+    */
+   public void merge(Aggregator agg)
+   {
+      if (agg != null && agg instanceof StaticPropertySumAggregator)
+         mySum += ((StaticPropertySumAggregator) agg).mySum;
+   }
+
+   /**
+    * Return the sum.
+    * @return The sum.
+    */
+   public Double terminate()
+   {
+      return mySum;
+   }
+}
@@ -2,12 +2,24 @@ package net.sf.jagg.test.msd;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.junit.After;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import net.sf.jagg.AggregateValue;
+import net.sf.jagg.Aggregation;
+import net.sf.jagg.Aggregator;
+import net.sf.jagg.ConcatAggregator;
+import net.sf.jagg.CountAggregator;
+import net.sf.jagg.ParallelismUtility;
 import net.sf.jagg.msd.Discriminator;
+import net.sf.jagg.msd.IndexPartition;
 import net.sf.jagg.msd.MsdWorkspace;
 import net.sf.jagg.msd.PropertiesDiscriminator;
 import net.sf.jagg.test.model.Record;
@@ -103,4 +115,190 @@ public class PropertiesDiscriminatorTest
          }
       }
    }
-}
\ No newline at end of file
+
+   /**
+    * Tests that index-based discrimination by properties yields the same
+    * equivalence classes, in the same order, as <code>List</code>-based
+    * discrimination.
+    */
+   @Test
+   public void testIndexDiscrimination()
+   {
+      List<Record> values = getLargeTestData();
+      PropertiesDiscriminator<Record> discr =
+         new PropertiesDiscriminator<Record>("category1", "category2", "category3");
+
+      List<List<Record>> expected = discr.discriminate(values, myWorkspace);
+      IndexPartition partition = discr.discriminateIndexes(values, myWorkspace);
+
+      // Same equivalence classes, in the same order.
+      List<List<Record>> results = partition.getEquivalenceClasses(values);
+      assertEquals(expected.size(), partition.getNumClasses());
+      assertEquals(expected.size(), results.size());
+      for (int c = 0; c < expected.size(); c++)
+      {
+         List<Record> expectedList = expected.get(c);
+         List<Record> resultList = results.get(c);
+         assertEquals(expectedList.size(), resultList.size());
+         for (int i = 0; i < expectedList.size(); i++)
+            assertSame(expectedList.get(i), resultList.get(i));
+      }
+
+      // The reordered list keeps each equivalence class together.
+      List<Record> reordered = partition.getReorderedList(values);
+      assertEquals(values.size(), reordered.size());
+      int start = 0;
+      for (List<Record> equivClass : partition.getEquivalenceClasses(values))
+      {
+         for (int i = 0; i < equivClass.size(); i++)
+            assertSame(equivClass.get(i), reordered.get(start + i));
+         start += equivClass.size();
+      }
+   }
+
+   /**
+    * Tests that parallel discrimination by properties yields the same
+    * equivalence classes as serial discrimination.
+    */
+   @Test
+   public void testParallelDiscrimination()
+   {
+      List<Record> values = getLargeTestData();
+      PropertiesDiscriminator<Record> serial =
+         new PropertiesDiscriminator<Record>("category1", "category2", "category3");
+      PropertiesDiscriminator<Record> parallel =
+         new PropertiesDiscriminator<Record>("category1", "category2", "category3");
+
+      ExecutorService executor = Executors.newFixedThreadPool(3);
+      List<List<Record>> expected;
+      List<List<Record>> results;
+      IndexPartition partition;
+      try
+      {
+         expected = serial.discriminate(values, myWorkspace);
+         results = parallel.discriminate(values, new MsdWorkspace(), 3, executor);
+         partition = parallel.discriminateIndexes(values, new MsdWorkspace(), 3, executor);
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+
+      assertSameClasses(expected, results);
+      assertSameClasses(expected, partition.getEquivalenceClasses(values));
+   }
+
+   /**
+    * Limits parallelism to the number of processors again.
+    */
+   @After
+   public void resetParallelism()
+   {
+      ParallelismUtility.reset();
+   }
+
+   /**
+    * Tests that an <code>Aggregation</code> that uses multiset discrimination
+    * with parallelism, even on a machine with fewer processors, yields the
+    * same results, in the same order, as one that discriminates serially.
+    * The "concat" of an increasing value reveals whether the original order
+    * within each group was kept.
+    */
+   @Test
+   public void testParallelMsdAggregation()
+   {
+      ParallelismUtility.forceParallelism(3);
+      List<Record> values = getLargeTestData();
+      List<String> properties = Arrays.asList("category1", "category2", "category3");
+      Aggregator count = new CountAggregator("*");
+      Aggregator concat = new ConcatAggregator("value1");
+      List<Aggregator> aggs = Arrays.asList(count, concat);
+      Aggregation serial = new Aggregation.Builder().setProperties(properties).setAggregators(aggs)
+         .setUseMsd(true).build();
+      Aggregation parallel = new Aggregation.Builder().setProperties(properties).setAggregators(aggs)
+         .setUseMsd(true).setParallelism(3).build();
+
+      List<AggregateValue<Record>> expected = serial.groupBy(values);
+      List<AggregateValue<Record>> actual = parallel.groupBy(values);
+      assertEquals(90, expected.size());
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++)
+      {
+         AggregateValue<Record> expValue = expected.get(i);
+         AggregateValue<Record> actValue = actual.get(i);
+         for (int p = 0; p < properties.size(); p++)
+            assertEquals(expValue.getPropertyValue(p), actValue.getPropertyValue(p));
+         assertEquals(expValue.getAggregateValue(count), actValue.getAggregateValue(count));
+         assertEquals(expValue.getAggregateValue(concat), actValue.getAggregateValue(concat));
+      }
+   }
+
+   /**
+    * Returns 20000 <code>Records</code> with 3 values of category 1, 10 of
+    * category 2, and 4 of category 3, plus some <code>null</code> category
+    * 3 values.
+    * @return A <code>List</code> of <code>Records</code>.
+    */
+   private List<Record> getLargeTestData()
+   {
+      String[] cat1s = {"A", "B", "C"};
+      String[] cat3s = {"alpha", "beta", "gamma", "delta"};
+      List<Record> values = new ArrayList<Record>();
+      for (int i = 0; i < 20000; i++)
+      {
+         String cat3 = (i % 17 == 0) ? null : cat3s[(i * 5) % 4];
+         values.add(new Record(cat1s[(i * 7) % 3], (i * 13) % 10, cat3, "baseball", i, i));
+      }
+      return values;
+   }
+
+   /**
+    * Asserts that the actual equivalence classes are the same as the
+    * expected ones, in any order, with the elements of each class in the
+    * same order.
+    * @param expected The expected equivalence classes.
+    * @param results The actual equivalence classes.
+    */
+   private void assertSameClasses(List<List<Record>> expected, List<List<Record>> results)
+   {
+      assertEquals(expected.size(), results.size());
+      Map<String, List<Record>> expectedByKey = getClassesByKey(expected);
+      Map<String, List<Record>> resultsByKey = getClassesByKey(results);
+      assertEquals(expectedByKey.size(), resultsByKey.size());
+      for (Map.Entry<String, List<Record>> entry : expectedByKey.entrySet())
+      {
+         List<Record> expectedList = entry.getValue();
+         List<Record> resultList = resultsByKey.get(entry.getKey());
+         assertNotNull(resultList);
+         assertEquals(expectedList.size(), resultList.size());
+         // Discrimination is stable.
+         for (int i = 0; i < expectedList.size(); i++)
+            assertSame(expectedList.get(i), resultList.get(i));
+      }
+   }
+
+   /**
+    * Maps each equivalence class by the category 1, 2, and 3 values that its
+    * elements share, asserting that they do share them.
+    * @param classes The equivalence classes.
+    * @return A <code>Map</code> of keys to equivalence classes.
+    */
+   private Map<String, List<Record>> getClassesByKey(List<List<Record>> classes)
+   {
+      Map<String, List<Record>> byKey = new HashMap<String, List<Record>>();
+      for (List<Record> equivClass : classes)
+      {
+         String key = null;
+         for (Record record : equivClass)
+         {
+            String recordKey = record.getCategory1() + "|" + record.getCategory2() + "|" +
+               record.getCategory3();
+            if (key == null)
+               key = recordKey;
+            assertEquals(key, recordKey);
+         }
+         assertNull(byKey.put(key, equivClass));
+      }
+      return byKey;
+   }
+}